@@ -0,0 +1,86 @@
+package at.pepe.trader.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares a JMH result file (-rf json) with the baseline and fails if a benchmark got slower by more than the
+ * tolerance on top of the error of both runs. Only average time results are compared, lower is better.
+ * <p>
+ * Arguments: baseline file, result file, tolerance as a fraction (0.2 = 20% slower is still fine).
+ */
+public final class BaselineCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck <baseline.json> <result.json> [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> result = read(new File(args[1]));
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : result.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s new, no baseline%n", entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double limit = (score(before) + error(before)) * (1 + tolerance) + error(after);
+            double change = score(after) / score(before) - 1;
+            boolean regressed = score(after) > limit;
+            System.out.printf("%-70s %12.3f -> %12.3f %s %+7.1f%%%s%n", entry.getKey(), score(before), score(after),
+                    unit(after), change * 100, regressed ? "  REGRESSION" : "");
+            if (regressed) {
+                regressions.add(entry.getKey());
+            }
+        }
+        baseline.keySet().stream()
+                .filter(key -> !result.containsKey(key))
+                .forEach(key -> System.out.printf("%-70s not run%n", key));
+
+        if (!regressions.isEmpty()) {
+            System.out.println(regressions.size() + " benchmark(s) slower than the baseline: " + regressions);
+            System.exit(1);
+        }
+        System.out.println("No regression against " + args[0]);
+    }
+
+    // By benchmark and parameters, like "at.pepe.trader...openAtFreePrice positions=1000"
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            if (!"avgt".equals(run.path("mode").asText())) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            results.put(key.toString(), run.path("primaryMetric"));
+        }
+        return results;
+    }
+
+    private static double score(JsonNode metric) {
+        return metric.path("score").asDouble();
+    }
+
+    // NaN when there were too few iterations for an error
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String unit(JsonNode metric) {
+        return metric.path("scoreUnit").asText();
+    }
+}
@@ -0,0 +1,90 @@
+package at.pepe.trader.benchmark;
+
+import at.pepe.trader.backtest.InMemoryPositionRepository;
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.Random;
+
+/**
+ * What the benchmarks share: the traded symbol as configured in production, a reproducible price tape and the
+ * position service wired around it.
+ */
+public final class BenchmarkFixtures {
+    public static final long FIRST_CLOSE_TIME = 1_700_000_000_999L;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static TradeConfigProperties tradeConfig() {
+        TradeConfigProperties properties = new TradeConfigProperties();
+        properties.setSymbol("PEPEFDUSD");
+        properties.setBaseAsset("PEPE");
+        properties.setBaseAssetScale(0);
+        properties.setQuoteAsset("FDUSD");
+        properties.setQuoteAssetScale(8);
+        properties.setQuoteAssetQuantityPerTrade(new BigDecimal("25"));
+        properties.setGapSizePoints(4);
+        properties.setUpperBounds(new BigDecimal("0.00000850"));
+        properties.setLowerBounds(new BigDecimal("0.00000650"));
+        return properties;
+    }
+
+    /**
+     * The position service wired like the backtest: positions in memory, orders sent to a {@link PendingOrderGateway}
+     * and no latency recorded.
+     */
+    public static PositionService positionService(TradeConfigProperties properties, TradingParametersHolder tradingParametersHolder,
+                                                  BarSeriesHolderService barSeriesHolderService, Clock clock) {
+        InMemoryPositionRepository positionRepository = new InMemoryPositionRepository();
+        return new PositionService(
+                properties,
+                tradingParametersHolder,
+                positionRepository,
+                new PendingOrderGateway(),
+                barSeriesHolderService,
+                new DiscordEmbedPublishingService(new JacksonConfig().objectMapper(), properties),
+                new RollingStatisticsService(properties.getSymbol(), false, positionRepository, clock),
+                LatencyTracker.disabled(),
+                clock
+        );
+    }
+
+    /**
+     * Close prices in points of a 1s random walk between the bounds, with a jump now and then.
+     */
+    public static long[] closes(int count) {
+        Random random = new Random(1);
+        long[] closes = new long[count];
+        long price = 750;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(20) == 0) {
+                price += random.nextInt(3) - 1;
+            }
+            if (random.nextInt(1500) == 0) {
+                price += random.nextBoolean() ? 6 : -6;
+            }
+            price = Math.max(660, Math.min(840, price));
+            closes[i] = price;
+        }
+        return closes;
+    }
+
+    /**
+     * Every position and order update is logged, which would be measured instead of the code.
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
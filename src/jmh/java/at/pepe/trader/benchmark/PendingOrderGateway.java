@@ -0,0 +1,33 @@
+package at.pepe.trader.benchmark;
+
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.binance.OrderGateway;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Accepts every request and never answers, so a benchmark measures the decision to send and not the state changes
+ * of the ack that would follow it.
+ */
+public class PendingOrderGateway implements OrderGateway {
+    @Override
+    public CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId) {
+        return new CompletableFuture<>();
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelOrder(long orderId) {
+        return new CompletableFuture<>();
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action, long clientId) {
+        return new CompletableFuture<>();
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelAllOrders() {
+        return new CompletableFuture<>();
+    }
+}
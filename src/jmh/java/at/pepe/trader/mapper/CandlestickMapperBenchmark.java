@@ -0,0 +1,26 @@
+package at.pepe.trader.mapper;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.ta4j.core.BaseBar;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A kline of the stream into a ta4j bar, the path the bars took before they were kept as points. The message is
+ * parsed once, only the mapping is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CandlestickMapperBenchmark {
+    private final CandlestickMapper candlestickMapper = new CandlestickMapper();
+    private final JSONObject jsonKline = new JSONObject(ParserBenchmark.KLINE).getJSONObject("data").getJSONObject("k");
+
+    @Benchmark
+    public BaseBar mapJsonKline() {
+        return candlestickMapper.map(jsonKline);
+    }
+}
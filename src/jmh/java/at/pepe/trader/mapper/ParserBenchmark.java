@@ -0,0 +1,71 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The streaming parsers against the JSON tree they replaced, on messages as binance sends them. Run with
+ * {@code -prof gc} to see the allocation per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParserBenchmark {
+    static final String KLINE = "{\"stream\":\"pepefdusd@kline_1s\",\"data\":{\"e\":\"kline\",\"E\":1672515782136,"
+            + "\"s\":\"PEPEFDUSD\",\"k\":{\"t\":1672515781000,\"T\":1672515781999,\"s\":\"PEPEFDUSD\",\"i\":\"1s\","
+            + "\"f\":100,\"L\":200,\"o\":\"0.00000123\",\"c\":\"0.00000124\",\"h\":\"0.00000125\",\"l\":\"0.00000122\","
+            + "\"v\":\"1000000000.00000000\",\"n\":100,\"x\":false,\"q\":\"1.00000000\",\"V\":\"500.00000000\","
+            + "\"Q\":\"0.50000000\",\"B\":\"123456\"}}}";
+    static final String EXECUTION_REPORT = "{\"e\":\"executionReport\",\"E\":1499405658658,\"s\":\"PEPEFDUSD\","
+            + "\"c\":\"mUvoqJxFIILMdfAW5iGSOW\",\"S\":\"BUY\",\"o\":\"LIMIT\",\"f\":\"GTC\",\"q\":\"1000000.00000000\","
+            + "\"p\":\"0.00000123\",\"P\":\"0.00000000\",\"F\":\"0.00000000\",\"g\":-1,\"C\":\"\",\"x\":\"NEW\","
+            + "\"X\":\"NEW\",\"r\":\"NONE\",\"i\":4293153,\"l\":\"0.00000000\",\"z\":\"0.00000000\",\"L\":\"0.00000000\","
+            + "\"n\":\"0\",\"N\":null,\"T\":1499405658657,\"t\":-1,\"I\":8641984,\"w\":true,\"m\":false,\"M\":false,"
+            + "\"O\":1499405658657,\"Z\":\"0.00000000\",\"Y\":\"0.00000000\",\"Q\":\"0.00000000\",\"W\":1499405658657,"
+            + "\"V\":\"NONE\"}";
+
+    private final PriceScale priceScale = new PriceScale(8);
+    private final OrderMapper orderMapper = new OrderMapper();
+    private final KlineMessageParser klineParser = new KlineMessageParser();
+    private final UserDataMessageParser userDataParser = new UserDataMessageParser();
+
+    @Benchmark
+    public void klineJsonObject(Blackhole blackhole) {
+        JSONObject jsonKline = new JSONObject(KLINE).getJSONObject("data").getJSONObject("k");
+        blackhole.consume(jsonKline.getLong("T"));
+        blackhole.consume(priceScale.parse(jsonKline.getString("o")));
+        blackhole.consume(priceScale.parse(jsonKline.getString("h")));
+        blackhole.consume(priceScale.parse(jsonKline.getString("l")));
+        blackhole.consume(priceScale.parse(jsonKline.getString("c")));
+        blackhole.consume(jsonKline.getDouble("v"));
+    }
+
+    @Benchmark
+    public void klineStreaming(Blackhole blackhole) {
+        KlineUpdate kline = klineParser.parse(KLINE);
+        blackhole.consume(kline.getCloseTime());
+        blackhole.consume(kline.getOpen(priceScale));
+        blackhole.consume(kline.getHigh(priceScale));
+        blackhole.consume(kline.getLow(priceScale));
+        blackhole.consume(kline.getClose(priceScale));
+        blackhole.consume(kline.getVolume());
+    }
+
+    @Benchmark
+    public OrderPojo executionReportJsonObject() {
+        return orderMapper.mapFromStream(new JSONObject(EXECUTION_REPORT));
+    }
+
+    @Benchmark
+    public OrderPojo executionReportStreaming() {
+        userDataParser.parse(EXECUTION_REPORT);
+        return userDataParser.getOrder();
+    }
+}
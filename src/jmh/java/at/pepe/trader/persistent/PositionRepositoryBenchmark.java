@@ -0,0 +1,111 @@
+package at.pepe.trader.persistent;
+
+import at.pepe.trader.benchmark.BenchmarkFixtures;
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.PersistenceConfigProperties;
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.persistent.codec.BinaryPositionCodec;
+import at.pepe.trader.persistent.codec.JsonPositionCodec;
+import at.pepe.trader.persistent.codec.StatisticsBucketCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.rocksdb.RocksDBException;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PositionRepositoryImpl} on a RocksDB in a temporary directory holding a month of positions, a few
+ * thousand a day. A save only queues the position, writing it is measured by saving and flushing a full batch.
+ * The saved positions are a fixed set, an endless stream of new ones would outgrow the flusher.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PositionRepositoryBenchmark {
+    private static final int STORED_POSITIONS = 100_000;
+    private static final int BATCH = 256;
+    private static final int SAVED_POSITIONS = 10_000; // Saved again and again like positions changing their status
+
+    private final OffsetDateTime now = OffsetDateTime.now();
+    private Path directory;
+    private PositionRepositoryImpl positionRepository;
+    private Position template;
+    private long saved;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, RocksDBException {
+        BenchmarkFixtures.quietLogging();
+        directory = Files.createTempDirectory("position-benchmark");
+        PersistenceConfigProperties properties = new PersistenceConfigProperties();
+        properties.setPath(directory.toString());
+        positionRepository = new PositionRepositoryImpl(
+                List.of(new BinaryPositionCodec(), new JsonPositionCodec(new JacksonConfig().objectMapper())),
+                new StatisticsBucketCodec(),
+                properties,
+                new SimpleMeterRegistry()
+        );
+        positionRepository.initialize();
+
+        template = Position.builder()
+                .status(PositionStatus.FINISHED)
+                .orderIdOpen(1L)
+                .openAtPrice(new BigDecimal("0.00000750"))
+                .quantityOpen(new BigDecimal("3333333"))
+                .orderIdClose(2L)
+                .closeAtPrice(new BigDecimal("0.00000754"))
+                .quantityClose(new BigDecimal("3333333"))
+                .build();
+        long secondsApart = Duration.ofDays(30).toSeconds() / STORED_POSITIONS;
+        for (int id = 0; id < STORED_POSITIONS; id++) {
+            OffsetDateTime createdAt = now.minusSeconds((STORED_POSITIONS - id) * secondsApart);
+            positionRepository.save((long) id, template.toBuilder()
+                    .id(id)
+                    .createdAt(createdAt)
+                    .closedAt(createdAt.plusMinutes(7))
+                    .build());
+        }
+        positionRepository.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        positionRepository.shutdown();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void save() {
+        long id = STORED_POSITIONS + saved++ % SAVED_POSITIONS;
+        positionRepository.save(id, template.toBuilder().id(id).createdAt(now).build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void saveAndFlushBatch() throws RocksDBException {
+        for (int i = 0; i < BATCH; i++) {
+            save();
+        }
+        positionRepository.flush();
+    }
+
+    @Benchmark
+    public List<Position> findAllSinceHour() {
+        return positionRepository.findAllSince(now.minusHours(1));
+    }
+
+    @Benchmark
+    public List<Position> findAllSinceDay() {
+        return positionRepository.findAllSince(now.minusDays(1));
+    }
+}
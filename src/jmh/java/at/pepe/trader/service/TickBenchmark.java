@@ -0,0 +1,101 @@
+package at.pepe.trader.service;
+
+import at.pepe.trader.benchmark.BenchmarkFixtures;
+import at.pepe.trader.benchmark.PendingOrderGateway;
+import at.pepe.trader.backtest.SimulatedClock;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.mapper.KlineMessageParser;
+import at.pepe.trader.mapper.KlineUpdate;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.indicator.IndicatorService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.position.PositionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The strategy thread for one 1s kline, wired by hand like the backtest: the bars, the indicator evaluation of
+ * {@link TradingService#performTrade()} and the whole tick from the stream message to the order decision. Orders
+ * are sent to a {@link PendingOrderGateway}, so the positions do not pile up over the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TickBenchmark {
+    private static final int TAPE_LENGTH = 1 << 16;
+    private static final int WARM_UP_BARS = 3600; // The minute bands need their window of bars
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final KlineMessageParser klineParser = new KlineMessageParser();
+    private PriceScale priceScale;
+    private BarSeriesHolderService barSeriesHolderService;
+    private PositionService positionService;
+    private TradingService tradingService;
+    private long[] closes;
+    private String[] messages;
+    private int next;
+    private long closeTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        TradeConfigProperties properties = BenchmarkFixtures.tradeConfig();
+        priceScale = new PriceScale(properties.getQuoteAssetScale());
+        TradingParametersHolder tradingParametersHolder = new TradingParametersHolder(properties);
+        BalanceHolderService balanceHolderService = new BalanceHolderService(properties, tradingParametersHolder);
+        IndicatorService indicatorService = new IndicatorService(properties);
+        barSeriesHolderService = new BarSeriesHolderService(properties, null, indicatorService);
+        positionService = BenchmarkFixtures.positionService(properties, tradingParametersHolder, barSeriesHolderService, clock);
+        tradingService = new TradingService(properties, tradingParametersHolder, positionService, barSeriesHolderService, balanceHolderService,
+                indicatorService, LatencyTracker.disabled());
+
+        closes = BenchmarkFixtures.closes(TAPE_LENGTH);
+        messages = new String[TAPE_LENGTH];
+        for (int i = 0; i < TAPE_LENGTH; i++) {
+            String price = priceScale.toBigDecimal(closes[i]).toPlainString();
+            messages[i] = String.format(Locale.ROOT, "{\"stream\":\"pepefdusd@kline_1s\",\"data\":{\"e\":\"kline\","
+                    + "\"s\":\"PEPEFDUSD\",\"k\":{\"T\":0,\"s\":\"PEPEFDUSD\",\"i\":\"1s\",\"o\":\"%s\",\"c\":\"%s\","
+                    + "\"h\":\"%s\",\"l\":\"%s\",\"v\":\"1000000.00000000\",\"x\":false}}}", price, price, price, price);
+        }
+
+        closeTime = BenchmarkFixtures.FIRST_CLOSE_TIME;
+        barSeriesHolderService.startFrom(closeTime, closes[0], closes[0], closes[0], closes[0], 1);
+        for (int i = 1; i < WARM_UP_BARS; i++) {
+            updateBarSeries();
+        }
+    }
+
+    @Benchmark
+    public void updateBarSeries() {
+        long close = closes[next++ & (TAPE_LENGTH - 1)];
+        closeTime += 1000;
+        barSeriesHolderService.updateBarSeries(closeTime, close, close, close, close, 1);
+    }
+
+    @Benchmark
+    public void performTrade() {
+        tradingService.performTrade();
+    }
+
+    /**
+     * The close time of the message is ignored, the bars need one that keeps counting up.
+     */
+    @Benchmark
+    public void tick() {
+        KlineUpdate kline = klineParser.parse(messages[next++ & (TAPE_LENGTH - 1)]);
+        closeTime += 1000;
+        clock.setMillis(closeTime);
+        long close = kline.getClose(priceScale);
+        barSeriesHolderService.updateBarSeries(closeTime, kline.getOpen(priceScale), kline.getHigh(priceScale),
+                kline.getLow(priceScale), close, kline.getVolume());
+        positionService.advanceTimers(closeTime);
+        positionService.onPrice(close);
+        tradingService.performTrade();
+    }
+}
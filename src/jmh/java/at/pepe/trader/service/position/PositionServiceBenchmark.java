@@ -0,0 +1,92 @@
+package at.pepe.trader.service.position;
+
+import at.pepe.trader.backtest.SimulatedClock;
+import at.pepe.trader.benchmark.BenchmarkFixtures;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.indicator.IndicatorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PositionService#openPosition(long)} with that many positions waiting for their sell, one per price point.
+ * The positions are opened through the execution reports like in production. The free price passes every check and
+ * sends the order, the taken one is turned down by the book.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PositionServiceBenchmark {
+    private static final long FIRST_PRICE = 1_000;
+    private static final long COMBO_RESET_MILLIS = 3_600_000;
+
+    @Param({"10", "1000", "100000"})
+    public int positions;
+
+    private PositionService positionService;
+    private long freePrice;
+    private long takenPrice;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        TradeConfigProperties properties = BenchmarkFixtures.tradeConfig();
+        PriceScale priceScale = new PriceScale(properties.getQuoteAssetScale());
+        SimulatedClock clock = new SimulatedClock();
+        clock.setMillis(BenchmarkFixtures.FIRST_CLOSE_TIME);
+        positionService = BenchmarkFixtures.positionService(properties, new TradingParametersHolder(properties),
+                new BarSeriesHolderService(properties, null, new IndicatorService(properties)), clock);
+
+        BigDecimal quantity = new BigDecimal("1000000");
+        for (int id = 1; id <= positions; id++) {
+            BigDecimal price = priceScale.toBigDecimal(FIRST_PRICE + id);
+            OrderPojo buy = order(id, "BUY", "NEW", price, quantity, clock.millis());
+            positionService.onOrderUpdateEvent(buy);
+            positionService.onOrderUpdateEvent(buy.toBuilder().orderStatus("FILLED").executedQty(quantity).build());
+            positionService.onOrderUpdateEvent(order(id, "SELL", "NEW",
+                    priceScale.toBigDecimal(FIRST_PRICE + id + properties.getGapSizePoints()), quantity, clock.millis()));
+        }
+        // Every fill counted towards the combo limit, which would turn down any further position
+        clock.setMillis(clock.millis() + COMBO_RESET_MILLIS + 1);
+        positionService.advanceTimers(clock.millis());
+
+        freePrice = FIRST_PRICE / 2;
+        takenPrice = FIRST_PRICE + positions / 2 + 1;
+    }
+
+    private static OrderPojo order(long id, String action, String status, BigDecimal price, BigDecimal quantity, long millis) {
+        return OrderPojo.builder()
+                .orderId(id)
+                .clientOrderId(Long.toString(id))
+                .action(action)
+                .symbol("PEPEFDUSD")
+                .orderStatus(status)
+                .type("LIMIT")
+                .createdAt(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC))
+                .updatedAt(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC))
+                .price(price)
+                .quantity(quantity)
+                .executedQty(BigDecimal.ZERO)
+                .commissionAmount(BigDecimal.ZERO)
+                .build();
+    }
+
+    @Benchmark
+    public boolean openAtFreePrice() {
+        return positionService.openPosition(freePrice);
+    }
+
+    @Benchmark
+    public boolean openAtTakenPrice() {
+        return positionService.openPosition(takenPrice);
+    }
+}
@@ -0,0 +1,49 @@
+package at.pepe.trader.service.statistics;
+
+import at.pepe.trader.backtest.InMemoryPositionRepository;
+import at.pepe.trader.benchmark.BenchmarkFixtures;
+import at.pepe.trader.model.StatisticResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The four time frames {@link StatisticsService} publishes, summed from a month of busy minute buckets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StatisticsBenchmark {
+    private RollingStatisticsService rollingStatisticsService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        rollingStatisticsService = new RollingStatisticsService(BenchmarkFixtures.tradeConfig().getSymbol(), false, new InMemoryPositionRepository(), Clock.systemUTC());
+        OffsetDateTime now = OffsetDateTime.now();
+        BigDecimal volume = new BigDecimal("25");
+        BigDecimal profit = new BigDecimal("0.0125");
+        for (OffsetDateTime at = now.minusDays(31); at.isBefore(now); at = at.plusMinutes(1)) {
+            rollingStatisticsService.onOpened(at, volume);
+            rollingStatisticsService.onClosed(at, profit, Duration.ofMinutes(7));
+        }
+    }
+
+    @Benchmark
+    public List<StatisticResult> summarizeTimeFrames() {
+        OffsetDateTime now = OffsetDateTime.now();
+        return List.of(
+                rollingStatisticsService.summarizeSince(now.minusMonths(1)),
+                rollingStatisticsService.summarizeSince(now.minusDays(7)),
+                rollingStatisticsService.summarizeSince(now.minusDays(1)),
+                rollingStatisticsService.summarizeSince(now.minusHours(1))
+        );
+    }
+}
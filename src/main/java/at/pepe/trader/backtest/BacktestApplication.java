@@ -0,0 +1,82 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.PriceScale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Offline replay of recorded 1s klines, no spring context and no network:
+ * <pre>
+ * java -cp pepe-trader.jar -Dloader.main=at.pepe.trader.backtest.BacktestApplication \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher PEPEFDUSD-1s-2024-05.zip ...
+ * </pre>
+ * Arguments are kline files or directories of them, replayed in file name order. The trade parameters come from
+ * application.yml and can be overridden with system properties, e.g. -Dtrade.gap-size-points=6.
+ */
+@Slf4j
+public class BacktestApplication {
+
+    public static void main(String[] args) throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"))
+                .forEach(environment.getPropertySources()::addLast);
+        Binder binder = Binder.get(environment);
+        configureLogging(binder);
+
+        TradeConfigProperties tradeConfigProperties = binder.bind("trade", TradeConfigProperties.class).get();
+        BacktestProperties backtestProperties = binder.bind("backtest", BacktestProperties.class).orElseGet(BacktestProperties::new);
+
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(Files::isRegularFile).forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        files.sort(null);
+        if (files.isEmpty()) {
+            log.error("No kline files given.");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Backtester backtester = new Backtester(tradeConfigProperties, backtestProperties.getInitialQuoteBalance());
+        KlineCsvReader reader = new KlineCsvReader(new PriceScale(tradeConfigProperties.getQuoteAssetScale()));
+        for (Path file : files) {
+            long klines = reader.read(file, backtester);
+            log.info("Replayed {} klines from {}", klines, file);
+        }
+        BacktestResult result = backtester.getResult().toBuilder()
+                .elapsedMillis(System.currentTimeMillis() - start)
+                .build();
+        log.info("Backtest result:\n{}", result);
+    }
+
+    private static void configureLogging(Binder binder) {
+        LoggingSystem loggingSystem = LoggingSystem.get(BacktestApplication.class.getClassLoader());
+        loggingSystem.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+        binder.bind("logging.level", Bindable.mapOf(String.class, LogLevel.class))
+                .orElseGet(Map::of)
+                .forEach(loggingSystem::setLogLevel);
+    }
+}
@@ -0,0 +1,14 @@
+package at.pepe.trader.backtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BacktestProperties {
+    private BigDecimal initialQuoteBalance = new BigDecimal("1000"); // Quote asset available at the start
+}
@@ -0,0 +1,45 @@
+package at.pepe.trader.backtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class BacktestResult {
+    private long bars;
+    private Instant from;
+    private Instant to;
+
+    private int positionsOpened; // buy orders filled
+    private int positionsClosed; // sell orders filled
+    private int positionsStillOpen; // sell orders resting at the end
+    private int ordersCancelled;
+    private int ordersRejected;
+
+    private BigDecimal realizedProfit;
+    private double equityChange; // including the still open positions valued at the last close
+    private double maxDrawdown; // largest drop of the equity from its peak, in quote asset
+
+    private long elapsedMillis;
+
+    @Override
+    public String toString() {
+        return "Bars: " + bars + " (" + from + " - " + to + ")" +
+                "\nPositionsOpened: " + positionsOpened +
+                "\nPositionsClosed: " + positionsClosed +
+                "\nPositionsStillOpen: " + positionsStillOpen +
+                "\nOrdersCancelled: " + ordersCancelled +
+                "\nOrdersRejected: " + ordersRejected +
+                "\nRealizedProfit: " + realizedProfit.toPlainString() +
+                "\nEquityChange: " + String.format("%.4f", equityChange) +
+                "\nMaxDrawdown: " + String.format("%.4f", maxDrawdown) +
+                "\nElapsed: " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,130 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.TradingService;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.indicator.IndicatorService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Replays 1s klines through the real {@link TradingService} and {@link PositionService}, wired by hand against a
+ * {@link SimulatedExchange}, a {@link SimulatedClock} and an in memory repository. Everything runs on the calling
+ * thread in kline order, the timers of the position service advance with the replayed time,
+ * so the same input always gives the same result. One instance replays one history.
+ */
+public class Backtester implements KlineListener {
+    // The bands look back on the minute bars and the latest price is the last minute close, nothing offline reads
+    // older 1s bars. An hour of them is kept instead of the days the live application restores.
+    static final int SECOND_BAR_CAPACITY = 3600;
+
+    private final SimulatedClock clock = new SimulatedClock();
+    private final SimulatedExchange exchange;
+    private final BarSeriesHolderService barSeriesHolderService;
+    private final PositionService positionService;
+    private final TradingService tradingService;
+
+    private long bars;
+    private long firstCloseTime;
+    private long lastCloseTime;
+    private long lastClose;
+    private double initialEquity;
+    private double peakEquity;
+    private double maxDrawdown;
+
+    public Backtester(TradeConfigProperties tradeConfigProperties, BigDecimal initialQuoteBalance) {
+        TradeConfigProperties properties = new TradeConfigProperties();
+        BeanUtils.copyProperties(tradeConfigProperties, properties);
+        properties.setDiscordWebhook(null);
+        properties.setSecondBarCapacity(Math.min(properties.getSecondBarCapacity(), SECOND_BAR_CAPACITY));
+
+        PriceScale priceScale = new PriceScale(properties.getQuoteAssetScale());
+        TradingParametersHolder tradingParametersHolder = new TradingParametersHolder(properties);
+        BalanceHolderService balanceHolderService = new BalanceHolderService(properties, tradingParametersHolder);
+        IndicatorService indicatorService = new IndicatorService(properties);
+        InMemoryPositionRepository positionRepository = new InMemoryPositionRepository();
+        this.exchange = new SimulatedExchange(properties, priceScale, clock, balanceHolderService, initialQuoteBalance);
+        // History is never restored, the bar history service is not needed
+        this.barSeriesHolderService = new BarSeriesHolderService(properties, null, indicatorService);
+        this.positionService = new PositionService(
+                properties,
+                tradingParametersHolder,
+                positionRepository,
+                exchange,
+                barSeriesHolderService,
+                new DiscordEmbedPublishingService(new JacksonConfig().objectMapper(), properties),
+                new RollingStatisticsService(properties.getSymbol(), false, positionRepository, clock),
+                LatencyTracker.disabled(),
+                clock
+        );
+        this.tradingService = new TradingService(properties, tradingParametersHolder, positionService, barSeriesHolderService, balanceHolderService,
+                indicatorService, LatencyTracker.disabled());
+    }
+
+    @Override
+    public void onKline(long closeTime, long open, long high, long low, long close, double volume) {
+        clock.setMillis(closeTime);
+        if (bars++ == 0) {
+            firstCloseTime = closeTime;
+            positionService.advanceTimers(closeTime);
+            initialEquity = peakEquity = exchange.getEquity(close);
+            barSeriesHolderService.startFrom(closeTime, open, high, low, close, volume);
+            lastCloseTime = closeTime;
+            lastClose = close;
+            return;
+        }
+
+        positionService.advanceTimers(closeTime);
+        deliverExecutionReports();
+        exchange.match(high, low);
+        deliverExecutionReports();
+
+        barSeriesHolderService.updateBarSeries(closeTime, open, high, low, close, volume);
+        positionService.onPrice(close);
+        deliverExecutionReports();
+        tradingService.performTrade();
+        deliverExecutionReports();
+
+        double equity = exchange.getEquity(close);
+        if (equity > peakEquity) {
+            peakEquity = equity;
+        } else if (peakEquity - equity > maxDrawdown) {
+            maxDrawdown = peakEquity - equity;
+        }
+        lastCloseTime = closeTime;
+        lastClose = close;
+    }
+
+    public BacktestResult getResult() {
+        return BacktestResult.builder()
+                .bars(bars)
+                .from(Instant.ofEpochMilli(firstCloseTime))
+                .to(Instant.ofEpochMilli(lastCloseTime))
+                .positionsOpened(exchange.getBuysFilled())
+                .positionsClosed(exchange.getSellsFilled())
+                .positionsStillOpen(exchange.getOpenSells())
+                .ordersCancelled(exchange.getCancelled())
+                .ordersRejected(exchange.getRejected())
+                .realizedProfit(exchange.getRealizedProfit())
+                .equityChange(bars == 0 ? 0 : exchange.getEquity(lastClose) - initialEquity)
+                .maxDrawdown(maxDrawdown)
+                .build();
+    }
+
+    private void deliverExecutionReports() {
+        for (OrderPojo report = exchange.poll(); report != null; report = exchange.poll()) {
+            positionService.onOrderUpdateEvent(report);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.StatisticsBucket;
+import at.pepe.trader.persistent.PositionRepository;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Keeps the positions of a replay in memory, nothing is written to disk.
+ */
+public class InMemoryPositionRepository implements PositionRepository {
+    private final Map<Long, Position> positions = new HashMap<>();
+    private final Map<String, NavigableMap<Long, StatisticsBucket>> statistics = new HashMap<>();
+    private boolean statisticsRebuilt;
+
+    @Override
+    public void save(Long key, Position value) {
+        positions.put(key, value.toBuilder().build());
+    }
+
+    @Override
+    public Position find(Long key) {
+        Position position = positions.get(key);
+        return position == null ? null : position.toBuilder().build();
+    }
+
+    @Override
+    public void delete(Long key) {
+        positions.remove(key);
+    }
+
+    @Override
+    public List<Position> findAllSince(OffsetDateTime offsetDateTime) {
+        List<Position> result = new ArrayList<>();
+        for (Position position : positions.values()) {
+            OffsetDateTime timestamp = Optional.ofNullable(position.getClosedAt()).orElse(position.getCreatedAt());
+            if (timestamp != null && timestamp.isAfter(offsetDateTime)) {
+                result.add(position.toBuilder().build());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void saveStatistics(StatisticsBucket bucket) {
+        statistics.computeIfAbsent(bucket.getSymbol(), symbol -> new TreeMap<>()).put(bucket.getMinute(), bucket.toBuilder().build());
+    }
+
+    @Override
+    public List<StatisticsBucket> findStatisticsSince(String symbol, long minute) {
+        NavigableMap<Long, StatisticsBucket> buckets = statistics.get(symbol);
+        return buckets == null ? new ArrayList<>() : new ArrayList<>(buckets.tailMap(minute, true).values());
+    }
+
+    @Override
+    public boolean isStatisticsRebuilt() {
+        return statisticsRebuilt;
+    }
+
+    @Override
+    public void markStatisticsRebuilt() {
+        statisticsRebuilt = true;
+    }
+
+    public Collection<Position> getPositions() {
+        return Collections.unmodifiableCollection(positions.values());
+    }
+}
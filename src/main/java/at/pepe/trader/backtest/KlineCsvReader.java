@@ -0,0 +1,79 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.model.PriceScale;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads klines in the format of the binance public data dumps (data.binance.vision), plain csv or zipped:
+ * open time, open, high, low, close, volume, close time, ... Header lines are skipped and timestamps in
+ * microseconds (used by the spot dumps since 2025) are converted to millis.
+ */
+public class KlineCsvReader {
+    private static final long MICROSECONDS_THRESHOLD = 100_000_000_000_000L;
+
+    private final PriceScale priceScale;
+
+    public KlineCsvReader(PriceScale priceScale) {
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * @return number of klines read
+     */
+    public long read(Path file, KlineListener listener) throws IOException {
+        if (file.getFileName().toString().endsWith(".zip")) {
+            try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                long count = 0;
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        count += read(new BufferedReader(new InputStreamReader(zip, StandardCharsets.US_ASCII), 1 << 16), listener);
+                    }
+                }
+                return count;
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            return read(reader, listener);
+        }
+    }
+
+    private long read(BufferedReader reader, KlineListener listener) throws IOException {
+        long count = 0;
+        int[] commas = new int[7];
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isEmpty() || line.charAt(0) < '0' || line.charAt(0) > '9') {
+                continue;
+            }
+            int found = 0;
+            for (int i = 0; i < line.length() && found < commas.length; i++) {
+                if (line.charAt(i) == ',') {
+                    commas[found++] = i;
+                }
+            }
+            if (found < 6) {
+                throw new IOException("Not a kline: " + line);
+            }
+            int closeTimeEnd = found > 6 ? commas[6] : line.length();
+            listener.onKline(
+                toMillis(Long.parseLong(line, commas[5] + 1, closeTimeEnd, 10)),
+                priceScale.parse(line.subSequence(commas[0] + 1, commas[1])),
+                priceScale.parse(line.subSequence(commas[1] + 1, commas[2])),
+                priceScale.parse(line.subSequence(commas[2] + 1, commas[3])),
+                priceScale.parse(line.subSequence(commas[3] + 1, commas[4])),
+                Double.parseDouble(line.substring(commas[4] + 1, commas[5]))
+            );
+            count++;
+        }
+        return count;
+    }
+
+    private static long toMillis(long timestamp) {
+        return timestamp >= MICROSECONDS_THRESHOLD ? timestamp / 1000 : timestamp;
+    }
+}
@@ -0,0 +1,64 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.HistoryConfigProperties;
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.OptimizerConfigProperties;
+import at.pepe.trader.config.RateLimitConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.service.binance.ApiRateLimiter;
+import at.pepe.trader.service.candle.CandleDataAccessService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Downloads klines from binance into a kline tape for the backtester and the optimizer.
+ * Arguments: first day, last day (both yyyy-MM-dd, UTC), optionally the interval (1s) and the tape path
+ * (optimizer.tape-path). Running it again with the same arguments resumes an interrupted download.
+ */
+@Slf4j
+public class KlineDownloadApplication {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: KlineDownloadApplication <first day> <last day> [interval] [tape]");
+            System.exit(1);
+        }
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"))
+                .forEach(environment.getPropertySources()::addLast);
+        Binder binder = Binder.get(environment);
+
+        TradeConfigProperties tradeConfigProperties = binder.bind("trade", TradeConfigProperties.class).get();
+        HistoryConfigProperties historyConfigProperties = binder.bind("history", HistoryConfigProperties.class)
+                .orElseGet(HistoryConfigProperties::new);
+        BinanceConfigProperties binanceConfigProperties = binder.bind("binance", BinanceConfigProperties.class).get();
+        OptimizerConfigProperties optimizerConfigProperties = binder.bind("optimizer", OptimizerConfigProperties.class)
+                .orElseGet(OptimizerConfigProperties::new);
+        RateLimitConfigProperties rateLimitConfigProperties = binder.bind("rate-limit", RateLimitConfigProperties.class)
+                .orElseGet(RateLimitConfigProperties::new);
+
+        long from = LocalDate.parse(args[0]).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long to = LocalDate.parse(args[1]).plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli() - 1;
+        String interval = args.length > 2 ? args[2] : "1s";
+        Path tapePath = Path.of(args.length > 3 ? args[3] : optimizerConfigProperties.getTapePath());
+
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(rateLimitConfigProperties, Clock.systemUTC(), new SimpleMeterRegistry());
+        CandleDataAccessService candleDataAccessService = new CandleDataAccessService(new JacksonConfig().objectMapper(),
+                historyConfigProperties, tradeConfigProperties, binanceConfigProperties, rateLimiter, Clock.systemUTC());
+        long start = System.currentTimeMillis();
+        long written = candleDataAccessService.downloadTo(tapePath, interval, from, to);
+        log.info("Downloaded {} {} klines into {} in {} ms.", written, interval, tapePath, System.currentTimeMillis() - start);
+    }
+}
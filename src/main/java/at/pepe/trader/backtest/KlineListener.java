@@ -0,0 +1,9 @@
+package at.pepe.trader.backtest;
+
+/**
+ * Receives one kline at a time, prices are points of the quote asset scale and the time is the close time in millis.
+ */
+@FunctionalInterface
+public interface KlineListener {
+    void onKline(long closeTime, long open, long high, long low, long close, double volume);
+}
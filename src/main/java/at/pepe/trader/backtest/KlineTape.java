@@ -0,0 +1,97 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.journal.JournalFile;
+import at.pepe.trader.journal.RecordFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Read-only, memory mapped file of kline records in the {@link RecordFile} layout. One instance can be replayed by
+ * any number of threads at the same time, the pages are shared through the OS page cache.
+ * <pre>
+ * record: close time millis | open | high | low | close (points) | volume (double)
+ * </pre>
+ * The daily files of the kline journal use the same format. Closing unmaps the file, replays have to be done by then.
+ */
+public class KlineTape implements Closeable {
+    public static final int MAGIC = 0x50544B4C; // "PTKL"
+    public static final int RECORD_SIZE = 6 * Long.BYTES;
+
+    private final RecordFile file;
+
+    private KlineTape(RecordFile file) {
+        this.file = file;
+    }
+
+    public static KlineTape open(Path path) throws IOException {
+        return new KlineTape(RecordFile.open(path, MAGIC, RECORD_SIZE));
+    }
+
+    public Path getPath() {
+        return file.getPath();
+    }
+
+    public int getScale() {
+        return file.getScale();
+    }
+
+    public long size() {
+        return file.size();
+    }
+
+    public long getCloseTime(long index) {
+        return file.getTime(index);
+    }
+
+    /**
+     * Index of the first kline closing at or after the given time, {@link #size()} if there is none.
+     */
+    public long seek(long closeTime) {
+        return file.seek(closeTime);
+    }
+
+    /**
+     * Replays the records [from, to) in order.
+     */
+    public void replay(long from, long to, KlineListener listener) {
+        for (long i = Math.max(from, 0); i < Math.min(to, size()); i++) {
+            ByteBuffer chunk = file.chunk(i);
+            int offset = file.offset(i);
+            listener.onKline(
+                chunk.getLong(offset),
+                chunk.getLong(offset + 8),
+                chunk.getLong(offset + 16),
+                chunk.getLong(offset + 24),
+                chunk.getLong(offset + 32),
+                chunk.getDouble(offset + 40)
+            );
+        }
+    }
+
+    public void replay(KlineListener listener) {
+        replay(0, size(), listener);
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+
+    /**
+     * Appends one kline record to a journal file of this format. The close time is written last, so a concurrent
+     * reader never sees a half written record.
+     */
+    public static void append(JournalFile file, long closeTime, long open, long high, long low, long close, double volume) throws IOException {
+        int offset = file.claim();
+        ByteBuffer buffer = file.buffer();
+        buffer.putLong(offset + 8, open)
+            .putLong(offset + 16, high)
+            .putLong(offset + 24, low)
+            .putLong(offset + 32, close)
+            .putDouble(offset + 40, volume);
+        buffer.putLong(offset, closeTime);
+    }
+}
@@ -0,0 +1,63 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.journal.RecordFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes klines in the {@link KlineTape} format, e.g. fed by a {@link KlineCsvReader} to convert binance dumps once.
+ */
+public class KlineTapeWriter implements KlineListener, Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(KlineTape.RECORD_SIZE * 4096).order(RecordFile.ORDER);
+    private long written;
+
+    public KlineTapeWriter(Path path, int scale) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(KlineTape.MAGIC)
+            .putShort(RecordFile.VERSION)
+            .putShort((short) KlineTape.RECORD_SIZE)
+            .putInt(scale)
+            .putInt(0);
+    }
+
+    @Override
+    public void onKline(long closeTime, long open, long high, long low, long close, double volume) {
+        if (buffer.remaining() < KlineTape.RECORD_SIZE) {
+            drain();
+        }
+        buffer.putLong(closeTime).putLong(open).putLong(high).putLong(low).putLong(close).putDouble(volume);
+        written++;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
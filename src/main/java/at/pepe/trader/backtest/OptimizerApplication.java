@@ -0,0 +1,91 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.OptimizerConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.PriceScale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Offline parameter sweep, started like {@link BacktestApplication}. Arguments are either one kline tape or kline
+ * csv/zip files (or directories of them) that are converted into the tape at optimizer.tape-path first.
+ * The grid comes from the optimizer section of application.yml, the ten best parameter sets are logged.
+ */
+@Slf4j
+public class OptimizerApplication {
+
+    public static void main(String[] args) throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"))
+                .forEach(environment.getPropertySources()::addLast);
+        Binder binder = Binder.get(environment);
+        LoggingSystem loggingSystem = LoggingSystem.get(OptimizerApplication.class.getClassLoader());
+        loggingSystem.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+        loggingSystem.setLogLevel("at.pepe.trader.service", LogLevel.WARN); // the replayed services
+
+        TradeConfigProperties tradeConfigProperties = binder.bind("trade", TradeConfigProperties.class).get();
+        OptimizerConfigProperties optimizerConfigProperties = binder.bind("optimizer", OptimizerConfigProperties.class)
+                .orElseGet(OptimizerConfigProperties::new);
+
+        Path tapePath;
+        if (args.length == 1 && args[0].endsWith(".tape")) {
+            tapePath = Path.of(args[0]);
+        } else {
+            tapePath = Path.of(optimizerConfigProperties.getTapePath());
+            convert(args, tapePath, tradeConfigProperties.getQuoteAssetScale());
+        }
+
+        List<SweepResult> results;
+        try (KlineTape tape = KlineTape.open(tapePath)) {
+            ParameterSweep sweep = new ParameterSweep(tape, tradeConfigProperties,
+                    optimizerConfigProperties.getInitialQuoteBalance(), optimizerConfigProperties.getDrawdownWeight());
+            var candidates = ParameterSweep.candidates(optimizerConfigProperties, tradeConfigProperties.toTradingParameters());
+            log.info("Replaying {} klines for {} parameter sets.", tape.size(), candidates.size());
+
+            long start = System.currentTimeMillis();
+            results = sweep.run(candidates, optimizerConfigProperties.getParallelism());
+            log.info("Sweep took {} ms.", System.currentTimeMillis() - start);
+        }
+        results.stream().limit(10).forEach(result -> log.info("Score {}: {}\n{}",
+                String.format("%.4f", result.score()), result.parameters(), result.result()));
+    }
+
+    private static void convert(String[] args, Path tapePath, int scale) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(Files::isRegularFile).forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        files.sort(null);
+
+        if (tapePath.getParent() != null) {
+            Files.createDirectories(tapePath.getParent());
+        }
+        KlineCsvReader reader = new KlineCsvReader(new PriceScale(scale));
+        try (KlineTapeWriter writer = new KlineTapeWriter(tapePath, scale)) {
+            for (Path file : files) {
+                reader.read(file, writer);
+            }
+            log.info("Wrote {} klines to {}", writer.getWritten(), tapePath);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.OptimizerConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.TradingParameters;
+import org.slf4j.MDC;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Replays one {@link KlineTape} once per parameter combination, spread over a fork join pool. Every replay has its
+ * own {@link Backtester}, only the mapped tape is shared. Results are ranked by
+ * equity change - drawdownWeight * max drawdown, best first.
+ */
+public class ParameterSweep {
+    /**
+     * MDC key set while a replay runs, the logging configuration uses it to silence the replayed services.
+     */
+    public static final String MDC_KEY = "backtest";
+
+    private final KlineTape tape;
+    private final TradeConfigProperties baseProperties;
+    private final BigDecimal initialQuoteBalance;
+    private final double drawdownWeight;
+
+    public ParameterSweep(KlineTape tape, TradeConfigProperties baseProperties, BigDecimal initialQuoteBalance, double drawdownWeight) {
+        if (tape.getScale() != baseProperties.getQuoteAssetScale()) {
+            throw new IllegalArgumentException("Tape " + tape.getPath() + " has scale " + tape.getScale() +
+                    " but the quote asset scale is " + baseProperties.getQuoteAssetScale());
+        }
+        this.tape = tape;
+        this.baseProperties = baseProperties;
+        this.initialQuoteBalance = initialQuoteBalance;
+        this.drawdownWeight = drawdownWeight;
+    }
+
+    public List<SweepResult> run(Collection<TradingParameters> candidates, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            List<SweepResult> results = new ArrayList<>(pool.submit(() -> candidates.parallelStream().map(this::evaluate).toList()).join());
+            results.sort(Comparator.comparingDouble(SweepResult::score).reversed());
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public SweepResult evaluate(TradingParameters parameters) {
+        TradeConfigProperties properties = baseProperties.withTradingParameters(parameters);
+
+        MDC.put(MDC_KEY, "true");
+        try {
+            long start = System.currentTimeMillis();
+            Backtester backtester = new Backtester(properties, initialQuoteBalance);
+            tape.replay(backtester);
+            BacktestResult result = backtester.getResult().toBuilder()
+                    .elapsedMillis(System.currentTimeMillis() - start)
+                    .build();
+            return new SweepResult(parameters, result, result.getEquityChange() - drawdownWeight * result.getMaxDrawdown());
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    /**
+     * The configured grid, or a seeded random sample of it, always including the current parameters.
+     */
+    public static List<TradingParameters> candidates(OptimizerConfigProperties optimizerConfigProperties, TradingParameters current) {
+        List<TradingParameters> grid = new ArrayList<>();
+        for (int gap : optimizerConfigProperties.getGapSizePoints()) {
+            for (int window : optimizerConfigProperties.getBollingerWindows()) {
+                for (double multiplier : optimizerConfigProperties.getBollingerMultipliers()) {
+                    for (BigDecimal quantity : optimizerConfigProperties.getQuoteAssetQuantitiesPerTrade()) {
+                        grid.add(new TradingParameters(gap, window, multiplier, quantity));
+                    }
+                }
+            }
+        }
+        if (optimizerConfigProperties.getRandomSamples() > 0 && optimizerConfigProperties.getRandomSamples() < grid.size()) {
+            Collections.shuffle(grid, new Random(optimizerConfigProperties.getSeed()));
+            grid = new ArrayList<>(grid.subList(0, optimizerConfigProperties.getRandomSamples()));
+        }
+        Set<TradingParameters> candidates = new LinkedHashSet<>(grid);
+        candidates.add(current);
+        return new ArrayList<>(candidates);
+    }
+}
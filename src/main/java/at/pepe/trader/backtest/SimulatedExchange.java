@@ -0,0 +1,295 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.binance.OrderGateway;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limit order matching against replayed klines. A resting order fills completely at its limit price once a later
+ * bar trades through it: a buy when the low is below the price, a sell when the high is above it. Touching the
+ * price is not enough as we would not be first in the queue. Execution reports are queued and handed out by
+ * {@link #poll()}, like they would arrive over the user data stream after the request returned. Requests are
+ * answered right away, the returned futures are already complete.
+ * Balances are kept in {@link BalanceHolderService}, commissions are ignored.
+ */
+@Slf4j
+public class SimulatedExchange implements OrderGateway {
+    private static final int INSUFFICIENT_BALANCE = -2010;
+    private static final int UNKNOWN_ORDER = -2011;
+
+    private final TradeConfigProperties tradeConfigProperties;
+    private final PriceScale priceScale;
+    private final Clock clock;
+    private final BalanceHolderService balanceHolderService;
+
+    private final NavigableMap<Long, Deque<SimulatedOrder>> bids = new TreeMap<>(Comparator.reverseOrder());
+    private final NavigableMap<Long, Deque<SimulatedOrder>> asks = new TreeMap<>();
+    private final Map<Long, SimulatedOrder> openOrders = new HashMap<>();
+    private final Deque<OrderPojo> events = new ArrayDeque<>();
+    private final Map<Long, BigDecimal> boughtFor = new HashMap<>();
+
+    private BigDecimal freeQuote;
+    private BigDecimal freeBase = BigDecimal.ZERO;
+    private BigDecimal lockedQuote = BigDecimal.ZERO;
+    private BigDecimal lockedBase = BigDecimal.ZERO;
+    private double totalQuote;
+    private double totalBase;
+    private long nextOrderId = 1;
+    private long nextRequestId = 1;
+
+    private int buysFilled;
+    private int sellsFilled;
+    private int cancelled;
+    private int rejected;
+    private BigDecimal realizedProfit = BigDecimal.ZERO;
+
+    public SimulatedExchange(TradeConfigProperties tradeConfigProperties, PriceScale priceScale, Clock clock,
+                             BalanceHolderService balanceHolderService, BigDecimal initialQuote) {
+        this.tradeConfigProperties = tradeConfigProperties;
+        this.priceScale = priceScale;
+        this.clock = clock;
+        this.balanceHolderService = balanceHolderService;
+        this.freeQuote = initialQuote;
+        publishBalances();
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId) {
+        BigDecimal price = priceScale.toBigDecimal(pricePoints);
+        boolean buy = "BUY".equals(action);
+        if (buy) {
+            BigDecimal notional = price.multiply(quantity);
+            if (freeQuote.compareTo(notional) < 0) {
+                rejected++;
+                log.debug("Rejected {} {} at {}, not enough {}", action, quantity, price, tradeConfigProperties.getQuoteAsset());
+                return rejectedAck(INSUFFICIENT_BALANCE, "Account has insufficient balance for requested action.");
+            }
+            freeQuote = freeQuote.subtract(notional);
+            lockedQuote = lockedQuote.add(notional);
+        } else {
+            if (freeBase.compareTo(quantity) < 0) {
+                rejected++;
+                log.debug("Rejected {} {} at {}, not enough {}", action, quantity, price, tradeConfigProperties.getBaseAsset());
+                return rejectedAck(INSUFFICIENT_BALANCE, "Account has insufficient balance for requested action.");
+            }
+            freeBase = freeBase.subtract(quantity);
+            lockedBase = lockedBase.add(quantity);
+        }
+
+        SimulatedOrder order = new SimulatedOrder(nextOrderId++, clientId, action, pricePoints, price, quantity, OffsetDateTime.now(clock));
+        openOrders.put(order.orderId, order);
+        (buy ? bids : asks).computeIfAbsent(pricePoints, level -> new ArrayDeque<>()).add(order);
+        publishBalances();
+        OrderPojo report = report(order, "NEW", BigDecimal.ZERO);
+        events.add(report);
+        return acceptedAck(report);
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelOrder(long orderId) {
+        SimulatedOrder order = openOrders.get(orderId);
+        if (order == null) {
+            return rejectedAck(UNKNOWN_ORDER, "Unknown order sent.");
+        }
+        return acceptedAck(cancel(order));
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action, long clientId) {
+        SimulatedOrder order = openOrders.get(cancelOrderId);
+        if (order == null) {
+            return rejectedAck(UNKNOWN_ORDER, "Unknown order sent.");
+        }
+        OrderPojo cancelled = cancel(order);
+        OrderAck placed = createNewOrder(pricePoints, quantity, action, clientId).join();
+        return CompletableFuture.completedFuture(placed.toBuilder().cancelledOrders(List.of(cancelled)).build());
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelAllOrders() {
+        List<OrderPojo> cancelled = new ArrayList<>();
+        for (SimulatedOrder order : new ArrayList<>(openOrders.values())) {
+            cancelled.add(cancel(order));
+        }
+        return CompletableFuture.completedFuture(OrderAck.builder()
+            .requestId(Long.toString(nextRequestId++))
+            .status(200)
+            .cancelledOrders(cancelled)
+            .build());
+    }
+
+    private OrderPojo cancel(SimulatedOrder order) {
+        openOrders.remove(order.orderId);
+        NavigableMap<Long, Deque<SimulatedOrder>> book = order.isBuy() ? bids : asks;
+        Deque<SimulatedOrder> level = book.get(order.pricePoints);
+        level.remove(order);
+        if (level.isEmpty()) {
+            book.remove(order.pricePoints);
+        }
+        if (order.isBuy()) {
+            BigDecimal notional = order.price.multiply(order.quantity);
+            lockedQuote = lockedQuote.subtract(notional);
+            freeQuote = freeQuote.add(notional);
+        } else {
+            lockedBase = lockedBase.subtract(order.quantity);
+            freeBase = freeBase.add(order.quantity);
+        }
+        cancelled++;
+        publishBalances();
+        OrderPojo report = report(order, "CANCELED", BigDecimal.ZERO);
+        events.add(report);
+        return report;
+    }
+
+    /**
+     * Fills every resting order the bar traded through.
+     */
+    public void match(long high, long low) {
+        while (!bids.isEmpty() && bids.firstKey() > low) {
+            bids.pollFirstEntry().getValue().forEach(this::fill);
+        }
+        while (!asks.isEmpty() && asks.firstKey() < high) {
+            asks.pollFirstEntry().getValue().forEach(this::fill);
+        }
+    }
+
+    public OrderPojo poll() {
+        return events.poll();
+    }
+
+    private void fill(SimulatedOrder order) {
+        openOrders.remove(order.orderId);
+        BigDecimal notional = order.price.multiply(order.quantity);
+        if (order.isBuy()) {
+            lockedQuote = lockedQuote.subtract(notional);
+            freeBase = freeBase.add(order.quantity);
+            boughtFor.put(order.clientId, notional);
+            buysFilled++;
+        } else {
+            lockedBase = lockedBase.subtract(order.quantity);
+            freeQuote = freeQuote.add(notional);
+            BigDecimal cost = boughtFor.remove(order.clientId);
+            if (cost != null) {
+                realizedProfit = realizedProfit.add(notional.subtract(cost));
+            }
+            sellsFilled++;
+        }
+        publishBalances();
+        events.add(report(order, "FILLED", order.quantity));
+    }
+
+    private OrderPojo report(SimulatedOrder order, String status, BigDecimal executed) {
+        return OrderPojo.builder()
+            .orderId(order.orderId)
+            .clientOrderId(order.clientId + "_" + order.action)
+            .createdAt(order.createdAt)
+            .updatedAt(OffsetDateTime.now(clock))
+            .symbol(tradeConfigProperties.getSymbol())
+            .action(order.action)
+            .type("LIMIT")
+            .quantity(order.quantity)
+            .executedQty(executed)
+            .price(order.price)
+            .orderStatus(status)
+            .commissionAmount(BigDecimal.ZERO)
+            .build();
+    }
+
+    private CompletableFuture<OrderAck> acceptedAck(OrderPojo order) {
+        return CompletableFuture.completedFuture(OrderAck.builder()
+            .requestId(Long.toString(nextRequestId++))
+            .status(200)
+            .order(order)
+            .build());
+    }
+
+    private CompletableFuture<OrderAck> rejectedAck(int errorCode, String errorMessage) {
+        return CompletableFuture.completedFuture(OrderAck.builder()
+            .requestId(Long.toString(nextRequestId++))
+            .status(400)
+            .errorCode(errorCode)
+            .errorMessage(errorMessage)
+            .build());
+    }
+
+    private void publishBalances() {
+        balanceHolderService.updateAsset(tradeConfigProperties.getQuoteAsset(), freeQuote);
+        balanceHolderService.updateAsset(tradeConfigProperties.getBaseAsset(), freeBase);
+        totalQuote = freeQuote.add(lockedQuote).doubleValue();
+        totalBase = freeBase.add(lockedBase).doubleValue();
+    }
+
+    /**
+     * Quote and base asset including what is locked in orders, the base asset valued at the given price.
+     */
+    public double getEquity(long pricePoints) {
+        return totalQuote + totalBase * priceScale.toDouble(pricePoints);
+    }
+
+    public int getBuysFilled() {
+        return buysFilled;
+    }
+
+    public int getSellsFilled() {
+        return sellsFilled;
+    }
+
+    public int getCancelled() {
+        return cancelled;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public int getOpenSells() {
+        return asks.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    public BigDecimal getRealizedProfit() {
+        return realizedProfit;
+    }
+
+    /**
+     * Reports of the resting orders in the order they were placed.
+     */
+    public List<OrderPojo> getOpenOrders() {
+        return openOrders.values().stream()
+            .sorted(Comparator.comparingLong(SimulatedOrder::orderId))
+            .map(order -> report(order, "NEW", BigDecimal.ZERO))
+            .toList();
+    }
+
+    public BigDecimal getFreeQuote() {
+        return freeQuote;
+    }
+
+    public BigDecimal getLockedQuote() {
+        return lockedQuote;
+    }
+
+    public BigDecimal getFreeBase() {
+        return freeBase;
+    }
+
+    public BigDecimal getLockedBase() {
+        return lockedBase;
+    }
+
+    private record SimulatedOrder(long orderId, long clientId, String action, long pricePoints, BigDecimal price,
+                                  BigDecimal quantity, OffsetDateTime createdAt) {
+        boolean isBuy() {
+            return "BUY".equals(action);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package at.pepe.trader.backtest;
+
+import at.pepe.trader.model.TradingParameters;
+
+public record SweepResult(TradingParameters parameters, BacktestResult result, double score) {
+}
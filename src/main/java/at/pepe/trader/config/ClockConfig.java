@@ -0,0 +1,16 @@
+package at.pepe.trader.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+public class ClockConfig {
+
+    // Replaced by a simulated clock when replaying history
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+}
@@ -0,0 +1,25 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "connection")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConnectionConfigProperties {
+    private long initialBackoffMs = 500; // Upper bound of the first reconnect delay, doubled with every failed attempt
+    private long maxBackoffMs = 60_000;
+    private long stableAfterMs = 60_000; // The backoff starts over once a connection stayed up this long
+    private long pingIntervalMs = 15_000; // Websocket pings on the stream connections, a missing pong fails the connection
+    private long marketSilenceTimeoutMs = 10_000; // A market stream connection without a message for this long is replaced
+    private long apiHeartbeatMs = 30_000; // The order API is pinged once it was idle this long
+    private long apiSilenceTimeoutMs = 75_000;
+    private long rotateAfterMs = 82_800_000; // Binance cuts connections after 24h, they are replaced after 23h
+    private long rotateJitterMs = 1_800_000; // Plus up to this long, so not all connections rotate at once
+    private int streamsPerConnection = 1024; // Binance allows 1024 streams on one connection
+}
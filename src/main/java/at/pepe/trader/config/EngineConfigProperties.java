@@ -0,0 +1,18 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "engine")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EngineConfigProperties {
+    private int ringSize = 4096; // Events the strategy thread may fall behind before the producers wait, a power of two
+    private long maxIdleParkMicros = 1000; // Longest sleep of the idle strategy thread, new events wake it up right away
+    private long maxTickAgeMs = 1000; // No trade decision on a price that was received longer ago
+}
@@ -0,0 +1,21 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "history")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistoryConfigProperties {
+    private long maxTailSeconds = 3600; // 1s klines missing in the journal are fetched for at most this long, older holes get 1m klines
+    private long minHoleSeconds = 60; // Longer gaps between two 1s klines are filled with 1m klines
+    private int fetchParallelism = 4; // Pages requested from binance at the same time
+    private String baseUrl = ""; // Klines endpoint host, empty uses binance.base-url
+    private long requestTimeoutMs = 10_000;
+    private int maxAttempts = 3; // Per page, requests limited by binance are always retried after the Retry-After
+}
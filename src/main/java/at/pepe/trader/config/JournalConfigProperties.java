@@ -0,0 +1,20 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "journal")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JournalConfigProperties {
+    private String path = "./pepe-trader/journal";
+    private boolean klines = true; // Record every received kline
+    private boolean executionReports = false; // Record every received execution report
+    private long initialRecordsPerFile = 262_144; // Files grow by doubling once full
+    private long forceIntervalMs = 10_000; // Flush the mapped files to disk at least this often
+}
@@ -0,0 +1,19 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "latency")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LatencyConfigProperties {
+    private boolean enabled = true;
+    private String summaryCron = "0 0 * * * *"; // Log (and optionally post) the percentiles of every stage since the last summary
+    private boolean discordSummary = false;
+    private long ackTimeoutMs = 60_000; // Orders without an execution report after this long are counted as lost acks
+}
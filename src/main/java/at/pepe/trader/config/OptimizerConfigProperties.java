@@ -0,0 +1,33 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "optimizer")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OptimizerConfigProperties {
+    private String cron = "-"; // "-" disables the scheduled optimization
+    private String tapePath = "./pepe-trader/klines.tape"; // Klines of trade.symbol, the only symbol tuned
+    private boolean autoApply = false; // Apply the winner to the live trading if it beats the current parameters
+
+    // The grid to search, every combination is replayed unless randomSamples is set
+    private List<Integer> gapSizePoints = List.of(2, 3, 4, 5, 6);
+    private List<Integer> bollingerWindows = List.of(14, 20, 30);
+    private List<Double> bollingerMultipliers = List.of(1.5, 2.0, 2.5);
+    private List<BigDecimal> quoteAssetQuantitiesPerTrade = List.of(new BigDecimal("25.00"));
+    private int randomSamples = 0; // Only replay this many randomly picked combinations, 0 for the full grid
+    private long seed = 42;
+
+    private int parallelism = 0; // 0 uses all cores
+    private double drawdownWeight = 1.0; // score = equity change - drawdownWeight * max drawdown
+    private BigDecimal initialQuoteBalance = new BigDecimal("1000");
+}
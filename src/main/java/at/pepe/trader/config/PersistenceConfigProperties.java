@@ -0,0 +1,26 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "persistence")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PersistenceConfigProperties {
+    private String path = "./pepe-trader/rocks-db";
+    private int flushBatchSize = 256; // Flush as soon as this many positions are pending
+    private long flushIntervalMs = 200; // ... or at the latest after this time
+    private Durability durability = Durability.GROUP_COMMIT;
+    private long groupCommitSyncIntervalMs = 1000;
+    private String codec = "binary"; // Format new records are written in, "binary" or "json". Both can always be read.
+
+    public enum Durability {
+        SYNC, // Every batch waits for the WAL fsync
+        GROUP_COMMIT // Batches are written without fsync, the flusher syncs the WAL at most every groupCommitSyncIntervalMs
+    }
+}
@@ -0,0 +1,22 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RateLimitConfigProperties {
+    private int requestWeightPerMinute = 4800; // Binance allows 6000 per minute and IP, REST and websocket API together
+    private int ordersPer10Seconds = 80; // Binance allows 100 new orders per 10 seconds and account
+    private int ordersPerDay = 160_000; // ... and 200000 per day
+    private int cancelReserveWeight = 200; // The last weight of a minute is left to cancels and closing orders
+    private int downloadWeightPerMinute = 1200; // Kline downloads never take more, a klines request weighs 2
+    private int maxQueuedOrders = 20; // New orders waiting for budget beyond this are shed right away
+    private long maxQueueWaitMs = 1000; // New orders still waiting after this long are shed, their price is gone
+}
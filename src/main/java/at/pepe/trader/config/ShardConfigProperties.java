@@ -0,0 +1,19 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "shards")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShardConfigProperties {
+    private List<TradeConfigProperties> symbols = new ArrayList<>(); // Traded next to trade.symbol, each with its own bars, positions and strategy thread
+}
@@ -0,0 +1,36 @@
+package at.pepe.trader.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+
+@Configuration
+@ConfigurationProperties(prefix = "simulator")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SimulatorConfigProperties {
+    private boolean enabled = false; // Serves a simulated binance on the port, the binance urls have to point to it
+    private int port = 18090;
+    private double tickRate = 1; // 1s klines per symbol and second, 100 runs the market 100 times faster than real time
+    private long latencyMs = 0; // Added to every response and event
+    private long latencyJitterMs = 0; // ... plus up to this much at random
+    private FillModel fillModel = FillModel.THROUGH;
+    private double fillProbability = 0.3; // RANDOM: chance that a kline fills the orders it traded through
+    private BigDecimal quoteBalance = new BigDecimal("10000"); // Free quote asset of every symbol at the start
+    private double waveAmplitude = 0.01; // Of the price, relative to the middle of the trade bounds
+    private long wavePeriodSeconds = 1800;
+    private double noise = 0.002; // Random deviation per second, relative to the middle of the trade bounds
+    private long seed = 1; // Same seed, same prices
+
+    public enum FillModel {
+        THROUGH, // Like the backtest: a resting order fills once a kline trades through its price
+        TOUCH, // ... already when a kline reaches its price
+        RANDOM, // THROUGH, but each kline only with the fill probability, like being further back in the queue
+        STORM // Every open order fills on the next kline, whatever the price
+    }
+}
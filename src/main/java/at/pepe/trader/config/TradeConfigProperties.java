@@ -1,8 +1,10 @@
 package at.pepe.trader.config;
 
+import at.pepe.trader.model.TradingParameters;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.beans.BeanUtils;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -23,5 +25,27 @@ public class TradeConfigProperties {
     private int gapSizePoints;
     private BigDecimal upperBounds;
     private BigDecimal lowerBounds;
+    private int bollingerWindow = 20;
+    private double bollingerMultiplier = 2;
+    private int minuteBarCapacity = 2000;
+    private int secondBarCapacity = 259_200; // 3 days of 1s bars
     private String discordWebhook;
+    private boolean replaceStaleOrders = true; // Move a stale buy to the current target with one cancel-replace instead of only cancelling it
+
+    public TradingParameters toTradingParameters() {
+        return new TradingParameters(gapSizePoints, bollingerWindow, bollingerMultiplier, quoteAssetQuantityPerTrade);
+    }
+
+    /**
+     * A copy of this configuration with the given parameters, this one stays untouched.
+     */
+    public TradeConfigProperties withTradingParameters(TradingParameters parameters) {
+        TradeConfigProperties copy = new TradeConfigProperties();
+        BeanUtils.copyProperties(this, copy);
+        copy.gapSizePoints = parameters.getGapSizePoints();
+        copy.bollingerWindow = parameters.getBollingerWindow();
+        copy.bollingerMultiplier = parameters.getBollingerMultiplier();
+        copy.quoteAssetQuantityPerTrade = parameters.getQuoteAssetQuantityPerTrade();
+        return copy;
+    }
 }
@@ -1,13 +1,10 @@
 package at.pepe.trader.config.binance;
 
 import com.binance.connector.client.SpotClient;
-import com.binance.connector.client.WebSocketApiClient;
-import com.binance.connector.client.WebSocketStreamClient;
 import com.binance.connector.client.impl.SpotClientImpl;
-import com.binance.connector.client.impl.WebSocketApiClientImpl;
-import com.binance.connector.client.impl.WebSocketStreamClientImpl;
 import com.binance.connector.client.impl.spot.Market;
 import com.binance.connector.client.utils.signaturegenerator.Ed25519SignatureGenerator;
+import com.binance.connector.client.utils.signaturegenerator.SignatureGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,14 +23,9 @@ public class BinanceConfig {
         return new SpotClientImpl(binanceConfigProperties.getApikey(), signGenerator, binanceConfigProperties.getBaseUrl());
     }
 
+    // Signs the requests of the websocket order API, its connection is our own
     @Bean
-    public WebSocketStreamClient getBinanceWebSocketStreamClient() {
-        return new WebSocketStreamClientImpl(binanceConfigProperties.getBaseWebsocket());
-    }
-
-    @Bean
-    public WebSocketApiClient getBinanceWebSocketApiClient() throws IOException {
-        Ed25519SignatureGenerator signGenerator =  new Ed25519SignatureGenerator(binanceConfigProperties.getEd25519SecretPath());
-        return new WebSocketApiClientImpl(binanceConfigProperties.getApikey(), signGenerator, binanceConfigProperties.getBaseWebsocketApi());
+    public SignatureGenerator getBinanceSignatureGenerator() throws IOException {
+        return new Ed25519SignatureGenerator(binanceConfigProperties.getEd25519SecretPath());
     }
 }
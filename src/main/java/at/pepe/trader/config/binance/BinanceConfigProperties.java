@@ -18,4 +18,5 @@ public class BinanceConfigProperties {
     private String baseUrl;
     private String baseWebsocket;
     private String baseWebsocketApi;
+    private long orderRequestTimeoutMs = 5_000; // Order API requests without a response after this long fail
 }
@@ -0,0 +1,97 @@
+package at.pepe.trader.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@link JournalFile} rotated per UTC day: {prefix}-yyyy-MM-dd.bin in one directory.
+ */
+public class DailyJournal implements Closeable {
+    private static final String EXTENSION = ".bin";
+
+    private final Path directory;
+    private final String prefix;
+    private final int magic;
+    private final int recordSize;
+    private final int scale;
+    private final long initialCapacity;
+
+    private JournalFile current;
+    private long currentDayStart = Long.MAX_VALUE;
+    private long currentDayEnd = Long.MIN_VALUE;
+
+    public DailyJournal(Path directory, String prefix, int magic, int recordSize, int scale, long initialCapacity) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.magic = magic;
+        this.recordSize = recordSize;
+        this.scale = scale;
+        this.initialCapacity = initialCapacity;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * The file of the day the time falls into, closes the previous day's file when the day changed.
+     */
+    public JournalFile fileFor(long timeMillis) throws IOException {
+        if (timeMillis < currentDayStart || timeMillis >= currentDayEnd) {
+            if (current != null) {
+                current.close();
+            }
+            LocalDate day = Instant.ofEpochMilli(timeMillis).atOffset(ZoneOffset.UTC).toLocalDate();
+            current = new JournalFile(pathFor(directory, prefix, day), magic, recordSize, scale, initialCapacity);
+            currentDayStart = day.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            currentDayEnd = currentDayStart + 86_400_000L;
+        }
+        return current;
+    }
+
+    public void force() {
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    public static Path pathFor(Path directory, String prefix, LocalDate day) {
+        return directory.resolve(prefix + "-" + day + EXTENSION);
+    }
+
+    /**
+     * All files of the journal, oldest first.
+     */
+    public static List<Path> files(Path directory, String prefix) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(directory)) {
+            return children
+                .filter(path -> {
+                    String name = path.getFileName().toString();
+                    return name.startsWith(prefix + "-") && name.endsWith(EXTENSION) &&
+                        name.length() == prefix.length() + 1 + 10 + EXTENSION.length();
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    public static LocalDate dayOf(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        return LocalDate.parse(name.substring(prefix.length() + 1, prefix.length() + 11));
+    }
+}
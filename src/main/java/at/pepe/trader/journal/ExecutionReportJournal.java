@@ -0,0 +1,152 @@
+package at.pepe.trader.journal;
+
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Record layout of the execution report journal and its reader:
+ * <pre>
+ * event time | created at | order id | client id (number before the "_") | price (points) | quantity
+ * | executed quantity (base asset points) | commission (double) | side | status
+ * | client order id length (byte) | client order id (ASCII, up to 36 bytes) | padding
+ * </pre>
+ * Client order ids Binance would not accept are left out, the reader then falls back to "{client id}_{side}".
+ */
+public final class ExecutionReportJournal {
+    public static final int MAGIC = 0x50544552; // "PTER"
+    public static final int RECORD_SIZE = 104;
+
+    private static final int CLIENT_ORDER_ID_OFFSET = 67;
+    private static final int MAX_CLIENT_ORDER_ID_LENGTH = 36; // What Binance accepts
+
+    private static final String[] SIDES = {"BUY", "SELL"};
+    private static final String[] STATUSES = {"NEW", "PARTIALLY_FILLED", "FILLED", "CANCELED", "PENDING_CANCEL", "REJECTED", "EXPIRED", "EXPIRED_IN_MATCH"};
+
+    private ExecutionReportJournal() {
+    }
+
+    public static String prefixFor(String symbol) {
+        return "execution-reports-" + symbol;
+    }
+
+    public static void write(JournalFile file, OrderPojo order, PriceScale priceScale, PriceScale quantityScale) throws IOException {
+        int offset = file.claim();
+        ByteBuffer buffer = file.buffer();
+        buffer.putLong(offset + 8, millis(order.getCreatedAt()))
+            .putLong(offset + 16, order.getOrderId() == null ? 0 : order.getOrderId())
+            .putLong(offset + 24, clientId(order.getClientOrderId()))
+            .putLong(offset + 32, order.getPrice() == null ? 0 : priceScale.toPoints(order.getPrice()))
+            .putLong(offset + 40, order.getQuantity() == null ? 0 : quantityScale.toPoints(order.getQuantity()))
+            .putLong(offset + 48, order.getExecutedQty() == null ? 0 : quantityScale.toPoints(order.getExecutedQty()))
+            .putDouble(offset + 56, order.getCommissionAmount() == null ? 0 : order.getCommissionAmount().doubleValue())
+            .put(offset + 64, indexOf(SIDES, order.getAction()))
+            .put(offset + 65, indexOf(STATUSES, order.getOrderStatus()));
+        byte[] clientOrderId = clientOrderIdBytes(order.getClientOrderId());
+        buffer.put(offset + 66, (byte) clientOrderId.length)
+            .put(offset + CLIENT_ORDER_ID_OFFSET, clientOrderId);
+        buffer.putLong(offset, order.getUpdatedAt() == null ? System.currentTimeMillis() : millis(order.getUpdatedAt()));
+    }
+
+    /**
+     * Replays all reports with an event time in [fromMillis, toMillis) of the given symbol.
+     */
+    public static long replay(Path directory, String symbol, long fromMillis, long toMillis,
+                              PriceScale priceScale, PriceScale quantityScale, Consumer<OrderPojo> consumer) throws IOException {
+        String prefix = prefixFor(symbol);
+        LocalDate firstDay = Instant.ofEpochMilli(fromMillis).atOffset(ZoneOffset.UTC).toLocalDate();
+        LocalDate lastDay = Instant.ofEpochMilli(Math.max(fromMillis, toMillis - 1)).atOffset(ZoneOffset.UTC).toLocalDate();
+        long count = 0;
+        List<Path> files = DailyJournal.files(directory, prefix);
+        for (Path path : files) {
+            LocalDate day = DailyJournal.dayOf(path, prefix);
+            if (day.isBefore(firstDay) || day.isAfter(lastDay)) {
+                continue;
+            }
+            try (RecordFile file = RecordFile.open(path, MAGIC, RECORD_SIZE)) {
+                for (long i = file.seek(fromMillis); i < file.size() && file.getTime(i) < toMillis; i++) {
+                    consumer.accept(read(file.chunk(i), file.offset(i), symbol, priceScale, quantityScale));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static OrderPojo read(ByteBuffer buffer, int offset, String symbol, PriceScale priceScale, PriceScale quantityScale) {
+        byte side = buffer.get(offset + 64);
+        byte status = buffer.get(offset + 65);
+        return OrderPojo.builder()
+            .updatedAt(time(buffer.getLong(offset)))
+            .createdAt(time(buffer.getLong(offset + 8)))
+            .orderId(buffer.getLong(offset + 16))
+            .clientOrderId(clientOrderId(buffer, offset, side))
+            .price(priceScale.toBigDecimal(buffer.getLong(offset + 32)))
+            .quantity(quantityScale.toBigDecimal(buffer.getLong(offset + 40)))
+            .executedQty(quantityScale.toBigDecimal(buffer.getLong(offset + 48)))
+            .commissionAmount(BigDecimal.valueOf(buffer.getDouble(offset + 56)))
+            .action(side >= 0 ? SIDES[side] : null)
+            .orderStatus(status >= 0 ? STATUSES[status] : null)
+            .symbol(symbol)
+            .type("LIMIT")
+            .build();
+    }
+
+    private static String clientOrderId(ByteBuffer buffer, int offset, byte side) {
+        int length = buffer.get(offset + 66);
+        if (length <= 0) {
+            return buffer.getLong(offset + 24) + (side >= 0 ? "_" + SIDES[side] : "");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + CLIENT_ORDER_ID_OFFSET, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] clientOrderIdBytes(String clientOrderId) {
+        if (clientOrderId == null || clientOrderId.length() > MAX_CLIENT_ORDER_ID_LENGTH ||
+                !StandardCharsets.US_ASCII.newEncoder().canEncode(clientOrderId)) {
+            return new byte[0];
+        }
+        return clientOrderId.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long clientId(String clientOrderId) {
+        if (clientOrderId == null) {
+            return 0;
+        }
+        int separator = clientOrderId.indexOf('_');
+        try {
+            return Long.parseLong(separator < 0 ? clientOrderId : clientOrderId.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return 0; // Not one of our orders
+        }
+    }
+
+    private static byte indexOf(String[] values, String value) {
+        for (byte i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long millis(OffsetDateTime time) {
+        return time == null ? 0 : time.toInstant().toEpochMilli();
+    }
+
+    private static OffsetDateTime time(long millis) {
+        return Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,90 @@
+package at.pepe.trader.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append side of a {@link RecordFile}. The file is preallocated and mapped read-write, writing a record is a few
+ * puts into the mapping. When it is full the mapping is extended. Reopening continues after the last record written.
+ */
+public class JournalFile implements Closeable {
+    private final Path path;
+    private final int recordSize;
+    private final FileChannel channel;
+
+    private MappedByteBuffer buffer;
+    private long capacity;
+    private long size;
+
+    public JournalFile(Path path, int magic, int recordSize, int scale, long initialCapacity) throws IOException {
+        this.path = path;
+        this.recordSize = recordSize;
+        boolean exists = Files.exists(path) && Files.size(path) >= RecordFile.HEADER_SIZE;
+        if (exists) {
+            try (RecordFile existing = RecordFile.open(path, magic, recordSize)) {
+                this.size = existing.size();
+            }
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(Math.max(initialCapacity, size + 1));
+        if (!exists) {
+            buffer.putInt(0, magic)
+                .putShort(4, RecordFile.VERSION)
+                .putShort(6, (short) recordSize)
+                .putInt(8, scale)
+                .putInt(12, 0);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reserves the next record and returns its offset in {@link #buffer()}. The record must start with a non zero
+     * timestamp, the timestamp should be written last.
+     */
+    public int claim() throws IOException {
+        if (size == capacity) {
+            map(capacity * 2);
+        }
+        return RecordFile.HEADER_SIZE + (int) (size++ * recordSize);
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void map(long records) throws IOException {
+        long bytes = RecordFile.HEADER_SIZE + records * recordSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Journal " + path + " exceeds 2GB");
+        }
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        buffer.order(RecordFile.ORDER);
+        capacity = records;
+    }
+}
@@ -0,0 +1,76 @@
+package at.pepe.trader.journal;
+
+import at.pepe.trader.backtest.KlineListener;
+import at.pepe.trader.backtest.KlineTape;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Reads the daily kline journal files. Each file is mapped and read in place, the start of a time range is found by
+ * binary search within the first file of the range.
+ */
+public class KlineJournalReader {
+    private final Path directory;
+    private final String prefix;
+
+    public KlineJournalReader(Path directory, String symbol) {
+        this.directory = directory;
+        this.prefix = prefixFor(symbol);
+    }
+
+    public static String prefixFor(String symbol) {
+        return "klines-" + symbol;
+    }
+
+    /**
+     * Replays all klines closing in [fromMillis, toMillis), every received update of a kline is included.
+     *
+     * @return number of klines replayed
+     */
+    public long replay(long fromMillis, long toMillis, KlineListener listener) throws IOException {
+        LocalDate firstDay = day(fromMillis);
+        LocalDate lastDay = day(Math.max(fromMillis, toMillis - 1));
+        long count = 0;
+        for (Path file : DailyJournal.files(directory, prefix)) {
+            LocalDate day = DailyJournal.dayOf(file, prefix);
+            if (day.isBefore(firstDay) || day.isAfter(lastDay)) {
+                continue;
+            }
+            try (KlineTape tape = KlineTape.open(file)) {
+                long from = tape.seek(fromMillis);
+                long to = tape.seek(toMillis);
+                tape.replay(from, to, listener);
+                count += to - from;
+            }
+        }
+        return count;
+    }
+
+    public long replayAll(KlineListener listener) throws IOException {
+        return replay(Long.MIN_VALUE, Long.MAX_VALUE, listener);
+    }
+
+    /**
+     * Close time of the newest kline in the journal, -1 if it is empty.
+     */
+    public long getLastCloseTime() throws IOException {
+        List<Path> files = DailyJournal.files(directory, prefix);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try (KlineTape tape = KlineTape.open(files.get(i))) {
+                if (tape.size() > 0) {
+                    return tape.getCloseTime(tape.size() - 1);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static LocalDate day(long millis) {
+        return Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+}
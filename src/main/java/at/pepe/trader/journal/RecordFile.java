@@ -0,0 +1,175 @@
+package at.pepe.trader.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory mapping of a file of fixed size records, shared by the kline tape and the journals:
+ * <pre>
+ * header: magic (int) | version (short) | record size (short) | scale (int) | reserved (int)
+ * </pre>
+ * Every record starts with its timestamp in epoch millis and the timestamps never decrease. Journals are
+ * preallocated, the zero filled tail after the last written record is not part of the file's records.
+ * All reads are absolute, so one instance can be read by several threads. Closing unmaps the file right away instead
+ * of whenever the mappings are garbage collected, nothing may read it after that.
+ */
+public class RecordFile implements Closeable {
+    public static final int HEADER_SIZE = 16;
+    public static final short VERSION = 1;
+    public static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    private static final int CHUNK_SHIFT = 22; // 4M records per mapping
+    private static final MappedByteBuffer[] CLOSED = new MappedByteBuffer[0];
+
+    private final Path path;
+    private final int recordSize;
+    private final int scale;
+    private final long size;
+    private MappedByteBuffer[] chunks;
+
+    private RecordFile(Path path, int recordSize, int scale, long capacity, MappedByteBuffer[] chunks) {
+        this.path = path;
+        this.recordSize = recordSize;
+        this.scale = scale;
+        this.chunks = chunks;
+        this.size = firstEmpty(capacity);
+    }
+
+    public static RecordFile open(Path path, int magic, int recordSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != magic) {
+                throw new IOException(path + " is not a record file of the expected type");
+            }
+            short version = header.getShort();
+            short storedRecordSize = header.getShort();
+            if (version != VERSION || storedRecordSize != recordSize) {
+                throw new IOException("Unsupported version " + version + " with records of " + storedRecordSize + " bytes in " + path);
+            }
+            int scale = header.getInt();
+
+            long capacity = (channel.size() - HEADER_SIZE) / recordSize; // a partly written last record is ignored
+            long recordsPerChunk = 1L << CHUNK_SHIFT;
+            int chunkCount = (int) ((capacity + recordsPerChunk - 1) >>> CHUNK_SHIFT);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long first = (long) i << CHUNK_SHIFT;
+                long records = Math.min(capacity - first, recordsPerChunk);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, records * recordSize);
+                chunks[i].order(ORDER);
+            }
+            return new RecordFile(path, recordSize, scale, capacity, chunks);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The mapping holding the record, read it at {@link #offset(long)}.
+     */
+    public ByteBuffer chunk(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)];
+    }
+
+    public int offset(long index) {
+        return (int) (index & ((1L << CHUNK_SHIFT) - 1)) * recordSize;
+    }
+
+    public long getTime(long index) {
+        return chunk(index).getLong(offset(index));
+    }
+
+    /**
+     * Index of the first record at or after the given time, {@link #size()} if there is none.
+     */
+    public long seek(long timeMillis) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getTime(middle) < timeMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void close() {
+        MappedByteBuffer[] mapped = chunks;
+        chunks = CLOSED;
+        for (MappedByteBuffer chunk : mapped) {
+            Unmapper.unmap(chunk);
+        }
+    }
+
+    // Records are written in order, a zero timestamp marks the first slot never written.
+    private long firstEmpty(long capacity) {
+        long low = 0;
+        long high = capacity;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getTime(middle) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Unsafe.invokeCleaner is the only way to unmap before the buffer is collected, without it the GC does it later
+    private static final class Unmapper {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Left to the GC
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void unmap(MappedByteBuffer buffer) {
+            if (INVOKE_CLEANER == null) {
+                return;
+            }
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException e) {
+                // Left to the GC
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.PriceScale;
+
+import java.math.BigDecimal;
+
+/**
+ * Forward only reader over one JSON text that does not allocate: keys and string values are reported as bounds into
+ * the text, numbers are parsed in place. Enough JSON for binance messages: strings are taken as they are, escapes
+ * are skipped but not decoded (binance never escapes in the fields we read). One instance per thread, reused for
+ * every message with {@link #reset}.
+ */
+public final class JsonCursor {
+    private CharSequence text;
+    private int position;
+    private int end;
+    private int keyStart;
+    private int keyEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    public JsonCursor reset(CharSequence text) {
+        this.text = text;
+        this.position = 0;
+        this.end = text.length();
+        return this;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Expects the start of an object at the current position.
+     */
+    public void enterObject() {
+        expect('{');
+        position++;
+    }
+
+    /**
+     * Moves to the value of the next key of the current object.
+     *
+     * @return false once the object ended, the position is then behind it
+     */
+    public boolean nextField() {
+        skipWhitespace();
+        if (peek() == ',') {
+            position++;
+            skipWhitespace();
+        }
+        if (peek() == '}') {
+            position++;
+            return false;
+        }
+        expect('"');
+        keyStart = position + 1;
+        keyEnd = scanString();
+        skipWhitespace();
+        expect(':');
+        position++;
+        skipWhitespace();
+        return true;
+    }
+
+    public boolean keyIs(String key) {
+        return regionEquals(keyStart, keyEnd, key);
+    }
+
+    /**
+     * Expects the start of an array at the current position.
+     */
+    public void enterArray() {
+        expect('[');
+        position++;
+    }
+
+    /**
+     * Moves to the next element of the current array.
+     *
+     * @return false once the array ended, the position is then behind it
+     */
+    public boolean nextElement() {
+        skipWhitespace();
+        if (peek() == ',') {
+            position++;
+            skipWhitespace();
+        }
+        if (peek() == ']') {
+            position++;
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isNull() {
+        return peek() == 'n';
+    }
+
+    /**
+     * Reads a string value, its characters are then between {@link #valueStart()} and {@link #valueEnd()}.
+     */
+    public void readString() {
+        expect('"');
+        valueStart = position + 1;
+        valueEnd = scanString();
+    }
+
+    public int valueStart() {
+        return valueStart;
+    }
+
+    public int valueEnd() {
+        return valueEnd;
+    }
+
+    public boolean valueIs(String value) {
+        return regionEquals(valueStart, valueEnd, value);
+    }
+
+    /**
+     * Reads a string value into a new String, for the values that are kept.
+     */
+    public String readStringValue() {
+        if (isNull()) {
+            skipValue();
+            return null;
+        }
+        readString();
+        return text.subSequence(valueStart, valueEnd).toString();
+    }
+
+    public long readLong() {
+        boolean negative = peek() == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < end) {
+            char c = text.charAt(position);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            position++;
+            digits++;
+        }
+        if (digits == 0) {
+            throw error("a number");
+        }
+        return negative ? -value : value;
+    }
+
+    public boolean readBoolean() {
+        boolean value = peek() == 't';
+        skipValue();
+        return value;
+    }
+
+    /**
+     * Reads a decimal given as string, like the prices and quantities of binance, into points of the scale.
+     */
+    public long readPoints(PriceScale priceScale) {
+        readString();
+        return priceScale.parse(text, valueStart, valueEnd);
+    }
+
+    /**
+     * Reads a decimal given as string into a double, correctly rounded. Only more than 15 digits take the slow path.
+     */
+    public double readDecimalDouble() {
+        readString();
+        return parseDouble(text, valueStart, valueEnd);
+    }
+
+    public BigDecimal readBigDecimal() {
+        if (isNull()) {
+            skipValue();
+            return null;
+        }
+        readString();
+        char[] digits = new char[valueEnd - valueStart];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = text.charAt(valueStart + i);
+        }
+        return new BigDecimal(digits);
+    }
+
+    /**
+     * Skips the value at the current position, objects and arrays with everything in them.
+     */
+    public void skipValue() {
+        char c = peek();
+        switch (c) {
+            case '"' -> scanStringAt();
+            case '{' -> {
+                position++;
+                while (nextField()) {
+                    skipValue();
+                }
+            }
+            case '[' -> {
+                position++;
+                while (nextElement()) {
+                    skipValue();
+                }
+            }
+            default -> {
+                while (position < end) {
+                    char next = text.charAt(position);
+                    if (next == ',' || next == '}' || next == ']' || next <= ' ') {
+                        break;
+                    }
+                    position++;
+                }
+            }
+        }
+    }
+
+    // Digits and power of ten are both exact in a double, so their quotient is rounded only once
+    static double parseDouble(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = i < end && text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        int trailingZeros = 0; // Of the fraction, only applied when another digit follows
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == '0' && fraction) {
+                trailingZeros++;
+            } else if (c >= '0' && c <= '9') {
+                for (; trailingZeros > 0; trailingZeros--, fractionDigits++) {
+                    if (mantissa >= MAX_EXACT_MANTISSA) {
+                        return slowParseDouble(text, start, end);
+                    }
+                    mantissa *= 10;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return slowParseDouble(text, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else {
+                return slowParseDouble(text, start, end); // Exponents, NaN
+            }
+        }
+        if (fractionDigits >= POWERS_OF_TEN.length) {
+            return slowParseDouble(text, start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(CharSequence text, int start, int end) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+
+    private static final long MAX_EXACT_MANTISSA = (1L << 53) / 10;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private void scanStringAt() {
+        expect('"');
+        scanString();
+    }
+
+    // From the opening quote to behind the closing one, returns the end of the content
+    private int scanString() {
+        position++;
+        while (position < end) {
+            char c = text.charAt(position);
+            if (c == '\\') {
+                position += 2;
+            } else if (c == '"') {
+                int contentEnd = position;
+                position++;
+                return contentEnd;
+            } else {
+                position++;
+            }
+        }
+        throw error("the end of a string");
+    }
+
+    private boolean regionEquals(int start, int stop, String value) {
+        if (stop - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (position < end && text.charAt(position) <= ' ') {
+            position++;
+        }
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (position >= end) {
+            throw error("more input");
+        }
+        return text.charAt(position);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("'" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String expected) {
+        return new IllegalArgumentException("Expected " + expected + " at " + position + " of " + text);
+    }
+}
@@ -0,0 +1,72 @@
+package at.pepe.trader.mapper;
+
+/**
+ * Reads kline stream messages, plain ({@code {"e":"kline",...,"k":{...}}}) or wrapped in a combined stream
+ * ({@code {"stream":...,"data":{...}}}), into a reused {@link KlineUpdate} without building a JSON tree and without
+ * allocating. Not thread safe, one per socket reader thread.
+ */
+public final class KlineMessageParser {
+    private final JsonCursor cursor = new JsonCursor();
+    private final KlineUpdate update = new KlineUpdate();
+
+    /**
+     * @return the update, valid until the next call, or null when the message holds no kline
+     */
+    public KlineUpdate parse(CharSequence message) {
+        update.clear(message);
+        cursor.reset(message);
+        return parseEvent() ? update : null;
+    }
+
+    private boolean parseEvent() {
+        boolean kline = false;
+        cursor.enterObject();
+        while (cursor.nextField()) {
+            if (cursor.keyIs("data")) {
+                kline = parseEvent();
+            } else if (cursor.keyIs("k")) {
+                parseKline();
+                kline = true;
+            } else {
+                cursor.skipValue();
+            }
+        }
+        return kline;
+    }
+
+    private void parseKline() {
+        cursor.enterObject();
+        while (cursor.nextField()) {
+            if (cursor.keyIs("T")) {
+                update.closeTime = cursor.readLong();
+            } else if (cursor.keyIs("s")) {
+                cursor.readString();
+                update.symbolStart = cursor.valueStart();
+                update.symbolEnd = cursor.valueEnd();
+            } else if (cursor.keyIs("i")) {
+                cursor.readString();
+                update.intervalMillis = cursor.valueIs("1m") ? 60_000 : 1_000;
+            } else if (cursor.keyIs("o")) {
+                cursor.readString();
+                update.openStart = cursor.valueStart();
+                update.openEnd = cursor.valueEnd();
+            } else if (cursor.keyIs("h")) {
+                cursor.readString();
+                update.highStart = cursor.valueStart();
+                update.highEnd = cursor.valueEnd();
+            } else if (cursor.keyIs("l")) {
+                cursor.readString();
+                update.lowStart = cursor.valueStart();
+                update.lowEnd = cursor.valueEnd();
+            } else if (cursor.keyIs("c")) {
+                cursor.readString();
+                update.closeStart = cursor.valueStart();
+                update.closeEnd = cursor.valueEnd();
+            } else if (cursor.keyIs("v")) {
+                update.volume = cursor.readDecimalDouble();
+            } else {
+                cursor.skipValue();
+            }
+        }
+    }
+}
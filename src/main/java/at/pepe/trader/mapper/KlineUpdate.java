@@ -0,0 +1,77 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.PriceScale;
+
+/**
+ * One kline message as parsed by the {@link KlineMessageParser}, reused for the next message. The prices stay
+ * characters of the message until they are read with the price scale of the symbol.
+ */
+public final class KlineUpdate {
+    CharSequence text;
+    int symbolStart;
+    int symbolEnd;
+    long closeTime;
+    long intervalMillis;
+    int openStart;
+    int openEnd;
+    int highStart;
+    int highEnd;
+    int lowStart;
+    int lowEnd;
+    int closeStart;
+    int closeEnd;
+    double volume;
+
+    void clear(CharSequence text) {
+        this.text = text;
+        symbolStart = symbolEnd = 0;
+        openStart = openEnd = highStart = highEnd = lowStart = lowEnd = closeStart = closeEnd = 0;
+        closeTime = 0;
+        intervalMillis = 0;
+        volume = 0;
+    }
+
+    public boolean isSymbol(String symbol) {
+        if (symbolEnd - symbolStart != symbol.length()) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            if (text.charAt(symbolStart + i) != symbol.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getSymbol() {
+        return text.subSequence(symbolStart, symbolEnd).toString();
+    }
+
+    public long getCloseTime() {
+        return closeTime;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getOpen(PriceScale priceScale) {
+        return priceScale.parse(text, openStart, openEnd);
+    }
+
+    public long getHigh(PriceScale priceScale) {
+        return priceScale.parse(text, highStart, highEnd);
+    }
+
+    public long getLow(PriceScale priceScale) {
+        return priceScale.parse(text, lowStart, lowEnd);
+    }
+
+    public long getClose(PriceScale priceScale) {
+        return priceScale.parse(text, closeStart, closeEnd);
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+}
@@ -45,4 +45,26 @@ public class OrderMapper {
                 .build();
 
     }
+
+    /**
+     * Result of a new order or cancel request of the websocket order API. A cancel carries the id of the cancelled
+     * order in origClientOrderId, its own clientOrderId is the one of the cancel request.
+     */
+    public OrderPojo mapFromApiResult(JSONObject jsonObject) {
+        boolean cancel = jsonObject.has("origClientOrderId");
+        long transactTime = jsonObject.optLong("transactTime", System.currentTimeMillis());
+        return OrderPojo.builder()
+                .orderId(jsonObject.optLongObject("orderId"))
+                .clientOrderId(jsonObject.getString(cancel ? "origClientOrderId" : "clientOrderId"))
+                .action(jsonObject.getString("side"))
+                .symbol(jsonObject.getString("symbol"))
+                .orderStatus(jsonObject.getString("status"))
+                .createdAt(cancel ? null : Instant.ofEpochMilli(jsonObject.optLong("workingTime", transactTime)).atOffset(ZoneOffset.UTC))
+                .updatedAt(Instant.ofEpochMilli(transactTime).atOffset(ZoneOffset.UTC))
+                .type(jsonObject.getString("type"))
+                .price(jsonObject.getBigDecimal("price"))
+                .quantity(jsonObject.getBigDecimal("origQty"))
+                .executedQty(jsonObject.getBigDecimal("executedQty"))
+                .build();
+    }
 }
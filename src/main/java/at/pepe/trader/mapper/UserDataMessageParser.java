@@ -0,0 +1,143 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.OrderPojo;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the user data stream messages in one pass without building a JSON tree. An executionReport becomes the same
+ * {@link OrderPojo} as {@link OrderMapper#mapFromStream}, side, status and type reuse their constant strings.
+ * Not thread safe, one per socket reader thread.
+ */
+public final class UserDataMessageParser {
+    public enum EventType {
+        ACCOUNT_POSITION, EXECUTION_REPORT, OTHER
+    }
+
+    private static final String[] SIDES = {"BUY", "SELL"};
+    private static final String[] STATUSES = {"NEW", "PARTIALLY_FILLED", "FILLED", "CANCELED", "PENDING_CANCEL",
+            "REJECTED", "EXPIRED", "EXPIRED_IN_MATCH"};
+    private static final String[] TYPES = {"LIMIT", "MARKET", "LIMIT_MAKER", "STOP_LOSS", "STOP_LOSS_LIMIT",
+            "TAKE_PROFIT", "TAKE_PROFIT_LIMIT"};
+
+    private final JsonCursor cursor = new JsonCursor();
+    private OrderPojo.OrderPojoBuilder order;
+    private final Map<String, BigDecimal> balances = new HashMap<>();
+    private EventType eventType;
+    private String originalClientOrderId;
+    private String clientOrderId;
+
+    public EventType parse(CharSequence message) {
+        eventType = EventType.OTHER;
+        order = OrderPojo.builder();
+        balances.clear();
+        originalClientOrderId = null;
+        clientOrderId = null;
+        cursor.reset(message);
+        cursor.enterObject();
+        while (cursor.nextField()) {
+            readField();
+        }
+        return eventType;
+    }
+
+    /**
+     * @return a new order of the last executionReport
+     */
+    public OrderPojo getOrder() {
+        return order
+                .clientOrderId(originalClientOrderId != null && !originalClientOrderId.isBlank() ? originalClientOrderId : clientOrderId)
+                .build();
+    }
+
+    /**
+     * @return the free amount by asset of the last outboundAccountPosition, valid until the next message
+     */
+    public Map<String, BigDecimal> getBalances() {
+        return balances;
+    }
+
+    private void readField() {
+        if (cursor.keyIs("e")) {
+            cursor.readString();
+            if (cursor.valueIs("executionReport")) {
+                eventType = EventType.EXECUTION_REPORT;
+            } else if (cursor.valueIs("outboundAccountPosition")) {
+                eventType = EventType.ACCOUNT_POSITION;
+            }
+        } else if (cursor.keyIs("B")) {
+            readBalances();
+        } else if (cursor.keyIs("i")) {
+            order.orderId(cursor.isNull() ? skipNull() : Long.valueOf(cursor.readLong()));
+        } else if (cursor.keyIs("C")) {
+            originalClientOrderId = cursor.readStringValue();
+        } else if (cursor.keyIs("c")) {
+            clientOrderId = cursor.readStringValue();
+        } else if (cursor.keyIs("S")) {
+            order.action(readConstant(SIDES));
+        } else if (cursor.keyIs("s")) {
+            order.symbol(cursor.readStringValue());
+        } else if (cursor.keyIs("X")) {
+            order.orderStatus(readConstant(STATUSES));
+        } else if (cursor.keyIs("O")) {
+            order.createdAt(Instant.ofEpochMilli(cursor.readLong()).atOffset(ZoneOffset.UTC));
+        } else if (cursor.keyIs("E")) {
+            order.updatedAt(Instant.ofEpochMilli(cursor.readLong()).atOffset(ZoneOffset.UTC));
+        } else if (cursor.keyIs("o")) {
+            order.type(readConstant(TYPES));
+        } else if (cursor.keyIs("p")) {
+            order.price(cursor.readBigDecimal());
+        } else if (cursor.keyIs("q")) {
+            order.quantity(cursor.readBigDecimal());
+        } else if (cursor.keyIs("z")) {
+            order.executedQty(cursor.readBigDecimal());
+        } else if (cursor.keyIs("n")) {
+            order.commissionAmount(cursor.readBigDecimal());
+        } else {
+            cursor.skipValue();
+        }
+    }
+
+    private void readBalances() {
+        cursor.enterArray();
+        while (cursor.nextElement()) {
+            String asset = null;
+            BigDecimal free = null;
+            cursor.enterObject();
+            while (cursor.nextField()) {
+                if (cursor.keyIs("a")) {
+                    asset = cursor.readStringValue();
+                } else if (cursor.keyIs("f")) {
+                    free = cursor.readBigDecimal();
+                } else {
+                    cursor.skipValue();
+                }
+            }
+            if (asset != null && free != null) {
+                balances.put(asset, free);
+            }
+        }
+    }
+
+    private String readConstant(String[] constants) {
+        if (cursor.isNull()) {
+            return skipNull();
+        }
+        cursor.readString();
+        for (String constant : constants) {
+            if (cursor.valueIs(constant)) {
+                return constant;
+            }
+        }
+        return cursor.getText().subSequence(cursor.valueStart(), cursor.valueEnd()).toString();
+    }
+
+    private <T> T skipNull() {
+        cursor.skipValue();
+        return null;
+    }
+}
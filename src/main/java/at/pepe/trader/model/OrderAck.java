@@ -0,0 +1,28 @@
+package at.pepe.trader.model;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Response of the websocket order API to one request. Either the order as the exchange accepted it or the error it
+ * was rejected with.
+ */
+@Data
+@ToString
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderAck {
+    private String requestId;
+    private int status; // HTTP like status of the request, 200 on success
+    private OrderPojo order; // Order state right after the request, null if rejected
+    private List<OrderPojo> cancelledOrders; // Orders a cancel-replace or cancel-all cancelled, also when the new order failed
+    private Integer errorCode; // Binance error code, e.g. -2010 new order rejected or -2011 unknown order on cancel
+    private String errorMessage;
+    private long latencyNanos; // Request sent until its response arrived
+
+    public boolean isSuccess() {
+        return status == 200 && (order != null || cancelledOrders != null);
+    }
+}
@@ -0,0 +1,147 @@
+package at.pepe.trader.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts between decimal prices and "points", the price as a long scaled by 10^scale.
+ * With a quote asset scale of 8 one point is 0.00000001 FDUSD, which is the smallest price step on binance.
+ * Parsing and formatting work on characters directly so the hot path does not need BigDecimal.
+ */
+public final class PriceScale {
+
+    private final int scale;
+    private final long factor;
+    private final double doubleFactor;
+
+    public PriceScale(int scale) {
+        if (scale < 0 || scale > 18) {
+            throw new IllegalArgumentException("Scale must be between 0 and 18 but was " + scale);
+        }
+        this.scale = scale;
+        long value = 1;
+        for (int i = 0; i < scale; i++) {
+            value *= 10;
+        }
+        this.factor = value;
+        this.doubleFactor = value;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public long toPoints(BigDecimal price) {
+        return price.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public long toPoints(double price) {
+        return Math.round(price * doubleFactor);
+    }
+
+    public BigDecimal toBigDecimal(long points) {
+        return BigDecimal.valueOf(points, scale);
+    }
+
+    public double toDouble(long points) {
+        return points / doubleFactor;
+    }
+
+    /**
+     * Parses a decimal like "0.00000812" into points, digits beyond the scale are rounded half up (away from zero).
+     * Exponent notation like "8.12E-6" is accepted but takes the slow path over BigDecimal. Prices that do not fit
+     * into a long as points throw a {@link NumberFormatException}.
+     */
+    public long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses the characters from start (inclusive) to end (exclusive) of the text, see {@link #parse(CharSequence)}.
+     */
+    public long parse(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException("Not a price: '" + text.subSequence(start, end) + "'");
+        }
+
+        long value = 0;
+        int fractionDigits = -1; // -1 as long as no decimal point has been seen
+        boolean roundUp = false;
+        try {
+            for (; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                if ((c == 'e' || c == 'E') && i > start) {
+                    return parseExponent(text, start, end);
+                }
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("Not a price: '" + text.subSequence(start, end) + "'");
+                }
+                if (fractionDigits >= scale) {
+                    if (fractionDigits == scale) {
+                        roundUp = c >= '5';
+                    }
+                    fractionDigits++;
+                    continue;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+            }
+
+            for (int missing = scale - Math.max(fractionDigits, 0); missing > 0; missing--) {
+                value = Math.multiplyExact(value, 10);
+            }
+            if (roundUp) {
+                value = Math.incrementExact(value);
+            }
+        } catch (ArithmeticException exception) {
+            throw outOfRange(text, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private long parseExponent(CharSequence text, int start, int end) {
+        try {
+            return toPoints(new BigDecimal(text.subSequence(start, end).toString()));
+        } catch (ArithmeticException exception) {
+            throw outOfRange(text, start, end);
+        }
+    }
+
+    private static NumberFormatException outOfRange(CharSequence text, int start, int end) {
+        return new NumberFormatException("Price out of range: '" + text.subSequence(start, end) + "'");
+    }
+
+    /**
+     * Formats points as plain decimal with exactly scale fraction digits, e.g. 812 -> "0.00000812".
+     */
+    public String format(long points) {
+        StringBuilder builder = new StringBuilder(scale + 21);
+        if (points < 0) {
+            builder.append('-');
+        }
+        long integerPart = Math.abs(points / factor);
+        long fractionPart = Math.abs(points % factor);
+        builder.append(integerPart);
+        if (scale > 0) {
+            builder.append('.');
+            String fraction = Long.toString(fractionPart);
+            for (int i = fraction.length(); i < scale; i++) {
+                builder.append('0');
+            }
+            builder.append(fraction);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package at.pepe.trader.model;
+
+import lombok.*;
+
+/**
+ * Aggregated position events of one symbol in one minute, the building block for the statistics of any time frame.
+ */
+@Data
+@ToString
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatisticsBucket {
+    private String symbol; // Part of the key, not of the stored value
+    private long minute; // epoch minute
+    private int positionsOpened;
+    private int positionsClosed;
+    private int positionsCancelled;
+    private double volumenTraded;
+    private double profitMade;
+    private long timeToCloseSeconds; // sum over the closed positions
+}
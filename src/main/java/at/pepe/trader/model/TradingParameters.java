@@ -0,0 +1,18 @@
+package at.pepe.trader.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * The tunable part of the trade configuration, what the optimizer searches over and can apply at runtime.
+ */
+@Value
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class TradingParameters {
+    int gapSizePoints;
+    int bollingerWindow;
+    double bollingerMultiplier;
+    BigDecimal quoteAssetQuantityPerTrade;
+}
@@ -0,0 +1,29 @@
+package at.pepe.trader.persistent;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.StatisticsBucket;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface PositionRepository extends KeyValueRepository<Long, Position> {
+    /**
+     * Positions closed, or created if still open, after the given time.
+     */
+    List<Position> findAllSince(OffsetDateTime offsetDateTime);
+
+    /**
+     * Keyed by the symbol and the minute of the bucket.
+     */
+    void saveStatistics(StatisticsBucket bucket);
+
+    List<StatisticsBucket> findStatisticsSince(String symbol, long minute);
+
+    /**
+     * Whether the statistics buckets were derived from the stored positions already, it is only done once. The
+     * positions carry no symbol, they are all counted for trade.symbol.
+     */
+    boolean isStatisticsRebuilt();
+
+    void markStatisticsRebuilt();
+}
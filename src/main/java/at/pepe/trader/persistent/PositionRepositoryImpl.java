@@ -1,91 +1,465 @@
 package at.pepe.trader.persistent;
 
+import at.pepe.trader.config.PersistenceConfigProperties;
 import at.pepe.trader.model.Position;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import at.pepe.trader.model.StatisticsBucket;
+import at.pepe.trader.persistent.codec.StatisticsBucketCodec;
+import at.pepe.trader.persistent.codec.ValueCodec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
-import org.rocksdb.RocksIterator;
-import org.springframework.scheduling.annotation.Async;
+import org.rocksdb.*;
 import org.springframework.stereotype.Repository;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
-public class PositionRepositoryImpl implements KeyValueRepository<Long, Position> {
+public class PositionRepositoryImpl implements PositionRepository {
     private final static String NAME = "position-db";
+    // Secondary index: 8 byte big-endian epoch millis of closedAt (or createdAt while open) + 8 byte id, empty value.
+    private final static byte[] TIME_INDEX = "position-by-time".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] EMPTY = new byte[0];
+    // Small bookkeeping entries: the key and value format of the positions, the time of the last WAL sync and whether
+    // the statistics got rebuilt from the positions.
+    private final static byte[] META = "meta".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] FORMAT_KEY = "position-format".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] LAST_SYNC_KEY = "last-sync".getBytes(StandardCharsets.UTF_8);
+    private final static byte[] STATISTICS_REBUILT_KEY = "statistics-rebuilt".getBytes(StandardCharsets.UTF_8);
+    // Per minute statistics buckets, keyed by the symbol, a '/' and the big-endian epoch minute.
+    private final static byte[] STATISTICS = "statistics".getBytes(StandardCharsets.UTF_8);
+    private final static int MIGRATION_BATCH_SIZE = 10_000;
 
-    private final ObjectMapper objectMapper;
+    private final List<ValueCodec<Position>> codecs;
+    private final StatisticsBucketCodec statisticsCodec;
+    private final PersistenceConfigProperties persistenceConfigProperties;
+    private final MeterRegistry meterRegistry;
+
+    // Write-behind queue, saving the same position again before it got flushed only replaces the pending value.
+    private final Map<Long, Position> pending = new ConcurrentHashMap<>();
+    private final Map<StatisticsKey, StatisticsBucket> pendingStatistics = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private long lastSyncedWrite;
+    private boolean unsyncedWrites; // Written without fsync since lastSyncedWrite
 
     File dbDir;
     RocksDB db;
+    private final List<ColumnFamilyHandle> columnFamilies = new ArrayList<>();
+    private ColumnFamilyHandle timeIndex;
+    private ColumnFamilyHandle meta;
+    private ColumnFamilyHandle statistics;
+    private ValueCodec<Position> codec;
+    private ScheduledExecutorService flushExecutor;
+    private Timer flushTimer;
+    private DistributionSummary flushBatchSize;
 
     @PostConstruct
     void initialize() {
         RocksDB.loadLibrary();
-        final Options options = new Options();
+        codec = codecs.stream()
+                .filter(candidate -> candidate.getName().equals(persistenceConfigProperties.getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown position codec " + persistenceConfigProperties.getCodec()));
+        final DBOptions options = new DBOptions();
         options.setCreateIfMissing(true);
-        dbDir = new File("./pepe-trader/rocks-db", NAME);
+        options.setCreateMissingColumnFamilies(true);
+        dbDir = new File(persistenceConfigProperties.getPath(), NAME);
         try {
             Files.createDirectories(dbDir.getParentFile().toPath());
             Files.createDirectories(dbDir.getAbsoluteFile().toPath());
-            db = RocksDB.open(options, dbDir.getAbsolutePath());
+            boolean indexExists = hasColumnFamily(TIME_INDEX);
+            db = RocksDB.open(options, dbDir.getAbsolutePath(), List.of(
+                    new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY),
+                    new ColumnFamilyDescriptor(TIME_INDEX),
+                    new ColumnFamilyDescriptor(META),
+                    new ColumnFamilyDescriptor(STATISTICS)
+            ), columnFamilies);
+            timeIndex = columnFamilies.get(1);
+            meta = columnFamilies.get(2);
+            statistics = columnFamilies.get(3);
+            migrateFormat();
+            if (!indexExists) {
+                rebuildTimeIndex();
+            }
         } catch(IOException | RocksDBException ex) {
             log.error("Error initializng RocksDB, check configurations and permissions: ", ex);
         }
+
+        Gauge.builder("position.db.queue.depth", pending, Map::size)
+                .description("Positions waiting to be written to RocksDB")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("position.db.flush.latency")
+                .description("Time to serialize and write one batch of positions")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        flushBatchSize = DistributionSummary.builder("position.db.flush.batch.size")
+                .description("Positions written per batch")
+                .register(meterRegistry);
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, NAME + "-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = persistenceConfigProperties.getFlushIntervalMs();
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
         log.info("RocksDB for {} initialized and ready to use", NAME);
     }
 
+    @PreDestroy
+    void shutdown() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            try {
+                flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushQuietly();
+        syncQuietly(true);
+        columnFamilies.forEach(ColumnFamilyHandle::close);
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    private boolean hasColumnFamily(byte[] name) {
+        try (Options options = new Options()) {
+            return RocksDB.listColumnFamilies(options, dbDir.getAbsolutePath()).stream()
+                    .anyMatch(existing -> Arrays.equals(existing, name));
+        } catch (RocksDBException e) {
+            return false; // No database yet
+        }
+    }
+
+    /**
+     * Rewrites all positions once the stored format differs from the configured one. Databases without a format
+     * entry use decimal string keys and JSON values. Records are re-keyed by the id they contain, so running the
+     * migration again after it got interrupted is harmless.
+     */
+    private void migrateFormat() throws RocksDBException {
+        String format = "keys=long;codec=" + codec.getName();
+        byte[] stored = db.get(meta, FORMAT_KEY);
+        if (stored != null && format.equals(new String(stored, StandardCharsets.UTF_8))) {
+            return;
+        }
+
+        int migrated = 0;
+        long sizeBefore = 0;
+        long sizeAfter = 0;
+        try (RocksIterator rocksIterator = db.newIterator(); WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            WriteBatch batch = new WriteBatch();
+            for (rocksIterator.seekToFirst(); rocksIterator.isValid(); rocksIterator.next()) {
+                byte[] value = rocksIterator.value();
+                try {
+                    Position position = decode(value);
+                    byte[] encoded = encode(position);
+                    batch.remove(rocksIterator.key());
+                    batch.put(longKey(position.getId()), encoded);
+                    sizeBefore += value.length;
+                    sizeAfter += encoded.length;
+                    if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                        db.write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                    }
+                } catch (IOException e) {
+                    log.error("Error migrating the entry in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
+                }
+            }
+            batch.put(meta, FORMAT_KEY, format.getBytes(StandardCharsets.UTF_8));
+            db.write(writeOptions, batch);
+            batch.close();
+        }
+        log.info("Migrated {} positions of {} to {}, {} bytes before, {} bytes after.", migrated, NAME, format, sizeBefore, sizeAfter);
+    }
+
+    // One-off backfill for databases created before the time index existed.
+    private void rebuildTimeIndex() throws RocksDBException {
+        int indexed = 0;
+        try (RocksIterator rocksIterator = db.newIterator(); WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            for (rocksIterator.seekToFirst(); rocksIterator.isValid(); rocksIterator.next()) {
+                try {
+                    Position position = decode(rocksIterator.value());
+                    if (position != null) {
+                        indexPosition(batch, position);
+                        indexed++;
+                    }
+                } catch (IOException e) {
+                    log.error("Error indexing the entry in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
+                }
+            }
+            db.write(writeOptions, batch);
+        }
+        log.info("Built time index of {} for {} positions.", NAME, indexed);
+    }
+
+    private void indexPosition(WriteBatch batch, Position position) {
+        if (position.getCreatedAt() == null) {
+            return;
+        }
+        if (position.getClosedAt() != null) {
+            // createdAt and closedAt never change once set, so the open entry is the only one that can be stale.
+            batch.remove(timeIndex, timeIndexKey(position.getCreatedAt(), position.getId()));
+        }
+        OffsetDateTime timestamp = getFirstTimestamp(position.getClosedAt(), position.getCreatedAt());
+        batch.put(timeIndex, timeIndexKey(timestamp, position.getId()), EMPTY);
+    }
+
+    private static byte[] longKey(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    /**
+     * Encodes with the configured codec and falls back to the other codecs if it can't represent the position.
+     */
+    private byte[] encode(Position position) throws IOException {
+        try {
+            return codec.encode(position);
+        } catch (IOException | RuntimeException e) {
+            for (ValueCodec<Position> candidate : codecs) {
+                if (candidate == codec) {
+                    continue;
+                }
+                try {
+                    byte[] encoded = candidate.encode(position);
+                    log.warn("Position {} written as {}, {} failed with: {}", position.getId(), candidate.getName(), codec.getName(), e.getMessage());
+                    return encoded;
+                } catch (IOException | RuntimeException ignored) {
+                    // Try the next one
+                }
+            }
+            throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+        }
+    }
+
+    private Position decode(byte[] bytes) throws IOException {
+        if (codec.canDecode(bytes)) {
+            return codec.decode(bytes);
+        }
+        for (ValueCodec<Position> candidate : codecs) {
+            if (candidate.canDecode(bytes)) {
+                return candidate.decode(bytes);
+            }
+        }
+        throw new IOException("No codec found for position starting with byte " + (bytes.length == 0 ? "<empty>" : bytes[0]));
+    }
+
+    private static byte[] statisticsPrefix(String symbol) {
+        return (symbol + "/").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] statisticsKey(String symbol, long minute) {
+        byte[] prefix = statisticsPrefix(symbol);
+        return ByteBuffer.allocate(prefix.length + Long.BYTES).put(prefix).putLong(minute).array();
+    }
+
+    private static byte[] timeIndexKey(OffsetDateTime timestamp, long id) {
+        return timeIndexKey(timestamp.toInstant().toEpochMilli(), id);
+    }
+
+    private static byte[] timeIndexKey(long epochMillis, long id) {
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(epochMillis).putLong(id).array();
+    }
+
+    @Override
+    public void save(Long key, Position value) {
+        pending.put(key, value.toBuilder().build());
+        if (pending.size() >= persistenceConfigProperties.getFlushBatchSize() && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Queues the bucket like a position, it is written in the same batch as the positions that changed it.
+     */
+    @Override
+    public void saveStatistics(StatisticsBucket bucket) {
+        pendingStatistics.put(new StatisticsKey(bucket.getSymbol(), bucket.getMinute()), bucket.toBuilder().build());
+    }
+
+    @Override
+    public List<StatisticsBucket> findStatisticsSince(String symbol, long minute) {
+        flushQuietly();
+        byte[] prefix = statisticsPrefix(symbol);
+        List<StatisticsBucket> buckets = new ArrayList<>();
+        try (RocksIterator rocksIterator = db.newIterator(statistics)) {
+            for (rocksIterator.seek(statisticsKey(symbol, minute));
+                 rocksIterator.isValid() && startsWith(rocksIterator.key(), prefix);
+                 rocksIterator.next()) {
+                try {
+                    StatisticsBucket bucket = statisticsCodec.decode(rocksIterator.value());
+                    bucket.setSymbol(symbol);
+                    buckets.add(bucket);
+                } catch (IOException e) {
+                    log.error("Error reading statistics bucket in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
+                }
+            }
+        }
+        return buckets;
+    }
+
     @Override
-    @Async
-    public synchronized void save(Long key, Position value) {
+    public boolean isStatisticsRebuilt() {
         try {
-            db.put((key + "").getBytes(), objectMapper.writeValueAsBytes(value));
-        } catch (RocksDBException | JsonProcessingException e) {
-            log.error("Error saving entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
+            return db.get(meta, STATISTICS_REBUILT_KEY) != null;
+        } catch (RocksDBException e) {
+            log.error("Error reading the statistics marker in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
+            return false;
         }
     }
 
+    /**
+     * Written synced after the rebuilt buckets, a crash in between only rebuilds them again.
+     */
+    @Override
+    public void markStatisticsRebuilt() {
+        flushQuietly();
+        try (WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            db.put(meta, writeOptions, STATISTICS_REBUILT_KEY, longKey(System.currentTimeMillis()));
+        } catch (RocksDBException e) {
+            log.error("Error writing the statistics marker in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    /**
+     * Writes all pending positions and statistics buckets as one WriteBatch. Called by the flusher and before reads that scan the database.
+     * With group commit the WAL is also synced here once unsynced writes are older than the sync interval, so the
+     * last batch of a burst is synced without waiting for another one.
+     */
+    public void flush() throws RocksDBException {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            if (pending.isEmpty() && pendingStatistics.isEmpty()) {
+                sync(false);
+                return;
+            }
+
+            long start = System.nanoTime();
+            List<Map.Entry<Long, Position>> written = new ArrayList<>(pending.size());
+            List<StatisticsBucket> writtenStatistics = new ArrayList<>(pendingStatistics.values());
+            try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+                for (Map.Entry<Long, Position> entry : pending.entrySet()) {
+                    try {
+                        batch.put(longKey(entry.getKey()), encode(entry.getValue()));
+                        indexPosition(batch, entry.getValue());
+                        written.add(Map.entry(entry.getKey(), entry.getValue()));
+                    } catch (IOException e) {
+                        // Stays pending, the next flush tries again
+                        log.error("Error serializing position {}, cause: {}, message: {}", entry.getKey(), e.getCause(), e.getMessage());
+                    }
+                }
+                for (StatisticsBucket bucket : writtenStatistics) {
+                    batch.put(statistics, statisticsKey(bucket.getSymbol(), bucket.getMinute()), statisticsCodec.encode(bucket));
+                }
+
+                long now = System.currentTimeMillis();
+                boolean sync = persistenceConfigProperties.getDurability() == PersistenceConfigProperties.Durability.SYNC ||
+                        now - lastSyncedWrite >= persistenceConfigProperties.getGroupCommitSyncIntervalMs();
+                writeOptions.setSync(sync);
+                db.write(writeOptions, batch);
+                if (sync) {
+                    lastSyncedWrite = now;
+                    unsyncedWrites = false;
+                } else {
+                    unsyncedWrites = true;
+                }
+            }
+
+            // Only drop what we wrote, a newer save of the same position stays queued for the next batch.
+            written.forEach(entry -> pending.remove(entry.getKey(), entry.getValue()));
+            writtenStatistics.forEach(bucket -> pendingStatistics.remove(new StatisticsKey(bucket.getSymbol(), bucket.getMinute()), bucket));
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushBatchSize.record(written.size());
+        }
+    }
+
+    // Caller holds the flush lock
+    private void sync(boolean force) throws RocksDBException {
+        long now = System.currentTimeMillis();
+        if (unsyncedWrites && (force || now - lastSyncedWrite >= persistenceConfigProperties.getGroupCommitSyncIntervalMs())) {
+            // No syncWal in this RocksDB version, a synced write fsyncs the WAL with everything written before it
+            try (WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                db.put(meta, writeOptions, LAST_SYNC_KEY, longKey(now));
+            }
+            lastSyncedWrite = now;
+            unsyncedWrites = false;
+        }
+    }
+
+    private void syncQuietly(boolean force) {
+        synchronized (flushLock) {
+            try {
+                sync(force);
+            } catch (RocksDBException | RuntimeException e) {
+                log.error("Error syncing the RocksDB WAL, cause: {}, message: {}", e.getCause(), e.getMessage());
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RocksDBException | RuntimeException e) {
+            log.error("Error flushing entries to RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
+        }
+    }
+
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
     @Override
     public Position find(Long key) {
+        Position queued = pending.get(key);
+        if (queued != null) {
+            return queued.toBuilder().build();
+        }
+
         Position result = null;
         try {
-            byte[] bytes = db.get((key + "").getBytes());
+            byte[] bytes = db.get(longKey(key));
             if(bytes == null) return null;
-            result = objectMapper.readValue(bytes, Position.class);
+            result = decode(bytes);
         } catch (RocksDBException | IOException e) {
             log.error("Error retrieving the entry in RocksDB from key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
         }
         return result;
     }
 
+    @Override
     public List<Position> findAllSince(OffsetDateTime offsetDateTime) {
-        RocksIterator rocksIterator = db.newIterator();
-        rocksIterator.seekToLast();
+        flushQuietly();
         List<Position> completed = new ArrayList<>();
 
-        while (rocksIterator.isValid()) {
-            try {
-                byte[] bytes = rocksIterator.value();
-                if(bytes == null) {
-                    rocksIterator.prev();
-                    continue;
-                }
-                Position result = objectMapper.readValue(bytes, Position.class);
-                if(result == null) {
-                    rocksIterator.prev();
+        // Keys are ordered by time, so the scan starts at the first millisecond after offsetDateTime. The seek key is
+        // only the time: it sorts before every id of that millisecond, negative ids compare as unsigned bytes.
+        try (RocksIterator rocksIterator = db.newIterator(timeIndex)) {
+            for (rocksIterator.seek(longKey(offsetDateTime.toInstant().toEpochMilli() + 1));
+                 rocksIterator.isValid();
+                 rocksIterator.next()) {
+                long id = ByteBuffer.wrap(rocksIterator.key()).getLong(Long.BYTES);
+                Position result = find(id);
+                if (result == null) {
                     continue;
                 }
 
@@ -93,10 +467,7 @@ public class PositionRepositoryImpl implements KeyValueRepository<Long, Position
                 if (timestamp != null && timestamp.isAfter(offsetDateTime)) {
                     completed.add(result);
                 }
-            } catch (IOException e) {
-                log.error("Error retrieving the entry in RocksDB cause: {}, message: {}", e.getCause(), e.getMessage());
             }
-            rocksIterator.prev();
         }
 
         return completed;
@@ -108,10 +479,25 @@ public class PositionRepositoryImpl implements KeyValueRepository<Long, Position
 
     @Override
     public void delete(Long key) {
+        pending.remove(key);
         try {
-            db.delete((key + "").getBytes());
+            Position existing = find(key);
+            if (existing != null && existing.getCreatedAt() != null) {
+                db.delete(timeIndex, timeIndexKey(existing.getCreatedAt(), key));
+                if (existing.getClosedAt() != null) {
+                    db.delete(timeIndex, timeIndexKey(existing.getClosedAt(), key));
+                }
+            }
+            db.delete(longKey(key));
         } catch (RocksDBException e) {
             log.error("Error deleting entry in RocksDB, cause: {}, message: {}", e.getCause(), e.getMessage());
         }
     }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private record StatisticsKey(String symbol, long minute) {
+    }
 }
@@ -0,0 +1,222 @@
+package at.pepe.trader.persistent.codec;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Compact binary format for positions:
+ * <pre>
+ * version byte | presence bits (varint) | id | status | orderIdOpen | openAtPrice | quantityOpen
+ *              | orderIdClose | closeAtPrice | quantityClose | createdAt | closedAt
+ * </pre>
+ * Longs are zig-zag varints, decimals are a varint scale followed by the unscaled value and timestamps are epoch
+ * millis followed by the offset in seconds. Fields that are null are left out and only marked in the presence bits.
+ * A record with a decimal whose unscaled value does not fit a long is written as version 2, where every decimal is
+ * a varint scale followed by the length and the two's complement bytes of the unscaled value.
+ * New fields have to be appended at the end with a new presence bit, older records simply end before them.
+ * The status is stored by ordinal, new statuses therefore have to be appended to {@link PositionStatus} as well.
+ */
+@Component
+public class BinaryPositionCodec implements ValueCodec<Position> {
+    public static final String NAME = "binary";
+
+    static final byte VERSION_1 = 1;
+    static final byte VERSION_2 = 2; // Decimals of any size
+
+    private static final int ORDER_ID_OPEN = 1;
+    private static final int OPEN_AT_PRICE = 1 << 1;
+    private static final int QUANTITY_OPEN = 1 << 2;
+    private static final int ORDER_ID_CLOSE = 1 << 3;
+    private static final int CLOSE_AT_PRICE = 1 << 4;
+    private static final int QUANTITY_CLOSE = 1 << 5;
+    private static final int CREATED_AT = 1 << 6;
+    private static final int CLOSED_AT = 1 << 7;
+    private static final int STATUS = 1 << 8;
+
+    private static final PositionStatus[] STATUSES = PositionStatus.values();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Position value) {
+        Writer writer = new Writer(fitsLong(value.getOpenAtPrice()) && fitsLong(value.getQuantityOpen())
+                && fitsLong(value.getCloseAtPrice()) && fitsLong(value.getQuantityClose()));
+        writer.buffer[writer.length++] = writer.wideDecimals ? VERSION_2 : VERSION_1;
+        writer.writeVarLong(presence(value));
+        writer.writeLong(value.getId());
+        if (value.getStatus() != null) writer.writeVarLong(value.getStatus().ordinal());
+        if (value.getOrderIdOpen() != null) writer.writeLong(value.getOrderIdOpen());
+        if (value.getOpenAtPrice() != null) writer.writeDecimal(value.getOpenAtPrice());
+        if (value.getQuantityOpen() != null) writer.writeDecimal(value.getQuantityOpen());
+        if (value.getOrderIdClose() != null) writer.writeLong(value.getOrderIdClose());
+        if (value.getCloseAtPrice() != null) writer.writeDecimal(value.getCloseAtPrice());
+        if (value.getQuantityClose() != null) writer.writeDecimal(value.getQuantityClose());
+        if (value.getCreatedAt() != null) writer.writeTimestamp(value.getCreatedAt());
+        if (value.getClosedAt() != null) writer.writeTimestamp(value.getClosedAt());
+        return Arrays.copyOf(writer.buffer, writer.length);
+    }
+
+    @Override
+    public Position decode(byte[] bytes) throws IOException {
+        if (!canDecode(bytes)) {
+            throw new IOException("Unknown position format " + (bytes.length == 0 ? "<empty>" : bytes[0]));
+        }
+        Reader reader = new Reader(bytes, bytes[0] == VERSION_2);
+        reader.position = 1;
+        long presence = reader.readVarLong();
+        Position position = new Position();
+        position.setId(reader.readLong());
+        if ((presence & STATUS) != 0) {
+            int ordinal = (int) reader.readVarLong();
+            if (ordinal >= STATUSES.length) {
+                throw new IOException("Unknown position status " + ordinal);
+            }
+            position.setStatus(STATUSES[ordinal]);
+        }
+        if ((presence & ORDER_ID_OPEN) != 0) position.setOrderIdOpen(reader.readLong());
+        if ((presence & OPEN_AT_PRICE) != 0) position.setOpenAtPrice(reader.readDecimal());
+        if ((presence & QUANTITY_OPEN) != 0) position.setQuantityOpen(reader.readDecimal());
+        if ((presence & ORDER_ID_CLOSE) != 0) position.setOrderIdClose(reader.readLong());
+        if ((presence & CLOSE_AT_PRICE) != 0) position.setCloseAtPrice(reader.readDecimal());
+        if ((presence & QUANTITY_CLOSE) != 0) position.setQuantityClose(reader.readDecimal());
+        if ((presence & CREATED_AT) != 0) position.setCreatedAt(reader.readTimestamp());
+        if ((presence & CLOSED_AT) != 0) position.setClosedAt(reader.readTimestamp());
+        return position;
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length > 0 && (bytes[0] == VERSION_1 || bytes[0] == VERSION_2);
+    }
+
+    private static boolean fitsLong(BigDecimal value) {
+        return value == null || value.unscaledValue().bitLength() <= 63
+                || value.stripTrailingZeros().unscaledValue().bitLength() <= 63;
+    }
+
+    private static long presence(Position value) {
+        long presence = 0;
+        if (value.getStatus() != null) presence |= STATUS;
+        if (value.getOrderIdOpen() != null) presence |= ORDER_ID_OPEN;
+        if (value.getOpenAtPrice() != null) presence |= OPEN_AT_PRICE;
+        if (value.getQuantityOpen() != null) presence |= QUANTITY_OPEN;
+        if (value.getOrderIdClose() != null) presence |= ORDER_ID_CLOSE;
+        if (value.getCloseAtPrice() != null) presence |= CLOSE_AT_PRICE;
+        if (value.getQuantityClose() != null) presence |= QUANTITY_CLOSE;
+        if (value.getCreatedAt() != null) presence |= CREATED_AT;
+        if (value.getClosedAt() != null) presence |= CLOSED_AT;
+        return presence;
+    }
+
+    private static final class Writer {
+        private final boolean wideDecimals;
+        private byte[] buffer = new byte[96];
+        private int length;
+
+        Writer(boolean allDecimalsFitLong) {
+            this.wideDecimals = !allDecimalsFitLong;
+        }
+
+        void writeVarLong(long value) {
+            if (buffer.length - length < 10) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeDecimal(BigDecimal value) {
+            if (wideDecimals) {
+                byte[] unscaled = value.unscaledValue().toByteArray();
+                writeLong(value.scale());
+                writeVarLong(unscaled.length);
+                if (buffer.length - length < unscaled.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2 + unscaled.length);
+                }
+                System.arraycopy(unscaled, 0, buffer, length, unscaled.length);
+                length += unscaled.length;
+                return;
+            }
+            if (value.unscaledValue().bitLength() > 63) {
+                value = value.stripTrailingZeros(); // Same number, fitsLong made sure the stripped one fits
+            }
+            writeLong(value.scale());
+            writeLong(value.unscaledValue().longValueExact());
+        }
+
+        void writeTimestamp(OffsetDateTime value) {
+            writeLong(value.toInstant().toEpochMilli());
+            writeLong(value.getOffset().getTotalSeconds());
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private final boolean wideDecimals;
+        private int position;
+
+        Reader(byte[] buffer, boolean wideDecimals) {
+            this.buffer = buffer;
+            this.wideDecimals = wideDecimals;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= buffer.length) {
+                    throw new EOFException("Position record ended in the middle of a field");
+                }
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in position record");
+        }
+
+        long readLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        BigDecimal readDecimal() throws IOException {
+            int scale = (int) readLong();
+            if (!wideDecimals) {
+                return BigDecimal.valueOf(readLong(), scale);
+            }
+            long length = readVarLong();
+            if (length < 1 || length > buffer.length - position) {
+                throw new EOFException("Position record ended in the middle of a field");
+            }
+            BigInteger unscaled = new BigInteger(buffer, position, (int) length);
+            position += (int) length;
+            return new BigDecimal(unscaled, scale);
+        }
+
+        OffsetDateTime readTimestamp() throws IOException {
+            Instant instant = Instant.ofEpochMilli(readLong());
+            return OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds((int) readLong()));
+        }
+    }
+}
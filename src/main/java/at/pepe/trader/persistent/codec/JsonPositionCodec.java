@@ -0,0 +1,39 @@
+package at.pepe.trader.persistent.codec;
+
+import at.pepe.trader.model.Position;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The original Jackson based format, still used to read records written before the binary codec existed.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonPositionCodec implements ValueCodec<Position> {
+    public static final String NAME = "json";
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Position value) throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public Position decode(byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, Position.class);
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == '{';
+    }
+}
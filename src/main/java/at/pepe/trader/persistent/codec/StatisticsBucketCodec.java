@@ -0,0 +1,59 @@
+package at.pepe.trader.persistent.codec;
+
+import at.pepe.trader.model.StatisticsBucket;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed size record: version byte, minute, the three counters, volume, profit and the time to close sum.
+ */
+@Component
+public class StatisticsBucketCodec implements ValueCodec<StatisticsBucket> {
+    public static final String NAME = "statistics-v1";
+
+    private static final byte VERSION_1 = 1;
+    private static final int SIZE_V1 = 1 + Long.BYTES + 3 * Integer.BYTES + 2 * Double.BYTES + Long.BYTES;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(StatisticsBucket value) {
+        return ByteBuffer.allocate(SIZE_V1)
+                .put(VERSION_1)
+                .putLong(value.getMinute())
+                .putInt(value.getPositionsOpened())
+                .putInt(value.getPositionsClosed())
+                .putInt(value.getPositionsCancelled())
+                .putDouble(value.getVolumenTraded())
+                .putDouble(value.getProfitMade())
+                .putLong(value.getTimeToCloseSeconds())
+                .array();
+    }
+
+    @Override
+    public StatisticsBucket decode(byte[] bytes) throws IOException {
+        if (!canDecode(bytes)) {
+            throw new IOException("Unknown statistics bucket format of " + bytes.length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        return StatisticsBucket.builder()
+                .minute(buffer.getLong())
+                .positionsOpened(buffer.getInt())
+                .positionsClosed(buffer.getInt())
+                .positionsCancelled(buffer.getInt())
+                .volumenTraded(buffer.getDouble())
+                .profitMade(buffer.getDouble())
+                .timeToCloseSeconds(buffer.getLong())
+                .build();
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length >= SIZE_V1 && bytes[0] == VERSION_1;
+    }
+}
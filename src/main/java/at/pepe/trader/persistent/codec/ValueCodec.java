@@ -0,0 +1,23 @@
+package at.pepe.trader.persistent.codec;
+
+import java.io.IOException;
+
+/**
+ * Turns repository values into bytes and back. Several codecs can be registered for the same value type,
+ * values are written with the configured one and read with whichever codec recognizes the stored bytes.
+ */
+public interface ValueCodec<V> {
+    /**
+     * Name used to select the codec in the persistence configuration.
+     */
+    String getName();
+
+    byte[] encode(V value) throws IOException;
+
+    V decode(byte[] bytes) throws IOException;
+
+    /**
+     * Whether the bytes have been written by this codec, usually decided by looking at the first byte.
+     */
+    boolean canDecode(byte[] bytes);
+}
@@ -0,0 +1,26 @@
+package at.pepe.trader.service;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.TradingParameters;
+import org.springframework.stereotype.Component;
+
+/**
+ * The trading parameters in effect for one symbol. Starts out with the configured ones and is swapped as a whole by
+ * {@link TradingService#applyParameters(TradingParameters)}, the configuration itself is never changed.
+ */
+@Component
+public class TradingParametersHolder {
+    private volatile TradingParameters current;
+
+    public TradingParametersHolder(TradeConfigProperties tradeConfigProperties) {
+        this.current = tradeConfigProperties.toTradingParameters();
+    }
+
+    public TradingParameters get() {
+        return current;
+    }
+
+    void set(TradingParameters parameters) {
+        this.current = parameters;
+    }
+}
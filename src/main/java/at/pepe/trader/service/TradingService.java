@@ -1,81 +1,91 @@
 package at.pepe.trader.service;
 
 import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.model.TradingParameters;
 import at.pepe.trader.service.binance.BalanceHolderService;
 import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.indicator.IncrementalBollingerBands;
+import at.pepe.trader.service.indicator.IndicatorService;
+import at.pepe.trader.service.latency.LatencyTracker;
 import at.pepe.trader.service.position.PositionService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.BarSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.bollinger.BollingerBandsLowerIndicator;
-import org.ta4j.core.indicators.bollinger.BollingerBandsMiddleIndicator;
-import org.ta4j.core.indicators.bollinger.BollingerBandsUpperIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
-import org.ta4j.core.indicators.statistics.StandardDeviationIndicator;
-import org.ta4j.core.num.DecimalNum;
-
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.math.RoundingMode;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TradingService {
-    private final TradeConfigProperties tradeConfigProperties;
+    private final TradingParametersHolder tradingParametersHolder;
     private final PositionService positionService;
     private final BarSeriesHolderService barSeriesHolderService;
     private final BalanceHolderService balanceHolderService;
+    private final IndicatorService indicatorService;
+    private final LatencyTracker latencyTracker;
+
+    private final long upperBoundsPoints;
+    private final long lowerBoundsPoints;
+    private long lastActionPrice = Long.MIN_VALUE;
 
-    private BigDecimal lastActionPrice;
+    @Autowired
+    public TradingService(
+            TradeConfigProperties tradeConfigProperties,
+            TradingParametersHolder tradingParametersHolder,
+            PositionService positionService,
+            BarSeriesHolderService barSeriesHolderService,
+            BalanceHolderService balanceHolderService,
+            IndicatorService indicatorService,
+            LatencyTracker latencyTracker
+    ) {
+        this.tradingParametersHolder = tradingParametersHolder;
+        this.positionService = positionService;
+        this.barSeriesHolderService = barSeriesHolderService;
+        this.balanceHolderService = balanceHolderService;
+        this.indicatorService = indicatorService;
+        this.latencyTracker = latencyTracker;
+        PriceScale priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        this.upperBoundsPoints = priceScale.toPoints(tradeConfigProperties.getUpperBounds());
+        this.lowerBoundsPoints = priceScale.toPoints(tradeConfigProperties.getLowerBounds());
+    }
 
-    @Async
+    // Runs on the strategy thread of the TradingEventLoop, like every other state change
     public void performTrade() {
-        BarSeries minutes = barSeriesHolderService.getMinuteSeries();
-        BigDecimal currentPrice = ((DecimalNum) minutes.getLastBar().getClosePrice()).getDelegate();
-        DecimalNum currentNumPrice = DecimalNum.valueOf(currentPrice);
+        long start = System.nanoTime();
+        IncrementalBollingerBands bands = indicatorService.getMinuteBands();
+        if (!bands.isReady()) {
+            return;
+        }
 
-        BigDecimal quoteAssetToScale = new BigDecimal(10).pow(tradeConfigProperties.getQuoteAssetScale());
+        long currentPrice = barSeriesHolderService.getLastClose();
+        TradingParameters parameters = tradingParametersHolder.get();
 
-        if (!currentPrice.equals(lastActionPrice) &&
-                DecimalNum.valueOf(tradeConfigProperties.getLowerBounds()).isLessThan(currentNumPrice) &&
-                DecimalNum.valueOf(tradeConfigProperties.getUpperBounds()).isGreaterThan(currentNumPrice) &&
-                middleIndicator20(minutes).getValue(minutes.getEndIndex()).isLessThanOrEqual(currentNumPrice) &&
-                upperIndicator(minutes).getValue(minutes.getEndIndex()).isGreaterThan(currentNumPrice) &&
-                lowerIndicator(minutes).getValue(minutes.getEndIndex()).isLessThan(currentNumPrice) &&
-                balanceHolderService.getAvailableQuoteAsset().doubleValue() >= tradeConfigProperties.getQuoteAssetQuantityPerTrade().doubleValue()
-        ) {
+        boolean signal = currentPrice != lastActionPrice &&
+                lowerBoundsPoints < currentPrice &&
+                upperBoundsPoints > currentPrice &&
+                bands.getMiddle() <= currentPrice &&
+                bands.getUpper() > currentPrice &&
+                bands.getLower() < currentPrice &&
+                balanceHolderService.getAvailableQuoteAsset().doubleValue() >= parameters.getQuoteAssetQuantityPerTrade().doubleValue();
+        latencyTracker.recordSince(LatencyTracker.Stage.INDICATOR, start);
 
-            if (positionService.openPosition(
-                    currentPrice.subtract(
-                            new BigDecimal(tradeConfigProperties.getGapSizePoints())
-                                    .divide(new BigDecimal(2), RoundingMode.DOWN)
-                                    .setScale(tradeConfigProperties.getQuoteAssetScale(), RoundingMode.DOWN)
-                                    .divide(quoteAssetToScale, RoundingMode.UNNECESSARY)
-                    )
-            )) {
+        if (signal) {
+            if (positionService.openPosition(currentPrice - parameters.getGapSizePoints() / 2)) {
                 lastActionPrice = currentPrice;
             }
         }
     }
 
-
-    private BollingerBandsMiddleIndicator middleIndicator20(BarSeries series) {
-        return new BollingerBandsMiddleIndicator(new EMAIndicator(new ClosePriceIndicator(series), 20));
-    }
-
-    private StandardDeviationIndicator stdDeviationIndicator(BarSeries series) {
-        return new StandardDeviationIndicator(new ClosePriceIndicator(series), 20);
-    }
-
-    private BollingerBandsUpperIndicator upperIndicator(BarSeries series) {
-        return new BollingerBandsUpperIndicator(middleIndicator20(series), stdDeviationIndicator(series), DecimalNum.valueOf(2));
-    }
-
-    private BollingerBandsLowerIndicator lowerIndicator(BarSeries series) {
-        return new BollingerBandsLowerIndicator(middleIndicator20(series), stdDeviationIndicator(series), DecimalNum.valueOf(2));
+    /**
+     * Hot swaps the tunable parameters as one snapshot, positions already open keep the gap they were opened with.
+     * Has to run on the strategy thread, see {@link at.pepe.trader.service.engine.TradingEventLoop#execute(Runnable)}.
+     */
+    public void applyParameters(TradingParameters parameters) {
+        TradingParameters previous = tradingParametersHolder.get();
+        tradingParametersHolder.set(parameters);
+        if (previous.getBollingerWindow() != parameters.getBollingerWindow() ||
+                previous.getBollingerMultiplier() != parameters.getBollingerMultiplier()) {
+            barSeriesHolderService.reconfigureMinuteBands(parameters.getBollingerWindow(), parameters.getBollingerMultiplier());
+        }
+        log.info("Applied trading parameters {}, previously {}", parameters, previous);
     }
 }
@@ -0,0 +1,44 @@
+package at.pepe.trader.service.binance;
+
+/**
+ * Binance endpoints we call with their request weight. Endpoints with the lower priority value get the budget first
+ * when they have to wait for it. Orders of priority 0 reduce exposure and are never shed, they wait for budget however
+ * long it takes.
+ */
+public enum ApiEndpoint {
+    CANCEL_ORDER(1, false, 0), // Cancels free budget and exposure, they always go first
+    CANCEL_ALL(1, false, 0),
+    CLOSE_ORDER(1, true, 0), // The sell of a filled position, without it the position is never closed
+    CANCEL_REPLACE(1, true, 1),
+    NEW_ORDER(1, true, 1),
+    OPEN_ORDERS(6, false, 2), // With symbol, 80 without
+    USER_DATA_STREAM(2, false, 2),
+    PING(1, false, 2), // Heartbeat of the idle order API connection
+    KLINES(2, false, 3); // Pages of 1000 klines
+
+    private final int weight;
+    private final boolean order; // Counts towards the order limits
+    private final int priority;
+
+    ApiEndpoint(int weight, boolean order, int priority) {
+        this.weight = weight;
+        this.order = order;
+        this.priority = priority;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isOrder() {
+        return order;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isSheddable() {
+        return order && priority > 0;
+    }
+}
@@ -0,0 +1,263 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.config.RateLimitConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Shared budget for every binance request: the request weight per minute (per IP, REST and websocket API together)
+ * and the new order counts per 10 seconds and per day. A request that fits is granted right away on the calling
+ * thread. Otherwise it waits in a queue that is served by priority, cancels before new orders before reads and
+ * downloads, once the next window starts. Only cancels and closing orders may use the last
+ * {@code cancel-reserve-weight} of a minute, kline downloads no more than {@code download-weight-per-minute}. New
+ * orders are shed instead of queued when too many are waiting already or they waited too long, their price is stale
+ * by then. The counts binance reports back are taken over when they are higher than ours.
+ */
+@Slf4j
+@Service
+public class ApiRateLimiter {
+    private static final long MINUTE = 60_000;
+    private static final long TEN_SECONDS = 10_000;
+    private static final long DAY = 86_400_000;
+
+    private final RateLimitConfigProperties rateLimitConfigProperties;
+    private final Clock clock;
+    private final RateWindow weight;
+    private final RateWindow downloads; // Share of the weight kline downloads may use
+    private final RateWindow ordersShort;
+    private final RateWindow ordersDaily;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private final ScheduledExecutorService scheduler;
+    private final Map<ApiEndpoint, Counter> granted = new EnumMap<>(ApiEndpoint.class);
+    private final Map<ApiEndpoint, Counter> delayed = new EnumMap<>(ApiEndpoint.class);
+    private final Map<ApiEndpoint, Counter> shed = new EnumMap<>(ApiEndpoint.class);
+
+    private long blockedUntil;
+    private long sequence;
+    private int queuedOrders;
+    private ScheduledFuture<?> drain;
+    private long drainAt = Long.MAX_VALUE;
+
+    @Autowired
+    public ApiRateLimiter(RateLimitConfigProperties rateLimitConfigProperties, Clock clock, MeterRegistry meterRegistry) {
+        this.rateLimitConfigProperties = rateLimitConfigProperties;
+        this.clock = clock;
+        this.weight = new RateWindow(rateLimitConfigProperties.getRequestWeightPerMinute(), MINUTE);
+        this.downloads = new RateWindow(rateLimitConfigProperties.getDownloadWeightPerMinute(), MINUTE);
+        this.ordersShort = new RateWindow(rateLimitConfigProperties.getOrdersPer10Seconds(), TEN_SECONDS);
+        this.ordersDaily = new RateWindow(rateLimitConfigProperties.getOrdersPerDay(), DAY);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (ApiEndpoint endpoint : ApiEndpoint.values()) {
+            String tag = endpoint.name().toLowerCase();
+            granted.put(endpoint, Counter.builder("binance.requests.granted").tag("endpoint", tag)
+                    .description("Requests that got their budget").register(meterRegistry));
+            delayed.put(endpoint, Counter.builder("binance.requests.delayed").tag("endpoint", tag)
+                    .description("Requests that had to wait for budget").register(meterRegistry));
+            shed.put(endpoint, Counter.builder("binance.requests.shed").tag("endpoint", tag)
+                    .description("Requests dropped for lack of budget").register(meterRegistry));
+        }
+        Gauge.builder("binance.weight.used", this, limiter -> limiter.getUsedWeight())
+                .description("Request weight used in the current minute").register(meterRegistry);
+        Gauge.builder("binance.orders.used", this, limiter -> limiter.getUsedOrders())
+                .description("New orders placed in the current 10 seconds").register(meterRegistry);
+        Gauge.builder("binance.requests.queued", this, limiter -> limiter.getQueued())
+                .description("Requests waiting for budget").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Completes once the request may be sent, right away if it fits. Sheddable orders complete exceptionally with a
+     * {@link RejectedExecutionException} when they are shed.
+     */
+    public synchronized CompletableFuture<Void> acquire(ApiEndpoint endpoint) {
+        long now = clock.millis();
+        boolean ahead = queue.isEmpty() || queue.peek().endpoint().getPriority() > endpoint.getPriority();
+        if (ahead && tryTake(endpoint, now)) {
+            granted.get(endpoint).increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        if (endpoint.isSheddable() && queuedOrders >= rateLimitConfigProperties.getMaxQueuedOrders()) {
+            shed.get(endpoint).increment();
+            permit.completeExceptionally(new RejectedExecutionException(queuedOrders + " orders are waiting for budget already"));
+            return permit;
+        }
+        delayed.get(endpoint).increment();
+        queue.add(new Waiter(endpoint, sequence++, now, permit));
+        if (endpoint.isSheddable()) {
+            queuedOrders++;
+        }
+        scheduleDrain(now);
+        return permit;
+    }
+
+    /**
+     * Blocks until the request may be sent, for callers that are on their own thread anyway.
+     */
+    public void acquireBlocking(ApiEndpoint endpoint) throws InterruptedException {
+        try {
+            acquire(endpoint).get();
+        } catch (ExecutionException exception) {
+            throw new RejectedExecutionException(exception.getCause());
+        }
+    }
+
+    /**
+     * Takes over the X-MBX-USED-WEIGHT-1M header of a REST response.
+     */
+    public synchronized void observeUsedWeight(int usedWeight) {
+        weight.observe(usedWeight, clock.millis());
+    }
+
+    /**
+     * Takes over the rateLimits of a websocket API response.
+     */
+    public synchronized void observeRateLimits(JSONArray rateLimits) {
+        long now = clock.millis();
+        for (int i = 0; i < rateLimits.length(); i++) {
+            JSONObject limit = rateLimits.getJSONObject(i);
+            String type = limit.optString("rateLimitType");
+            String interval = limit.optString("interval");
+            int count = limit.optInt("count");
+            if ("REQUEST_WEIGHT".equals(type) && "MINUTE".equals(interval)) {
+                weight.observe(count, now);
+            } else if ("ORDERS".equals(type) && "SECOND".equals(interval)) {
+                ordersShort.observe(count, now);
+            } else if ("ORDERS".equals(type) && "DAY".equals(interval)) {
+                ordersDaily.observe(count, now);
+            }
+        }
+    }
+
+    /**
+     * Binance answered with 429 or 418, nothing at all may be sent before the given time. The window is left as it
+     * is, the Retry-After already says when binance takes requests again.
+     */
+    public synchronized void blockUntil(long timeMillis) {
+        long now = clock.millis();
+        blockedUntil = Math.max(blockedUntil, timeMillis);
+        log.warn("Binance requests blocked until {}", new Date(blockedUntil));
+        if (!queue.isEmpty()) {
+            scheduleDrain(now);
+        }
+    }
+
+    public synchronized int getUsedWeight() {
+        return weight.getUsed(clock.millis());
+    }
+
+    public synchronized int getUsedOrders() {
+        return ordersShort.getUsed(clock.millis());
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    private boolean tryTake(ApiEndpoint endpoint, long now) {
+        if (now < blockedUntil) {
+            return false;
+        }
+        int reserve = endpoint.getPriority() == 0 ? 0 : rateLimitConfigProperties.getCancelReserveWeight();
+        if (!weight.fits(endpoint.getWeight(), reserve, now)) {
+            return false;
+        }
+        if (endpoint.isOrder() && (!ordersShort.fits(1, 0, now) || !ordersDaily.fits(1, 0, now))) {
+            return false;
+        }
+        if (endpoint == ApiEndpoint.KLINES && !downloads.fits(endpoint.getWeight(), 0, now)) {
+            return false;
+        }
+        weight.take(endpoint.getWeight(), now);
+        if (endpoint == ApiEndpoint.KLINES) {
+            downloads.take(endpoint.getWeight(), now);
+        }
+        if (endpoint.isOrder()) {
+            ordersShort.take(1, now);
+            ordersDaily.take(1, now);
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<CompletableFuture<Void>> permits = new ArrayList<>();
+        List<CompletableFuture<Void>> rejected = new ArrayList<>();
+        synchronized (this) {
+            drain = null;
+            drainAt = Long.MAX_VALUE;
+            long now = clock.millis();
+            List<Waiter> blocked = new ArrayList<>();
+            Waiter waiter;
+            while ((waiter = queue.poll()) != null) {
+                if (waiter.endpoint().isSheddable() && now - waiter.queuedAt() > rateLimitConfigProperties.getMaxQueueWaitMs()) {
+                    queuedOrders--;
+                    shed.get(waiter.endpoint()).increment();
+                    rejected.add(waiter.permit());
+                } else if (tryTake(waiter.endpoint(), now)) {
+                    if (waiter.endpoint().isSheddable()) {
+                        queuedOrders--;
+                    }
+                    granted.get(waiter.endpoint()).increment();
+                    permits.add(waiter.permit());
+                } else {
+                    blocked.add(waiter);
+                }
+            }
+            queue.addAll(blocked);
+            if (!queue.isEmpty()) {
+                scheduleDrain(now);
+            }
+        }
+        // Outside the lock, the permits continue with sending the request
+        rejected.forEach(permit -> permit.completeExceptionally(new RejectedExecutionException("Waited too long for budget")));
+        permits.forEach(permit -> permit.complete(null));
+    }
+
+    // Next time something may change for the queue: a window starts, the block ends or a queued order expires
+    private void scheduleDrain(long now) {
+        long at = blockedUntil > now
+                ? blockedUntil
+                : Math.min(weight.nextWindowStart(now), ordersShort.nextWindowStart(now));
+        for (Waiter waiter : queue) {
+            if (waiter.endpoint().isSheddable()) {
+                at = Math.min(at, waiter.queuedAt() + rateLimitConfigProperties.getMaxQueueWaitMs() + 1);
+            }
+        }
+        if (drain != null && drainAt <= at) {
+            return;
+        }
+        if (drain != null) {
+            drain.cancel(false);
+        }
+        drainAt = at;
+        drain = scheduler.schedule(this::drain, Math.max(0, at - now), TimeUnit.MILLISECONDS);
+    }
+
+    private record Waiter(ApiEndpoint endpoint, long sequence, long queuedAt, CompletableFuture<Void> permit) implements Comparable<Waiter> {
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = Integer.compare(endpoint.getPriority(), other.endpoint.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
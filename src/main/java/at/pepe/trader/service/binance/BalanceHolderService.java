@@ -1,10 +1,9 @@
 package at.pepe.trader.service.binance;
 
 import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.service.TradingParametersHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -17,23 +16,24 @@ import java.util.concurrent.ConcurrentHashMap;
 public class BalanceHolderService {
 
     private final TradeConfigProperties tradeConfigProperties;
+    private final TradingParametersHolder tradingParametersHolder;
 
     private Map<String, BigDecimal> freeAssets  = new ConcurrentHashMap<>();
 
     public BigDecimal getAvailableQuoteAsset() {
         BigDecimal quoteAssetAmount = freeAssets.get(tradeConfigProperties.getQuoteAsset());
         if (quoteAssetAmount == null) {
-            return new BigDecimal(tradeConfigProperties.getQuoteAssetQuantityPerTrade().doubleValue() + 1); // TODO for now just assume
+            return new BigDecimal(tradingParametersHolder.get().getQuoteAssetQuantityPerTrade().doubleValue() + 1); // TODO for now just assume
         }
         return quoteAssetAmount;
     }
 
-    public void updateAssets(JSONObject jsonObject) {
-        JSONArray assetsArray = jsonObject.getJSONArray("B");
-        for (int i = 0; i < assetsArray.length(); i++) {
-            JSONObject asset = assetsArray.getJSONObject(i);
-            freeAssets.put(asset.getString("a"), asset.getBigDecimal("f"));
-        }
+    public void updateAssets(Map<String, BigDecimal> free) {
+        freeAssets.putAll(free);
+    }
+
+    public void updateAsset(String asset, BigDecimal free) {
+        freeAssets.put(asset, free);
     }
 
 }
@@ -0,0 +1,113 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.latency.LatencyTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Requests sent over the websocket order API that did not get their response yet, keyed by the request id the
+ * response echoes. Each request completes its future with the parsed {@link OrderAck}, an error response completes
+ * it normally with the error. Requests without a response within the timeout fail with a {@link TimeoutException},
+ * all pending ones fail when the connection is lost. Either way the order may or may not exist, the user data stream
+ * stays the source of truth.
+ */
+@Slf4j
+public class InFlightRequests {
+    private final long timeoutMs;
+    private final LatencyTracker latencyTracker;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    public InFlightRequests(long timeoutMs, LatencyTracker latencyTracker) {
+        this.timeoutMs = timeoutMs;
+        this.latencyTracker = latencyTracker;
+    }
+
+    public String nextRequestId() {
+        return Long.toString(sequence.incrementAndGet());
+    }
+
+    /**
+     * Tracks the request, has to be called before it is sent. A successful response is mapped into the ack by the
+     * result mapper, so is the response of a cancel-replace that failed after the cancel went through.
+     */
+    public CompletableFuture<OrderAck> register(String requestId, String description,
+                                                BiConsumer<JSONObject, OrderAck.OrderAckBuilder> resultMapper) {
+        CompletableFuture<OrderAck> future = new CompletableFuture<>();
+        pending.put(requestId, new Pending(description, System.nanoTime(), resultMapper, future));
+        future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((ack, failure) -> {
+            if (pending.remove(requestId) != null && failure instanceof TimeoutException) {
+                log.warn("No response within {} ms to {}", timeoutMs, description);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Completes the request the response belongs to. False if it is unknown, e.g. it timed out already.
+     */
+    public boolean complete(JSONObject response) {
+        String requestId = response.optString("id", null);
+        Pending request = requestId == null ? null : pending.remove(requestId);
+        if (request == null) {
+            return false;
+        }
+        long latency = System.nanoTime() - request.sentNanos();
+        latencyTracker.record(LatencyTracker.Stage.ORDER_RESPONSE, latency);
+
+        OrderAck.OrderAckBuilder ack = OrderAck.builder()
+                .requestId(requestId)
+                .status(response.optInt("status"))
+                .latencyNanos(latency);
+        JSONObject error = response.optJSONObject("error");
+        try {
+            if (error != null) {
+                ack.errorCode(error.optInt("code"))
+                        .errorMessage(error.optString("msg"));
+                log.info("{} was rejected: {}", request.description(), error);
+                JSONObject data = error.optJSONObject("data");
+                if (data != null && data.has("cancelResult")) {
+                    request.resultMapper().accept(response, ack);
+                }
+            } else {
+                request.resultMapper().accept(response, ack);
+            }
+        } catch (RuntimeException exception) {
+            request.future().completeExceptionally(exception);
+            return true;
+        }
+        request.future().complete(ack.build());
+        return true;
+    }
+
+    /**
+     * Fails the request, e.g. because it could not be sent.
+     */
+    public void fail(String requestId, Throwable cause) {
+        Pending request = pending.get(requestId);
+        if (request != null) {
+            request.future().completeExceptionally(cause);
+        }
+    }
+
+    public void failAll(Throwable cause) {
+        pending.values().forEach(request -> request.future().completeExceptionally(cause));
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private record Pending(String description, long sentNanos, BiConsumer<JSONObject, OrderAck.OrderAckBuilder> resultMapper,
+                           CompletableFuture<OrderAck> future) {
+    }
+}
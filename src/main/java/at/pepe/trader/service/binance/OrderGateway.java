@@ -0,0 +1,26 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.model.OrderAck;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Places and cancels orders. The returned future completes with the response to the request, rejects included, and
+ * fails if none arrives in time. Fills and everything after arrive asynchronously as execution reports.
+ */
+public interface OrderGateway {
+    CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId);
+
+    CompletableFuture<OrderAck> cancelOrder(long orderId);
+
+    /**
+     * Cancels the order and places the new one in a single request. Nothing is placed if the cancel fails.
+     */
+    CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action, long clientId);
+
+    /**
+     * Cancels every open order of the symbol.
+     */
+    CompletableFuture<OrderAck> cancelAllOrders();
+}
@@ -1,9 +1,9 @@
 package at.pepe.trader.service.binance;
 
-import at.pepe.trader.config.TradeConfigProperties;
 import at.pepe.trader.mapper.OrderMapper;
 import at.pepe.trader.model.OrderPojo;
-import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.shard.ShardRegistry;
+import at.pepe.trader.service.shard.SymbolShard;
 import com.binance.connector.client.SpotClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +15,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
@@ -22,25 +23,43 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class OrderHolderService {
     private final OrderMapper orderMapper;
-    private final PositionService positionService;
-    private final TradeConfigProperties tradeConfigProperties;
+    private final ShardRegistry shardRegistry;
     private final SpotClient spotClient;
-    private Map<String, OrderPojo> openOrders = new ConcurrentHashMap<>();
+    private final ApiRateLimiter rateLimiter;
+    private static final Set<String> TERMINAL_STATUSES = Set.of("FILLED", "CANCELED", "REJECTED", "EXPIRED", "EXPIRED_IN_MATCH");
 
+    private Map<String, OrderPojo> openOrders = new ConcurrentHashMap<>();
 
+    // Orders of symbols we do not trade are none of our business
     public void updateOrderStatus(OrderPojo order) {
-        if (tradeConfigProperties.getSymbol().equals(order.getSymbol())) {
-            openOrders.put(order.getClientOrderId(), order);
-            positionService.onOrderUpdateEvent(order);
+        SymbolShard shard = shardRegistry.get(order.getSymbol());
+        if (shard != null) {
+            // Only orders still working are kept, the map would otherwise grow with every order ever placed
+            if (TERMINAL_STATUSES.contains(order.getOrderStatus())) {
+                openOrders.remove(order.getClientOrderId());
+            } else {
+                openOrders.put(order.getClientOrderId(), order);
+            }
+            shard.publishOrder(order);
         }
     }
 
     @EventListener(ApplicationReadyEvent.class)
     @Scheduled(cron = "0 */20 * * * *") // All 20min we make sure that our orders are not out of sync
-    private void requestAllOpenOrders() {
+    public void requestAllOpenOrders() {
+        shardRegistry.getSymbols().forEach(this::requestOpenOrders);
+    }
+
+    private void requestOpenOrders(String symbol) {
+        try {
+            rateLimiter.acquireBlocking(ApiEndpoint.OPEN_ORDERS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
         String openOrderResponse = spotClient.createTrade().getOpenOrders(new HashMap<>(Map.of(
                 "timestamp", System.currentTimeMillis(),
-                "symbol", tradeConfigProperties.getSymbol()
+                "symbol", symbol
         )));
 
         JSONArray orders = new JSONArray(openOrderResponse);
@@ -0,0 +1,11 @@
+package at.pepe.trader.service.binance;
+
+/**
+ * The request never left the application, e.g. because the order API was not connected. Unlike a missing response
+ * it is known that the exchange did not see it.
+ */
+public class OrderNotSentException extends IllegalStateException {
+    public OrderNotSentException(String message) {
+        super(message);
+    }
+}
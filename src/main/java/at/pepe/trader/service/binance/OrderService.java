@@ -1,90 +1,302 @@
 package at.pepe.trader.service.binance;
 
+import at.pepe.trader.config.ConnectionConfigProperties;
 import at.pepe.trader.config.TradeConfigProperties;
-import com.binance.connector.client.WebSocketApiClient;
-import lombok.RequiredArgsConstructor;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.mapper.OrderMapper;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.connection.ConnectionManager;
+import at.pepe.trader.service.connection.ConnectionOptions;
+import at.pepe.trader.service.latency.LatencyTracker;
+import com.binance.connector.client.utils.JSONParser;
+import com.binance.connector.client.utils.UrlBuilder;
+import com.binance.connector.client.utils.signaturegenerator.SignatureGenerator;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Response;
+import okhttp3.WebSocket;
+import org.json.JSONArray;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Places and cancels orders over the websocket order API. Every request carries its own id, responses are matched
+ * to it by the {@link InFlightRequests}, so any number of requests can be in flight at once. Requests are sent once
+ * the {@link ApiRateLimiter} grants them budget, a new order shed for lack of budget fails its future. The service
+ * itself trades trade.symbol, {@link #forSymbol} gives the gateway of any other symbol. The connection is a socket
+ * of our own, opened and replaced by the {@link ConnectionManager}, the requests are signed the way the binance
+ * connector signs them.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
-public class OrderService {
-
-    private final WebSocketApiClient webSocketApiClient;
-    private final TradeConfigProperties tradeConfigProperties;
-
-    private JSONObject lastAction;
-    public void createNewOrder(BigDecimal price, BigDecimal quantity, String action, long clientId) {
-        String value = price.setScale(tradeConfigProperties.getQuoteAssetScale(), RoundingMode.HALF_UP).toPlainString().strip();
-        webSocketApiClient.trade().newOrder(
-                tradeConfigProperties.getSymbol(),
-                action,
-                "LIMIT",
-                lastAction = new JSONObject(Map.of(
-                        "quantity", quantity.toPlainString(),
-                        "price", value,
-                        "newClientOrderId", clientId + "_" + action,
-                        "timeInForce", "GTC",
-                        "timestamp", Instant.now().toEpochMilli() - 10
-                ))
+public class OrderService implements OrderGateway {
+
+    private final SignatureGenerator signatureGenerator;
+    private final String apiKey;
+    private final String apiUrl;
+    private final OrderMapper orderMapper;
+    private final OrderGateway primary;
+    private final LatencyTracker latencyTracker;
+    private final InFlightRequests inFlightRequests;
+    private final ApiRateLimiter rateLimiter;
+    private final ConnectionManager connectionManager;
+    private final ConnectionConfigProperties connectionConfigProperties;
+
+    private volatile WebSocket socket; // Requests go out on the socket opened last, a closed one refuses them
+
+    @Autowired
+    public OrderService(
+            SignatureGenerator signatureGenerator,
+            TradeConfigProperties tradeConfigProperties,
+            BinanceConfigProperties binanceConfigProperties,
+            OrderMapper orderMapper,
+            LatencyTracker latencyTracker,
+            ApiRateLimiter rateLimiter,
+            ConnectionManager connectionManager,
+            ConnectionConfigProperties connectionConfigProperties
+    ) {
+        this.signatureGenerator = signatureGenerator;
+        this.apiKey = binanceConfigProperties.getApikey();
+        this.apiUrl = binanceConfigProperties.getBaseWebsocketApi();
+        this.orderMapper = orderMapper;
+        this.latencyTracker = latencyTracker;
+        this.inFlightRequests = new InFlightRequests(binanceConfigProperties.getOrderRequestTimeoutMs(), latencyTracker);
+        this.rateLimiter = rateLimiter;
+        this.connectionManager = connectionManager;
+        this.connectionConfigProperties = connectionConfigProperties;
+        this.primary = forSymbol(tradeConfigProperties);
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId) {
+        return primary.createNewOrder(pricePoints, quantity, action, clientId);
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelOrder(long orderId) {
+        return primary.cancelOrder(orderId);
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action, long clientId) {
+        return primary.cancelReplaceOrder(cancelOrderId, pricePoints, quantity, action, clientId);
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> cancelAllOrders() {
+        return primary.cancelAllOrders();
+    }
+
+    /**
+     * Orders of another symbol, sent over the same connection and rate limit budget.
+     */
+    public OrderGateway forSymbol(TradeConfigProperties symbolConfigProperties) {
+        return new SymbolOrderGateway(symbolConfigProperties.getSymbol(), new PriceScale(symbolConfigProperties.getQuoteAssetScale()));
+    }
+
+    private class SymbolOrderGateway implements OrderGateway {
+        private final String symbol;
+        private final PriceScale priceScale;
+
+        private SymbolOrderGateway(String symbol, PriceScale priceScale) {
+            this.symbol = symbol;
+            this.priceScale = priceScale;
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId) {
+            // We only ever sell to close a filled position, that sell must not be shed
+            ApiEndpoint endpoint = "SELL".equals(action) ? ApiEndpoint.CLOSE_ORDER : ApiEndpoint.NEW_ORDER;
+            return rateLimiter.acquire(endpoint)
+                    .thenCompose(permit -> sendNewOrder(symbol, priceScale.format(pricePoints), quantity, action, clientId));
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelOrder(long orderId) {
+            return rateLimiter.acquire(ApiEndpoint.CANCEL_ORDER)
+                    .thenCompose(permit -> sendCancelOrder(symbol, orderId));
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action, long clientId) {
+            return rateLimiter.acquire(ApiEndpoint.CANCEL_REPLACE)
+                    .thenCompose(permit -> sendCancelReplaceOrder(symbol, cancelOrderId, priceScale.format(pricePoints), quantity, action, clientId));
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelAllOrders() {
+            return rateLimiter.acquire(ApiEndpoint.CANCEL_ALL)
+                    .thenCompose(permit -> sendCancelAllOrders(symbol));
+        }
+    }
+
+    private CompletableFuture<OrderAck> sendNewOrder(String symbol, String value, BigDecimal quantity, String action, long clientId) {
+        long start = System.nanoTime();
+        String clientOrderId = clientId + "_" + action;
+        String requestId = inFlightRequests.nextRequestId();
+        CompletableFuture<OrderAck> ack = inFlightRequests.register(
+                requestId,
+                String.format("%s %s %s at %s (%s)", action, quantity.toPlainString(), symbol, value, clientOrderId),
+                this::mapOrder
         );
+        latencyTracker.orderSent(clientOrderId, start);
+        sendSigned(requestId, "order.place", new JSONObject(Map.of(
+                "symbol", symbol,
+                "side", action,
+                "type", "LIMIT",
+                "quantity", quantity.toPlainString(),
+                "price", value,
+                "newClientOrderId", clientOrderId,
+                "newOrderRespType", "RESULT",
+                "timeInForce", "GTC",
+                "timestamp", Instant.now().toEpochMilli() - 10
+        )));
+        latencyTracker.recordSince(LatencyTracker.Stage.ORDER_SEND, start);
+        return ack;
+    }
+
+    private CompletableFuture<OrderAck> sendCancelOrder(String symbol, long orderId) {
+        String requestId = inFlightRequests.nextRequestId();
+        CompletableFuture<OrderAck> ack = inFlightRequests.register(requestId, "Cancel of " + symbol + " order " + orderId, this::mapOrder);
+        sendSigned(requestId, "order.cancel", new JSONObject(Map.of(
+                "symbol", symbol,
+                "orderId", orderId,
+                "timestamp", Instant.now().toEpochMilli() - 10
+        )));
+        return ack;
     }
 
-    public void cancelOrder(long orderId) {
-        webSocketApiClient.trade().cancelOrder(
-                tradeConfigProperties.getSymbol(),
-                lastAction = new JSONObject(Map.of(
-                        "orderId", orderId,
-                        "timestamp", Instant.now().toEpochMilli() - 10
-                ))
+    // STOP_ON_FAILURE: nothing is placed if the cancel fails, the old order most likely got filled
+    private CompletableFuture<OrderAck> sendCancelReplaceOrder(String symbol, long cancelOrderId, String value, BigDecimal quantity, String action, long clientId) {
+        long start = System.nanoTime();
+        String clientOrderId = clientId + "_" + action;
+        String requestId = inFlightRequests.nextRequestId();
+        CompletableFuture<OrderAck> ack = inFlightRequests.register(
+                requestId,
+                String.format("Replace of %s order %d by %s %s at %s (%s)", symbol, cancelOrderId, action, quantity.toPlainString(), value, clientOrderId),
+                this::mapCancelReplace
         );
+        latencyTracker.orderSent(clientOrderId, start);
+        sendSigned(requestId, "order.cancelReplace", new JSONObject(Map.ofEntries(
+                Map.entry("symbol", symbol),
+                Map.entry("cancelReplaceMode", "STOP_ON_FAILURE"),
+                Map.entry("side", action),
+                Map.entry("type", "LIMIT"),
+                Map.entry("cancelOrderId", cancelOrderId),
+                Map.entry("quantity", quantity.toPlainString()),
+                Map.entry("price", value),
+                Map.entry("newClientOrderId", clientOrderId),
+                Map.entry("newOrderRespType", "RESULT"),
+                Map.entry("timeInForce", "GTC"),
+                Map.entry("timestamp", Instant.now().toEpochMilli() - 10)
+        )));
+        latencyTracker.recordSince(LatencyTracker.Stage.ORDER_SEND, start);
+        return ack;
+    }
+
+    private CompletableFuture<OrderAck> sendCancelAllOrders(String symbol) {
+        String requestId = inFlightRequests.nextRequestId();
+        CompletableFuture<OrderAck> ack = inFlightRequests.register(requestId, "Cancel of all open " + symbol + " orders", this::mapCancelAll);
+        sendSigned(requestId, "openOrders.cancelAll", new JSONObject(Map.of(
+                "symbol", symbol,
+                "timestamp", Instant.now().toEpochMilli() - 10
+        )));
+        return ack;
+    }
+
+    private void mapOrder(JSONObject response, OrderAck.OrderAckBuilder ack) {
+        ack.order(orderMapper.mapFromApiResult(response.getJSONObject("result")));
+    }
+
+    // The result of a partially failed cancel-replace is in the error data
+    private void mapCancelReplace(JSONObject response, OrderAck.OrderAckBuilder ack) {
+        JSONObject result = response.has("result")
+                ? response.getJSONObject("result")
+                : response.getJSONObject("error").getJSONObject("data");
+        if ("SUCCESS".equals(result.optString("cancelResult"))) {
+            ack.cancelledOrders(List.of(orderMapper.mapFromApiResult(result.getJSONObject("cancelResponse"))));
+        }
+        if ("SUCCESS".equals(result.optString("newOrderResult"))) {
+            ack.order(orderMapper.mapFromApiResult(result.getJSONObject("newOrderResponse")));
+        }
+    }
+
+    // Order lists would come with their orders nested, we never place any
+    private void mapCancelAll(JSONObject response, OrderAck.OrderAckBuilder ack) {
+        JSONArray result = response.getJSONArray("result");
+        List<OrderPojo> cancelled = new ArrayList<>(result.length());
+        for (int i = 0; i < result.length(); i++) {
+            JSONObject order = result.getJSONObject(i);
+            if (order.has("orderId")) {
+                cancelled.add(orderMapper.mapFromApiResult(order));
+            }
+        }
+        ack.cancelledOrders(cancelled);
     }
 
+    public int getRequestsInFlight() {
+        return inFlightRequests.size();
+    }
 
+    // Only rotated while no request is in flight, their responses would be lost with the old connection
     @EventListener(ApplicationReadyEvent.class)
     public void openApiStream() {
-        try {
-            webSocketApiClient.close();
-        } catch (Exception e){}
-
-        webSocketApiClient.connect(
-                message -> {
-                },
-                this::onApiResponseEvent,
-                (i, m) -> {
-                },
-                this::websocketClosureEvent,
-                this::websocketFailureEvent
+        connectionManager.open(
+                ConnectionOptions.builder()
+                        .name("order-api")
+                        .onMessage(this::onApiResponseEvent)
+                        .onDisconnected(() -> inFlightRequests.failAll(new IllegalStateException("Order API connection lost")))
+                        .heartbeat(this::sendPing)
+                        .heartbeatIntervalMs(connectionConfigProperties.getApiHeartbeatMs())
+                        .silenceTimeoutMs(connectionConfigProperties.getApiSilenceTimeoutMs())
+                        .canRotate(() -> inFlightRequests.size() == 0)
+                        .build(),
+                connectionManager.webSocket(() -> apiUrl, webSocket -> socket = webSocket)
         );
     }
 
-    private void onApiResponseEvent(String message) {
-        JSONObject jsonObject = new JSONObject(message);
-        if (jsonObject.getInt("status") > 300) {
-            log.info("Probable cause: {}", lastAction);
-            log.info(message);
+    private void sendPing() {
+        rateLimiter.acquire(ApiEndpoint.PING).thenRun(() -> send(JSONParser.buildJSONString(inFlightRequests.nextRequestId(), "ping", new JSONObject())));
+    }
+
+    // Signed like the binance connector signs: the parameters sorted by name and joined as a query string
+    private void sendSigned(String requestId, String method, JSONObject params) {
+        params.put("apiKey", apiKey);
+        params.put("signature", signatureGenerator.getSignature(UrlBuilder.joinQueryParameters(JSONParser.sortJSONObject(params))));
+        if (!send(JSONParser.buildJSONString(requestId, method, params))) {
+            inFlightRequests.fail(requestId, new OrderNotSentException("Order API not connected"));
         }
-        log.debug(message);
     }
 
-    private void websocketFailureEvent(Throwable throwable, Response response) {
-        log.warn(response.message(), throwable);
-        openApiStream();
+    private boolean send(String message) {
+        WebSocket webSocket = socket;
+        return webSocket != null && webSocket.send(message);
     }
 
-    private void websocketClosureEvent(int i, String message) {
-        log.warn(message);
-        openApiStream();
+    private void onApiResponseEvent(String message) {
+        JSONObject jsonObject = new JSONObject(message);
+        JSONArray rateLimits = jsonObject.optJSONArray("rateLimits");
+        if (rateLimits != null) {
+            rateLimiter.observeRateLimits(rateLimits);
+        }
+        int status = jsonObject.optInt("status");
+        if (status == 429 || status == 418) {
+            JSONObject data = jsonObject.optJSONObject("error", new JSONObject()).optJSONObject("data");
+            rateLimiter.blockUntil(data != null && data.has("retryAfter") ? data.getLong("retryAfter") : System.currentTimeMillis() + 60_000);
+        }
+        if (!inFlightRequests.complete(jsonObject) && status > 300) {
+            log.info("Error response to an unknown request: {}", message);
+        }
+        log.debug(message);
     }
 }
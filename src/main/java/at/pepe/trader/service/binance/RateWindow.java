@@ -0,0 +1,63 @@
+package at.pepe.trader.service.binance;
+
+/**
+ * Count of one binance rate limit. Binance counts per calendar window (a minute starts at :00), so the bucket is
+ * refilled completely at the start of each window instead of continuously. Not thread safe.
+ */
+class RateWindow {
+    private final int limit;
+    private final long windowMillis;
+
+    private long window = Long.MIN_VALUE;
+    private int used;
+
+    RateWindow(int limit, long windowMillis) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1 but was " + limit);
+        }
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Whether the count fits while leaving reserve unused.
+     */
+    boolean fits(int count, int reserve, long now) {
+        roll(now);
+        return used + Math.min(count, limit) <= limit - reserve;
+    }
+
+    void take(int count, long now) {
+        roll(now);
+        used += count;
+    }
+
+    /**
+     * Takes over the count binance reported for the current window, it includes requests made elsewhere.
+     */
+    void observe(int count, long now) {
+        roll(now);
+        used = Math.max(used, count);
+    }
+
+    long nextWindowStart(long now) {
+        return (Math.floorDiv(now, windowMillis) + 1) * windowMillis;
+    }
+
+    int getUsed(long now) {
+        roll(now);
+        return used;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    private void roll(long now) {
+        long current = Math.floorDiv(now, windowMillis);
+        if (current > window) {
+            window = current;
+            used = 0;
+        }
+    }
+}
@@ -1,66 +1,71 @@
 package at.pepe.trader.service.binance;
 
-import at.pepe.trader.config.TradeConfigProperties;
-import at.pepe.trader.mapper.CandlestickMapper;
-import at.pepe.trader.service.TradingService;
-import at.pepe.trader.service.candle.BarSeriesHolderService;
-import com.binance.connector.client.WebSocketStreamClient;
+import at.pepe.trader.mapper.KlineMessageParser;
+import at.pepe.trader.mapper.KlineUpdate;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.connection.ConnectionManager;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.shard.ShardRegistry;
+import at.pepe.trader.service.shard.SymbolShard;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Response;
-import org.json.JSONObject;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.BaseBar;
 
-import java.util.Optional;
+import java.util.List;
 
+/**
+ * Receives the 1s klines of all traded symbols over combined streams and hands each to the shard of its symbol.
+ * The bars of every symbol are checked for a gap once a lost connection is back.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SymbolPriceMonitorService {
 
-    private final CandlestickMapper candlestickMapper;
-    private final TradeConfigProperties tradeConfigProperties;
-    private final WebSocketStreamClient webSocketStreamClient;
-    private final BarSeriesHolderService barSeriesHolderService;
-    private final TradingService tradingService;
-
-    private int streamId;
+    private final ConnectionManager connectionManager;
+    private final ShardRegistry shardRegistry;
+    private final LatencyTracker latencyTracker;
+    private final ThreadLocal<KlineMessageParser> parser = ThreadLocal.withInitial(KlineMessageParser::new);
 
     @EventListener(ApplicationReadyEvent.class)
     private void openWebsocketStream() {
-        webSocketStreamClient.closeConnection(streamId);
-        streamId = webSocketStreamClient.klineStream(
-                tradeConfigProperties.getSymbol().toLowerCase(),
-                "1s",
-                msg -> {},
-                this::priceUpdateEvent,
-                (i, m)-> {},
-                this::websocketClosureEvent,
-                this::websocketFailureEvent
-        );
+        List<String> streams = shardRegistry.getSymbols().stream().map(symbol -> symbol.toLowerCase() + "@kline_1s").toList();
+        connectionManager.openMarketStreams("klines", streams, this::priceUpdateEvent,
+                () -> shardRegistry.getShards().forEach(SymbolShard::checkForGap));
     }
 
-    private void priceUpdateEvent(String message) {
-        JSONObject jsonKline = new JSONObject(message).getJSONObject("k");
-        BaseBar secondKline = candlestickMapper.map(jsonKline);
+    void priceUpdateEvent(String message) {
+        long receivedNanos = System.nanoTime();
         try {
-            barSeriesHolderService.updateBarSeries(secondKline);
-            tradingService.performTrade();
+            KlineUpdate kline = parser.get().parse(message);
+            if (kline == null) {
+                return;
+            }
+            SymbolShard shard = findShard(kline);
+            if (shard == null) {
+                return;
+            }
+            PriceScale priceScale = shard.getPriceScale();
+            long open = kline.getOpen(priceScale);
+            long high = kline.getHigh(priceScale);
+            long low = kline.getLow(priceScale);
+            long close = kline.getClose(priceScale);
+            latencyTracker.recordSince(LatencyTracker.Stage.PARSE, receivedNanos);
+            shard.publishKline(kline.getCloseTime(), open, high, low, close, kline.getVolume(), receivedNanos);
         } catch (RuntimeException exception) {
             log.warn("Failure on priceUpdateEvent: ", exception);
         }
     }
 
-    private void websocketClosureEvent(int i, String message) {
-        log.warn(message);
-        openWebsocketStream();
-    }
-
-    private void websocketFailureEvent(Throwable throwable, Response response) {
-        log.warn(Optional.ofNullable(response).map(Response::message).orElse("Websocket Failure for price update: ") , throwable);
-        openWebsocketStream();
+    // A handful of shards, comparing in place beats hashing a new String
+    private SymbolShard findShard(KlineUpdate kline) {
+        for (SymbolShard shard : shardRegistry.getShards()) {
+            if (kline.isSymbol(shard.getTradeConfigProperties().getSymbol())) {
+                return shard;
+            }
+        }
+        return null;
     }
 }
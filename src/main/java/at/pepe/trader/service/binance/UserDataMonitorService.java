@@ -1,83 +1,118 @@
 package at.pepe.trader.service.binance;
 
-import at.pepe.trader.mapper.OrderMapper;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.mapper.UserDataMessageParser;
 import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.connection.ConnectionManager;
+import at.pepe.trader.service.connection.ConnectionOptions;
+import at.pepe.trader.service.journal.ExecutionReportJournalService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.shard.ShardRegistry;
 import com.binance.connector.client.SpotClient;
-import com.binance.connector.client.WebSocketStreamClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Response;
 import org.json.JSONObject;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UserDataMonitorService {
-    private final OrderMapper orderMapper;
     private final OrderHolderService orderHolderService;
     private final SpotClient spotClient;
-    private final WebSocketStreamClient webSocketStreamClient;
-    private final BalanceHolderService balanceHolderService;
+    private final ConnectionManager connectionManager;
+    private final BinanceConfigProperties binanceConfigProperties;
+    private final ExecutionReportJournalService executionReportJournalService;
+    private final ShardRegistry shardRegistry;
+    private final LatencyTracker latencyTracker;
+    private final ApiRateLimiter rateLimiter;
 
-    private String listenKey;
-    private int websocketId;
+    private final ThreadLocal<UserDataMessageParser> parser = ThreadLocal.withInitial(UserDataMessageParser::new);
 
+    private volatile String listenKey;
+    private boolean connectedBefore;
+
+    // Silence is normal without order updates, a dead connection is found by the websocket pings
     @EventListener(ApplicationReadyEvent.class)
     public void openUserDataStream() {
-        webSocketStreamClient.closeConnection(websocketId);
-        listenKey = new JSONObject(spotClient.createUserData().createListenKey()).getString("listenKey");
-        websocketId = webSocketStreamClient.listenUserStream(
-                listenKey,
-                message -> {},
-                this::userDataUpdateEvent,
-                (i, m)-> {},
-                this::websocketClosureEvent,
-                this::websocketFailureEvent
+        connectionManager.open(
+                ConnectionOptions.builder()
+                        .name("user-data")
+                        .onMessage(this::userDataUpdateEvent)
+                        .onConnected(this::onConnected)
+                        .onDisconnected(this::invalidateListenKey)
+                        .build(),
+                connectionManager.webSocket(this::createListenKeyUrl)
         );
     }
 
-    private void userDataUpdateEvent(String message) {
-        JSONObject jsonObject = new JSONObject(message);
-        switch (jsonObject.getString("e")) {
-            case "outboundAccountPosition":
-                balanceHolderService.updateAssets(jsonObject);
+    private String createListenKeyUrl() {
+        acquire();
+        listenKey = new JSONObject(spotClient.createUserData().createListenKey()).getString("listenKey");
+        return binanceConfigProperties.getBaseWebsocket() + "/ws/" + listenKey;
+    }
+
+    // Order updates sent while the stream was down are lost, the open orders are synced instead
+    private void onConnected() {
+        if (connectedBefore) {
+            orderHolderService.requestAllOpenOrders();
+        }
+        connectedBefore = true;
+    }
+
+    void userDataUpdateEvent(String message) {
+        switch (parser.get().parse(message)) {
+            case ACCOUNT_POSITION:
+                Map<String, BigDecimal> balances = Map.copyOf(parser.get().getBalances());
+                shardRegistry.getShards().forEach(shard -> shard.updateBalances(balances));
                 break;
-            case "executionReport":
-                OrderPojo order = orderMapper.mapFromStream(jsonObject);
+            case EXECUTION_REPORT:
+                OrderPojo order = parser.get().getOrder();
+                // The first report of an order acknowledges it, an immediate fill or a reject has no NEW one
+                latencyTracker.orderAcknowledged(order.getClientOrderId());
+                executionReportJournalService.record(order);
                 orderHolderService.updateOrderStatus(order);
                 break;
+            default:
+                break;
         }
     }
 
 
     @Scheduled(cron = "1 */20 * * * *")
     private void sendKeepAlive() {
+        if (listenKey == null) {
+            return;
+        }
+        acquire();
         spotClient.createUserData().extendListenKey(Map.of("listenKey", listenKey));
     }
 
     private void invalidateListenKey() {
+        String invalidated = listenKey;
+        listenKey = null;
+        if (invalidated == null) {
+            return;
+        }
         try {
-            spotClient.createUserData().closeListenKey(Map.of("listenKey", listenKey));
+            acquire();
+            spotClient.createUserData().closeListenKey(Map.of("listenKey", invalidated));
         } catch (RuntimeException exception) {
             log.error("Failed to delete userData listenKey.", exception);
         }
     }
 
-    private void websocketFailureEvent(Throwable throwable, Response response) {
-        log.warn(response.message(), throwable);
-        invalidateListenKey();
-        openUserDataStream();
-    }
-
-    private void websocketClosureEvent(int i, String message) {
-        log.warn(message);
-        invalidateListenKey();
-        openUserDataStream();
+    private void acquire() {
+        try {
+            rateLimiter.acquireBlocking(ApiEndpoint.USER_DATA_STREAM);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,7 @@
+package at.pepe.trader.service.candle;
+
+/**
+ * 1s and 1m klines restored for a time range, both in close time order.
+ */
+public record BarHistory(KlineBatch seconds, KlineBatch minutes, int localSeconds, int fetchedPages) {
+}
@@ -0,0 +1,159 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.config.HistoryConfigProperties;
+import at.pepe.trader.service.journal.KlineJournalService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Restores 1s and 1m klines of a time range. The kline journal is read first, only what it is missing gets downloaded
+ * by {@link CandleDataAccessService}: the tail since the last journalled kline as 1s klines (up to
+ * {@code history.max-tail-seconds}), every older hole as 1m klines. Minute klines are aggregated from the 1s klines
+ * wherever no 1m kline was fetched.
+ */
+@Slf4j
+@Service
+public class BarHistoryService {
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60_000;
+
+    private final HistoryConfigProperties historyConfigProperties;
+    private final CandleDataAccessService candleDataAccessService;
+    private final KlineJournalService klineJournalService;
+    private final ExecutorService loader;
+
+    @Autowired
+    public BarHistoryService(
+            HistoryConfigProperties historyConfigProperties,
+            CandleDataAccessService candleDataAccessService,
+            KlineJournalService klineJournalService
+    ) {
+        this.historyConfigProperties = historyConfigProperties;
+        this.candleDataAccessService = candleDataAccessService;
+        this.klineJournalService = klineJournalService;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bar-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Klines closing between the start of the minute of fromMillis and toMillis, loaded in the background.
+     */
+    public CompletableFuture<BarHistory> load(long fromMillis, long toMillis) {
+        return CompletableFuture.supplyAsync(() -> loadNow(fromMillis, toMillis), loader);
+    }
+
+    BarHistory loadNow(long fromMillis, long toMillis) {
+        long from = Math.floorDiv(fromMillis, MINUTE) * MINUTE;
+        KlineBatch seconds = new KlineBatch();
+        try {
+            klineJournalService.reader().replay(from, toMillis, seconds);
+        } catch (IOException exception) {
+            log.warn("Failed to read the kline journal, fetching everything from binance.", exception);
+            seconds.clear();
+        }
+        int localSeconds = seconds.size();
+
+        // The last journalled kline is fetched again as it might not have been final
+        long tailFrom = Math.max(
+                seconds.isEmpty() ? from : seconds.getLastCloseTime() + 1 - SECOND,
+                toMillis - historyConfigProperties.getMaxTailSeconds() * SECOND
+        );
+        CompletableFuture<KlineBatch> tail = fetch("1s", tailFrom, toMillis);
+        int requests = CandleDataAccessService.pages("1s", tailFrom, toMillis);
+        List<CompletableFuture<KlineBatch>> holes = new ArrayList<>();
+        long hole = historyConfigProperties.getMinHoleSeconds() * SECOND;
+        long previous = from - 1;
+        for (int i = 0; i < seconds.size(); i++) {
+            long closeTime = seconds.getCloseTime(i);
+            if (closeTime - previous > hole) {
+                holes.add(fetch("1m", previous, closeTime));
+                requests += CandleDataAccessService.pages("1m", previous, closeTime);
+            }
+            previous = closeTime;
+        }
+        if (tailFrom - previous > hole) {
+            holes.add(fetch("1m", previous, tailFrom));
+            requests += CandleDataAccessService.pages("1m", previous, tailFrom);
+        }
+
+        join(List.of(tail)).replay(seconds);
+        KlineBatch fetchedMinutes = join(holes);
+        return new BarHistory(seconds, aggregateMinutes(seconds, fetchedMinutes), localSeconds, requests);
+    }
+
+    // Merges fetched 1m klines with 1m klines built from the 1s klines, a fetched kline wins over the 1s klines of its minute.
+    static KlineBatch aggregateMinutes(KlineBatch seconds, KlineBatch fetchedMinutes) {
+        KlineBatch minutes = new KlineBatch(seconds.size() / 60 + fetchedMinutes.size() + 1);
+        int i = 0;
+        int j = 0;
+        while (i < fetchedMinutes.size() || j < seconds.size()) {
+            long fetchedEnd = i < fetchedMinutes.size() ? fetchedMinutes.getCloseTime(i) : Long.MAX_VALUE;
+            long secondsEnd = j < seconds.size() ? minuteCloseTime(seconds.getCloseTime(j)) : Long.MAX_VALUE;
+            if (fetchedEnd <= secondsEnd) {
+                minutes.onKline(fetchedEnd, fetchedMinutes.getOpen(i), fetchedMinutes.getHigh(i),
+                        fetchedMinutes.getLow(i), fetchedMinutes.getClose(i), fetchedMinutes.getVolume(i));
+                i++;
+                while (j < seconds.size() && minuteCloseTime(seconds.getCloseTime(j)) <= fetchedEnd) {
+                    j++;
+                }
+                continue;
+            }
+            long high = seconds.getHigh(j);
+            long low = seconds.getLow(j);
+            double volume = 0;
+            int k = j;
+            for (; k < seconds.size() && minuteCloseTime(seconds.getCloseTime(k)) == secondsEnd; k++) {
+                high = Math.max(high, seconds.getHigh(k));
+                low = Math.min(low, seconds.getLow(k));
+                volume += seconds.getVolume(k);
+            }
+            minutes.onKline(secondsEnd, seconds.getOpen(j), high, low, seconds.getClose(k - 1), volume);
+            j = k;
+        }
+        return minutes;
+    }
+
+    // Close time of the minute kline the time falls into, binance closes a kline one milli before the next opens.
+    static long minuteCloseTime(long millis) {
+        return Math.floorDiv(millis, MINUTE) * MINUTE + MINUTE - 1;
+    }
+
+    private CompletableFuture<KlineBatch> fetch(String interval, long from, long to) {
+        if (to < from) {
+            return CompletableFuture.completedFuture(new KlineBatch(0));
+        }
+        return candleDataAccessService.download(interval, from, to);
+    }
+
+    // A failed download leaves a hole instead of failing the whole history
+    private static KlineBatch join(List<CompletableFuture<KlineBatch>> downloads) {
+        KlineBatch result = new KlineBatch();
+        for (CompletableFuture<KlineBatch> download : downloads) {
+            try {
+                download.join().replay(result);
+            } catch (CompletionException | CancellationException exception) {
+                log.warn("Failed to fetch klines, the bars will have a hole.", exception);
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+}
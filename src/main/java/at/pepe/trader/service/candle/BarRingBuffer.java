@@ -0,0 +1,247 @@
+package at.pepe.trader.service.candle;
+
+import java.time.Duration;
+
+/**
+ * Columnar ring buffer of bars backed by primitive arrays, one slot per bar. Prices are stored as points
+ * (see {@link at.pepe.trader.model.PriceScale}), volume as double.
+ * Indices are absolute (like ta4j): the first bar ever appended has index 0, once the capacity is exceeded
+ * the oldest bars are overwritten and {@link #getBeginIndex()} moves forward.
+ * Writes are expected from a single thread at a time, readers only see bars up to the published end index.
+ * {@link #resize(int)} swaps the columns, it may only be called by the thread that also reads.
+ */
+public class BarRingBuffer {
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final String name;
+    private final Duration timePeriod;
+    private int capacity;
+
+    private long[] endTime; // epoch millis
+    private long[] open;
+    private long[] high;
+    private long[] low;
+    private long[] close;
+    private double[] volume;
+
+    private volatile long endIndex = -1;
+
+    public BarRingBuffer(String name, Duration timePeriod, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        }
+        this.name = name;
+        this.timePeriod = timePeriod;
+        this.capacity = capacity;
+        this.endTime = new long[capacity];
+        this.open = new long[capacity];
+        this.high = new long[capacity];
+        this.low = new long[capacity];
+        this.close = new long[capacity];
+        this.volume = new double[capacity];
+    }
+
+    public void append(long endTimeMillis, long openPrice, long highPrice, long lowPrice, long closePrice, double barVolume) {
+        long index = endIndex + 1;
+        int slot = slot(index);
+        endTime[slot] = endTimeMillis;
+        open[slot] = openPrice;
+        high[slot] = highPrice;
+        low[slot] = lowPrice;
+        close[slot] = closePrice;
+        volume[slot] = barVolume;
+        endIndex = index;
+    }
+
+    /**
+     * Overwrites the last bar, used when a complete version of a bar that was built from updates becomes available.
+     */
+    public void replaceLast(long openPrice, long highPrice, long lowPrice, long closePrice, double barVolume) {
+        if (isEmpty()) {
+            throw new IllegalStateException("No bar to replace in " + name);
+        }
+        replaceLast(endTime[slot(endIndex)], openPrice, highPrice, lowPrice, closePrice, barVolume);
+    }
+
+    /**
+     * Overwrites the last bar including its end time, like ta4j's addBar with replace.
+     */
+    public void replaceLast(long endTimeMillis, long openPrice, long highPrice, long lowPrice, long closePrice, double barVolume) {
+        if (isEmpty()) {
+            throw new IllegalStateException("No bar to replace in " + name);
+        }
+        int slot = slot(endIndex);
+        endTime[slot] = endTimeMillis;
+        open[slot] = openPrice;
+        high[slot] = highPrice;
+        low[slot] = lowPrice;
+        close[slot] = closePrice;
+        volume[slot] = barVolume;
+    }
+
+    /**
+     * Same semantic as ta4j's Bar#addPrice: moves the close and widens high/low of the last bar.
+     */
+    public void updateLast(long price) {
+        if (isEmpty()) {
+            throw new IllegalStateException("No bar to update in " + name);
+        }
+        update(endIndex, price);
+    }
+
+    /**
+     * {@link #updateLast(long)} for any bar still in the buffer.
+     */
+    public void update(long index, long price) {
+        int slot = checkedSlot(index);
+        close[slot] = price;
+        if (open[slot] == NO_PRICE) {
+            open[slot] = price;
+            high[slot] = price;
+            low[slot] = price;
+        } else if (price > high[slot]) {
+            high[slot] = price;
+        }
+        if (price < low[slot]) {
+            low[slot] = price;
+        }
+    }
+
+    /**
+     * Like {@link #updateLast(long)}, additionally widens high/low to the extremes seen by the update, e.g. the high
+     * and low of a kline update that replaces earlier updates of the same kline.
+     */
+    public void updateLast(long highPrice, long lowPrice, long closePrice) {
+        updateLast(closePrice);
+        int slot = slot(endIndex);
+        if (highPrice > high[slot]) {
+            high[slot] = highPrice;
+        }
+        if (lowPrice < low[slot]) {
+            low[slot] = lowPrice;
+        }
+    }
+
+    public void addVolume(double tradeVolume) {
+        if (isEmpty()) {
+            throw new IllegalStateException("No bar to update in " + name);
+        }
+        addVolume(endIndex, tradeVolume);
+    }
+
+    public void addVolume(long index, double tradeVolume) {
+        volume[checkedSlot(index)] += tradeVolume;
+    }
+
+    /**
+     * Changes the capacity, the newest bars that fit are kept at their indices.
+     */
+    public void resize(int newCapacity) {
+        if (newCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + newCapacity);
+        }
+        if (newCapacity == capacity) {
+            return;
+        }
+        long[] newEndTime = new long[newCapacity];
+        long[] newOpen = new long[newCapacity];
+        long[] newHigh = new long[newCapacity];
+        long[] newLow = new long[newCapacity];
+        long[] newClose = new long[newCapacity];
+        double[] newVolume = new double[newCapacity];
+        long end = endIndex;
+        for (long index = Math.max(getBeginIndex(), end - newCapacity + 1); index <= end && index >= 0; index++) {
+            int from = slot(index);
+            int to = (int) (index % newCapacity);
+            newEndTime[to] = endTime[from];
+            newOpen[to] = open[from];
+            newHigh[to] = high[from];
+            newLow[to] = low[from];
+            newClose[to] = close[from];
+            newVolume[to] = volume[from];
+        }
+        endTime = newEndTime;
+        open = newOpen;
+        high = newHigh;
+        low = newLow;
+        close = newClose;
+        volume = newVolume;
+        capacity = newCapacity;
+    }
+
+    public void clear() {
+        endIndex = -1;
+    }
+
+    public boolean isEmpty() {
+        return endIndex < 0;
+    }
+
+    public int getBarCount() {
+        return (int) Math.min(endIndex + 1, capacity);
+    }
+
+    public long getEndIndex() {
+        return endIndex;
+    }
+
+    public long getBeginIndex() {
+        return isEmpty() ? 0 : Math.max(0, endIndex - capacity + 1);
+    }
+
+    public long getEndTime(long index) {
+        return endTime[checkedSlot(index)];
+    }
+
+    public long getOpen(long index) {
+        return open[checkedSlot(index)];
+    }
+
+    public long getHigh(long index) {
+        return high[checkedSlot(index)];
+    }
+
+    public long getLow(long index) {
+        return low[checkedSlot(index)];
+    }
+
+    public long getClose(long index) {
+        return close[checkedSlot(index)];
+    }
+
+    public double getVolume(long index) {
+        return volume[checkedSlot(index)];
+    }
+
+    public long getLastEndTime() {
+        return getEndTime(endIndex);
+    }
+
+    public long getLastClose() {
+        return getClose(endIndex);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getTimePeriod() {
+        return timePeriod;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int slot(long index) {
+        return (int) (index % capacity);
+    }
+
+    private int checkedSlot(long index) {
+        long end = endIndex;
+        if (index < 0 || index > end || index <= end - capacity) {
+            throw new IndexOutOfBoundsException("Bar " + index + " is not available in " + name);
+        }
+        return slot(index);
+    }
+}
@@ -1,98 +1,203 @@
 package at.pepe.trader.service.candle;
 
 import at.pepe.trader.config.TradeConfigProperties;
-import at.pepe.trader.mapper.CandlestickMapper;
-import com.binance.connector.client.WebSocketStreamClient;
-import lombok.RequiredArgsConstructor;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.indicator.IndicatorService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.ta4j.core.BarSeries;
 import org.ta4j.core.BaseBar;
-import org.ta4j.core.BaseBarSeries;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.List;
-
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the 1s and 1m bars. On startup the history is restored in the background by {@link BarHistoryService},
+ * klines arriving meanwhile, even before the restore started, are buffered and applied once it is in. The history
+ * is applied on the strategy thread like every kline. After the kline stream reconnected the bars missed in between
+ * are fetched the same way before the next kline is applied.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class BarSeriesHolderService {
 
-    private final CandlestickMapper candlestickMapper;
     private final TradeConfigProperties tradeConfigProperties;
-    private final CandleDataAccessService candleDataAccessService;
+    private final BarHistoryService barHistoryService;
+    private final IndicatorService indicatorService;
+    private final PriceScale priceScale;
+    private final KlineBatch pending = new KlineBatch(64);
 
 
+    private BarRingBuffer minuteBars;
+    private BarRingBuffer secondBars;
     private BarSeries minuteSeries;
     private BarSeries secondSeries;
+    private boolean backfilling = true; // Until the history is in, cleared right away when replaying
+    private boolean gapCheck;
+    private Executor strategyExecutor = Runnable::run; // The history is applied here, the strategy thread once it runs
+
+    @Autowired
+    public BarSeriesHolderService(
+            TradeConfigProperties tradeConfigProperties,
+            BarHistoryService barHistoryService,
+            IndicatorService indicatorService
+    ) {
+        this.tradeConfigProperties = tradeConfigProperties;
+        this.barHistoryService = barHistoryService;
+        this.indicatorService = indicatorService;
+        this.priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        createBuffers();
+    }
+
+    /**
+     * The executor the loaded history is handed to, it has to run it on the strategy thread.
+     */
+    public void setStrategyExecutor(Executor strategyExecutor) {
+        this.strategyExecutor = strategyExecutor;
+    }
 
     @EventListener(ApplicationReadyEvent.class)
-    private void initialSetup() {
-        minuteSeries = new BaseBarSeries("1m");
-        secondSeries = new BaseBarSeries("1s");
-        requestCandles();
-    }
-
-    public synchronized void updateBarSeries(BaseBar baseBar) {
-        if (secondSeries == null ||
-                minuteSeries == null ||
-                minuteSeries.getEndIndex() == -1 ||
-                secondSeries.getEndIndex() == -1
-        ) {
-            return;
+    public synchronized void initialSetup() {
+        long now = Instant.now().toEpochMilli();
+        backfill(Math.min(
+                now - tradeConfigProperties.getSecondBarCapacity() * 1000L,
+                now - tradeConfigProperties.getMinuteBarCapacity() * 60_000L
+        ), now);
+    }
+
+    /**
+     * The next kline is checked for a gap to the last bar, called on the strategy thread after the kline stream
+     * reconnected. The missing bars are applied and the minute bands re-seeded on the strategy thread as well, klines
+     * are held and no decision is taken until then.
+     */
+    public synchronized void checkForGap() {
+        gapCheck = true;
+    }
+
+    // Klines received until the history is applied are kept in pending
+    private void backfill(long from, long to) {
+        backfilling = true;
+        long started = System.nanoTime();
+        barHistoryService.load(from, to).whenCompleteAsync((history, exception) -> {
+            if (exception != null) {
+                log.warn("Failed to restore the bars since {}.", Instant.ofEpochMilli(from), exception);
+            }
+            applyHistory(history, started);
+        }, strategyExecutor);
+    }
+
+    private synchronized void applyHistory(BarHistory history, long started) {
+        if (history != null) {
+            history.seconds().replay((closeTime, open, high, low, close, volume) -> apply(secondBars, closeTime, open, high, low, close, volume));
+            history.minutes().replay((closeTime, open, high, low, close, volume) -> apply(minuteBars, closeTime, open, high, low, close, volume));
+            log.info("Restored {} 1s bars ({} from the journal) and {} 1m bars with {} requests in {} ms.",
+                    history.seconds().size(), history.localSeconds(), history.minutes().size(), history.fetchedPages(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        indicatorService.seedMinuteBands(minuteBars);
+        backfilling = false;
+        long lastSecond = secondBars.isEmpty() ? Long.MIN_VALUE : Math.floorDiv(secondBars.getLastEndTime(), 1000L);
+        for (int i = 0; i < pending.size(); i++) {
+            if (Math.floorDiv(pending.getCloseTime(i), 1000L) >= lastSecond) {
+                updateBarSeries(pending.getCloseTime(i), pending.getOpen(i), pending.getHigh(i), pending.getLow(i),
+                        pending.getClose(i), pending.getVolume(i));
+            }
+        }
+        pending.clear();
+    }
+
+    // History is authoritative for a bar that was already built from updates, older bars are dropped
+    private static void apply(BarRingBuffer bars, long closeTime, long open, long high, long low, long close, double volume) {
+        if (bars.isEmpty() || bars.getLastEndTime() < closeTime) {
+            bars.append(closeTime, open, high, low, close, volume);
+        } else if (bars.getLastEndTime() == closeTime) {
+            bars.replaceLast(open, high, low, close, volume);
         }
+    }
+
+    /**
+     * Starts with empty series and the given first 1s bar instead of loading the history from binance,
+     * used when replaying recorded klines.
+     */
+    public synchronized void startFrom(long endTime, long open, long high, long low, long close, double volume) {
+        createBuffers();
+        backfilling = false;
+        pending.clear();
+        secondBars.append(endTime, open, high, low, close, volume);
+        buildMinuteKline(Math.floorDiv(endTime, 1000L), open, high, low, close, volume);
+        indicatorService.seedMinuteBands(minuteBars);
+    }
 
-        if (secondSeries.getLastBar().getEndTime().toEpochSecond() >= baseBar.getEndTime().toEpochSecond()) {
-            secondSeries.getLastBar().addPrice(baseBar.getClosePrice());
+    // Synchronized with the bar updates, so no update gets lost between seeding and swapping the bands.
+    public synchronized void reconfigureMinuteBands(int window, double multiplier) {
+        indicatorService.reconfigureMinuteBands(window, multiplier, minuteBars);
+    }
+
+    private void createBuffers() {
+        minuteBars = new BarRingBuffer("1m", Duration.ofMinutes(1), tradeConfigProperties.getMinuteBarCapacity());
+        secondBars = new BarRingBuffer("1s", Duration.ofSeconds(1), tradeConfigProperties.getSecondBarCapacity());
+        minuteSeries = new RingBufferBarSeries(minuteBars, priceScale);
+        secondSeries = new RingBufferBarSeries(secondBars, priceScale);
+    }
+
+    public boolean updateBarSeries(BaseBar baseBar) {
+        return updateBarSeries(
+                baseBar.getEndTime().toInstant().toEpochMilli(),
+                priceScale.toPoints(baseBar.getOpenPrice().doubleValue()),
+                priceScale.toPoints(baseBar.getHighPrice().doubleValue()),
+                priceScale.toPoints(baseBar.getLowPrice().doubleValue()),
+                priceScale.toPoints(baseBar.getClosePrice().doubleValue()),
+                baseBar.getVolume().doubleValue()
+        );
+    }
+
+    /**
+     * Applies a kline update, false if it was only buffered because the history is still being restored.
+     */
+    public synchronized boolean updateBarSeries(long endTime, long open, long high, long low, long close, double volume) {
+        if (backfilling) {
+            pending.onKline(endTime, open, high, low, close, volume);
+            return false;
+        }
+
+        long endSecond = Math.floorDiv(endTime, 1000L);
+        if (gapCheck) {
+            gapCheck = false;
+            if (barHistoryService != null && !secondBars.isEmpty() && endSecond - Math.floorDiv(secondBars.getLastEndTime(), 1000L) > 1) {
+                log.info("Filling the gap between {} and {}.", Instant.ofEpochMilli(secondBars.getLastEndTime()), Instant.ofEpochMilli(endTime));
+                pending.onKline(endTime, open, high, low, close, volume);
+                backfill(secondBars.getLastEndTime(), endTime);
+                return false;
+            }
+        }
+
+        if (!secondBars.isEmpty() && Math.floorDiv(secondBars.getLastEndTime(), 1000L) >= endSecond) {
+            secondBars.updateLast(high, low, close);
         } else {
-            secondSeries.addBar(baseBar);
+            secondBars.append(endTime, open, high, low, close, volume);
         }
 
-        if (minuteSeries.getLastBar().getEndTime().toEpochSecond() >= baseBar.getEndTime().toEpochSecond()) {
-            minuteSeries.getLastBar().addPrice(baseBar.getClosePrice());
+        if (!minuteBars.isEmpty() && Math.floorDiv(minuteBars.getLastEndTime(), 1000L) >= endSecond) {
+            minuteBars.updateLast(high, low, close);
+            indicatorService.onMinuteBarUpdated(close);
         } else {
-            BaseBar minuteKline = buildMinuteKline(baseBar);
-            minuteSeries.addBar(minuteKline);
+            buildMinuteKline(endSecond, open, high, low, close, volume);
+            indicatorService.onMinuteBarAdded(close);
         }
+        return true;
     }
 
-    private BaseBar buildMinuteKline(BaseBar baseBar) {
-        return BaseBar.builder()
-                .endTime(Instant.ofEpochSecond((baseBar.getEndTime().toEpochSecond() / 60) * 60 + 60).atZone(ZoneOffset.UTC))
-                .volume(baseBar.getVolume())
-                .closePrice(baseBar.getClosePrice())
-                .openPrice(baseBar.getOpenPrice())
-                .highPrice(baseBar.getHighPrice())
-                .lowPrice(baseBar.getLowPrice())
-                .timePeriod(minuteSeries.getLastBar().getTimePeriod())
-                .build();
-    }
-
-    private void requestCandles() {
-        minuteSeries.setMaximumBarCount(2000);
-        secondSeries.setMaximumBarCount(2000);
-
-        List<BaseBar> minuteCandles = candlestickMapper.map(
-                candleDataAccessService.getCandlesFromBinance(
-                        tradeConfigProperties.getSymbol(),
-                        "1m",
-                        Instant.now().atOffset(ZoneOffset.UTC)
-                )
-        );
-        minuteCandles.forEach(minuteSeries::addBar);
-
-        List<BaseBar> secondCandles = candlestickMapper.map(
-                candleDataAccessService.getCandlesFromBinance(
-                        tradeConfigProperties.getSymbol(),
-                        "1s",
-                        Instant.now().atOffset(ZoneOffset.UTC)
-                )
-        );
-        secondCandles.forEach(secondSeries::addBar);
+    // Close time like binance: one milli before the next minute opens
+    private void buildMinuteKline(long endSecond, long open, long high, long low, long close, double volume) {
+        minuteBars.append(BarHistoryService.minuteCloseTime(endSecond * 1000L), open, high, low, close, volume);
+    }
+
+    public long getLastClose() {
+        return minuteBars.getLastClose();
     }
 
     public BarSeries getMinuteSeries() {
@@ -100,6 +205,6 @@ public class BarSeriesHolderService {
     }
 
     public BarSeries getSecondSeries() {
-        return minuteSeries;
+        return secondSeries;
     }
 }
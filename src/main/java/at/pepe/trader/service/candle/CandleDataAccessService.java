@@ -1,69 +1,291 @@
 package at.pepe.trader.service.candle;
 
-import at.pepe.trader.model.Candlestick;
-import com.binance.connector.client.SpotClient;
-import com.binance.connector.client.exceptions.BinanceClientException;
-import com.binance.connector.client.exceptions.BinanceConnectorException;
-import com.binance.connector.client.exceptions.BinanceServerException;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import at.pepe.trader.backtest.KlineTape;
+import at.pepe.trader.config.HistoryConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.journal.JournalFile;
+import at.pepe.trader.journal.RecordFile;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.binance.ApiEndpoint;
+import at.pepe.trader.service.binance.ApiRateLimiter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Downloads klines from the public klines endpoint. A time range is split into pages of 1000 klines that are
+ * requested in parallel within the request weight budget, each response is parsed as a stream straight into a
+ * {@link KlineBatch}. Failed pages are retried, a page that still fails is left out of a download into memory and
+ * a download into a file stops there and resumes after the last kline it contains.
+ * The endpoint is {@code history.base-url}, or the binance base url when that is empty.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class CandleDataAccessService {
+    public static final int PAGE_SIZE = 1000;
+    private static final String USED_WEIGHT_HEADER = "X-MBX-USED-WEIGHT-1M";
 
-    private final ObjectMapper objectMapper;
-    private final SpotClient spotClient;
-
-    // Currently only supports 1s and 1m candles
-    public List<Candlestick> getCandlesFromBinance(String symbol, String intervall, OffsetDateTime endTime) {
-        String klines;
-        try {
-            klines = spotClient.createMarket().klines(Map.of(
-                    "symbol", symbol,
-                    "interval", intervall,
-                    "endTime", endTime.toInstant().toEpochMilli(),
-                    "limit", 1000,
-                    "timeZone", 0
-            ));
-        } catch (BinanceClientException | BinanceConnectorException | BinanceServerException exception) {
-            log.warn(String.valueOf(exception));
-            return List.of();
+    private final HistoryConfigProperties historyConfigProperties;
+    private final TradeConfigProperties tradeConfigProperties;
+    private final JsonFactory jsonFactory;
+    private final PriceScale priceScale;
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ApiRateLimiter rateLimiter;
+    private final ExecutorService fetcher;
+    private final Clock clock;
+
+    @Autowired
+    public CandleDataAccessService(
+            ObjectMapper objectMapper,
+            HistoryConfigProperties historyConfigProperties,
+            TradeConfigProperties tradeConfigProperties,
+            BinanceConfigProperties binanceConfigProperties,
+            ApiRateLimiter rateLimiter,
+            Clock clock
+    ) {
+        this.historyConfigProperties = historyConfigProperties;
+        this.tradeConfigProperties = tradeConfigProperties;
+        this.jsonFactory = objectMapper.getFactory();
+        this.priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        String url = historyConfigProperties.getBaseUrl() == null || historyConfigProperties.getBaseUrl().isBlank()
+                ? binanceConfigProperties.getBaseUrl()
+                : historyConfigProperties.getBaseUrl();
+        this.baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(historyConfigProperties.getRequestTimeoutMs()))
+                .build();
+        this.clock = clock;
+        this.rateLimiter = rateLimiter;
+        this.fetcher = Executors.newFixedThreadPool(Math.max(1, historyConfigProperties.getFetchParallelism()), daemon("kline-download"));
+    }
+
+    /**
+     * All klines opening in [startTime, endTime] (epoch millis). Pages are requested in parallel and joined in order,
+     * a page failing every attempt leaves a hole instead of failing the others.
+     */
+    public CompletableFuture<KlineBatch> download(String interval, long startTime, long endTime) {
+        List<CompletableFuture<KlineBatch>> pages = new ArrayList<>();
+        long step = PAGE_SIZE * intervalMillis(interval);
+        for (long pageStart = pageStart(interval, startTime); pageStart <= endTime; pageStart += step) {
+            long from = pageStart;
+            long to = Math.min(pageStart + step - 1, endTime);
+            pages.add(CompletableFuture.supplyAsync(() -> fetchPage(interval, from, to), fetcher)
+                    .exceptionally(failure -> {
+                        log.warn("Skipping the {} klines from {} to {}.", interval, from, to, failure);
+                        return new KlineBatch(0);
+                    }));
         }
+        return CompletableFuture.allOf(pages.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            KlineBatch result = new KlineBatch(pages.size() * PAGE_SIZE);
+            pages.forEach(page -> page.join().replay(result));
+            return result;
+        });
+    }
 
-        ArrayList<ArrayList<Object>> rawCandleresult = null;
-        try {
-            rawCandleresult = objectMapper.readValue(klines, ArrayList.class);
-        } catch (JsonProcessingException | RuntimeException e) {
-            log.warn(String.valueOf(e));
-            return List.of();
+    /**
+     * Downloads the klines opening in [startTime, endTime] into a kline tape file. An existing file is continued
+     * after its last kline, pages are written in order so an interrupted download can always be resumed.
+     *
+     * @return number of klines written
+     */
+    public long downloadTo(Path path, String interval, long startTime, long endTime) throws IOException {
+        long from = startTime;
+        if (Files.exists(path) && Files.size(path) > RecordFile.HEADER_SIZE) {
+            try (RecordFile existing = RecordFile.open(path, KlineTape.MAGIC, KlineTape.RECORD_SIZE)) {
+                if (existing.size() > 0) {
+                    from = Math.max(startTime, existing.getTime(existing.size() - 1) + 1);
+                    log.info("Resuming download into {} after {} klines.", path, existing.size());
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
         }
-        return rawCandleresult.stream()
-                .map(data -> Candlestick.builder()
-                        .openTime(Instant.ofEpochMilli((Long) data.get(0)).atOffset(ZoneOffset.UTC))
-                        .open(new BigDecimal((String) data.get(1)).doubleValue())
-                        .high(new BigDecimal((String) data.get(2)).doubleValue())
-                        .low(new BigDecimal((String) data.get(3)).doubleValue())
-                        .close(new BigDecimal((String) data.get(4)).doubleValue())
-                        .volume(new BigDecimal((String) data.get(5)).doubleValue())
-                        .closeTime(Instant.ofEpochMilli((Long) data.get(6)).atOffset(ZoneOffset.UTC))
-                        .symbol(symbol)
-                        .interval("1m".equals(intervall) ? Duration.ofMinutes(1) : Duration.ofSeconds(1))
-                        .build())
-                .collect(Collectors.toList());
+
+        long step = PAGE_SIZE * intervalMillis(interval);
+        int window = Math.max(1, historyConfigProperties.getFetchParallelism()) * 2;
+        Deque<CompletableFuture<KlineBatch>> inFlight = new ArrayDeque<>();
+        long next = pageStart(interval, from);
+        long written = 0;
+        try (JournalFile file = new JournalFile(path, KlineTape.MAGIC, KlineTape.RECORD_SIZE, priceScale.getScale(), PAGE_SIZE * 16L)) {
+            while (next <= endTime || !inFlight.isEmpty()) {
+                while (next <= endTime && inFlight.size() < window) {
+                    long pageFrom = Math.max(next, from);
+                    long pageTo = Math.min(next + step - 1, endTime);
+                    inFlight.add(CompletableFuture.supplyAsync(() -> fetchPage(interval, pageFrom, pageTo), fetcher));
+                    next += step;
+                }
+                KlineBatch page;
+                try {
+                    page = inFlight.poll().join();
+                } catch (CompletionException exception) {
+                    inFlight.forEach(pending -> pending.cancel(true));
+                    file.force();
+                    throw new IOException("Download into " + path + " stopped after " + written + " klines, run it again to resume.", exception.getCause());
+                }
+                for (int i = 0; i < page.size(); i++) {
+                    KlineTape.append(file, page.getCloseTime(i), page.getOpen(i), page.getHigh(i), page.getLow(i), page.getClose(i), page.getVolume(i));
+                }
+                written += page.size();
+            }
+            file.force();
+        }
+        return written;
+    }
+
+    /**
+     * One page of at most 1000 klines opening in [startTime, endTime], retried up to {@code history.max-attempts}.
+     */
+    public KlineBatch fetchPage(String interval, long startTime, long endTime) {
+        URI uri = URI.create(baseUrl + "/api/v3/klines?symbol=" + tradeConfigProperties.getSymbol() +
+                "&interval=" + interval + "&startTime=" + startTime + "&endTime=" + endTime + "&limit=" + PAGE_SIZE);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(historyConfigProperties.getRequestTimeoutMs()))
+                .GET()
+                .build();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rateLimiter.acquireBlocking(ApiEndpoint.KLINES);
+                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                response.headers().firstValue(USED_WEIGHT_HEADER).map(Integer::parseInt).ifPresent(rateLimiter::observeUsedWeight);
+                try (InputStream body = response.body()) {
+                    if (response.statusCode() == 200) {
+                        return parse(body);
+                    }
+                    String message = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    if (response.statusCode() == 429 || response.statusCode() == 418) {
+                        long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(60);
+                        rateLimiter.blockUntil(clock.millis() + retryAfter * 1000);
+                        log.warn("Klines request limited by binance for {} s: {}", retryAfter, message);
+                        continue;
+                    }
+                    throw new IOException("Klines request failed with status " + response.statusCode() + ": " + message);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(exception);
+            } catch (IOException | RuntimeException exception) {
+                if (attempt >= historyConfigProperties.getMaxAttempts()) {
+                    throw new CompletionException("Failed to fetch " + interval + " klines from " + startTime + " to " + endTime, exception);
+                }
+                log.debug("Attempt {} to fetch {} klines from {} failed.", attempt, interval, startTime, exception);
+                try {
+                    Thread.sleep(attempt * 500L);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses [[openTime, "open", "high", "low", "close", "volume", closeTime, ...], ...] without building a tree,
+     * prices are read from the parser's character buffer.
+     */
+    KlineBatch parse(InputStream body) throws IOException {
+        KlineBatch batch = new KlineBatch(PAGE_SIZE);
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of klines but got " + parser.currentToken());
+            }
+            while (parser.nextToken() == JsonToken.START_ARRAY) {
+                parser.nextToken();
+                parser.nextToken();
+                long open = points(parser);
+                parser.nextToken();
+                long high = points(parser);
+                parser.nextToken();
+                long low = points(parser);
+                parser.nextToken();
+                long close = points(parser);
+                parser.nextToken();
+                double volume = parser.getValueAsDouble();
+                parser.nextToken();
+                long closeTime = parser.getLongValue();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == null) {
+                        throw new IOException("Unexpected end of the klines");
+                    }
+                }
+                batch.onKline(closeTime, open, high, low, close, volume);
+            }
+        }
+        return batch;
+    }
+
+    private long points(JsonParser parser) throws IOException {
+        return priceScale.parse(CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+    }
+
+    public static long intervalMillis(String interval) {
+        long amount = Long.parseLong(interval.substring(0, interval.length() - 1));
+        return switch (interval.charAt(interval.length() - 1)) {
+            case 's' -> amount * 1000;
+            case 'm' -> amount * 60_000;
+            case 'h' -> amount * 3_600_000;
+            case 'd' -> amount * 86_400_000;
+            case 'w' -> amount * 604_800_000;
+            default -> throw new IllegalArgumentException("Unsupported interval " + interval);
+        };
+    }
+
+    /**
+     * Number of requests {@link #download(String, long, long)} needs for the range.
+     */
+    public static int pages(String interval, long startTime, long endTime) {
+        if (endTime < startTime) {
+            return 0;
+        }
+        long step = PAGE_SIZE * intervalMillis(interval);
+        return (int) ((endTime - pageStart(interval, startTime)) / step + 1);
+    }
+
+    private static long pageStart(String interval, long startTime) {
+        long intervalMillis = intervalMillis(interval);
+        return Math.floorDiv(startTime, intervalMillis) * intervalMillis;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetcher.shutdownNow();
     }
 }
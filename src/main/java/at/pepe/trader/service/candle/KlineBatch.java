@@ -0,0 +1,115 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.backtest.KlineListener;
+
+import java.util.Arrays;
+
+/**
+ * Growable columnar list of klines in close time order, prices in points. A kline with the same close time as the
+ * last one replaces it (later updates of the same kline win), older klines are dropped.
+ */
+public class KlineBatch implements KlineListener {
+    private long[] closeTime;
+    private long[] open;
+    private long[] high;
+    private long[] low;
+    private long[] close;
+    private double[] volume;
+    private int size;
+
+    public KlineBatch() {
+        this(1024);
+    }
+
+    public KlineBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        closeTime = new long[capacity];
+        open = new long[capacity];
+        high = new long[capacity];
+        low = new long[capacity];
+        close = new long[capacity];
+        volume = new double[capacity];
+    }
+
+    @Override
+    public void onKline(long time, long openPrice, long highPrice, long lowPrice, long closePrice, double barVolume) {
+        int i;
+        if (size > 0 && closeTime[size - 1] >= time) {
+            if (closeTime[size - 1] > time) {
+                return;
+            }
+            i = size - 1;
+        } else {
+            if (size == closeTime.length) {
+                grow();
+            }
+            i = size++;
+        }
+        closeTime[i] = time;
+        open[i] = openPrice;
+        high[i] = highPrice;
+        low[i] = lowPrice;
+        close[i] = closePrice;
+        volume[i] = barVolume;
+    }
+
+    public void addAll(KlineBatch other) {
+        other.replay(this);
+    }
+
+    public void replay(KlineListener listener) {
+        for (int i = 0; i < size; i++) {
+            listener.onKline(closeTime[i], open[i], high[i], low[i], close[i], volume[i]);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getCloseTime(int index) {
+        return closeTime[index];
+    }
+
+    public long getOpen(int index) {
+        return open[index];
+    }
+
+    public long getHigh(int index) {
+        return high[index];
+    }
+
+    public long getLow(int index) {
+        return low[index];
+    }
+
+    public long getClose(int index) {
+        return close[index];
+    }
+
+    public double getVolume(int index) {
+        return volume[index];
+    }
+
+    public long getLastCloseTime() {
+        return closeTime[size - 1];
+    }
+
+    private void grow() {
+        int capacity = closeTime.length * 2;
+        closeTime = Arrays.copyOf(closeTime, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+    }
+}
@@ -0,0 +1,252 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.model.PriceScale;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseBarSeries;
+import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * ta4j view on top of a {@link BarRingBuffer}. Bars are handed out as lightweight views reading the columns,
+ * {@link Num} instances are only created when a value is actually requested.
+ */
+public class RingBufferBarSeries implements BarSeries {
+    private static final long serialVersionUID = -3417095254376839511L;
+
+    private final BarRingBuffer buffer;
+    private final PriceScale priceScale;
+    private final Function<Number, Num> numFunction = DecimalNum::valueOf;
+
+    public RingBufferBarSeries(BarRingBuffer buffer, PriceScale priceScale) {
+        this.buffer = buffer;
+        this.priceScale = priceScale;
+    }
+
+    public BarRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public String getName() {
+        return buffer.getName();
+    }
+
+    @Override
+    public Bar getBar(int i) {
+        if (i < getBeginIndex() || i > getEndIndex()) {
+            throw new IndexOutOfBoundsException("Bar " + i + " is not available in " + getName());
+        }
+        return new RingBufferBar(i);
+    }
+
+    @Override
+    public int getBarCount() {
+        return buffer.getBarCount();
+    }
+
+    @Override
+    public List<Bar> getBarData() {
+        List<Bar> bars = new ArrayList<>(getBarCount());
+        for (int i = getBeginIndex(); i <= getEndIndex() && i >= 0; i++) {
+            bars.add(new RingBufferBar(i));
+        }
+        return bars;
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return buffer.isEmpty() ? -1 : (int) buffer.getBeginIndex();
+    }
+
+    @Override
+    public int getEndIndex() {
+        return (int) buffer.getEndIndex();
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return buffer.getCapacity();
+    }
+
+    /**
+     * Resizes the ring buffer, shrinking drops the oldest bars like ta4j does.
+     */
+    @Override
+    public void setMaximumBarCount(int maximumBarCount) {
+        if (maximumBarCount <= 0) {
+            throw new IllegalArgumentException("Maximum bar count must be strictly positive");
+        }
+        buffer.resize(maximumBarCount);
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return buffer.isEmpty() ? 0 : (int) buffer.getBeginIndex();
+    }
+
+    @Override
+    public void addBar(Bar bar, boolean replace) {
+        long endTime = bar.getEndTime().toInstant().toEpochMilli();
+        long open = toPoints(bar.getOpenPrice());
+        long high = toPoints(bar.getHighPrice());
+        long low = toPoints(bar.getLowPrice());
+        long close = toPoints(bar.getClosePrice());
+        double volume = bar.getVolume().doubleValue();
+        if (replace && !buffer.isEmpty()) {
+            buffer.replaceLast(endTime, open, high, low, close, volume);
+        } else {
+            buffer.append(endTime, open, high, low, close, volume);
+        }
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime) {
+        buffer.append(endTime.toInstant().toEpochMilli(), BarRingBuffer.NO_PRICE, BarRingBuffer.NO_PRICE, BarRingBuffer.NO_PRICE, BarRingBuffer.NO_PRICE, 0);
+    }
+
+    @Override
+    public void addBar(ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        addBar(buffer.getTimePeriod(), endTime, openPrice, highPrice, lowPrice, closePrice, volume, amount);
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume) {
+        addBar(timePeriod, endTime, openPrice, highPrice, lowPrice, closePrice, volume, null);
+    }
+
+    @Override
+    public void addBar(Duration timePeriod, ZonedDateTime endTime, Num openPrice, Num highPrice, Num lowPrice, Num closePrice, Num volume, Num amount) {
+        buffer.append(
+            endTime.toInstant().toEpochMilli(),
+            toPoints(openPrice),
+            toPoints(highPrice),
+            toPoints(lowPrice),
+            toPoints(closePrice),
+            volume.doubleValue()
+        );
+    }
+
+    @Override
+    public void addTrade(Num tradeVolume, Num tradePrice) {
+        buffer.updateLast(toPoints(tradePrice));
+        buffer.addVolume(tradeVolume.doubleValue());
+    }
+
+    @Override
+    public void addPrice(Num price) {
+        buffer.updateLast(toPoints(price));
+    }
+
+    @Override
+    public BarSeries getSubSeries(int startIndex, int endIndex) {
+        int from = Math.max(startIndex, getBeginIndex());
+        int to = Math.min(endIndex, getEndIndex() + 1);
+        List<Bar> bars = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            Bar bar = getBar(i);
+            bars.add(new BaseBar(bar.getTimePeriod(), bar.getEndTime(), bar.getOpenPrice(), bar.getHighPrice(),
+                bar.getLowPrice(), bar.getClosePrice(), bar.getVolume(), bar.getAmount(), bar.getTrades()));
+        }
+        return new BaseBarSeries(getName(), bars, numFunction);
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return numFunction.apply(number);
+    }
+
+    @Override
+    public Function<Number, Num> function() {
+        return numFunction;
+    }
+
+    private long toPoints(Num price) {
+        return price instanceof DecimalNum decimal ? priceScale.toPoints(decimal.getDelegate()) : priceScale.toPoints(price.doubleValue());
+    }
+
+    private Num priceOf(long points) {
+        return points == BarRingBuffer.NO_PRICE ? NaN.NaN : DecimalNum.valueOf(priceScale.toBigDecimal(points));
+    }
+
+    private class RingBufferBar implements Bar {
+        private static final long serialVersionUID = 1820963476416395522L;
+
+        private final int index;
+
+        private RingBufferBar(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Num getOpenPrice() {
+            return priceOf(buffer.getOpen(index));
+        }
+
+        @Override
+        public Num getLowPrice() {
+            return priceOf(buffer.getLow(index));
+        }
+
+        @Override
+        public Num getHighPrice() {
+            return priceOf(buffer.getHigh(index));
+        }
+
+        @Override
+        public Num getClosePrice() {
+            return priceOf(buffer.getClose(index));
+        }
+
+        @Override
+        public Num getVolume() {
+            return numOf(buffer.getVolume(index));
+        }
+
+        @Override
+        public long getTrades() {
+            return 0;
+        }
+
+        @Override
+        public Num getAmount() {
+            return numOf(priceScale.toDouble(buffer.getClose(index)) * buffer.getVolume(index));
+        }
+
+        @Override
+        public Duration getTimePeriod() {
+            return buffer.getTimePeriod();
+        }
+
+        @Override
+        public ZonedDateTime getBeginTime() {
+            return getEndTime().minus(buffer.getTimePeriod());
+        }
+
+        @Override
+        public ZonedDateTime getEndTime() {
+            return Instant.ofEpochMilli(buffer.getEndTime(index)).atZone(ZoneOffset.UTC);
+        }
+
+        @Override
+        public void addTrade(Num tradeVolume, Num tradePrice) {
+            buffer.update(index, toPoints(tradePrice));
+            buffer.addVolume(index, tradeVolume.doubleValue());
+        }
+
+        @Override
+        public void addPrice(Num price) {
+            buffer.update(index, toPoints(price));
+        }
+    }
+}
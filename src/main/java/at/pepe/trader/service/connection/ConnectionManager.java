@@ -0,0 +1,165 @@
+package at.pepe.trader.service.connection;
+
+import at.pepe.trader.config.ConnectionConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Owns all websocket connections to binance and keeps them open, see {@link ManagedConnection}. Market streams are
+ * multiplexed as combined streams, {@code connection.streams-per-connection} on one socket. Stream sockets are
+ * opened on {@code binance.base-websocket}, the order API on {@code binance.base-websocket-api}, so any local
+ * websocket server can stand in for binance.
+ */
+@Slf4j
+@Service
+public class ConnectionManager {
+    private final ConnectionConfigProperties connectionConfigProperties;
+    private final BinanceConfigProperties binanceConfigProperties;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final OkHttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final List<ManagedConnection> connections = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public ConnectionManager(
+            ConnectionConfigProperties connectionConfigProperties,
+            BinanceConfigProperties binanceConfigProperties,
+            MeterRegistry meterRegistry,
+            Clock clock
+    ) {
+        this.connectionConfigProperties = connectionConfigProperties;
+        this.binanceConfigProperties = binanceConfigProperties;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.httpClient = new OkHttpClient.Builder()
+                .pingInterval(connectionConfigProperties.getPingIntervalMs(), TimeUnit.MILLISECONDS)
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connections");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::watch, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens the connection and keeps it open until shutdown.
+     */
+    public ManagedConnection open(ConnectionOptions options, ManagedConnection.Opener opener) {
+        ManagedConnection connection = new ManagedConnection(options, opener, connectionConfigProperties, scheduler,
+                meterRegistry, clock);
+        connections.add(connection);
+        connection.start();
+        return connection;
+    }
+
+    /**
+     * Subscribes the streams over as few combined stream connections as possible. A lost connection calls
+     * onDisconnected before it is reopened, rotations overlap and lose nothing.
+     */
+    public List<ManagedConnection> openMarketStreams(String name, List<String> streams, Consumer<String> onMessage,
+                                                     Runnable onDisconnected) {
+        List<ManagedConnection> opened = new ArrayList<>();
+        int perConnection = connectionConfigProperties.getStreamsPerConnection();
+        for (int from = 0; from < streams.size(); from += perConnection) {
+            String url = binanceConfigProperties.getBaseWebsocket() + "/stream?streams="
+                    + String.join("/", streams.subList(from, Math.min(from + perConnection, streams.size())));
+            opened.add(open(
+                    ConnectionOptions.builder()
+                            .name(streams.size() > perConnection ? name + "-" + from / perConnection : name)
+                            .onMessage(onMessage)
+                            .onDisconnected(onDisconnected)
+                            .silenceTimeoutMs(connectionConfigProperties.getMarketSilenceTimeoutMs())
+                            .overlapOnRotate(true)
+                            .build(),
+                    webSocket(() -> url)
+            ));
+        }
+        return opened;
+    }
+
+    /**
+     * Opens a plain websocket on the url, asked for again on every (re)connect.
+     */
+    public ManagedConnection.Opener webSocket(Supplier<String> url) {
+        return webSocket(url, webSocket -> {});
+    }
+
+    /**
+     * Opens a plain websocket on the url and hands it to onOpen once it is open, for connections we send requests
+     * on. The handle closes this socket only.
+     */
+    public ManagedConnection.Opener webSocket(Supplier<String> url, Consumer<WebSocket> onOpen) {
+        return listener -> {
+            WebSocket webSocket = httpClient.newWebSocket(new Request.Builder().url(url.get()).build(), new WebSocketListener() {
+                @Override
+                public void onOpen(WebSocket webSocket, Response response) {
+                    onOpen.accept(webSocket);
+                    listener.onOpen();
+                }
+
+                @Override
+                public void onMessage(WebSocket webSocket, String text) {
+                    listener.onMessage(text);
+                }
+
+                @Override
+                public void onClosing(WebSocket webSocket, int code, String reason) {
+                    webSocket.close(code, null);
+                    listener.onClosed(code + " " + reason);
+                }
+
+                @Override
+                public void onClosed(WebSocket webSocket, int code, String reason) {
+                    listener.onClosed(code + " " + reason);
+                }
+
+                @Override
+                public void onFailure(WebSocket webSocket, Throwable failure, Response response) {
+                    listener.onFailure(failure);
+                }
+            });
+            return () -> webSocket.close(1000, null);
+        };
+    }
+
+    public List<ManagedConnection> getConnections() {
+        return List.copyOf(connections);
+    }
+
+    private void watch() {
+        for (ManagedConnection connection : connections) {
+            try {
+                connection.watch();
+            } catch (RuntimeException exception) {
+                log.warn("Failure watching {}.", connection.getName(), exception);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        connections.forEach(ManagedConnection::stop);
+    }
+}
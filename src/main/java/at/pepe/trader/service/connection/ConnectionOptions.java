@@ -0,0 +1,28 @@
+package at.pepe.trader.service.connection;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * What a {@link ManagedConnection} does with its messages and how it is kept alive. A silence timeout of 0 never
+ * replaces a quiet connection, a heartbeat is only sent when one is given.
+ */
+@Value
+@Builder
+public class ConnectionOptions {
+    String name;
+    Consumer<String> onMessage;
+    @Builder.Default
+    Runnable onConnected = () -> {};
+    @Builder.Default
+    Runnable onDisconnected = () -> {}; // After a connection was lost, before it is reopened
+    Runnable heartbeat;
+    long heartbeatIntervalMs;
+    long silenceTimeoutMs;
+    boolean overlapOnRotate; // Open the replacement before closing the old connection, messages may arrive twice meanwhile
+    @Builder.Default
+    BooleanSupplier canRotate = () -> true;
+}
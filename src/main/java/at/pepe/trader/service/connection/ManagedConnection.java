@@ -0,0 +1,341 @@
+package at.pepe.trader.service.connection;
+
+import at.pepe.trader.config.ConnectionConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One websocket connection that is kept open. It is reopened after it closed or failed, with exponential backoff and
+ * jitter so an outage does not turn into a flood of reconnects. It is also replaced when it stayed silent for longer
+ * than the silence timeout, and before binance cuts it after 24h. A connection rotating with overlap opens the
+ * replacement first and closes the old one once the replacement delivered its first message.
+ * <p>
+ * The socket callbacks may come from any thread, reconnects and the {@link #watch() watchdog} run on the scheduler
+ * of the {@link ConnectionManager}. Messages of a replaced socket are dropped.
+ */
+@Slf4j
+public class ManagedConnection {
+
+    /**
+     * Receives the events of one socket.
+     */
+    public interface Listener {
+        void onOpen();
+
+        void onMessage(String message);
+
+        void onClosed(String reason);
+
+        void onFailure(Throwable failure);
+    }
+
+    /**
+     * Opens a socket reporting to the listener, the returned handle closes it.
+     */
+    @FunctionalInterface
+    public interface Opener {
+        AutoCloseable open(Listener listener) throws Exception;
+    }
+
+    private static final long ROTATION_RETRY_MILLIS = 60_000;
+
+    private final ConnectionOptions options;
+    private final Opener opener;
+    private final ConnectionConfigProperties connectionConfigProperties;
+    private final ScheduledExecutorService scheduler;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Counter messages;
+
+    private Socket current;
+    private Socket previous; // Still delivering while its replacement connects
+    private boolean stopped;
+    private int attempts; // Failed in a row, the next backoff grows with it
+    private ScheduledFuture<?> pendingConnect;
+    private long connectedAt;
+    private long rotateAt;
+    private long lastHeartbeat;
+    private volatile boolean up;
+    private volatile long lastMessage;
+
+    ManagedConnection(
+            ConnectionOptions options,
+            Opener opener,
+            ConnectionConfigProperties connectionConfigProperties,
+            ScheduledExecutorService scheduler,
+            MeterRegistry meterRegistry,
+            Clock clock
+    ) {
+        this.options = options;
+        this.opener = opener;
+        this.connectionConfigProperties = connectionConfigProperties;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.messages = Counter.builder("binance.connection.messages")
+                .description("Messages received")
+                .tag("connection", options.getName())
+                .register(meterRegistry);
+        Gauge.builder("binance.connection.up", this, connection -> connection.up ? 1 : 0)
+                .description("1 while the connection is open")
+                .tag("connection", options.getName())
+                .register(meterRegistry);
+        Gauge.builder("binance.connection.silence", this, connection -> connection.up ? clock.millis() - connection.lastMessage : 0)
+                .description("Milliseconds since the last message")
+                .tag("connection", options.getName())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("binance.connection.failed.attempts", this, connection -> connection.attempts)
+                .description("Connection attempts failed in a row")
+                .tag("connection", options.getName())
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return options.getName();
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    synchronized void start() {
+        stopped = false;
+        connect();
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        up = false;
+        if (pendingConnect != null) {
+            pendingConnect.cancel(false);
+        }
+        close(previous);
+        close(current);
+        previous = null;
+        current = null;
+    }
+
+    private synchronized void connect() {
+        pendingConnect = null;
+        if (stopped || current != null) {
+            return;
+        }
+        current = new Socket();
+        current.open();
+    }
+
+    // Called once a second: resets the backoff, finds silent connections, sends heartbeats and rotates
+    void watch() {
+        Socket silent = null;
+        boolean heartbeat = false;
+        synchronized (this) {
+            if (!up || current == null || !current.opened) {
+                return;
+            }
+            long now = clock.millis();
+            if (attempts > 0 && now - connectedAt >= connectionConfigProperties.getStableAfterMs()) {
+                attempts = 0;
+            }
+            long silence = now - lastMessage;
+            if (previous != null) {
+                if (now - connectedAt > ROTATION_RETRY_MILLIS) {
+                    silent = current; // The replacement opened but never delivered, the old connection stays
+                }
+            } else if (options.getSilenceTimeoutMs() > 0 && silence > options.getSilenceTimeoutMs()) {
+                silent = current;
+            } else if (options.getHeartbeat() != null && silence >= options.getHeartbeatIntervalMs()
+                    && now - lastHeartbeat >= options.getHeartbeatIntervalMs()) {
+                lastHeartbeat = now;
+                heartbeat = true;
+            } else if (now >= rotateAt) {
+                rotate(now);
+            }
+        }
+        if (silent != null && lost(silent, "silence", null)) {
+            options.getOnDisconnected().run();
+        }
+        if (heartbeat) {
+            try {
+                options.getHeartbeat().run();
+            } catch (RuntimeException exception) {
+                log.warn("Failed to send the heartbeat of {}.", getName(), exception);
+            }
+        }
+    }
+
+    private void rotate(long now) {
+        if (!options.getCanRotate().getAsBoolean()) {
+            return;
+        }
+        count("rotation");
+        log.info("Rotating {} after {} minutes.", getName(), (now - connectedAt) / 60_000);
+        if (options.isOverlapOnRotate()) {
+            previous = current;
+            current = new Socket();
+            current.open();
+        } else {
+            // Only rotated while nothing is in flight, so nothing is lost between closing and reopening
+            close(current);
+            current = null;
+            up = false;
+            scheduler.execute(() -> {
+                options.getOnDisconnected().run();
+                connect();
+            });
+        }
+    }
+
+    private synchronized void opened(Socket socket) {
+        if (socket != current || stopped) {
+            return;
+        }
+        socket.opened = true;
+        long now = clock.millis();
+        connectedAt = now;
+        lastMessage = now;
+        lastHeartbeat = now;
+        rotateAt = now + connectionConfigProperties.getRotateAfterMs()
+                + ThreadLocalRandom.current().nextLong(connectionConfigProperties.getRotateJitterMs() + 1);
+        if (previous == null) {
+            up = true;
+            log.info("Connected {}.", getName());
+            scheduler.execute(options.getOnConnected());
+        }
+    }
+
+    private void received(Socket socket, String message) {
+        synchronized (this) {
+            if (socket == previous) {
+                // Still ours until the replacement delivers
+            } else if (socket != current) {
+                return;
+            } else if (previous != null) {
+                close(previous);
+                previous = null;
+                up = true;
+                log.info("Rotated {}.", getName());
+            }
+            lastMessage = clock.millis();
+        }
+        messages.increment();
+        options.getOnMessage().accept(message);
+    }
+
+    /**
+     * @return true when the open current connection was lost, the caller runs the disconnect hook outside the lock
+     */
+    private synchronized boolean lost(Socket socket, String reason, Throwable failure) {
+        if (socket == null || socket.lost) {
+            return false;
+        }
+        socket.lost = true;
+        close(socket);
+        if (socket == previous) {
+            previous = null;
+            return false;
+        }
+        if (socket != current) {
+            return false;
+        }
+        if (previous != null) {
+            // The replacement failed, keep the old connection and try again later
+            log.warn("Replacement of {} failed, rotating again later.", getName(), failure);
+            current = previous;
+            previous = null;
+            rotateAt = clock.millis() + ROTATION_RETRY_MILLIS;
+            return false;
+        }
+        current = null;
+        up = false;
+        count(reason);
+        if (stopped) {
+            return false;
+        }
+        if (!socket.opened || clock.millis() - connectedAt < connectionConfigProperties.getStableAfterMs()) {
+            attempts++;
+        }
+        long delay = backoff(attempts);
+        log.warn("Lost {} ({}), reconnecting in {} ms.", getName(), reason, delay, failure);
+        pendingConnect = scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        return socket.opened;
+    }
+
+    // Equal jitter: between half and the whole of the exponential ceiling
+    private long backoff(int attempts) {
+        if (attempts == 0) {
+            return 0;
+        }
+        long ceiling = Math.min(
+                connectionConfigProperties.getMaxBackoffMs(),
+                connectionConfigProperties.getInitialBackoffMs() << Math.min(attempts - 1, 20)
+        );
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void count(String reason) {
+        Counter.builder("binance.connection.reconnects")
+                .description("Connections replaced, by reason")
+                .tag("connection", getName())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void close(Socket socket) {
+        if (socket == null || socket.handle == null) {
+            return;
+        }
+        try {
+            socket.handle.close();
+        } catch (Exception exception) {
+            log.debug("Failed to close {}.", getName(), exception);
+        }
+    }
+
+    private final class Socket implements Listener {
+        private AutoCloseable handle;
+        private boolean opened;
+        private boolean lost;
+
+        private void open() {
+            try {
+                handle = opener.open(this);
+            } catch (Exception exception) {
+                onFailure(exception);
+            }
+        }
+
+        @Override
+        public void onOpen() {
+            opened(this);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            received(this, message);
+        }
+
+        @Override
+        public void onClosed(String reason) {
+            if (lost(this, "closed", null)) {
+                options.getOnDisconnected().run();
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+            if (lost(this, "failure", failure)) {
+                options.getOnDisconnected().run();
+            }
+        }
+    }
+}
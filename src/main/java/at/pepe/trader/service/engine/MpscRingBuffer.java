@@ -0,0 +1,103 @@
+package at.pepe.trader.service.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock-free ring of preallocated, mutable events for many producers and one consumer, in the style of the
+ * LMAX disruptor. A producer claims a sequence, fills the event in that slot and publishes it. The consumer hands out
+ * every published event in sequence order, all events available at once form one batch. Producers wait for free
+ * slots when the consumer is a full ring behind.
+ */
+public class MpscRingBuffer<E> {
+
+    /**
+     * Receives the events of {@link #poll(EventHandler)}.
+     */
+    @FunctionalInterface
+    public interface EventHandler<E> {
+        void onEvent(E event, long sequence, boolean endOfBatch);
+    }
+
+    private final Object[] events;
+    private final int mask;
+    private final AtomicLongArray published; // Sequence last published in each slot
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+
+    public MpscRingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two but was " + capacity);
+        }
+        this.events = new Object[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = factory.get();
+            published.set(i, i - (long) capacity);
+        }
+    }
+
+    /**
+     * Claims the next sequence, waits while the ring is full.
+     */
+    public long next() {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - consumed > events.length) {
+                Thread.yield();
+                continue;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) events[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+    }
+
+    /**
+     * Hands all published events to the handler on the calling (consumer) thread.
+     *
+     * @return number of events handled
+     */
+    public int poll(EventHandler<E> handler) {
+        long first = consumed + 1;
+        long last = first - 1;
+        while (last - first + 1 < events.length && published.get((int) (last + 1) & mask) == last + 1) {
+            last++;
+        }
+        for (long sequence = first; sequence <= last; sequence++) {
+            try {
+                handler.onEvent(get(sequence), sequence, sequence == last);
+            } finally {
+                consumed = sequence;
+            }
+        }
+        return (int) (last - first + 1);
+    }
+
+    public boolean isEmpty() {
+        return published.get((int) (consumed + 1) & mask) != consumed + 1;
+    }
+
+    /**
+     * Events claimed but not handled yet.
+     */
+    public long backlog() {
+        return claimed.get() - consumed;
+    }
+
+    public int capacity() {
+        return events.length;
+    }
+}
@@ -0,0 +1,166 @@
+package at.pepe.trader.service.engine;
+
+/**
+ * Hashed timing wheel for the deadlines of the strategy thread. A deadline lands in the bucket of its tick, so
+ * scheduling and cancelling are O(1), and {@link #advance(long)} only visits the buckets of the ticks that passed.
+ * Deadlines more than one revolution ahead share a bucket with earlier ones and are skipped until their tick comes.
+ * Tasks run on the thread calling advance, they may schedule further timeouts. Not thread safe, the strategy
+ * thread owns it.
+ */
+public class TimingWheel {
+    private final long tickMillis;
+    private final Timeout[] buckets; // Head of a doubly linked list per bucket
+    private final int mask;
+
+    private long currentTick = Long.MIN_VALUE;
+    private int size;
+
+    /**
+     * @param wheelSize buckets, rounded up to a power of two. tickMillis * wheelSize should cover the usual deadlines.
+     */
+    public TimingWheel(long tickMillis, int wheelSize) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1 ms but was " + tickMillis);
+        }
+        int capacity = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Timeout[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Runs the task once the wheel advanced past the deadline, at the latest one tick later. A deadline that passed
+     * already fires on the next advance.
+     */
+    public Timeout schedule(long deadlineMillis, Runnable task) {
+        long tick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis); // Rounded up, never fires early
+        if (currentTick != Long.MIN_VALUE && tick <= currentTick) {
+            tick = currentTick + 1;
+        }
+        Timeout timeout = new Timeout(this, tick, deadlineMillis, task);
+        link(timeout);
+        return timeout;
+    }
+
+    /**
+     * Fires every timeout whose deadline is up to now.
+     *
+     * @return number of tasks run
+     */
+    public int advance(long nowMillis) {
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        if (currentTick == Long.MIN_VALUE) {
+            // First call, whatever was scheduled before may be due in any bucket
+            currentTick = nowTick - buckets.length;
+        }
+        if (nowTick <= currentTick) {
+            return 0;
+        }
+        int fired = 0;
+        if (nowTick - currentTick >= buckets.length) {
+            // More than a revolution passed, every bucket is due once
+            currentTick = nowTick;
+            for (int i = 0; i < buckets.length; i++) {
+                fired += expire(i, nowTick);
+            }
+            return fired;
+        }
+        while (currentTick < nowTick) {
+            currentTick++;
+            fired += expire((int) (currentTick & mask), currentTick);
+        }
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int expire(int bucket, long tick) {
+        int fired = 0;
+        Timeout timeout = buckets[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.tick <= tick) {
+                unlink(timeout);
+                fired++;
+                Runnable task = timeout.task;
+                timeout.task = null;
+                task.run();
+                if (next != null && !next.linked) {
+                    // The task cancelled the next one, start over, everything fired is gone from the bucket
+                    next = buckets[bucket];
+                }
+            }
+            timeout = next;
+        }
+        return fired;
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = (int) (timeout.tick & mask);
+        Timeout head = buckets[bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        buckets[bucket] = timeout;
+        timeout.linked = true;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (!timeout.linked) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final long tick;
+        private final long deadlineMillis;
+        private Runnable task;
+        private Timeout previous;
+        private Timeout next;
+        private boolean linked;
+
+        private Timeout(TimingWheel wheel, long tick, long deadlineMillis, Runnable task) {
+            this.wheel = wheel;
+            this.tick = tick;
+            this.deadlineMillis = deadlineMillis;
+            this.task = task;
+        }
+
+        /**
+         * @return false if it fired or was cancelled already
+         */
+        public boolean cancel() {
+            if (!linked) {
+                return false;
+            }
+            wheel.unlink(this);
+            task = null;
+            return true;
+        }
+
+        public boolean isPending() {
+            return linked;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package at.pepe.trader.service.engine;
+
+import at.pepe.trader.model.OrderPojo;
+
+/**
+ * Mutable slot of the {@link TradingEventLoop} ring, reused for every kind of event.
+ */
+public class TradingEvent {
+
+    public enum Type {
+        KLINE, // A kline update from the stream, prices in points
+        ORDER, // An execution report or an order from the open orders sync
+        TASK // Timer jobs and anything else that has to run on the strategy thread
+    }
+
+    Type type;
+    long closeTime;
+    long open;
+    long high;
+    long low;
+    long close;
+    double volume;
+    OrderPojo order;
+    Runnable task;
+    long publishedNanos;
+    long receivedNanos; // Kline message arrived at the socket
+
+    void clear() {
+        type = null;
+        order = null;
+        task = null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getCloseTime() {
+        return closeTime;
+    }
+
+    public long getClose() {
+        return close;
+    }
+
+    public OrderPojo getOrder() {
+        return order;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+}
@@ -0,0 +1,323 @@
+package at.pepe.trader.service.engine;
+
+import at.pepe.trader.config.EngineConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.TradingService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.latency.LatencyTracker.Stage;
+import at.pepe.trader.service.position.PositionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single strategy thread all state changing events go through: klines, order updates and tasks. Producers publish
+ * into a {@link MpscRingBuffer} without locks, the strategy thread handles the events in arrival order and advances
+ * the timers of the {@link PositionService} in between.
+ * <p>
+ * Ticks are coalesced latest-value-wins: consecutive updates of the same 1s kline are merged into the last one
+ * before they touch the bars (the update carries the high and low of the whole second), and the trade decision runs
+ * once at the end of a batch on the latest price only. A decision on a price older than
+ * {@code engine.max-tick-age-ms} is dropped, the next tick decides again. Ages are measured from the moment the
+ * kline message was received.
+ * <p>
+ * There is one loop per traded symbol, each with its own thread, bars and positions.
+ */
+@Slf4j
+@Service
+public class TradingEventLoop {
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+
+    private final EngineConfigProperties engineConfigProperties;
+    private final String symbol;
+    private final BarSeriesHolderService barSeriesHolderService;
+    private final TradingService tradingService;
+    private final PositionService positionService;
+    private final LatencyTracker latencyTracker;
+    private final Clock clock;
+    private final MpscRingBuffer<TradingEvent> ring;
+    private final ArrayDeque<Runnable> ownTasks = new ArrayDeque<>(); // Given by the strategy thread to itself, it must never wait for room in its own ring
+    private final long maxTickAgeNanos;
+    private final Counter ticksReceived;
+    private final Counter ticksCoalesced;
+    private final Counter ticksSuperseded;
+    private final Counter ticksStale;
+    private final Timer tickToDecision; // Same samples as trading.latency with stage tick.to.decision, dashboards use this one
+
+    private volatile boolean running;
+    private volatile boolean parked;
+    private Thread thread;
+    private boolean tradePending;
+    private int appliedSinceDecision;
+    private long lastReceivedNanos;
+
+    // The latest kline update, not yet applied to the bars
+    private boolean klinePending;
+    private long closeTime;
+    private long open;
+    private long high;
+    private long low;
+    private long close;
+    private double volume;
+    private long receivedNanos;
+
+    @Autowired
+    public TradingEventLoop(
+            EngineConfigProperties engineConfigProperties,
+            TradeConfigProperties tradeConfigProperties,
+            BarSeriesHolderService barSeriesHolderService,
+            TradingService tradingService,
+            PositionService positionService,
+            LatencyTracker latencyTracker,
+            MeterRegistry meterRegistry,
+            Clock clock
+    ) {
+        this.engineConfigProperties = engineConfigProperties;
+        this.symbol = tradeConfigProperties.getSymbol();
+        this.barSeriesHolderService = barSeriesHolderService;
+        this.tradingService = tradingService;
+        this.positionService = positionService;
+        this.latencyTracker = latencyTracker;
+        this.clock = clock;
+        this.ring = new MpscRingBuffer<>(engineConfigProperties.getRingSize(), TradingEvent::new);
+        this.maxTickAgeNanos = TimeUnit.MILLISECONDS.toNanos(engineConfigProperties.getMaxTickAgeMs());
+        positionService.setStrategyExecutor(this::execute);
+        barSeriesHolderService.setStrategyExecutor(this::execute);
+
+        Gauge.builder("trading.events.backlog", ring, MpscRingBuffer::backlog)
+                .description("Events published but not yet handled by the strategy thread")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
+        ticksReceived = Counter.builder("trading.ticks.received")
+                .description("Kline updates received")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
+        ticksCoalesced = Counter.builder("trading.ticks.coalesced")
+                .description("Kline updates replaced by a later update of the same kline before reaching the bars")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
+        ticksSuperseded = Counter.builder("trading.ticks.superseded")
+                .description("Kline updates applied to the bars but never evaluated, a newer price was evaluated instead")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
+        ticksStale = Counter.builder("trading.ticks.stale")
+                .description("Trade decisions dropped because the latest price was older than engine.max-tick-age-ms")
+                .tag("symbol", symbol)
+                .register(meterRegistry);
+        tickToDecision = Timer.builder("trading.tick.to.decision")
+                .description("Time from receiving a kline update to the trade decision on it")
+                .tag("symbol", symbol)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "strategy-" + symbol);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public void publishKline(long closeTime, long open, long high, long low, long close, double volume, long receivedNanos) {
+        long sequence = ring.next();
+        TradingEvent event = ring.get(sequence);
+        event.type = TradingEvent.Type.KLINE;
+        event.closeTime = closeTime;
+        event.open = open;
+        event.high = high;
+        event.low = low;
+        event.close = close;
+        event.volume = volume;
+        event.receivedNanos = receivedNanos;
+        publish(sequence, event);
+    }
+
+    public void publishOrder(OrderPojo order) {
+        long sequence = ring.next();
+        TradingEvent event = ring.get(sequence);
+        event.type = TradingEvent.Type.ORDER;
+        event.order = order;
+        publish(sequence, event);
+    }
+
+    /**
+     * Runs the task on the strategy thread after everything published before. A task given by the strategy thread
+     * itself runs once the current batch is handled.
+     */
+    public void execute(Runnable task) {
+        if (Thread.currentThread() == thread) {
+            ownTasks.add(task);
+            return;
+        }
+        long sequence = ring.next();
+        TradingEvent event = ring.get(sequence);
+        event.type = TradingEvent.Type.TASK;
+        event.task = task;
+        publish(sequence, event);
+    }
+
+    public long getBacklog() {
+        return ring.backlog();
+    }
+
+    private void publish(long sequence, TradingEvent event) {
+        event.publishedNanos = System.nanoTime();
+        ring.publish(sequence);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        long maxParkNanos = TimeUnit.MICROSECONDS.toNanos(engineConfigProperties.getMaxIdleParkMicros());
+        int idle = 0;
+        while (running) {
+            try {
+                positionService.advanceTimers(clock.millis());
+            } catch (RuntimeException exception) {
+                log.warn("Failure on a timer.", exception);
+            }
+            if (ring.poll(this::onEvent) + runOwnTasks() > 0) {
+                idle = 0;
+            } else if (idle < SPINS) {
+                idle++;
+                Thread.onSpinWait();
+            } else if (idle < SPINS + YIELDS) {
+                idle++;
+                Thread.yield();
+            } else {
+                parked = true;
+                if (ring.isEmpty()) {
+                    LockSupport.parkNanos(maxParkNanos);
+                }
+                parked = false;
+            }
+        }
+        log.info("Strategy thread stopped with {} events left.", ring.backlog());
+    }
+
+    private int runOwnTasks() {
+        int count = 0;
+        for (Runnable task = ownTasks.poll(); task != null; task = ownTasks.poll()) {
+            count++;
+            try {
+                applyPendingKline();
+                task.run();
+            } catch (RuntimeException exception) {
+                log.warn("Failure on a task.", exception);
+            }
+        }
+        return count;
+    }
+
+    private void onEvent(TradingEvent event, long sequence, boolean endOfBatch) {
+        try {
+            switch (event.type) {
+                case KLINE -> onKline(event);
+                case ORDER -> {
+                    applyPendingKline();
+                    positionService.onOrderUpdateEvent(event.order);
+                }
+                case TASK -> {
+                    applyPendingKline();
+                    event.task.run();
+                }
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Failure on {} event.", event.type, exception);
+        } finally {
+            event.clear();
+        }
+
+        if (endOfBatch) {
+            try {
+                applyPendingKline();
+            } catch (RuntimeException exception) {
+                log.warn("Failure on kline update.", exception);
+            }
+            if (tradePending) {
+                try {
+                    positionService.onPrice(barSeriesHolderService.getLastClose());
+                } catch (RuntimeException exception) {
+                    log.warn("Failure on the price triggers.", exception);
+                }
+                decide();
+            }
+        }
+    }
+
+    private void onKline(TradingEvent event) {
+        ticksReceived.increment();
+        latencyTracker.recordSince(Stage.QUEUE, event.publishedNanos);
+        if (klinePending && Math.floorDiv(closeTime, 1000L) == Math.floorDiv(event.closeTime, 1000L)) {
+            ticksCoalesced.increment();
+        } else {
+            applyPendingKline();
+        }
+        klinePending = true;
+        closeTime = event.closeTime;
+        open = event.open;
+        high = event.high;
+        low = event.low;
+        close = event.close;
+        volume = event.volume;
+        receivedNanos = event.receivedNanos;
+    }
+
+    private void applyPendingKline() {
+        if (!klinePending) {
+            return;
+        }
+        klinePending = false;
+        long start = System.nanoTime();
+        if (!barSeriesHolderService.updateBarSeries(closeTime, open, high, low, close, volume)) {
+            return; // Buffered until the history is in, there is nothing to decide on yet
+        }
+        latencyTracker.recordSince(Stage.BAR_UPDATE, start);
+        tradePending = true;
+        appliedSinceDecision++;
+        lastReceivedNanos = receivedNanos;
+    }
+
+    private void decide() {
+        tradePending = false;
+        if (appliedSinceDecision > 1) {
+            ticksSuperseded.increment(appliedSinceDecision - 1);
+        }
+        appliedSinceDecision = 0;
+        long age = System.nanoTime() - lastReceivedNanos;
+        if (age > maxTickAgeNanos) {
+            ticksStale.increment();
+            return;
+        }
+        latencyTracker.record(Stage.TICK_TO_DECISION, age);
+        tickToDecision.record(age, TimeUnit.NANOSECONDS);
+        latencyTracker.setTickNanos(lastReceivedNanos);
+        try {
+            tradingService.performTrade();
+        } catch (RuntimeException exception) {
+            log.warn("Failure on performTrade: ", exception);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package at.pepe.trader.service.indicator;
+
+/**
+ * Bollinger bands around an EMA middle line, maintained incrementally.
+ * Mirrors ta4j's EMAIndicator / StandardDeviationIndicator (population variance over the last window bars,
+ * the still forming bar included) without rebuilding any indicator chain.
+ * Every price update is O(1); sums are re-anchored once per window of closed bars to keep rounding drift away.
+ * Not thread safe, only the strategy thread updates and reads the bands.
+ */
+public class IncrementalBollingerBands {
+
+    private final int window;
+    private final double multiplier;
+    private final double emaFactor;
+
+    private final double[] closes;
+    private int head = -1; // slot of the current (still forming) bar
+    private int count = 0;
+    private int closedSinceAnchor = 0;
+
+    // Sums are kept relative to an anchor price, the variance is shift invariant and this avoids cancellation.
+    private double anchor;
+    private double sum;
+    private double sumSq;
+
+    private double committedEma; // EMA value of the last closed bar
+    private double currentEma;
+
+    public IncrementalBollingerBands(int window, double multiplier) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 but was " + window);
+        }
+        this.window = window;
+        this.multiplier = multiplier;
+        this.emaFactor = 2d / (window + 1);
+        this.closes = new double[window];
+    }
+
+    /**
+     * Closes the current bar and starts a new one with the given close price.
+     */
+    public void addBar(double close) {
+        if (count == 0) {
+            head = 0;
+            count = 1;
+            anchor = close;
+            closes[0] = close;
+            sum = 0;
+            sumSq = 0;
+            currentEma = close;
+            committedEma = close;
+            return;
+        }
+
+        committedEma = currentEma;
+        head = (head + 1) % window;
+        if (count == window) {
+            double removed = closes[head] - anchor;
+            sum -= removed;
+            sumSq -= removed * removed;
+        } else {
+            count++;
+        }
+        closes[head] = close;
+        double added = close - anchor;
+        sum += added;
+        sumSq += added * added;
+        currentEma = committedEma + emaFactor * (close - committedEma);
+
+        if (++closedSinceAnchor >= window) {
+            reanchor();
+        }
+    }
+
+    /**
+     * Updates the close price of the current (still forming) bar.
+     */
+    public void updateLast(double close) {
+        if (count == 0) {
+            addBar(close);
+            return;
+        }
+        double previous = closes[head] - anchor;
+        double updated = close - anchor;
+        closes[head] = close;
+        sum += updated - previous;
+        sumSq += updated * updated - previous * previous;
+        currentEma = count == 1 ? close : committedEma + emaFactor * (close - committedEma);
+    }
+
+    public void reset() {
+        head = -1;
+        count = 0;
+        closedSinceAnchor = 0;
+        sum = 0;
+        sumSq = 0;
+    }
+
+    public boolean isReady() {
+        return count > 0;
+    }
+
+    public double getMiddle() {
+        return currentEma;
+    }
+
+    public double getStandardDeviation() {
+        if (count == 0) {
+            return 0;
+        }
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0d, sumSq / count - mean * mean));
+    }
+
+    public double getUpper() {
+        return currentEma + multiplier * getStandardDeviation();
+    }
+
+    public double getLower() {
+        return currentEma - multiplier * getStandardDeviation();
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    private void reanchor() {
+        closedSinceAnchor = 0;
+        anchor = closes[head];
+        sum = 0;
+        sumSq = 0;
+        for (int i = 0; i < count; i++) {
+            double value = closes[i] - anchor;
+            sum += value;
+            sumSq += value * value;
+        }
+    }
+}
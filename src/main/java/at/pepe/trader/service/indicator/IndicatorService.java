@@ -0,0 +1,55 @@
+package at.pepe.trader.service.indicator;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.service.candle.BarRingBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class IndicatorService {
+
+    private volatile IncrementalBollingerBands minuteBands;
+
+    @Autowired
+    public IndicatorService(TradeConfigProperties tradeConfigProperties) {
+        this.minuteBands = new IncrementalBollingerBands(
+            tradeConfigProperties.getBollingerWindow(),
+            tradeConfigProperties.getBollingerMultiplier()
+        );
+    }
+
+    // Replays the whole series, used once after the candles got loaded.
+    public void seedMinuteBands(BarRingBuffer minuteBars) {
+        minuteBands.reset();
+        for (long i = minuteBars.getBeginIndex(); i <= minuteBars.getEndIndex(); i++) {
+            minuteBands.addBar(minuteBars.getClose(i));
+        }
+        log.info("Seeded minute bollinger bands with {} bars.", minuteBars.getBarCount());
+    }
+
+    /**
+     * Swaps in bands with new parameters, seeded from the given bars so they are ready right away.
+     */
+    public void reconfigureMinuteBands(int window, double multiplier, BarRingBuffer minuteBars) {
+        IncrementalBollingerBands bands = new IncrementalBollingerBands(window, multiplier);
+        for (long i = minuteBars.getBeginIndex(); i <= minuteBars.getEndIndex(); i++) {
+            bands.addBar(minuteBars.getClose(i));
+        }
+        minuteBands = bands;
+        log.info("Reconfigured minute bollinger bands to window {} and multiplier {}.", window, multiplier);
+    }
+
+    public void onMinuteBarAdded(double close) {
+        minuteBands.addBar(close);
+    }
+
+    public void onMinuteBarUpdated(double close) {
+        minuteBands.updateLast(close);
+    }
+
+    public IncrementalBollingerBands getMinuteBands() {
+        return minuteBands;
+    }
+}
@@ -0,0 +1,82 @@
+package at.pepe.trader.service.journal;
+
+import at.pepe.trader.config.JournalConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.journal.DailyJournal;
+import at.pepe.trader.journal.ExecutionReportJournal;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Appends every received execution report to the daily execution report journal when enabled.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExecutionReportJournalService {
+    private final JournalConfigProperties journalConfigProperties;
+    private final TradeConfigProperties tradeConfigProperties;
+
+    private PriceScale priceScale;
+    private PriceScale quantityScale;
+    private DailyJournal journal;
+
+    @PostConstruct
+    void open() throws IOException {
+        priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        quantityScale = new PriceScale(tradeConfigProperties.getBaseAssetScale());
+        if (!journalConfigProperties.isExecutionReports()) {
+            return;
+        }
+        journal = new DailyJournal(
+                Path.of(journalConfigProperties.getPath()),
+                ExecutionReportJournal.prefixFor(tradeConfigProperties.getSymbol()),
+                ExecutionReportJournal.MAGIC,
+                ExecutionReportJournal.RECORD_SIZE,
+                tradeConfigProperties.getQuoteAssetScale(),
+                journalConfigProperties.getInitialRecordsPerFile()
+        );
+    }
+
+    public synchronized void record(OrderPojo order) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            long eventTime = order.getUpdatedAt() == null ? System.currentTimeMillis() : order.getUpdatedAt().toInstant().toEpochMilli();
+            ExecutionReportJournal.write(journal.fileFor(eventTime), order, priceScale, quantityScale);
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Failed to journal execution report of order {}.", order.getOrderId(), exception);
+        }
+    }
+
+    public long replay(long fromMillis, long toMillis, Consumer<OrderPojo> consumer) throws IOException {
+        return ExecutionReportJournal.replay(Path.of(journalConfigProperties.getPath()), tradeConfigProperties.getSymbol(),
+                fromMillis, toMillis, priceScale, quantityScale, consumer);
+    }
+
+    @Scheduled(fixedDelayString = "${journal.force-interval-ms:10000}")
+    public synchronized void force() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+}
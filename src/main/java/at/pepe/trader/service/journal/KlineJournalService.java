@@ -0,0 +1,74 @@
+package at.pepe.trader.service.journal;
+
+import at.pepe.trader.backtest.KlineTape;
+import at.pepe.trader.config.JournalConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.journal.DailyJournal;
+import at.pepe.trader.journal.KlineJournalReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Appends every received kline to the daily kline journal, in the same record format as the {@link KlineTape}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KlineJournalService {
+    private final JournalConfigProperties journalConfigProperties;
+    private final TradeConfigProperties tradeConfigProperties;
+
+    private DailyJournal journal;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!journalConfigProperties.isKlines()) {
+            return;
+        }
+        journal = new DailyJournal(
+                Path.of(journalConfigProperties.getPath()),
+                KlineJournalReader.prefixFor(tradeConfigProperties.getSymbol()),
+                KlineTape.MAGIC,
+                KlineTape.RECORD_SIZE,
+                tradeConfigProperties.getQuoteAssetScale(),
+                journalConfigProperties.getInitialRecordsPerFile()
+        );
+    }
+
+    public synchronized void record(long closeTime, long open, long high, long low, long close, double volume) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            KlineTape.append(journal.fileFor(closeTime), closeTime, open, high, low, close, volume);
+        } catch (IOException exception) {
+            log.warn("Failed to journal kline {}.", closeTime, exception);
+        }
+    }
+
+    public KlineJournalReader reader() {
+        return new KlineJournalReader(Path.of(journalConfigProperties.getPath()), tradeConfigProperties.getSymbol());
+    }
+
+    @Scheduled(fixedDelayString = "${journal.force-interval-ms:10000}")
+    public synchronized void force() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+}
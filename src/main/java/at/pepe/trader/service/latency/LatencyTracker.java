@@ -0,0 +1,194 @@
+package at.pepe.trader.service.latency;
+
+import at.pepe.trader.config.LatencyConfigProperties;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of every stage from a kline arriving to the order being acknowledged. Each sample goes into a Micrometer
+ * timer (trading.latency, tagged with the stage) and into a wait-free HdrHistogram recorder that the periodic summary
+ * drains, so the summary always covers exactly the time since the previous one.
+ * Order acks are correlated by the client order id, only the first execution report of an order counts.
+ */
+@Slf4j
+@Service
+public class LatencyTracker {
+
+    public enum Stage {
+        PARSE("parse"), // Kline message received until its fields are parsed
+        QUEUE("queue"), // Kline published until the strategy thread picked it up
+        BAR_UPDATE("bar.update"), // Bars and incremental indicators updated
+        INDICATOR("indicator"), // Trade signal evaluated
+        POSITION_CHECK("position.check"), // Limits and duplicate checks before placing the order
+        ORDER_SEND("order.send"), // New order request serialized and handed to the websocket
+        ORDER_RESPONSE("order.response"), // Order API request sent until its response arrived
+        ORDER_ACK("order.ack"), // New order sent until its first execution report arrived, whatever its status
+        TICK_TO_DECISION("tick.to.decision"), // Kline received until the trade decision started
+        TICK_TO_ORDER("tick.to.order"); // Kline received until the order triggered by it was sent
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyConfigProperties latencyConfigProperties;
+    private final DiscordEmbedPublishingService discordEmbedPublishingService;
+    private final ObjectMapper objectMapper;
+    private final Timer[] timers = new Timer[STAGES.length];
+    private final Recorder[] recorders = new Recorder[STAGES.length];
+    private final Counter lostAcks;
+    private final Map<String, Long> ordersInFlight = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<long[]> tickNanos = ThreadLocal.withInitial(() -> new long[1]); // One per strategy thread
+
+    @Autowired
+    public LatencyTracker(
+            LatencyConfigProperties latencyConfigProperties,
+            MeterRegistry meterRegistry,
+            DiscordEmbedPublishingService discordEmbedPublishingService,
+            ObjectMapper objectMapper
+    ) {
+        this.latencyConfigProperties = latencyConfigProperties;
+        this.discordEmbedPublishingService = discordEmbedPublishingService;
+        this.objectMapper = objectMapper;
+        for (Stage stage : STAGES) {
+            timers[stage.ordinal()] = Timer.builder("trading.latency")
+                    .description("Latency of one stage from kline to order ack")
+                    .tag("stage", stage.getTag())
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            recorders[stage.ordinal()] = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        }
+        lostAcks = Counter.builder("trading.latency.lost.acks")
+                .description("Orders without an execution report within latency.ack-timeout-ms")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records nothing, used when replaying history.
+     */
+    public static LatencyTracker disabled() {
+        LatencyConfigProperties properties = new LatencyConfigProperties();
+        properties.setEnabled(false);
+        return new LatencyTracker(properties, new SimpleMeterRegistry(), null, null);
+    }
+
+    public void recordSince(Stage stage, long startNanos) {
+        if (!latencyConfigProperties.isEnabled()) {
+            return;
+        }
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    public void record(Stage stage, long nanos) {
+        if (!latencyConfigProperties.isEnabled() || nanos < 0) {
+            return;
+        }
+        timers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        recorders[stage.ordinal()].recordValue(Math.min(nanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Receive time of the kline the calling strategy thread is deciding on.
+     */
+    public void setTickNanos(long tickNanos) {
+        this.tickNanos.get()[0] = tickNanos;
+    }
+
+    public long getTickNanos() {
+        return tickNanos.get()[0];
+    }
+
+    public void orderSent(String clientOrderId, long sentNanos) {
+        if (latencyConfigProperties.isEnabled()) {
+            ordersInFlight.put(clientOrderId, sentNanos);
+        }
+    }
+
+    public void orderAcknowledged(String clientOrderId) {
+        if (clientOrderId == null) {
+            return;
+        }
+        Long sentNanos = ordersInFlight.remove(clientOrderId);
+        if (sentNanos != null) {
+            recordSince(Stage.ORDER_ACK, sentNanos);
+        }
+    }
+
+    @Scheduled(cron = "${latency.summary-cron:0 0 * * * *}")
+    public void publishSummary() {
+        if (!latencyConfigProperties.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(latencyConfigProperties.getAckTimeoutMs());
+        ordersInFlight.entrySet().removeIf(entry -> {
+            boolean lost = now - entry.getValue() > timeout;
+            if (lost) {
+                lostAcks.increment();
+            }
+            return lost;
+        });
+
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        StringBuilder description = new StringBuilder();
+        for (Stage stage : STAGES) {
+            Histogram histogram = recorders[stage.ordinal()].getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getTotalCount());
+            values.put("p50", micros(histogram.getValueAtPercentile(50)));
+            values.put("p90", micros(histogram.getValueAtPercentile(90)));
+            values.put("p99", micros(histogram.getValueAtPercentile(99)));
+            values.put("p999", micros(histogram.getValueAtPercentile(99.9)));
+            values.put("max", micros(histogram.getMaxValue()));
+            summary.put(stage.getTag(), values);
+            description.append(String.format("%s: p50 %.0f µs, p99 %.0f µs, max %.0f µs (%d)\n", stage.getTag(),
+                    values.get("p50"), values.get("p99"), values.get("max"), histogram.getTotalCount()));
+        }
+        if (summary.isEmpty()) {
+            return;
+        }
+
+        try {
+            log.info("Latency summary {}", objectMapper.writeValueAsString(summary));
+        } catch (JsonProcessingException exception) {
+            log.warn("Failed to write the latency summary.", exception);
+        }
+        if (latencyConfigProperties.isDiscordSummary()) {
+            discordEmbedPublishingService.sendEmbed("Latency", description.toString(), "#9e9e9e");
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000d;
+    }
+}
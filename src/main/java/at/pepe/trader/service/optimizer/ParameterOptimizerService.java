@@ -0,0 +1,77 @@
+package at.pepe.trader.service.optimizer;
+
+import at.pepe.trader.backtest.KlineTape;
+import at.pepe.trader.backtest.ParameterSweep;
+import at.pepe.trader.backtest.SweepResult;
+import at.pepe.trader.config.OptimizerConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.TradingParameters;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.TradingService;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.engine.TradingEventLoop;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Replays the kline tape with the candidate parameters and applies the best ones. Only trade.symbol is tuned, the
+ * tape holds its klines alone. The shards of shards.symbols keep the parameters they were configured with.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ParameterOptimizerService {
+
+    private final OptimizerConfigProperties optimizerConfigProperties;
+    private final TradeConfigProperties tradeConfigProperties;
+    private final TradingParametersHolder tradingParametersHolder;
+    private final TradingService tradingService;
+    private final TradingEventLoop tradingEventLoop;
+    private final DiscordEmbedPublishingService discordEmbedPublishingService;
+
+    @Scheduled(cron = "${optimizer.cron:-}")
+    public void optimize() {
+        Path tapePath = Path.of(optimizerConfigProperties.getTapePath());
+        if (!Files.exists(tapePath)) {
+            log.warn("No kline tape at {}, skipping optimization.", tapePath);
+            return;
+        }
+
+        List<SweepResult> results;
+        TradingParameters current = tradingParametersHolder.get();
+        try (KlineTape tape = KlineTape.open(tapePath)) {
+            // The sweep starts from the parameters in effect, not the ones configured at startup
+            ParameterSweep sweep = new ParameterSweep(
+                    tape,
+                    tradeConfigProperties.withTradingParameters(current),
+                    optimizerConfigProperties.getInitialQuoteBalance(),
+                    optimizerConfigProperties.getDrawdownWeight()
+            );
+            results = sweep.run(ParameterSweep.candidates(optimizerConfigProperties, current), optimizerConfigProperties.getParallelism());
+        } catch (IOException | RuntimeException e) {
+            log.error("Optimization failed.", e);
+            return;
+        }
+
+        SweepResult best = results.get(0);
+        SweepResult currentResult = results.stream().filter(result -> result.parameters().equals(current)).findFirst().orElseThrow();
+        log.info("Optimized over {} parameter sets, best {} with score {}, current {} with score {}",
+                results.size(), best.parameters(), best.score(), current, currentResult.score());
+
+        if (optimizerConfigProperties.isAutoApply() && best.score() > currentResult.score()) {
+            tradingEventLoop.execute(() -> tradingService.applyParameters(best.parameters()));
+            discordEmbedPublishingService.sendEmbed(
+                    tradeConfigProperties.getSymbol() + " Parameters applied",
+                    String.format("%s\nScore: %.2f (was %.2f)\n%s", best.parameters(), best.score(), currentResult.score(), best.result()),
+                    "#304ffe"
+            );
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package at.pepe.trader.service.position;
+
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.shard.ShardRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emergency switch, exposed over JMX: the delete operation cancels every open order of every traded symbol.
+ */
+@Component
+@Endpoint(id = "openorders")
+@RequiredArgsConstructor
+public class OpenOrdersEndpoint {
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final int UNKNOWN_ORDER = -2011; // Binance answers a cancel-all without open orders with it
+
+    private final ShardRegistry shardRegistry;
+
+    // Every symbol is reported on its own, one that failed does not hide what the others cancelled
+    @DeleteOperation
+    public String cancelAll() {
+        Map<String, CompletableFuture<Outcome>> outcomes = new LinkedHashMap<>();
+        shardRegistry.cancelAllOrders().forEach((symbol, ack) -> outcomes.put(symbol, ack
+                .handle(OpenOrdersEndpoint::outcome)
+                .completeOnTimeout(new Outcome(0, "no response within " + TIMEOUT_SECONDS + " s"), TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+        int cancelled = 0;
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Outcome>> entry : outcomes.entrySet()) {
+            Outcome outcome = entry.getValue().join();
+            cancelled += outcome.cancelled();
+            if (outcome.failure() != null) {
+                failed.add(entry.getKey() + " " + outcome.failure());
+            }
+        }
+        return "Cancelled " + cancelled + " orders" + (failed.isEmpty() ? "" : ", failed for " + failed);
+    }
+
+    private static Outcome outcome(OrderAck ack, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            return new Outcome(0, cause.toString());
+        }
+        if (ack.isSuccess()) {
+            return new Outcome(ack.getCancelledOrders().size(), null);
+        }
+        if (ack.getErrorCode() != null && ack.getErrorCode() == UNKNOWN_ORDER) {
+            return new Outcome(0, null);
+        }
+        return new Outcome(0, ack.getErrorCode() + ": " + ack.getErrorMessage());
+    }
+
+    private record Outcome(int cancelled, String failure) {
+    }
+}
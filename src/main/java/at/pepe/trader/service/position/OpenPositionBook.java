@@ -0,0 +1,127 @@
+package at.pepe.trader.service.position;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.model.PriceScale;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * In memory book of the active (not yet FINISHED or CANCELLED) positions, indexed by status and open price in points.
+ * Duplicate and proximity checks are range lookups on the price index instead of scans over all positions.
+ * Positions reaching a terminal status leave the book and are kept in a small cold cache, the repository is the
+ * source of truth for everything older.
+ */
+public class OpenPositionBook {
+    private static final Set<PositionStatus> TERMINAL = EnumSet.of(PositionStatus.FINISHED, PositionStatus.CANCELLED);
+
+    private final PriceScale priceScale;
+    private final int coldCacheSize;
+
+    private final Map<Long, Position> active = new HashMap<>();
+    private final Map<Long, IndexKey> indexKeys = new HashMap<>();
+    private final Map<PositionStatus, NavigableMap<Long, Map<Long, Position>>> byStatusAndPrice = new EnumMap<>(PositionStatus.class);
+    private final Map<Long, Position> cold;
+
+    public OpenPositionBook(PriceScale priceScale, int coldCacheSize) {
+        this.priceScale = priceScale;
+        this.coldCacheSize = coldCacheSize;
+        this.cold = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Position> eldest) {
+                return size() > OpenPositionBook.this.coldCacheSize;
+            }
+        };
+        for (PositionStatus status : PositionStatus.values()) {
+            if (!TERMINAL.contains(status)) {
+                byStatusAndPrice.put(status, new TreeMap<>());
+            }
+        }
+    }
+
+    /**
+     * Adds the position or re-indexes it after its status or open price changed.
+     */
+    public synchronized void update(Position position) {
+        long id = position.getId();
+        IndexKey previous = indexKeys.remove(id);
+        if (previous != null) {
+            removeFromIndex(previous, id);
+        }
+
+        if (TERMINAL.contains(position.getStatus())) {
+            active.remove(id);
+            cold.put(id, position);
+            return;
+        }
+
+        IndexKey key = new IndexKey(position.getStatus(), priceScale.toPoints(position.getOpenAtPrice()));
+        active.put(id, position);
+        indexKeys.put(id, key);
+        byStatusAndPrice.get(key.status())
+            .computeIfAbsent(key.price(), price -> new LinkedHashMap<>(2))
+            .put(id, position);
+    }
+
+    public synchronized Position get(long id) {
+        Position position = active.get(id);
+        return position != null ? position : cold.get(id);
+    }
+
+    public synchronized boolean contains(long id) {
+        return active.containsKey(id) || cold.containsKey(id);
+    }
+
+    public synchronized boolean hasActiveAt(long price) {
+        for (NavigableMap<Long, Map<Long, Position>> index : byStatusAndPrice.values()) {
+            if (index.containsKey(price)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean hasAtOrAbove(PositionStatus status, long minPrice) {
+        return byStatusAndPrice.get(status).ceilingKey(minPrice) != null;
+    }
+
+    public synchronized List<Position> findAtOrAbove(PositionStatus status, long minPrice) {
+        List<Position> result = new ArrayList<>();
+        byStatusAndPrice.get(status).tailMap(minPrice, true).values().forEach(level -> result.addAll(level.values()));
+        return result;
+    }
+
+    public synchronized int countCreatedAfter(PositionStatus status, OffsetDateTime since) {
+        if (TERMINAL.contains(status)) {
+            return 0;
+        }
+        int count = 0;
+        for (Map<Long, Position> level : byStatusAndPrice.get(status).values()) {
+            for (Position position : level.values()) {
+                if (position.getCreatedAt() != null && position.getCreatedAt().isAfter(since)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public synchronized int size() {
+        return active.size();
+    }
+
+    private void removeFromIndex(IndexKey key, long id) {
+        NavigableMap<Long, Map<Long, Position>> index = byStatusAndPrice.get(key.status());
+        Map<Long, Position> level = index.get(key.price());
+        if (level != null) {
+            level.remove(id);
+            if (level.isEmpty()) {
+                index.remove(key.price());
+            }
+        }
+    }
+
+    private record IndexKey(PositionStatus status, long price) {
+    }
+}
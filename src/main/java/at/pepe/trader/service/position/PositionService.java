@@ -1,132 +1,289 @@
 package at.pepe.trader.service.position;
 
 import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
 import at.pepe.trader.model.OrderPojo;
 import at.pepe.trader.model.Position;
 import at.pepe.trader.model.PositionStatus;
-import at.pepe.trader.persistent.PositionRepositoryImpl;
-import at.pepe.trader.service.binance.OrderService;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.persistent.PositionRepository;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.binance.OrderGateway;
+import at.pepe.trader.service.binance.OrderNotSentException;
 import at.pepe.trader.service.candle.BarSeriesHolderService;
 import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.engine.TimingWheel;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.latency.LatencyTracker.Stage;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Instant;
-import java.time.ZoneOffset;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @Service
 public class PositionService {
 
     private final TradeConfigProperties tradeConfigProperties;
-    private final PositionRepositoryImpl positionRepository;
-    private final OrderService orderService;
+    private final TradingParametersHolder tradingParametersHolder;
+    private final PositionRepository positionRepository;
+    private final OrderGateway orderService;
     private final BarSeriesHolderService barSeriesHolderService;
     private final DiscordEmbedPublishingService discordEmbedPublishingService;
+    private final RollingStatisticsService rollingStatisticsService;
+    private final LatencyTracker latencyTracker;
+    private final Clock clock;
 
-    private Map<Long, Position> positions = new ConcurrentHashMap<>();
+    private final OpenPositionBook positions;
+    private final TimingWheel timers = new TimingWheel(TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+    private final Map<Long, TimingWheel.Timeout> ageTimers = new HashMap<>();
+    private final PriceTriggerIndex staleTriggers = new PriceTriggerIndex(); // Buys old enough to be cancelled once the price moves away
 
-    private BigDecimal baseAssetToNoDeciConv;
+    private final PriceScale priceScale;
+    private final long upperBoundsPoints;
+    private final long lowerBoundsPoints;
 
+    private Executor strategyExecutor = Runnable::run; // Order acks are handled here, the strategy thread once it runs
     private int openedInCombo = 0;
-    private int openComboResetCounter = 0;
+    private TimingWheel.Timeout comboReset;
     private final int MAX_POS_OVER_HOUR = 5;
+    private static final int COLD_POSITION_CACHE_SIZE = 1000;
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_WHEEL_SIZE = 1024; // About 100 s per revolution
+    private static final long MAX_ORDER_AGE_MILLIS = 60_000; // Buys younger than this are never cancelled
+    private static final long STALE_RETRY_MILLIS = 20_000; // A failed cancel is tried again after this long
+    private static final long COMBO_RESET_MILLIS = 3_600_000;
 
     @Autowired
     public PositionService(
         TradeConfigProperties tradeConfigProperties,
-        PositionRepositoryImpl positionRepository,
-        OrderService orderService,
+        TradingParametersHolder tradingParametersHolder,
+        PositionRepository positionRepository,
+        OrderGateway orderService,
         BarSeriesHolderService barSeriesHolderService,
-        DiscordEmbedPublishingService discordEmbedPublishingService
+        DiscordEmbedPublishingService discordEmbedPublishingService,
+        RollingStatisticsService rollingStatisticsService,
+        LatencyTracker latencyTracker,
+        Clock clock
     ) {
         this.tradeConfigProperties = tradeConfigProperties;
+        this.tradingParametersHolder = tradingParametersHolder;
         this.positionRepository = positionRepository;
         this.orderService = orderService;
         this.barSeriesHolderService = barSeriesHolderService;
-        this.baseAssetToNoDeciConv = new BigDecimal(10).pow(tradeConfigProperties.getQuoteAssetScale());
+        this.priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        this.positions = new OpenPositionBook(priceScale, COLD_POSITION_CACHE_SIZE);
+        this.upperBoundsPoints = priceScale.toPoints(tradeConfigProperties.getUpperBounds());
+        this.lowerBoundsPoints = priceScale.toPoints(tradeConfigProperties.getLowerBounds());
         this.discordEmbedPublishingService = discordEmbedPublishingService;
+        this.rollingStatisticsService = rollingStatisticsService;
+        this.latencyTracker = latencyTracker;
+        this.clock = clock;
     }
 
 
-    public boolean openPosition(BigDecimal price) {
+    public boolean openPosition(long price) {
+        long start = System.nanoTime();
         // We only open the position if we have less than MAX_POS_OVER_HOUR unfinished positions in a row.
         // Meaning the counter reduces as soon as one closes or if more than 1 hour has passed since opening the last of the MAX_POS_OVER_HOUR it resets
-        if (openedInCombo >= MAX_POS_OVER_HOUR) {
+        boolean allowed = openedInCombo < MAX_POS_OVER_HOUR &&
+            !positions.hasActiveAt(price) &&
+            !hasOpenOrderWaitingInProximity(price);
+        latencyTracker.recordSince(Stage.POSITION_CHECK, start);
+        if (!allowed) {
             return false;
         }
 
-        if (Optional.ofNullable(positions.values())
-            .orElse(List.of()).stream()
-            .anyMatch(pos ->
-                !Set.of(PositionStatus.FINISHED, PositionStatus.CANCELLED).contains(pos.getStatus()) &&
-                    pos.getOpenAtPrice().equals(price))
-        ) {
-            return false;
+        placeOrder(price, buyQuantity(price), "BUY", new Random().nextLong());
+        latencyTracker.recordSince(Stage.TICK_TO_ORDER, latencyTracker.getTickNanos());
+        return true;
+    }
+
+    /**
+     * The executor order acks are handed to, it has to run them on the strategy thread.
+     */
+    public void setStrategyExecutor(Executor strategyExecutor) {
+        this.strategyExecutor = strategyExecutor;
+    }
+
+    // The position follows the ack right away, the execution report of the user data stream confirms it later
+    private void placeOrder(long price, BigDecimal quantity, String action, long clientId) {
+        orderService.createNewOrder(price, quantity, action, clientId)
+            .whenCompleteAsync((ack, failure) -> onOrderAck(action + " of position " + clientId, ack, failure), strategyExecutor);
+    }
+
+    private BigDecimal buyQuantity(long price) {
+        return tradingParametersHolder.get().getQuoteAssetQuantityPerTrade().setScale(tradeConfigProperties.getQuoteAssetScale(), RoundingMode.DOWN)
+            .divide(priceScale.toBigDecimal(price), RoundingMode.UP).setScale(tradeConfigProperties.getBaseAssetScale(), RoundingMode.DOWN);
+    }
+
+    private void onOrderAck(String request, OrderAck ack, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            // Shed by the rate limiter or not connected: the exchange never saw it, there is nothing to wait for
+            if (cause instanceof RejectedExecutionException || cause instanceof OrderNotSentException) {
+                log.warn("{} was not sent: {}", request, cause.getMessage());
+            } else {
+                log.warn("No response to {}, waiting for the user data stream: {}", request, cause.toString());
+            }
+            return;
+        }
+        // A cancel-replace may have cancelled even if placing the new order failed
+        if (ack.getCancelledOrders() != null) {
+            ack.getCancelledOrders().forEach(this::onOrderUpdateEvent);
+        }
+        if (!ack.isSuccess() || ack.getErrorCode() != null) {
+            log.warn("{} was rejected with {}: {}", request, ack.getErrorCode(), ack.getErrorMessage());
+            return;
         }
+        // Fills are left to the execution reports, only they carry the commission
+        if (ack.getOrder() != null && Set.of("NEW", "CANCELED").contains(ack.getOrder().getOrderStatus())) {
+            onOrderUpdateEvent(ack.getOrder());
+        }
+    }
 
-        if (!hasOpenOrderWaitingInProximity(price)) {
-            orderService.createNewOrder(
-                price,
-                tradeConfigProperties.getQuoteAssetQuantityPerTrade().setScale(tradeConfigProperties.getQuoteAssetScale(), RoundingMode.DOWN)
-                    .divide(price, RoundingMode.UP).setScale(tradeConfigProperties.getBaseAssetScale(), RoundingMode.DOWN),
-                "BUY",
-                new Random().nextLong()
-            );
-            return true;
+    /**
+     * Emergency stop: cancels every open order of the symbol, the positions follow the acks.
+     */
+    public CompletableFuture<OrderAck> cancelAllOrders() {
+        log.warn("Cancelling all open orders.");
+        CompletableFuture<OrderAck> result = orderService.cancelAllOrders();
+        result.whenCompleteAsync((ack, failure) -> onOrderAck("Cancel of all orders", ack, failure), strategyExecutor);
+        return result;
+    }
+
+    private boolean hasOpenOrderWaitingInProximity(long price) {
+        return positions.hasAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price - 3);
+    }
+
+    /**
+     * Fires the timers that are due, on the strategy thread.
+     */
+    public void advanceTimers(long nowMillis) {
+        timers.advance(nowMillis);
+    }
+
+    /**
+     * Cancels the buys old enough whose price the market left, as soon as it happens. Called on the strategy thread
+     * for every price applied to the bars.
+     */
+    public void onPrice(long currentPrice) {
+        List<Long> triggered = staleTriggers.pollOutside(currentPrice, staleDistance());
+        if (triggered.isEmpty()) {
+            return;
+        }
+        List<Position> stale = new ArrayList<>(triggered.size());
+        for (long id : triggered) {
+            Position position = positions.get(id);
+            if (position != null && PositionStatus.WAITING_FOR_OPEN.equals(position.getStatus())) {
+                stale.add(position);
+            }
+        }
+        cancelStale(stale, currentPrice);
+    }
+
+    // Cancel order when price moved by more than half the gap since creation of order.
+    private long staleDistance() {
+        return (long) Math.floor(((double) tradingParametersHolder.get().getGapSizePoints() / 2d) + 1d);
+    }
+
+    // The buy reached the age it may be cancelled at, from now on the price decides
+    private void onOrderAged(long id) {
+        ageTimers.remove(id);
+        Position position = positions.get(id);
+        if (position == null || !PositionStatus.WAITING_FOR_OPEN.equals(position.getStatus())) {
+            return;
         }
-        return false;
+        staleTriggers.add(id, priceScale.toPoints(position.getOpenAtPrice()));
+        onPrice(barSeriesHolderService.getLastClose());
     }
 
-    private boolean hasOpenOrderWaitingInProximity(BigDecimal price) {
-        return positions.values().stream()
-            .filter(pos -> PositionStatus.WAITING_FOR_OPEN.equals(pos.getStatus()))
-            .anyMatch(pos ->
-                price.multiply(baseAssetToNoDeciConv)
-                    .subtract(
-                        pos.getOpenAtPrice().multiply(baseAssetToNoDeciConv)
-                    ).doubleValue() <= 3);
+    private void cancelStale(List<Position> stale, long currentPrice) {
+        if (stale.isEmpty()) {
+            return;
+        }
+        List<Position> list = new ArrayList<>(stale);
+        list.sort(Comparator.comparing(Position::getOpenAtPrice).reversed());
+
+        // The closest one moves to where a new position would be opened now, the others are only cancelled
+        long target = currentPrice - tradingParametersHolder.get().getGapSizePoints() / 2;
+        Position replaced = canReplaceAt(target, list) ? list.get(0) : null;
+        for (Position pos : list) {
+            CompletableFuture<OrderAck> ack;
+            String request;
+            if (pos == replaced) {
+                long clientId = new Random().nextLong();
+                ack = orderService.cancelReplaceOrder(pos.getOrderIdOpen(), target, buyQuantity(target), "BUY", clientId);
+                request = "Replace of position " + pos.getId() + " by " + clientId;
+            } else {
+                ack = orderService.cancelOrder(pos.getOrderIdOpen());
+                request = "Cancel of position " + pos.getId();
+            }
+            ack.whenCompleteAsync((response, failure) -> {
+                onOrderAck(request, response, failure);
+                retryIfStillWaiting(pos.getId());
+            }, strategyExecutor);
+        }
+        log.info("Cleared {} old orders{}.", list.size(), replaced != null ? ", moved one to " + priceScale.format(target) : "");
     }
 
-    @Scheduled(cron = "*/20 * * * * *")
-    private void cancelOldPositions() {
-        BigDecimal currentPrice = (BigDecimal) barSeriesHolderService.getSecondSeries().getLastBar().getClosePrice().getDelegate();
-
-        // Cancel order when price rises by more than 2 points since creation of order.
-        List<Position> list = positions.values().stream()
-            .filter(pos -> PositionStatus.WAITING_FOR_OPEN.equals(pos.getStatus()))
-            .filter(pos -> pos.getCreatedAt().isBefore(Instant.now().atOffset(ZoneOffset.UTC).minusMinutes(1)))
-            .filter(pos -> Math.abs(
-                currentPrice.multiply(baseAssetToNoDeciConv)
-                    .subtract(
-                        pos.getOpenAtPrice().multiply(baseAssetToNoDeciConv)
-                    ).doubleValue()
-            ) > (((double) tradeConfigProperties.getGapSizePoints() / 2d) + 1d))
-            .toList();
-        list.forEach(pos ->
-            orderService.cancelOrder(pos.getOrderIdOpen())
-        );
-
-        if (!list.isEmpty()) {
-            log.info("Cleared {} old orders.", list.size());
+    private void retryIfStillWaiting(long id) {
+        Position position = positions.get(id);
+        if (position != null && PositionStatus.WAITING_FOR_OPEN.equals(position.getStatus()) && !ageTimers.containsKey(id)) {
+            ageTimers.put(id, timers.schedule(clock.millis() + STALE_RETRY_MILLIS, () -> onOrderAged(id)));
         }
     }
 
-    @Scheduled(cron = "0 * * * * *")
-    private void resetPositionInRowCounter() {
-        if (openComboResetCounter >= 60) {
-            openedInCombo = 0;
-            openComboResetCounter = 0;
-        } else if (openedInCombo >= (MAX_POS_OVER_HOUR - 1)) {
-            openComboResetCounter++;
+    // Same checks as opening a position, the stale orders themselves do not count as they are gone afterwards
+    private boolean canReplaceAt(long target, List<Position> stale) {
+        return tradeConfigProperties.isReplaceStaleOrders() &&
+            openedInCombo < MAX_POS_OVER_HOUR &&
+            lowerBoundsPoints < target && upperBoundsPoints > target &&
+            !positions.hasActiveAt(target) &&
+            stale.containsAll(positions.findAtOrAbove(PositionStatus.WAITING_FOR_OPEN, target - 3));
+    }
+
+    // The combo counter resets an hour after it got close to its limit, unless a position closed in between
+    private void updateComboReset() {
+        boolean nearLimit = openedInCombo >= (MAX_POS_OVER_HOUR - 1);
+        if (nearLimit && comboReset == null) {
+            comboReset = timers.schedule(clock.millis() + COMBO_RESET_MILLIS, () -> {
+                comboReset = null;
+                openedInCombo = 0;
+            });
+        } else if (!nearLimit && comboReset != null) {
+            comboReset.cancel();
+            comboReset = null;
+        }
+    }
+
+    // Keeps the book, the age timers and the price triggers in line with the status of the position. A waiting buy
+    // gets its age timer here, also when it is reloaded from the repository
+    private void index(Position position) {
+        positions.update(position);
+        long id = position.getId();
+        if (PositionStatus.WAITING_FOR_OPEN.equals(position.getStatus())) {
+            if (!ageTimers.containsKey(id) && !staleTriggers.contains(id)) {
+                long createdAt = position.getCreatedAt() != null ? position.getCreatedAt().toInstant().toEpochMilli() : clock.millis();
+                ageTimers.put(id, timers.schedule(createdAt + MAX_ORDER_AGE_MILLIS, () -> onOrderAged(id)));
+            }
         } else {
-            openComboResetCounter = 0;
+            staleTriggers.remove(position.getId());
+            TimingWheel.Timeout ageTimer = ageTimers.remove(position.getId());
+            if (ageTimer != null) {
+                ageTimer.cancel();
+            }
         }
     }
 
@@ -165,19 +322,22 @@ public class PositionService {
         if (position != null && PositionStatus.WAITING_FOR_OPEN.equals(position.getStatus())) {
             position.setStatus(PositionStatus.OPENED);
             position.setOpenAtPrice(order.getPrice());
+            index(position);
             openedInCombo++;
-            orderService.createNewOrder(position.getCloseAtPrice(), position.getQuantityClose(), "SELL", position.getId());
+            updateComboReset();
+            rollingStatisticsService.onOpened(eventTime(order), position.getOpenAtPrice().multiply(position.getQuantityOpen()));
+            placeOrder(priceScale.toPoints(position.getCloseAtPrice()), position.getQuantityClose(), "SELL", position.getId());
             positionRepository.save(position.getId(), position);
             if (order.getCommissionAmount().doubleValue() > 0) {
                 log.warn("We just had costs: " + order);
                 discordEmbedPublishingService.sendEmbed(
-                    "Paid Commission!",
+                    title("Paid Commission!"),
                     String.format("Newly opened position='%d'\n just had costs of %s\n", position.getId(), order.getCommissionAmount().toString()),
                     "#800080"
                 );
             }
             discordEmbedPublishingService.sendEmbed(
-                "Open " + position.getId(),
+                title("Open " + position.getId()),
                 String.format("Price: %s\nQuantity: %s\nUSD: %s $", position.getOpenAtPrice(), position.getQuantityOpen(), order.getPrice().multiply(order.getQuantity())),
                 "#ADD8E6"
             );
@@ -194,13 +354,15 @@ public class PositionService {
         PositionStatus status = position.getStatus();
         if (Set.of(PositionStatus.WAITING_FOR_OPEN, PositionStatus.WAITING_FOR_CLOSE).contains(status)) {
             position.setStatus(PositionStatus.CANCELLED);
+            index(position);
 
             if (PositionStatus.WAITING_FOR_CLOSE.equals(status)) {
                 log.info(position.toString());
                 position.setClosedAt(order.getUpdatedAt());
-                BigDecimal currentPrice = (BigDecimal) barSeriesHolderService.getSecondSeries().getLastBar().getClosePrice().getDelegate();
+                rollingStatisticsService.onCancelled(eventTime(order));
+                BigDecimal currentPrice = priceScale.toBigDecimal(barSeriesHolderService.getLastClose());
                 discordEmbedPublishingService.sendEmbed(
-                    "Cancelled Pos.: " + position.getId(),
+                    title("Cancelled Pos.: " + position.getId()),
                     String.format("OpenPrice: %s\nQuantity: %s\nOpenUSD: %s $\n CancelPrice: %s\n CancelUSD: %s $", position.getOpenAtPrice(), position.getQuantityOpen(), position.getOpenAtPrice().multiply(position.getQuantityOpen()), currentPrice, currentPrice.multiply(position.getQuantityOpen())),
                     "#800080"
                 );
@@ -214,17 +376,24 @@ public class PositionService {
         Position position = getPosition(order);
         if (position != null && PositionStatus.WAITING_FOR_CLOSE.equals(position.getStatus())) {
             position.setStatus(PositionStatus.FINISHED);
+            index(position);
             position.setClosedAt(order.getUpdatedAt());
             position.setCloseAtPrice(order.getPrice());
             if (openedInCombo > 0) {
                 openedInCombo--;
+                updateComboReset();
             }
+            rollingStatisticsService.onClosed(
+                eventTime(order),
+                position.getCloseAtPrice().multiply(position.getQuantityClose()).subtract(position.getOpenAtPrice().multiply(position.getQuantityOpen())),
+                position.getClosedAt() == null || position.getCreatedAt() == null ? Duration.ZERO : Duration.between(position.getCreatedAt(), position.getClosedAt())
+            );
             positionRepository.save(position.getId(), position);
             log.info(position.toString());
             if (order.getCommissionAmount().doubleValue() > 0) {
                 log.warn("We just had costs: " + order);
                 discordEmbedPublishingService.sendEmbed(
-                    "Paid Commission!",
+                    title("Paid Commission!"),
                     String.format("Newly opened position='%d'\n just had costs of %s\n", position.getId(), order.getCommissionAmount().toString()),
                     "#800080"
                 );
@@ -235,7 +404,7 @@ public class PositionService {
                 .subtract(openPriceUSD)
                 .doubleValue();
             discordEmbedPublishingService.sendEmbed(
-                "Close " + position.getId(),
+                title("Close " + position.getId()),
                 String.format("Quantity: %s\nOpenPrice: %s\nOpenUSD: %s $\nClosePrice: %s\nCloseUSD: %s $\nProfit: %f $",
                     position.getQuantityOpen(),
                     position.getOpenAtPrice(),
@@ -252,22 +421,20 @@ public class PositionService {
 
     private void waitForOpenPosition(OrderPojo orderPojo) {
         long id = Long.parseLong(orderPojo.getClientOrderId().split("_")[0]);
-        if (positions.containsKey(id)) {
+        if (positions.contains(id)) {
             return;
         }
-        BigDecimal baseAssetToNoDeciConv = new BigDecimal(10).pow(tradeConfigProperties.getQuoteAssetScale());
-
         Position position = Position.builder()
             .orderIdOpen(orderPojo.getOrderId())
             .openAtPrice(orderPojo.getPrice())
-            .closeAtPrice(orderPojo.getPrice().add(new BigDecimal(tradeConfigProperties.getGapSizePoints()).setScale(tradeConfigProperties.getQuoteAssetScale(), RoundingMode.HALF_UP).divide(baseAssetToNoDeciConv, RoundingMode.HALF_UP)))
+            .closeAtPrice(priceScale.toBigDecimal(priceScale.toPoints(orderPojo.getPrice()) + tradingParametersHolder.get().getGapSizePoints()))
             .quantityClose(orderPojo.getQuantity())
             .quantityOpen(orderPojo.getQuantity())
             .status(PositionStatus.WAITING_FOR_OPEN)
             .id(id)
             .createdAt(orderPojo.getCreatedAt())
             .build();
-        positions.put(position.getId(), position);
+        index(position);
         positionRepository.save(position.getId(), position);
         log.info(position.toString());
     }
@@ -276,19 +443,33 @@ public class PositionService {
         Position position = getPosition(order);
         if (position != null && PositionStatus.OPENED.equals(position.getStatus())) {
             position.setStatus(PositionStatus.WAITING_FOR_CLOSE);
+            index(position);
             position.setOrderIdClose(order.getOrderId());
             positionRepository.save(position.getId(), position);
             log.info(position.toString());
         }
     }
 
+    public int countStillOpenCreatedAfter(OffsetDateTime since) {
+        return positions.countCreatedAfter(PositionStatus.WAITING_FOR_CLOSE, since);
+    }
+
+    // Several symbols post to the same channel
+    private String title(String text) {
+        return tradeConfigProperties.getSymbol() + " " + text;
+    }
+
+    private OffsetDateTime eventTime(OrderPojo order) {
+        return order.getUpdatedAt() != null ? order.getUpdatedAt() : OffsetDateTime.now(clock);
+    }
+
     private Position getPosition(OrderPojo order) {
         long id = Long.parseLong(order.getClientOrderId().split("_")[0]);
         Position position = positions.get(id);
         if (position == null) {
             position = positionRepository.find(id);
             if (position != null) {
-                positions.put(id, position);
+                index(position);
             }
         }
         return position;
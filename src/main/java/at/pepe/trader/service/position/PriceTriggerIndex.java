@@ -0,0 +1,54 @@
+package at.pepe.trader.service.position;
+
+import java.util.*;
+
+/**
+ * Positions waiting for the price to leave a band around their own price, indexed by that price in points. A price
+ * update only looks at both ends of the index, it costs nothing as long as no position triggers.
+ * Not thread safe, used on the strategy thread only.
+ */
+public class PriceTriggerIndex {
+    private final NavigableMap<Long, Set<Long>> byPrice = new TreeMap<>();
+    private final Map<Long, Long> prices = new HashMap<>();
+
+    public void add(long id, long price) {
+        remove(id);
+        prices.put(id, price);
+        byPrice.computeIfAbsent(price, level -> new LinkedHashSet<>(2)).add(id);
+    }
+
+    public boolean remove(long id) {
+        Long price = prices.remove(id);
+        if (price == null) {
+            return false;
+        }
+        Set<Long> level = byPrice.get(price);
+        level.remove(id);
+        if (level.isEmpty()) {
+            byPrice.remove(price);
+        }
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return prices.containsKey(id);
+    }
+
+    /**
+     * Removes and returns the ids whose price lies strictly further than distance points away from price.
+     */
+    public List<Long> pollOutside(long price, long distance) {
+        if (byPrice.isEmpty() || byPrice.firstKey() >= price - distance && byPrice.lastKey() <= price + distance) {
+            return List.of();
+        }
+        List<Long> triggered = new ArrayList<>();
+        byPrice.headMap(price - distance, false).values().forEach(triggered::addAll);
+        byPrice.tailMap(price + distance, false).values().forEach(triggered::addAll);
+        triggered.forEach(this::remove);
+        return triggered;
+    }
+
+    public int size() {
+        return prices.size();
+    }
+}
@@ -0,0 +1,122 @@
+package at.pepe.trader.service.shard;
+
+import at.pepe.trader.config.ShardConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.engine.TradingEventLoop;
+import at.pepe.trader.service.journal.KlineJournalService;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The traded symbols by name. trade.symbol is traded by the beans, every entry of shards.symbols by a
+ * {@link SymbolShard} of its own that is started, warmed up and stopped here.
+ */
+@Slf4j
+@Service
+public class ShardRegistry {
+    private final Map<String, SymbolShard> shards = new LinkedHashMap<>(); // Never changed after the constructor
+    private final List<SymbolShard> additionalShards = new ArrayList<>();
+
+    @Autowired
+    public ShardRegistry(
+            TradeConfigProperties tradeConfigProperties,
+            ShardConfigProperties shardConfigProperties,
+            BarSeriesHolderService barSeriesHolderService,
+            BalanceHolderService balanceHolderService,
+            PositionService positionService,
+            RollingStatisticsService rollingStatisticsService,
+            TradingEventLoop tradingEventLoop,
+            KlineJournalService klineJournalService,
+            SymbolShardFactory symbolShardFactory
+    ) {
+        add(new SymbolShard(tradeConfigProperties, barSeriesHolderService, balanceHolderService, positionService,
+                rollingStatisticsService, tradingEventLoop, klineJournalService, null, null));
+        for (TradeConfigProperties properties : shardConfigProperties.getSymbols()) {
+            if (shards.containsKey(properties.getSymbol())) {
+                throw new IllegalStateException("Symbol " + properties.getSymbol() + " is configured twice");
+            }
+            SymbolShard shard = symbolShardFactory.create(properties);
+            add(shard);
+            additionalShards.add(shard);
+        }
+    }
+
+    /**
+     * The given shards, already started. None of them is started, warmed up or stopped here.
+     */
+    public ShardRegistry(List<SymbolShard> shards) {
+        shards.forEach(this::add);
+    }
+
+    private void add(SymbolShard shard) {
+        shards.put(shard.getSymbol(), shard);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        for (SymbolShard shard : additionalShards) {
+            shard.getKlineJournalService().open();
+            shard.getTradingEventLoop().start();
+        }
+        log.info("Trading {}.", shards.keySet());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreBars() {
+        additionalShards.forEach(shard -> shard.getBarSeriesHolderService().initialSetup());
+    }
+
+    /**
+     * The shard trading the symbol, null for a symbol that is not traded.
+     */
+    public SymbolShard get(String symbol) {
+        return shards.get(symbol);
+    }
+
+    public Collection<SymbolShard> getShards() {
+        return shards.values();
+    }
+
+    public Set<String> getSymbols() {
+        return shards.keySet();
+    }
+
+    /**
+     * Cancels every open order of every symbol, one request per symbol. The ack of each symbol completes on its own.
+     */
+    public Map<String, CompletableFuture<OrderAck>> cancelAllOrders() {
+        Map<String, CompletableFuture<OrderAck>> acks = new LinkedHashMap<>();
+        shards.forEach((symbol, shard) -> acks.put(symbol, shard.cancelAllOrders()));
+        return acks;
+    }
+
+    @Scheduled(fixedDelayString = "${journal.force-interval-ms:10000}")
+    public void forceJournals() {
+        additionalShards.forEach(shard -> shard.getKlineJournalService().force());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        for (SymbolShard shard : additionalShards) {
+            shard.getTradingEventLoop().stop();
+            shard.getKlineJournalService().close();
+            shard.getBarHistoryService().shutdown();
+            shard.getCandleDataAccessService().shutdown();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package at.pepe.trader.service.shard;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.candle.BarHistoryService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.candle.CandleDataAccessService;
+import at.pepe.trader.service.engine.TradingEventLoop;
+import at.pepe.trader.service.journal.KlineJournalService;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Everything one symbol is traded with: bars, indicators, balances, positions, statistics and the strategy thread. Nothing of
+ * it is shared with another shard, the state of a shard is only changed on its own {@link TradingEventLoop}.
+ */
+@Getter
+public class SymbolShard {
+    private final TradeConfigProperties tradeConfigProperties;
+    private final PriceScale priceScale;
+    private final BarSeriesHolderService barSeriesHolderService;
+    private final BalanceHolderService balanceHolderService;
+    private final PositionService positionService;
+    private final RollingStatisticsService rollingStatisticsService;
+    private final TradingEventLoop tradingEventLoop;
+    private final KlineJournalService klineJournalService;
+    private final BarHistoryService barHistoryService; // Only of the shards wired by hand, null for the beans
+    private final CandleDataAccessService candleDataAccessService;
+
+    public SymbolShard(
+            TradeConfigProperties tradeConfigProperties,
+            BarSeriesHolderService barSeriesHolderService,
+            BalanceHolderService balanceHolderService,
+            PositionService positionService,
+            RollingStatisticsService rollingStatisticsService,
+            TradingEventLoop tradingEventLoop,
+            KlineJournalService klineJournalService,
+            BarHistoryService barHistoryService,
+            CandleDataAccessService candleDataAccessService
+    ) {
+        this.tradeConfigProperties = tradeConfigProperties;
+        this.priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        this.barSeriesHolderService = barSeriesHolderService;
+        this.balanceHolderService = balanceHolderService;
+        this.positionService = positionService;
+        this.rollingStatisticsService = rollingStatisticsService;
+        this.tradingEventLoop = tradingEventLoop;
+        this.klineJournalService = klineJournalService;
+        this.barHistoryService = barHistoryService;
+        this.candleDataAccessService = candleDataAccessService;
+    }
+
+    public String getSymbol() {
+        return tradeConfigProperties.getSymbol();
+    }
+
+    public void publishKline(long closeTime, long open, long high, long low, long close, double volume, long receivedNanos) {
+        klineJournalService.record(closeTime, open, high, low, close, volume);
+        tradingEventLoop.publishKline(closeTime, open, high, low, close, volume, receivedNanos);
+    }
+
+    public void publishOrder(OrderPojo order) {
+        tradingEventLoop.publishOrder(order);
+    }
+
+    public void updateBalances(Map<String, BigDecimal> free) {
+        tradingEventLoop.execute(() -> balanceHolderService.updateAssets(free));
+    }
+
+    // After the klines received before the reconnect
+    public void checkForGap() {
+        tradingEventLoop.execute(barSeriesHolderService::checkForGap);
+    }
+
+    public CompletableFuture<OrderAck> cancelAllOrders() {
+        return positionService.cancelAllOrders();
+    }
+}
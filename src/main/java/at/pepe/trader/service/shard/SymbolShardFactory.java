@@ -0,0 +1,82 @@
+package at.pepe.trader.service.shard;
+
+import at.pepe.trader.config.EngineConfigProperties;
+import at.pepe.trader.config.HistoryConfigProperties;
+import at.pepe.trader.config.JournalConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.persistent.PositionRepository;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.TradingService;
+import at.pepe.trader.service.binance.ApiRateLimiter;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.binance.OrderService;
+import at.pepe.trader.service.candle.BarHistoryService;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.candle.CandleDataAccessService;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.engine.TradingEventLoop;
+import at.pepe.trader.service.indicator.IndicatorService;
+import at.pepe.trader.service.journal.KlineJournalService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+
+/**
+ * Wires the services of a shard by hand, the same way the beans of trade.symbol are wired. The order connection,
+ * the rate limit budget, the position repository and the latency histograms are shared, the statistics are kept per
+ * symbol. Kline
+ * downloads of every shard draw from the one {@link ApiRateLimiter}, more shards do not add request weight.
+ */
+@Component
+@RequiredArgsConstructor
+public class SymbolShardFactory {
+    private final EngineConfigProperties engineConfigProperties;
+    private final HistoryConfigProperties historyConfigProperties;
+    private final JournalConfigProperties journalConfigProperties;
+    private final BinanceConfigProperties binanceConfigProperties;
+    private final ObjectMapper objectMapper;
+    private final OrderService orderService;
+    private final PositionRepository positionRepository;
+    private final DiscordEmbedPublishingService discordEmbedPublishingService;
+    private final LatencyTracker latencyTracker;
+    private final ApiRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    public SymbolShard create(TradeConfigProperties properties) {
+        TradingParametersHolder tradingParametersHolder = new TradingParametersHolder(properties);
+        IndicatorService indicatorService = new IndicatorService(properties);
+        BalanceHolderService balanceHolderService = new BalanceHolderService(properties, tradingParametersHolder);
+        KlineJournalService klineJournalService = new KlineJournalService(journalConfigProperties, properties);
+        CandleDataAccessService candleDataAccessService = new CandleDataAccessService(objectMapper,
+                historyConfigProperties, properties, binanceConfigProperties, rateLimiter, clock);
+        BarHistoryService barHistoryService = new BarHistoryService(historyConfigProperties, candleDataAccessService, klineJournalService);
+        BarSeriesHolderService barSeriesHolderService = new BarSeriesHolderService(properties, barHistoryService, indicatorService);
+        RollingStatisticsService rollingStatisticsService = new RollingStatisticsService(properties.getSymbol(), false, positionRepository, clock);
+        rollingStatisticsService.initialize();
+        PositionService positionService = new PositionService(
+                properties,
+                tradingParametersHolder,
+                positionRepository,
+                orderService.forSymbol(properties),
+                barSeriesHolderService,
+                discordEmbedPublishingService,
+                rollingStatisticsService,
+                latencyTracker,
+                clock
+        );
+        TradingService tradingService = new TradingService(properties, tradingParametersHolder, positionService, barSeriesHolderService,
+                balanceHolderService, indicatorService, latencyTracker);
+        TradingEventLoop tradingEventLoop = new TradingEventLoop(engineConfigProperties, properties, barSeriesHolderService,
+                tradingService, positionService, latencyTracker, meterRegistry, clock);
+        return new SymbolShard(properties, barSeriesHolderService, balanceHolderService, positionService,
+                rollingStatisticsService, tradingEventLoop, klineJournalService, barHistoryService, candleDataAccessService);
+    }
+}
@@ -0,0 +1,223 @@
+package at.pepe.trader.service.statistics;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.model.StatisticResult;
+import at.pepe.trader.model.StatisticsBucket;
+import at.pepe.trader.persistent.PositionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per minute buckets of the position events of one symbol, kept in a columnar ring covering a bit more than a month.
+ * {@link at.pepe.trader.service.position.PositionService} reports every status transition, the statistics of any
+ * time frame are the sum over its buckets. Buckets are persisted together with the positions, keyed by the symbol.
+ * The bean counts trade.symbol, every shard has an instance of its own.
+ */
+@Slf4j
+@Service
+public class RollingStatisticsService {
+    private static final int CAPACITY = 32 * 24 * 60;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final String symbol;
+    private final boolean rebuildFromPositions;
+    private final PositionRepository positionRepository;
+    private final Clock clock;
+
+    private final long[] minute = new long[CAPACITY];
+    private final int[] opened = new int[CAPACITY];
+    private final int[] closed = new int[CAPACITY];
+    private final int[] cancelled = new int[CAPACITY];
+    private final double[] volume = new double[CAPACITY];
+    private final double[] profit = new double[CAPACITY];
+    private final long[] timeToClose = new long[CAPACITY];
+
+    {
+        Arrays.fill(minute, EMPTY);
+    }
+
+    @Autowired
+    public RollingStatisticsService(TradeConfigProperties tradeConfigProperties, PositionRepository positionRepository, Clock clock) {
+        this(tradeConfigProperties.getSymbol(), true, positionRepository, clock);
+    }
+
+    /**
+     * @param rebuildFromPositions whether the positions stored before there were buckets are counted here, only for
+     *                             trade.symbol, the one symbol traded back then
+     */
+    public RollingStatisticsService(String symbol, boolean rebuildFromPositions, PositionRepository positionRepository, Clock clock) {
+        this.symbol = symbol;
+        this.rebuildFromPositions = rebuildFromPositions;
+        this.positionRepository = positionRepository;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        OffsetDateTime now = OffsetDateTime.now(clock);
+        List<StatisticsBucket> buckets = positionRepository.findStatisticsSince(symbol, epochMinute(now) - CAPACITY + 1);
+        buckets.forEach(this::load);
+        log.info("Loaded {} statistics buckets of {}.", buckets.size(), symbol);
+        if (rebuildFromPositions && !positionRepository.isStatisticsRebuilt()) {
+            if (buckets.isEmpty()) {
+                rebuildFromPositions(now.minusMinutes(CAPACITY - 1));
+            }
+            positionRepository.markStatisticsRebuilt();
+        }
+    }
+
+    /**
+     * The buy order of the position got filled.
+     */
+    public synchronized void onOpened(OffsetDateTime at, BigDecimal volumenTraded) {
+        int slot = slot(epochMinute(at));
+        if (slot < 0) {
+            return;
+        }
+        opened[slot]++;
+        volume[slot] += volumenTraded.doubleValue();
+        persist(slot);
+    }
+
+    /**
+     * The sell order of the position got filled.
+     */
+    public synchronized void onClosed(OffsetDateTime at, BigDecimal profitMade, Duration timeToCloseDuration) {
+        int slot = slot(epochMinute(at));
+        if (slot < 0) {
+            return;
+        }
+        closed[slot]++;
+        profit[slot] += profitMade.doubleValue();
+        timeToClose[slot] += timeToCloseDuration.toSeconds();
+        persist(slot);
+    }
+
+    /**
+     * The sell order of an opened position got cancelled.
+     */
+    public synchronized void onCancelled(OffsetDateTime at) {
+        int slot = slot(epochMinute(at));
+        if (slot < 0) {
+            return;
+        }
+        cancelled[slot]++;
+        persist(slot);
+    }
+
+    /**
+     * Sums the buckets since the given time up to now. The number of still open positions is not known here.
+     */
+    public synchronized StatisticResult summarizeSince(OffsetDateTime since) {
+        long now = epochMinute(OffsetDateTime.now(clock));
+        long from = Math.max(epochMinute(since), now - CAPACITY + 1);
+        int openedSum = 0;
+        int closedSum = 0;
+        int cancelledSum = 0;
+        double volumeSum = 0;
+        double profitSum = 0;
+        long timeToCloseSum = 0;
+        for (long m = from; m <= now; m++) {
+            int i = (int) Math.floorMod(m, (long) CAPACITY);
+            if (minute[i] != m) {
+                continue;
+            }
+            openedSum += opened[i];
+            closedSum += closed[i];
+            cancelledSum += cancelled[i];
+            volumeSum += volume[i];
+            profitSum += profit[i];
+            timeToCloseSum += timeToClose[i];
+        }
+        return StatisticResult.builder()
+                .positionsOpened(openedSum)
+                .positionsClosed(closedSum)
+                .positionsCancelled(cancelledSum)
+                .volumenTraded(volumeSum)
+                .profitMade(closedSum == 0 ? new BigDecimal("-1") : BigDecimal.valueOf(profitSum))
+                .averageTimeToClose(Duration.ofSeconds(closedSum == 0 ? -1 : timeToCloseSum / closedSum))
+                .build();
+    }
+
+    // Buckets did not exist before, derive them once from the stored positions.
+    private void rebuildFromPositions(OffsetDateTime since) {
+        List<Position> positions = positionRepository.findAllSince(since);
+        for (Position position : positions) {
+            boolean filled = position.getStatus() != PositionStatus.WAITING_FOR_OPEN &&
+                    !(position.getStatus() == PositionStatus.CANCELLED && position.getClosedAt() == null);
+            if (filled && position.getOpenAtPrice() != null && position.getQuantityOpen() != null) {
+                onOpened(position.getCreatedAt(), position.getOpenAtPrice().multiply(position.getQuantityOpen()));
+            }
+            if (position.getStatus() == PositionStatus.FINISHED && position.getClosedAt() != null) {
+                onClosed(
+                        position.getClosedAt(),
+                        position.getCloseAtPrice().multiply(position.getQuantityClose())
+                                .subtract(position.getOpenAtPrice().multiply(position.getQuantityOpen())),
+                        Duration.between(position.getCreatedAt(), position.getClosedAt())
+                );
+            } else if (position.getStatus() == PositionStatus.CANCELLED && position.getClosedAt() != null) {
+                onCancelled(position.getClosedAt());
+            }
+        }
+        log.info("Rebuilt statistics buckets from {} positions.", positions.size());
+    }
+
+    private synchronized void load(StatisticsBucket bucket) {
+        int i = slot(bucket.getMinute());
+        if (i < 0) {
+            return;
+        }
+        opened[i] = bucket.getPositionsOpened();
+        closed[i] = bucket.getPositionsClosed();
+        cancelled[i] = bucket.getPositionsCancelled();
+        volume[i] = bucket.getVolumenTraded();
+        profit[i] = bucket.getProfitMade();
+        timeToClose[i] = bucket.getTimeToCloseSeconds();
+    }
+
+    // Slot of the minute, an older minute still occupying it gets cleared first. -1 if the minute is out of range.
+    private int slot(long epochMinute) {
+        int i = (int) Math.floorMod(epochMinute, (long) CAPACITY);
+        if (minute[i] > epochMinute) {
+            return -1;
+        }
+        if (minute[i] != epochMinute) {
+            minute[i] = epochMinute;
+            opened[i] = 0;
+            closed[i] = 0;
+            cancelled[i] = 0;
+            volume[i] = 0;
+            profit[i] = 0;
+            timeToClose[i] = 0;
+        }
+        return i;
+    }
+
+    private void persist(int i) {
+        positionRepository.saveStatistics(StatisticsBucket.builder()
+                .symbol(symbol)
+                .minute(minute[i])
+                .positionsOpened(opened[i])
+                .positionsClosed(closed[i])
+                .positionsCancelled(cancelled[i])
+                .volumenTraded(volume[i])
+                .profitMade(profit[i])
+                .timeToCloseSeconds(timeToClose[i])
+                .build());
+    }
+
+    private static long epochMinute(OffsetDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(), 60);
+    }
+}
@@ -1,10 +1,9 @@
 package at.pepe.trader.service.statistics;
 
-import at.pepe.trader.model.Position;
-import at.pepe.trader.model.PositionStatus;
 import at.pepe.trader.model.StatisticResult;
-import at.pepe.trader.persistent.PositionRepositoryImpl;
 import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.shard.ShardRegistry;
+import at.pepe.trader.service.shard.SymbolShard;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -12,91 +11,44 @@ import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
 
-    private final PositionRepositoryImpl positionRepository;
+    private final ShardRegistry shardRegistry;
     private final DiscordEmbedPublishingService discordEmbedPublishingService;
 
     @EventListener(ApplicationReadyEvent.class)
     @Scheduled(cron = "0 0 */6 * * *")
     public void generateAndPublishStatistics() {
-        List<StatisticResult> statisticResults = generateStatistics();
-        statisticResults.forEach(el -> discordEmbedPublishingService.sendEmbed(
-                "Stats " + el.getTimeFrame(),
-                el.toString(),
-                "#304ffe")
-        );
+        for (SymbolShard shard : shardRegistry.getShards()) {
+            List<StatisticResult> statisticResults = generateStatistics(shard);
+            statisticResults.forEach(el -> discordEmbedPublishingService.sendEmbed(
+                    "Stats " + shard.getSymbol() + " " + el.getTimeFrame(),
+                    el.toString(),
+                    "#304ffe")
+            );
+        }
         log.info("Statistics sent.");
     }
 
-    private List<StatisticResult> generateStatistics() {
-        List<Position> lastMonth = positionRepository.findAllSince(OffsetDateTime.now().minusMonths(1));
-        lastMonth.sort(Comparator.comparing(Position::getCreatedAt).reversed());
-
-        List<Position> lastWeek = lastMonth.stream()
-                .takeWhile(el -> OffsetDateTime.now().minusDays(7).isBefore(el.getCreatedAt()))
-                .toList();
-        List<Position> lastDay = lastWeek.stream()
-                .takeWhile(el -> OffsetDateTime.now().minusDays(1).isBefore(el.getCreatedAt()))
-                .toList();
-        List<Position> lastHour = lastDay.stream()
-                .takeWhile(el -> OffsetDateTime.now().minusHours(1).isBefore(el.getCreatedAt()))
-                .toList();
-
+    private List<StatisticResult> generateStatistics(SymbolShard shard) {
+        OffsetDateTime now = OffsetDateTime.now();
         return List.of(
-                calculateStatistics(lastMonth).toBuilder().timeFrame("Last Month").build(),
-                calculateStatistics(lastWeek).toBuilder().timeFrame("Last Week").build(),
-                calculateStatistics(lastDay).toBuilder().timeFrame("Last Day").build(),
-                calculateStatistics(lastHour).toBuilder().timeFrame("Last Hour").build()
+                calculateStatistics(shard, now.minusMonths(1)).toBuilder().timeFrame("Last Month").build(),
+                calculateStatistics(shard, now.minusDays(7)).toBuilder().timeFrame("Last Week").build(),
+                calculateStatistics(shard, now.minusDays(1)).toBuilder().timeFrame("Last Day").build(),
+                calculateStatistics(shard, now.minusHours(1)).toBuilder().timeFrame("Last Hour").build()
         );
     }
 
-    private StatisticResult calculateStatistics(List<Position> positions) {
-        return StatisticResult.builder()
-                .positionsStillOpen((int) positions.stream()
-                        .filter(el -> PositionStatus.WAITING_FOR_CLOSE.equals(el.getStatus()))
-                        .count()
-                )
-                .positionsClosed((int) positions.stream()
-                        .filter(el -> PositionStatus.FINISHED.equals(el.getStatus()))
-                        .count()
-                )
-                .positionsCancelled((int) positions.stream()
-                        .filter(el -> PositionStatus.CANCELLED.equals(el.getStatus()) && el.getClosedAt() != null)
-                        .count()
-                )
-                .positionsOpened((int) positions.stream()
-                        .filter(el -> !(PositionStatus.CANCELLED.equals(el.getStatus()) && el.getClosedAt() == null))
-                        .count()
-                )
-                .volumenTraded(positions.stream()
-                        .mapToDouble(el -> el.getOpenAtPrice().multiply(el.getQuantityOpen()).doubleValue())
-                        .sum()
-                )
-                .profitMade(positions.stream()
-                        .filter(el -> PositionStatus.FINISHED.equals(el.getStatus()))
-                        .map(el -> el.getCloseAtPrice().multiply(el.getQuantityClose())
-                                .subtract(el.getOpenAtPrice().multiply(el.getQuantityOpen()))
-                        )
-                        .reduce(BigDecimal::add)
-                        .orElse(new BigDecimal("-1"))
-                )
-                .averageTimeToClose(Duration.ofSeconds((long) positions.stream()
-                        .filter(el -> PositionStatus.FINISHED.equals(el.getStatus()))
-                        .map(el -> el.getClosedAt() == null ? null : Duration.between(el.getCreatedAt(), el.getClosedAt()))
-                        .filter(Objects::nonNull)
-                        .mapToLong(Duration::toSeconds)
-                        .average().orElse(-1))
-                ).build();
+    private StatisticResult calculateStatistics(SymbolShard shard, OffsetDateTime since) {
+        return shard.getRollingStatisticsService().summarizeSince(since).toBuilder()
+                .positionsStillOpen(shard.getPositionService().countStillOpenCreatedAfter(since))
+                .build();
     }
 }
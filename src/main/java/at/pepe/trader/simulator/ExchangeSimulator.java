@@ -0,0 +1,587 @@
+package at.pepe.trader.simulator;
+
+import at.pepe.trader.backtest.SimulatedExchange;
+import at.pepe.trader.config.ShardConfigProperties;
+import at.pepe.trader.config.SimulatorConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.candle.CandleDataAccessService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Local stand-in for the part of binance the application uses, so it can be run end to end without the testnet:
+ * <ul>
+ *     <li>REST: klines, open orders and the listen key of the user data stream</li>
+ *     <li>combined kline streams at {@code /stream?streams=...} and the user data stream at {@code /ws/<listenKey>}</li>
+ *     <li>the order API at {@code /ws-api/v3}: order.place, order.cancel, order.cancelReplace,
+ *     openOrders.cancelAll and ping</li>
+ * </ul>
+ * Prices come from {@link SimulatedMarket}, one 1s kline per symbol and tick. Orders are matched by the
+ * {@link SimulatedExchange} of the backtester against every kline, how depends on the fill model. Signatures and API
+ * keys are not checked, rate limits are not enforced.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "simulator", name = "enabled", havingValue = "true")
+public class ExchangeSimulator implements SimulatorServer.Handler {
+    private static final int MAX_KLINES = 1000;
+
+    private final SimulatorConfigProperties simulatorConfigProperties;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Symbol> symbols = new LinkedHashMap<>();
+    private final List<MarketStream> marketStreams = new CopyOnWriteArrayList<>();
+    private final List<UserStream> userStreams = new CopyOnWriteArrayList<>();
+    private final Set<String> listenKeys = ConcurrentHashMap.newKeySet();
+    private final Random random;
+    private final Counter klines;
+    private final ScheduledExecutorService market;
+    private final ScheduledExecutorService delivery;
+
+    private SimulatorServer server;
+    private volatile long marketSecond; // Open time in seconds of the last published 1s kline
+
+    @Autowired
+    public ExchangeSimulator(
+            SimulatorConfigProperties simulatorConfigProperties,
+            TradeConfigProperties tradeConfigProperties,
+            ShardConfigProperties shardConfigProperties,
+            MeterRegistry meterRegistry,
+            Clock clock
+    ) {
+        this.simulatorConfigProperties = simulatorConfigProperties;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.random = new Random(simulatorConfigProperties.getSeed());
+        List<TradeConfigProperties> traded = new ArrayList<>();
+        traded.add(tradeConfigProperties);
+        traded.addAll(shardConfigProperties.getSymbols());
+        for (TradeConfigProperties symbol : traded) {
+            SimulatedMarket simulatedMarket = new SimulatedMarket(symbol, simulatorConfigProperties);
+            SimulatedExchange exchange = new SimulatedExchange(symbol, simulatedMarket.getPriceScale(), clock,
+                    new BalanceHolderService(symbol, new TradingParametersHolder(symbol)), simulatorConfigProperties.getQuoteBalance());
+            symbols.put(symbol.getSymbol(), new Symbol(symbol, simulatedMarket, exchange));
+        }
+        this.klines = Counter.builder("simulator.klines")
+                .description("1s klines published per symbol")
+                .register(meterRegistry);
+        this.market = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "simulator-market"));
+        this.delivery = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "simulator-delivery"));
+        this.marketSecond = clock.millis() / 1000 - 1;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Before the binance clients connect on application ready
+    @PostConstruct
+    void start() throws IOException {
+        if (simulatorConfigProperties.getTickRate() <= 0) {
+            throw new IllegalArgumentException("simulator.tick-rate has to be positive");
+        }
+        Latency latency = new Latency(simulatorConfigProperties.getLatencyMs(), simulatorConfigProperties.getLatencyJitterMs());
+        server = new SimulatorServer(simulatorConfigProperties.getPort(), this, delivery, latency);
+        long periodNanos = Math.max(1, Math.round(1e9 / simulatorConfigProperties.getTickRate()));
+        market.scheduleAtFixedRate(this::tick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        delivery.scheduleAtFixedRate(this::summarize, 1, 1, TimeUnit.MINUTES);
+        log.info("Simulating {} on port {} at {} klines per second, {} fills.", symbols.keySet(), server.getPort(),
+                simulatorConfigProperties.getTickRate(), simulatorConfigProperties.getFillModel());
+    }
+
+    int getPort() {
+        return server.getPort();
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        market.shutdownNow();
+        delivery.shutdownNow();
+        if (server != null) {
+            server.close();
+        }
+        marketStreams.forEach(stream -> stream.session().close(1001, "Shutdown"));
+        userStreams.forEach(stream -> stream.session().close(1001, "Shutdown"));
+    }
+
+    private void tick() {
+        try {
+            long second = marketSecond + 1;
+            for (Symbol symbol : symbols.values()) {
+                long[] kline = symbol.market().kline(second * 1000, 1000);
+                publishKline(symbol, second * 1000, kline);
+                synchronized (symbol) {
+                    fill(symbol, kline[1], kline[2]);
+                    publishReports(symbol);
+                }
+            }
+            marketSecond = second;
+        } catch (RuntimeException exception) {
+            log.warn("Simulator tick failed.", exception);
+        }
+    }
+
+    // Throughput and heap once a minute, for soak tests
+    private void summarize() {
+        Runtime runtime = Runtime.getRuntime();
+        double orders = meterRegistry.find("simulator.orders").counters().stream().mapToDouble(Counter::count).sum();
+        log.info("Simulator published {} klines, {} order events, market at {}, heap {} MB used.",
+                (long) klines.count(), (long) orders, Instant.ofEpochSecond(marketSecond),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    private void fill(Symbol symbol, long high, long low) {
+        switch (simulatorConfigProperties.getFillModel()) {
+            case THROUGH -> symbol.exchange().match(high, low);
+            case TOUCH -> symbol.exchange().match(high + 1, low - 1);
+            case RANDOM -> {
+                if (random.nextDouble() < simulatorConfigProperties.getFillProbability()) {
+                    symbol.exchange().match(high, low);
+                }
+            }
+            case STORM -> symbol.exchange().match(Long.MAX_VALUE, Long.MIN_VALUE);
+        }
+    }
+
+    private void publishKline(Symbol symbol, long openTime, long[] kline) {
+        String name = symbol.config().getSymbol();
+        String stream = name.toLowerCase() + "@kline_1s";
+        String message = "{\"stream\":\"" + stream + "\",\"data\":{\"e\":\"kline\",\"E\":" + clock.millis()
+                + ",\"s\":\"" + name + "\",\"k\":{\"t\":" + openTime + ",\"T\":" + (openTime + 999)
+                + ",\"s\":\"" + name + "\",\"i\":\"1s\",\"f\":-1,\"L\":-1"
+                + ",\"o\":\"" + symbol.format(kline[0]) + "\",\"c\":\"" + symbol.format(kline[3])
+                + "\",\"h\":\"" + symbol.format(kline[1]) + "\",\"l\":\"" + symbol.format(kline[2])
+                + "\",\"v\":\"" + volume(1) + "\",\"n\":1,\"x\":true,\"q\":\"0\",\"V\":\"0\",\"Q\":\"0\",\"B\":\"0\"}}}";
+        for (MarketStream marketStream : marketStreams) {
+            if (marketStream.streams().contains(stream)) {
+                marketStream.session().send(message);
+            }
+        }
+        klines.increment();
+    }
+
+    // Constant per second, the strategy does not look at it
+    private static String volume(long seconds) {
+        return Long.toString(seconds * 1_000_000);
+    }
+
+    // Execution reports and the balances after them, like the user data stream sends them
+    private void publishReports(Symbol symbol) {
+        boolean changed = false;
+        for (OrderPojo report = symbol.exchange().poll(); report != null; report = symbol.exchange().poll()) {
+            count(report.getOrderStatus());
+            sendUserData(executionReport(report));
+            changed = true;
+        }
+        if (changed) {
+            sendUserData(accountPosition(symbol));
+        }
+    }
+
+    private void sendUserData(String message) {
+        userStreams.forEach(stream -> stream.session().send(message));
+    }
+
+    private String executionReport(OrderPojo order) {
+        boolean cancelled = "CANCELED".equals(order.getOrderStatus());
+        boolean filled = "FILLED".equals(order.getOrderStatus());
+        long now = clock.millis();
+        JSONObject report = new JSONObject()
+                .put("e", "executionReport")
+                .put("E", now)
+                .put("s", order.getSymbol())
+                .put("c", cancelled ? cancelId(order) : order.getClientOrderId())
+                .put("S", order.getAction())
+                .put("o", order.getType())
+                .put("f", "GTC")
+                .put("q", order.getQuantity().toPlainString())
+                .put("p", order.getPrice().toPlainString())
+                .put("P", "0.00000000")
+                .put("F", "0.00000000")
+                .put("g", -1)
+                .put("C", cancelled ? order.getClientOrderId() : "")
+                .put("x", filled ? "TRADE" : order.getOrderStatus())
+                .put("X", order.getOrderStatus())
+                .put("r", "NONE")
+                .put("i", order.getOrderId())
+                .put("l", filled ? order.getQuantity().toPlainString() : "0")
+                .put("z", order.getExecutedQty().toPlainString())
+                .put("L", filled ? order.getPrice().toPlainString() : "0")
+                .put("n", "0")
+                .put("N", JSONObject.NULL)
+                .put("T", now)
+                .put("t", filled ? order.getOrderId() : -1)
+                .put("w", "NEW".equals(order.getOrderStatus()))
+                .put("m", filled)
+                .put("O", order.getCreatedAt().toInstant().toEpochMilli())
+                .put("Z", filled ? order.getPrice().multiply(order.getQuantity()).toPlainString() : "0")
+                .put("Y", filled ? order.getPrice().multiply(order.getQuantity()).toPlainString() : "0")
+                .put("Q", "0")
+                .put("W", order.getCreatedAt().toInstant().toEpochMilli())
+                .put("V", "NONE");
+        return report.toString();
+    }
+
+    // One quote balance per symbol: symbols sharing a quote asset each report their own
+    private String accountPosition(Symbol symbol) {
+        long now = clock.millis();
+        SimulatedExchange exchange = symbol.exchange();
+        return new JSONObject()
+                .put("e", "outboundAccountPosition")
+                .put("E", now)
+                .put("u", now)
+                .put("B", new JSONArray()
+                        .put(balance(symbol.config().getBaseAsset(), exchange.getFreeBase(), exchange.getLockedBase()))
+                        .put(balance(symbol.config().getQuoteAsset(), exchange.getFreeQuote(), exchange.getLockedQuote())))
+                .toString();
+    }
+
+    private static JSONObject balance(String asset, BigDecimal free, BigDecimal locked) {
+        return new JSONObject()
+                .put("a", asset)
+                .put("f", free.toPlainString())
+                .put("l", locked.toPlainString());
+    }
+
+    private static String cancelId(OrderPojo order) {
+        return "cancel_" + order.getOrderId();
+    }
+
+    private void count(String event) {
+        Counter.builder("simulator.orders")
+                .description("Order events of the simulated exchange")
+                .tag("event", event)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Override
+    public SimulatorServer.Response handle(SimulatorServer.Request request) {
+        try {
+            return switch (request.path()) {
+                case "/api/v3/klines" -> klines(request.query());
+                case "/api/v3/openOrders" -> openOrders(request.query());
+                case "/api/v3/userDataStream" -> userDataStream(request);
+                case "/api/v3/ping" -> new SimulatorServer.Response(200, "{}");
+                case "/api/v3/time" -> new SimulatorServer.Response(200, "{\"serverTime\":" + clock.millis() + "}");
+                default -> error(404, -1000, "Not simulated: " + request.method() + " " + request.path());
+            };
+        } catch (IllegalArgumentException exception) {
+            return error(400, -1100, exception.getMessage());
+        }
+    }
+
+    // Only klines that closed already, any time in the past is served
+    private SimulatorServer.Response klines(Map<String, String> query) {
+        Symbol symbol = symbols.get(query.get("symbol"));
+        if (symbol == null) {
+            return error(400, -1121, "Invalid symbol.");
+        }
+        long interval = CandleDataAccessService.intervalMillis(query.getOrDefault("interval", ""));
+        if (interval < 1000 || interval % 1000 != 0) {
+            return error(400, -1120, "Invalid interval.");
+        }
+        int limit = Math.min(MAX_KLINES, Integer.parseInt(query.getOrDefault("limit", "500")));
+        long last = Math.floorDiv((marketSecond + 1) * 1000 - interval, interval) * interval;
+        if (query.containsKey("endTime")) {
+            last = Math.min(last, Math.floorDiv(Long.parseLong(query.get("endTime")), interval) * interval);
+        }
+        long first = query.containsKey("startTime")
+                ? Math.floorDiv(Long.parseLong(query.get("startTime")) + interval - 1, interval) * interval
+                : last - (limit - 1) * interval;
+        StringBuilder body = new StringBuilder("[");
+        for (long openTime = first, count = 0; openTime <= last && count < limit; openTime += interval, count++) {
+            long[] kline = symbol.market().kline(openTime, interval);
+            if (count > 0) {
+                body.append(',');
+            }
+            body.append('[').append(openTime)
+                    .append(",\"").append(symbol.format(kline[0]))
+                    .append("\",\"").append(symbol.format(kline[1]))
+                    .append("\",\"").append(symbol.format(kline[2]))
+                    .append("\",\"").append(symbol.format(kline[3]))
+                    .append("\",\"").append(volume(interval / 1000))
+                    .append("\",").append(openTime + interval - 1)
+                    .append(",\"0\",").append(interval / 1000).append(",\"0\",\"0\",\"0\"]");
+        }
+        return new SimulatorServer.Response(200, body.append(']').toString());
+    }
+
+    private SimulatorServer.Response openOrders(Map<String, String> query) {
+        List<Symbol> selected = query.containsKey("symbol")
+                ? symbols.values().stream().filter(symbol -> symbol.config().getSymbol().equals(query.get("symbol"))).toList()
+                : List.copyOf(symbols.values());
+        if (selected.isEmpty()) {
+            return error(400, -1121, "Invalid symbol.");
+        }
+        JSONArray orders = new JSONArray();
+        for (Symbol symbol : selected) {
+            List<OrderPojo> open;
+            synchronized (symbol) {
+                open = symbol.exchange().getOpenOrders();
+            }
+            for (OrderPojo order : open) {
+                orders.put(new JSONObject()
+                        .put("symbol", order.getSymbol())
+                        .put("orderId", order.getOrderId())
+                        .put("orderListId", -1)
+                        .put("clientOrderId", order.getClientOrderId())
+                        .put("price", order.getPrice().toPlainString())
+                        .put("origQty", order.getQuantity().toPlainString())
+                        .put("executedQty", order.getExecutedQty().toPlainString())
+                        .put("status", order.getOrderStatus())
+                        .put("timeInForce", "GTC")
+                        .put("type", order.getType())
+                        .put("side", order.getAction())
+                        .put("time", order.getCreatedAt().toInstant().toEpochMilli())
+                        .put("updateTime", order.getUpdatedAt().toInstant().toEpochMilli())
+                        .put("isWorking", true));
+            }
+        }
+        return new SimulatorServer.Response(200, orders.toString());
+    }
+
+    private SimulatorServer.Response userDataStream(SimulatorServer.Request request) {
+        switch (request.method()) {
+            case "POST" -> {
+                String listenKey = UUID.randomUUID().toString().replace("-", "");
+                listenKeys.add(listenKey);
+                return new SimulatorServer.Response(200, new JSONObject().put("listenKey", listenKey).toString());
+            }
+            case "PUT" -> {
+                return listenKeys.contains(request.query().get("listenKey"))
+                        ? new SimulatorServer.Response(200, "{}")
+                        : error(400, -1125, "This listenKey does not exist.");
+            }
+            case "DELETE" -> {
+                String listenKey = request.query().get("listenKey");
+                listenKeys.remove(listenKey);
+                for (UserStream stream : userStreams) {
+                    if (stream.listenKey().equals(listenKey)) {
+                        userStreams.remove(stream);
+                        stream.session().close(1000, "Listen key closed");
+                    }
+                }
+                return new SimulatorServer.Response(200, "{}");
+            }
+            default -> {
+                return error(405, -1000, "Method not allowed.");
+            }
+        }
+    }
+
+    private static SimulatorServer.Response error(int status, int code, String message) {
+        return new SimulatorServer.Response(status, new JSONObject().put("code", code).put("msg", message).toString());
+    }
+
+    @Override
+    public boolean onWebSocket(SimulatorServer.Request request, WebSocketSession session) {
+        String path = request.path();
+        if (path.equals("/stream")) {
+            Set<String> streams = Set.of(request.query().getOrDefault("streams", "").split("/"));
+            MarketStream stream = new MarketStream(streams, session);
+            session.setListener(message -> {
+            }, () -> marketStreams.remove(stream));
+            marketStreams.add(stream);
+            return true;
+        }
+        if (path.startsWith("/ws/") && listenKeys.contains(path.substring(4))) {
+            UserStream stream = new UserStream(path.substring(4), session);
+            session.setListener(message -> {
+            }, () -> userStreams.remove(stream));
+            userStreams.add(stream);
+            return true;
+        }
+        if (path.equals("/ws-api/v3")) {
+            session.setListener(message -> session.send(apiRequest(message)), () -> {
+            });
+            return true;
+        }
+        return false;
+    }
+
+    // One request of the order API, answered like binance without the rateLimits
+    private String apiRequest(String message) {
+        Object id = JSONObject.NULL;
+        try {
+            JSONObject request = new JSONObject(message);
+            id = request.opt("id");
+            String method = request.getString("method");
+            JSONObject params = request.optJSONObject("params", new JSONObject());
+            if (method.equals("ping")) {
+                return response(id, new JSONObject());
+            }
+            Symbol symbol = symbols.get(params.optString("symbol"));
+            if (symbol == null) {
+                return apiError(id, 400, -1121, "Invalid symbol.", null);
+            }
+            synchronized (symbol) {
+                try {
+                    return switch (method) {
+                        case "order.place" -> placeOrder(id, symbol, params);
+                        case "order.cancel" -> cancelOrder(id, symbol, params);
+                        case "order.cancelReplace" -> cancelReplaceOrder(id, symbol, params);
+                        case "openOrders.cancelAll" -> cancelAllOrders(id, symbol);
+                        default -> apiError(id, 400, -1000, "Not simulated: " + method, null);
+                    };
+                } finally {
+                    publishReports(symbol);
+                }
+            }
+        } catch (JSONException | IllegalArgumentException exception) {
+            return apiError(id, 400, -1100, exception.getMessage(), null);
+        }
+    }
+
+    private String placeOrder(Object id, Symbol symbol, JSONObject params) {
+        OrderAck ack = symbol.exchange().createNewOrder(
+                symbol.market().getPriceScale().parse(params.getString("price")),
+                params.getBigDecimal("quantity"),
+                params.getString("side"),
+                clientId(params.optString("newClientOrderId"))
+        ).join();
+        if (ack.getOrder() == null) {
+            return apiError(id, ack.getStatus(), ack.getErrorCode(), ack.getErrorMessage(), null);
+        }
+        return response(id, orderResult(ack.getOrder()));
+    }
+
+    private String cancelOrder(Object id, Symbol symbol, JSONObject params) {
+        OrderAck ack = symbol.exchange().cancelOrder(params.getLong("orderId")).join();
+        if (ack.getOrder() == null) {
+            return apiError(id, ack.getStatus(), ack.getErrorCode(), ack.getErrorMessage(), null);
+        }
+        return response(id, cancelResult(ack.getOrder()));
+    }
+
+    // STOP_ON_FAILURE: a failed cancel places nothing, the cancel of a failed new order stays
+    private String cancelReplaceOrder(Object id, Symbol symbol, JSONObject params) {
+        OrderAck ack = symbol.exchange().cancelReplaceOrder(
+                params.getLong("cancelOrderId"),
+                symbol.market().getPriceScale().parse(params.getString("price")),
+                params.getBigDecimal("quantity"),
+                params.getString("side"),
+                clientId(params.optString("newClientOrderId"))
+        ).join();
+        if (ack.getCancelledOrders() == null || ack.getCancelledOrders().isEmpty()) {
+            return apiError(id, 400, -2022, "Order cancel-replace failed.", new JSONObject()
+                    .put("cancelResult", "FAILURE")
+                    .put("newOrderResult", "NOT_ATTEMPTED")
+                    .put("cancelResponse", new JSONObject().put("code", ack.getErrorCode()).put("msg", ack.getErrorMessage()))
+                    .put("newOrderResponse", JSONObject.NULL));
+        }
+        JSONObject cancelResponse = cancelResult(ack.getCancelledOrders().get(0));
+        if (ack.getOrder() == null) {
+            return apiError(id, 409, -2021, "Order cancel-replace partially failed.", new JSONObject()
+                    .put("cancelResult", "SUCCESS")
+                    .put("newOrderResult", "FAILURE")
+                    .put("cancelResponse", cancelResponse)
+                    .put("newOrderResponse", new JSONObject().put("code", ack.getErrorCode()).put("msg", ack.getErrorMessage())));
+        }
+        return response(id, new JSONObject()
+                .put("cancelResult", "SUCCESS")
+                .put("newOrderResult", "SUCCESS")
+                .put("cancelResponse", cancelResponse)
+                .put("newOrderResponse", orderResult(ack.getOrder())));
+    }
+
+    private String cancelAllOrders(Object id, Symbol symbol) {
+        List<OrderPojo> cancelled = symbol.exchange().cancelAllOrders().join().getCancelledOrders();
+        if (cancelled.isEmpty()) {
+            return apiError(id, 400, -2011, "Unknown order sent.", null);
+        }
+        return response(id, new JSONArray(cancelled.stream().map(this::cancelResult).collect(Collectors.toList())));
+    }
+
+    // The application sends <clientId>_<side>, which the exchange gives back as the client order id
+    private long clientId(String newClientOrderId) {
+        int separator = newClientOrderId.lastIndexOf('_');
+        try {
+            return Long.parseLong(separator < 0 ? newClientOrderId : newClientOrderId.substring(0, separator));
+        } catch (NumberFormatException exception) {
+            return random.nextLong();
+        }
+    }
+
+    private JSONObject orderResult(OrderPojo order) {
+        return new JSONObject()
+                .put("symbol", order.getSymbol())
+                .put("orderId", order.getOrderId())
+                .put("orderListId", -1)
+                .put("clientOrderId", order.getClientOrderId())
+                .put("transactTime", order.getUpdatedAt().toInstant().toEpochMilli())
+                .put("price", order.getPrice().toPlainString())
+                .put("origQty", order.getQuantity().toPlainString())
+                .put("executedQty", order.getExecutedQty().toPlainString())
+                .put("cummulativeQuoteQty", "0")
+                .put("status", order.getOrderStatus())
+                .put("timeInForce", "GTC")
+                .put("type", order.getType())
+                .put("side", order.getAction())
+                .put("workingTime", order.getCreatedAt().toInstant().toEpochMilli())
+                .put("selfTradePreventionMode", "NONE");
+    }
+
+    private JSONObject cancelResult(OrderPojo order) {
+        return orderResult(order)
+                .put("origClientOrderId", order.getClientOrderId())
+                .put("clientOrderId", cancelId(order));
+    }
+
+    private static String response(Object id, Object result) {
+        return new JSONObject().put("id", id).put("status", 200).put("result", result).toString();
+    }
+
+    private static String apiError(Object id, int status, Integer code, String message, JSONObject data) {
+        JSONObject error = new JSONObject().put("code", code).put("msg", message);
+        if (data != null) {
+            error.put("data", data);
+        }
+        return new JSONObject().put("id", id).put("status", status).put("error", error).toString();
+    }
+
+    private record Symbol(TradeConfigProperties config, SimulatedMarket market, SimulatedExchange exchange) {
+        String format(long points) {
+            return market.getPriceScale().format(points);
+        }
+    }
+
+    private record MarketStream(Set<String> streams, WebSocketSession session) {
+    }
+
+    private record UserStream(String listenKey, WebSocketSession session) {
+    }
+}
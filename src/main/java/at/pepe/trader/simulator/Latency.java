@@ -0,0 +1,24 @@
+package at.pepe.trader.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delay added to every response and event of the simulator: a fixed part and a uniformly distributed jitter.
+ */
+class Latency {
+    private final long latencyMs;
+    private final long jitterMs;
+
+    Latency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    boolean isNone() {
+        return latencyMs <= 0 && jitterMs <= 0;
+    }
+
+    long next() {
+        return latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+    }
+}
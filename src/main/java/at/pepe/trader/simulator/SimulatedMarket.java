@@ -0,0 +1,75 @@
+package at.pepe.trader.simulator;
+
+import at.pepe.trader.config.SimulatorConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.PriceScale;
+
+/**
+ * Prices of one symbol as a function of time: two overlaid waves around the middle of the trade bounds plus noise
+ * drawn from a hash of the second. Any past or future kline can be computed on its own, so the history served over
+ * REST is exactly what the stream sent or will send.
+ */
+class SimulatedMarket {
+    private final String symbol;
+    private final PriceScale priceScale;
+    private final long middle;
+    private final double amplitude;
+    private final long noise;
+    private final double period;
+    private final long seed;
+
+    SimulatedMarket(TradeConfigProperties tradeConfigProperties, SimulatorConfigProperties simulatorConfigProperties) {
+        this.symbol = tradeConfigProperties.getSymbol();
+        this.priceScale = new PriceScale(tradeConfigProperties.getQuoteAssetScale());
+        this.middle = (priceScale.toPoints(tradeConfigProperties.getLowerBounds())
+                + priceScale.toPoints(tradeConfigProperties.getUpperBounds())) / 2;
+        this.amplitude = Math.max(1, middle * simulatorConfigProperties.getWaveAmplitude());
+        this.noise = Math.max(1, Math.round(middle * simulatorConfigProperties.getNoise()));
+        this.period = Math.max(60, simulatorConfigProperties.getWavePeriodSeconds());
+        this.seed = simulatorConfigProperties.getSeed() * 31 + symbol.hashCode();
+    }
+
+    String getSymbol() {
+        return symbol;
+    }
+
+    PriceScale getPriceScale() {
+        return priceScale;
+    }
+
+    /**
+     * Close price in points of the 1s kline of the second.
+     */
+    long price(long epochSecond) {
+        double wave = 0.7 * Math.sin(2 * Math.PI * epochSecond / period)
+                + 0.3 * Math.sin(2 * Math.PI * epochSecond / (period * 0.37));
+        long random = Math.floorMod(mix(seed ^ epochSecond), 2 * noise + 1) - noise;
+        return Math.max(1, middle + Math.round(amplitude * wave) + random);
+    }
+
+    /**
+     * Open, high, low and close in points of the kline opening at the time, every interval a multiple of 1s.
+     */
+    long[] kline(long openTime, long intervalMillis) {
+        long first = Math.floorDiv(openTime, 1000);
+        long seconds = Math.max(1, intervalMillis / 1000);
+        long open = price(first - 1);
+        long high = open;
+        long low = open;
+        long close = open;
+        for (long second = first; second < first + seconds; second++) {
+            close = price(second);
+            high = Math.max(high, close);
+            low = Math.min(low, close);
+        }
+        return new long[]{open, high, low, close};
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,203 @@
+package at.pepe.trader.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Just enough HTTP/1.1 and websocket (RFC 6455) for the binance clients of the application on one plain port:
+ * requests with a Content-Length body and keep-alive, websocket text messages, ping and close. No TLS, no
+ * extensions. Every connection gets its own thread.
+ */
+@Slf4j
+class SimulatorServer implements AutoCloseable {
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * What the server serves: REST requests and opened websockets.
+     */
+    interface Handler {
+        Response handle(Request request);
+
+        /**
+         * The websocket is open, the handler sets its listener. Returning false closes it again.
+         */
+        boolean onWebSocket(Request request, WebSocketSession session);
+    }
+
+    record Request(String method, String path, Map<String, String> query, Map<String, String> headers, String body) {
+    }
+
+    record Response(int status, String body) {
+    }
+
+    private final ServerSocket serverSocket;
+    private final Handler handler;
+    private final ScheduledExecutorService delivery;
+    private final Latency latency;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    SimulatorServer(int port, Handler handler, ScheduledExecutorService delivery, Latency latency) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.handler = handler;
+        this.delivery = delivery;
+        this.latency = latency;
+        this.acceptor = new Thread(this::accept, "simulator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(() -> serve(socket), "simulator-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException exception) {
+                if (!closed) {
+                    log.warn("Simulator failed to accept a connection.", exception);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            for (Request request = readRequest(in); request != null; request = readRequest(in)) {
+                if ("websocket".equalsIgnoreCase(request.headers().get("upgrade"))) {
+                    upgrade(socket, in, out, request);
+                    return;
+                }
+                Response response = handler.handle(request);
+                sleep(latency.next());
+                byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+                out.write(("HTTP/1.1 " + response.status() + " " + (response.status() < 300 ? "OK" : "Error") + "\r\n"
+                        + "Content-Type: application/json;charset=UTF-8\r\n"
+                        + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(body);
+                out.flush();
+                if ("close".equalsIgnoreCase(request.headers().get("connection"))) {
+                    return;
+                }
+            }
+        } catch (IOException exception) {
+            log.debug("Simulator connection ended.", exception);
+        }
+    }
+
+    private void upgrade(Socket socket, InputStream in, OutputStream out, Request request) throws IOException {
+        out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(request.headers().get("sec-websocket-key")) + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        WebSocketSession session = new WebSocketSession(socket, out, delivery, latency);
+        if (!handler.onWebSocket(request, session)) {
+            session.close(1008, "Not found");
+            return;
+        }
+        session.read(in);
+    }
+
+    // Request line and headers in ISO-8859-1, header names lower case
+    private static Request readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        String[] parts = requestLine.split(" ");
+        String target = parts.length > 1 ? parts[1] : "/";
+        int questionMark = target.indexOf('?');
+        String path = questionMark < 0 ? target : target.substring(0, questionMark);
+        Map<String, String> query = questionMark < 0 ? new HashMap<>() : parseQuery(target.substring(questionMark + 1));
+        int length = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+        String body = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+        if (body.contains("=") && "application/x-www-form-urlencoded".equals(headers.get("content-type"))) {
+            query.putAll(parseQuery(body));
+        }
+        return new Request(parts[0], path, query, headers, body);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.ISO_8859_1);
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+    }
+}
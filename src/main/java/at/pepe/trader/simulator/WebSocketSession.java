@@ -0,0 +1,205 @@
+package at.pepe.trader.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Server side of one websocket. Messages are sent after the injected latency, but always in the order they were
+ * sent in: a message never overtakes an earlier one that drew a longer delay.
+ */
+@Slf4j
+class WebSocketSession {
+    private static final int TEXT = 0x1;
+    private static final int CONTINUATION = 0x0;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xA;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final ScheduledExecutorService delivery;
+    private final Latency latency;
+    private final Queue<String> pending = new ArrayDeque<>();
+    private volatile Consumer<String> onMessage = message -> {
+    };
+    private volatile Runnable onClose = () -> {
+    };
+    private volatile boolean open = true;
+    private boolean closed;
+    private long deliverAt; // System.nanoTime() of the last scheduled message
+
+    WebSocketSession(Socket socket, OutputStream out, ScheduledExecutorService delivery, Latency latency) {
+        this.socket = socket;
+        this.out = out;
+        this.delivery = delivery;
+        this.latency = latency;
+    }
+
+    void setListener(Consumer<String> onMessage, Runnable onClose) {
+        this.onMessage = onMessage;
+        this.onClose = onClose;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    void send(String text) {
+        if (!open) {
+            return;
+        }
+        if (latency.isNone()) {
+            write(TEXT, text.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            deliverAt = Math.max(now + TimeUnit.MILLISECONDS.toNanos(latency.next()), deliverAt);
+            pending.add(text);
+            delivery.schedule(this::deliverNext, deliverAt - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Every scheduled delivery writes the oldest pending message, so ties in the schedule cannot reorder them
+    private void deliverNext() {
+        String text;
+        synchronized (this) {
+            text = pending.poll();
+        }
+        if (text != null) {
+            write(TEXT, text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    void close(int code, String reason) {
+        byte[] reasonBytes = reason.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[2 + reasonBytes.length];
+        payload[0] = (byte) (code >> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(reasonBytes, 0, payload, 2, reasonBytes.length);
+        write(CLOSE, payload);
+        closed();
+    }
+
+    // Runs on the connection thread until the socket closes
+    void read(InputStream in) {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        try {
+            while (open) {
+                int first = in.read();
+                int second = in.read();
+                if (first < 0 || second < 0) {
+                    break;
+                }
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+                byte[] payload = in.readNBytes((int) length);
+                if (mask != null) {
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i & 3];
+                    }
+                }
+                switch (opcode) {
+                    case TEXT, CONTINUATION -> {
+                        message.write(payload);
+                        if (fin) {
+                            deliver(message.toString(StandardCharsets.UTF_8));
+                            message.reset();
+                        }
+                    }
+                    case PING -> write(PONG, payload);
+                    case CLOSE -> {
+                        write(CLOSE, payload);
+                        open = false;
+                    }
+                    default -> {
+                        // Pongs and binary messages are not used by the clients
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            log.debug("Simulator websocket ended.", exception);
+        }
+        closed();
+    }
+
+    private void deliver(String text) {
+        try {
+            onMessage.accept(text);
+        } catch (RuntimeException exception) {
+            log.warn("Simulator failed to handle {}", text, exception);
+        }
+    }
+
+    private synchronized void write(int opcode, byte[] payload) {
+        if (socket.isClosed()) {
+            return;
+        }
+        try {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                out.write(126);
+                out.write(payload.length >> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) payload.length >> shift));
+                }
+            }
+            out.write(payload);
+            out.flush();
+        } catch (IOException exception) {
+            log.debug("Simulator failed to write to a websocket.", exception);
+            closed();
+        }
+    }
+
+    private void closed() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            open = false;
+        }
+        try {
+            socket.close();
+        } catch (IOException exception) {
+            log.debug("Simulator failed to close a websocket.", exception);
+        }
+        onClose.run();
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+}
@@ -0,0 +1,83 @@
+package at.pepe.trader.journal;
+
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.model.PriceScale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionReportJournalTest {
+    private static final String SYMBOL = "PEPEFDUSD";
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2024, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final PriceScale PRICE_SCALE = new PriceScale(8);
+    private static final PriceScale QUANTITY_SCALE = new PriceScale(0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheOriginalClientOrderId() throws IOException {
+        write(order("-4523_BUY", "BUY"), order("x-cancel-replace:17", "SELL"), order("42_SELL", "SELL"));
+
+        assertThat(replay()).extracting(OrderPojo::getClientOrderId)
+                .containsExactly("-4523_BUY", "x-cancel-replace:17", "42_SELL");
+    }
+
+    @Test
+    void fallsBackToTheNumericIdForClientOrderIdsThatDoNotFit() throws IOException {
+        write(order("123_" + "X".repeat(40), "BUY"));
+
+        assertThat(replay()).extracting(OrderPojo::getClientOrderId).containsExactly("123_BUY");
+    }
+
+    @Test
+    void keepsTheOtherFields() throws IOException {
+        OrderPojo order = order("7_SELL", "SELL");
+
+        write(order);
+
+        assertThat(replay()).containsExactly(order);
+    }
+
+    private void write(OrderPojo... orders) throws IOException {
+        Path path = DailyJournal.pathFor(directory, ExecutionReportJournal.prefixFor(SYMBOL), LocalDate.of(2024, 3, 1));
+        try (JournalFile file = new JournalFile(path, ExecutionReportJournal.MAGIC, ExecutionReportJournal.RECORD_SIZE, 8, 4)) {
+            for (OrderPojo order : orders) {
+                ExecutionReportJournal.write(file, order, PRICE_SCALE, QUANTITY_SCALE);
+            }
+        }
+    }
+
+    private List<OrderPojo> replay() throws IOException {
+        List<OrderPojo> orders = new ArrayList<>();
+        ExecutionReportJournal.replay(directory, SYMBOL, Long.MIN_VALUE, Long.MAX_VALUE, PRICE_SCALE, QUANTITY_SCALE, orders::add);
+        return orders;
+    }
+
+    private static OrderPojo order(String clientOrderId, String action) {
+        return OrderPojo.builder()
+                .orderId(991L)
+                .clientOrderId(clientOrderId)
+                .createdAt(TIME)
+                .updatedAt(TIME.plusSeconds(1))
+                .symbol(SYMBOL)
+                .action(action)
+                .type("LIMIT")
+                .quantity(new BigDecimal("3333333"))
+                .executedQty(new BigDecimal("0"))
+                .price(new BigDecimal("0.00000750"))
+                .orderStatus("FILLED")
+                .commissionAmount(new BigDecimal("0.5"))
+                .build();
+    }
+}
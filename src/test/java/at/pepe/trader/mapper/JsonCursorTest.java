@@ -0,0 +1,162 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.PriceScale;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonCursorTest {
+    private final JsonCursor cursor = new JsonCursor();
+
+    @Test
+    void readsTheFieldsOfAnObject() {
+        cursor.reset(" { \"s\" : \"PEPEFDUSD\", \"i\": 42, \"w\": true, \"m\": false, \"p\": \"0.00000750\" } ");
+
+        cursor.enterObject();
+        assertThat(cursor.nextField()).isTrue();
+        assertThat(cursor.keyIs("s")).isTrue();
+        assertThat(cursor.readStringValue()).isEqualTo("PEPEFDUSD");
+        assertThat(cursor.nextField()).isTrue();
+        assertThat(cursor.keyIs("i")).isTrue();
+        assertThat(cursor.readLong()).isEqualTo(42);
+        assertThat(cursor.nextField()).isTrue();
+        assertThat(cursor.readBoolean()).isTrue();
+        assertThat(cursor.nextField()).isTrue();
+        assertThat(cursor.readBoolean()).isFalse();
+        assertThat(cursor.nextField()).isTrue();
+        assertThat(cursor.readPoints(new PriceScale(8))).isEqualTo(750);
+        assertThat(cursor.nextField()).isFalse();
+    }
+
+    @Test
+    void readsNegativeNumbersAndNulls() {
+        cursor.reset("{\"g\":-1,\"t\":-1234567890123,\"N\":null,\"n\":null,\"c\":null}");
+
+        cursor.enterObject();
+        cursor.nextField();
+        assertThat(cursor.readLong()).isEqualTo(-1);
+        cursor.nextField();
+        assertThat(cursor.readLong()).isEqualTo(-1_234_567_890_123L);
+        cursor.nextField();
+        assertThat(cursor.isNull()).isTrue();
+        cursor.skipValue();
+        cursor.nextField();
+        assertThat(cursor.readBigDecimal()).isNull();
+        cursor.nextField();
+        assertThat(cursor.readStringValue()).isNull();
+        assertThat(cursor.nextField()).isFalse();
+    }
+
+    @Test
+    void skipsEscapedQuotesWithoutLosingItsPlace() {
+        cursor.reset("{\"k\\\"ey\":\"a\\\"b\\\\\",\"x\":\"va\\u0041l\",\"y\":1}");
+
+        cursor.enterObject();
+        cursor.nextField();
+        assertThat(cursor.keyIs("k\\\"ey")).isTrue();
+        cursor.skipValue();
+        cursor.nextField();
+        assertThat(cursor.readStringValue()).isEqualTo("va\\u0041l"); // Taken as it is, not decoded
+        cursor.nextField();
+        assertThat(cursor.keyIs("y")).isTrue();
+        assertThat(cursor.readLong()).isEqualTo(1);
+        assertThat(cursor.nextField()).isFalse();
+    }
+
+    @Test
+    void skipsUnknownValuesOfEveryKind() {
+        cursor.reset("{\"a\":{\"b\":[1,{\"c\":\"}]\"},[]],\"d\":{}},\"e\":[],\"f\":1.5e-8,\"g\":-2E+3,\"h\":null,\"z\":\"9\"}");
+
+        cursor.enterObject();
+        while (cursor.nextField() && !cursor.keyIs("z")) {
+            cursor.skipValue();
+        }
+        assertThat(cursor.readStringValue()).isEqualTo("9");
+        assertThat(cursor.nextField()).isFalse();
+    }
+
+    @Test
+    void iteratesArraysOfObjects() {
+        cursor.reset("[{\"a\":\"BTC\"}, {\"a\":\"ETH\"} ,{}]");
+
+        cursor.enterArray();
+        StringBuilder assets = new StringBuilder();
+        while (cursor.nextElement()) {
+            cursor.enterObject();
+            while (cursor.nextField()) {
+                assets.append(cursor.readStringValue());
+            }
+        }
+        assertThat(assets.toString()).isEqualTo("BTCETH");
+    }
+
+    @Test
+    void readsDecimalsAsTheyAreWritten() {
+        cursor.reset("[\"0.00000750\",\"-12.50\",\"1E-8\",\"1000\"]");
+
+        cursor.enterArray();
+        BigDecimal[] values = new BigDecimal[4];
+        for (int i = 0; cursor.nextElement(); i++) {
+            values[i] = cursor.readBigDecimal();
+        }
+        assertThat(values).containsExactly(new BigDecimal("0.00000750"), new BigDecimal("-12.50"), new BigDecimal("1E-8"),
+                new BigDecimal("1000"));
+    }
+
+    @Test
+    void failsOnMissingOrUnexpectedInput() {
+        cursor.reset("{\"a\":\"unterminated");
+        cursor.enterObject();
+        cursor.nextField();
+        assertThatThrownBy(cursor::readStringValue).isInstanceOf(IllegalArgumentException.class);
+
+        cursor.reset("{\"a\":x}");
+        cursor.enterObject();
+        cursor.nextField();
+        assertThatThrownBy(cursor::readLong).isInstanceOf(IllegalArgumentException.class);
+
+        cursor.reset("{\"a\":1");
+        cursor.enterObject();
+        cursor.nextField();
+        cursor.readLong();
+        assertThatThrownBy(cursor::nextField).isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> cursor.reset("[1]").enterObject()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void parsesDoublesLikeTheJdk() {
+        String[] samples = {"0", "-0", "0.0", "1", "-1", "0.1", "0.00000750", "-0.00000001", "123456.78900000",
+                "9007199254740993", "0.30000000000000004", "1.7976931348623157E308", "4.9e-324", "2.5e3", "-1E-7",
+                "0.000000000000000000000001", "99999999999999999999", "1.00000000000000000001", "12345678.87654321"};
+        for (String sample : samples) {
+            assertThat(JsonCursor.parseDouble(sample, 0, sample.length())).as(sample).isEqualTo(Double.parseDouble(sample));
+        }
+    }
+
+    @Test
+    void parsesRandomPricesLikeTheJdk() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), random.nextInt(20));
+            String text = value.toPlainString();
+            assertThat(JsonCursor.parseDouble(text, 0, text.length())).as(text).isEqualTo(Double.parseDouble(text));
+        }
+    }
+
+    @Test
+    void readsDecimalDoublesWithinALargerText() {
+        cursor.reset("{\"p\":\"0.10264410\",\"q\":\"-3.5e2\"}");
+
+        cursor.enterObject();
+        cursor.nextField();
+        assertThat(cursor.readDecimalDouble()).isEqualTo(0.10264410);
+        cursor.nextField();
+        assertThat(cursor.readDecimalDouble()).isEqualTo(-350.0);
+        assertThat(cursor.nextField()).isFalse();
+    }
+}
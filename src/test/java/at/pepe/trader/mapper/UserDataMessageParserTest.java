@@ -0,0 +1,78 @@
+package at.pepe.trader.mapper;
+
+import at.pepe.trader.model.OrderPojo;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDataMessageParserTest {
+    // As sent by binance, the first one is the example of the API documentation
+    private static final String NEW_ORDER = "{\"e\":\"executionReport\",\"E\":1499405658658,\"s\":\"ETHBTC\",\"c\":\"mUvoqJxFIILMdfAW5iGSOW\",\"S\":\"BUY\",\"o\":\"LIMIT\",\"f\":\"GTC\",\"q\":\"1.00000000\",\"p\":\"0.10264410\",\"P\":\"0.00000000\",\"F\":\"0.00000000\",\"g\":-1,\"C\":\"\",\"x\":\"NEW\",\"X\":\"NEW\",\"r\":\"NONE\",\"i\":4293153,\"l\":\"0.00000000\",\"z\":\"0.00000000\",\"L\":\"0.00000000\",\"n\":\"0\",\"N\":null,\"T\":1499405658657,\"t\":-1,\"v\":3,\"I\":8641984,\"w\":true,\"m\":false,\"M\":false,\"O\":1499405658657,\"Z\":\"0.00000000\",\"Y\":\"0.00000000\",\"Q\":\"0.00000000\",\"W\":1499405658657,\"V\":\"NONE\"}";
+    private static final String FILLED_SELL = "{\"e\":\"executionReport\",\"E\":1709294400123,\"s\":\"PEPEFDUSD\",\"c\":\"-4523_SELL\",\"S\":\"SELL\",\"o\":\"LIMIT\",\"f\":\"GTC\",\"q\":\"3333333.00\",\"p\":\"0.00000755\",\"P\":\"0.00000000\",\"F\":\"0.00\",\"g\":-1,\"C\":\"\",\"x\":\"TRADE\",\"X\":\"FILLED\",\"r\":\"NONE\",\"i\":991,\"l\":\"3333333.00\",\"z\":\"3333333.00\",\"L\":\"0.00000755\",\"n\":\"0.00251666\",\"N\":\"FDUSD\",\"T\":1709294400120,\"t\":77,\"I\":2041,\"w\":false,\"m\":true,\"M\":true,\"O\":1709294300000,\"Z\":\"25.16666415\",\"Y\":\"25.16666415\",\"Q\":\"0.00000000\",\"W\":1709294300000,\"V\":\"EXPIRE_MAKER\"}";
+    private static final String CANCELED_BUY = "{\"e\":\"executionReport\",\"E\":1709294500000,\"s\":\"PEPEFDUSD\",\"c\":\"web_8f1c2d\",\"S\":\"BUY\",\"o\":\"LIMIT\",\"f\":\"GTC\",\"q\":\"3333333.00\",\"p\":\"0.00000745\",\"P\":\"0.00000000\",\"F\":\"0.00\",\"g\":-1,\"C\":\"812_BUY\",\"x\":\"CANCELED\",\"X\":\"CANCELED\",\"r\":\"NONE\",\"i\":992,\"l\":\"0.00\",\"z\":\"0.00\",\"L\":\"0.00000000\",\"n\":\"0\",\"N\":null,\"T\":1709294499999,\"t\":-1,\"I\":2055,\"w\":false,\"m\":false,\"M\":false,\"O\":1709294400000,\"Z\":\"0.00000000\",\"Y\":\"0.00000000\",\"Q\":\"0.00000000\",\"W\":1709294400000,\"V\":\"EXPIRE_MAKER\"}";
+    private static final String ACCOUNT_POSITION = "{\"e\":\"outboundAccountPosition\",\"E\":1564034571105,\"u\":1564034571073,\"B\":[{\"a\":\"ETH\",\"f\":\"10000.000000\",\"l\":\"0.000000\"},{\"a\":\"FDUSD\",\"f\":\"-0.5\",\"l\":\"1E-8\"}]}";
+
+    private final UserDataMessageParser parser = new UserDataMessageParser();
+    private final OrderMapper orderMapper = new OrderMapper();
+
+    @Test
+    void mapsExecutionReportsLikeTheOrderMapper() {
+        for (String message : new String[]{NEW_ORDER, FILLED_SELL, CANCELED_BUY}) {
+            assertThat(parser.parse(message)).isEqualTo(UserDataMessageParser.EventType.EXECUTION_REPORT);
+
+            assertThat(parser.getOrder()).as(message).isEqualTo(orderMapper.mapFromStream(new JSONObject(message)));
+        }
+    }
+
+    @Test
+    void takesTheOriginalClientOrderIdOfACancel() {
+        parser.parse(CANCELED_BUY);
+
+        assertThat(parser.getOrder().getClientOrderId()).isEqualTo("812_BUY");
+    }
+
+    @Test
+    void readsTheFreeBalances() {
+        assertThat(parser.parse(ACCOUNT_POSITION)).isEqualTo(UserDataMessageParser.EventType.ACCOUNT_POSITION);
+
+        assertThat(parser.getBalances()).isEqualTo(Map.of("ETH", new BigDecimal("10000.000000"), "FDUSD", new BigDecimal("-0.5")));
+    }
+
+    @Test
+    void forgetsTheOrderOfThePreviousMessage() {
+        parser.parse(FILLED_SELL);
+        parser.parse("{\"e\":\"executionReport\",\"E\":1,\"c\":\"5_BUY\",\"X\":\"NEW\"}");
+
+        OrderPojo order = parser.getOrder();
+        assertThat(order.getClientOrderId()).isEqualTo("5_BUY");
+        assertThat(order.getOrderStatus()).isEqualTo("NEW");
+        assertThat(order.getOrderId()).isNull();
+        assertThat(order.getPrice()).isNull();
+        assertThat(order.getSymbol()).isNull();
+    }
+
+    @Test
+    void keepsUnknownConstantsAndSkipsUnknownFields() {
+        String message = "{\"e\":\"executionReport\",\"new\":{\"nested\":[1,\"x\\\"y\",{\"S\":\"SELL\"}]},\"S\":\"BUY\",\"X\":\"SOME_NEW_STATUS\",\"o\":\"LIMIT_MAKER\",\"i\":null}";
+
+        assertThat(parser.parse(message)).isEqualTo(UserDataMessageParser.EventType.EXECUTION_REPORT);
+
+        OrderPojo order = parser.getOrder();
+        assertThat(order.getAction()).isSameAs("BUY");
+        assertThat(order.getOrderStatus()).isEqualTo("SOME_NEW_STATUS");
+        assertThat(order.getType()).isSameAs("LIMIT_MAKER");
+        assertThat(order.getOrderId()).isNull();
+    }
+
+    @Test
+    void reportsOtherEventsAsOther() {
+        assertThat(parser.parse("{\"e\":\"balanceUpdate\",\"E\":1573200697110,\"a\":\"BTC\",\"d\":\"100.00000000\",\"T\":1573200697068}"))
+                .isEqualTo(UserDataMessageParser.EventType.OTHER);
+        assertThat(parser.parse("{\"result\":null,\"id\":1}")).isEqualTo(UserDataMessageParser.EventType.OTHER);
+        assertThat(parser.getBalances()).isEmpty();
+    }
+}
@@ -0,0 +1,82 @@
+package at.pepe.trader.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PriceScaleTest {
+    private final PriceScale priceScale = new PriceScale(8);
+
+    @Test
+    void parsesPlainDecimals() {
+        assertThat(priceScale.parse("0.00000812")).isEqualTo(812);
+        assertThat(priceScale.parse("12")).isEqualTo(1_200_000_000);
+        assertThat(priceScale.parse("1.5")).isEqualTo(150_000_000);
+        assertThat(priceScale.parse("+0.1")).isEqualTo(10_000_000);
+        assertThat(priceScale.parse("x0.00000812y", 1, 11)).isEqualTo(812);
+    }
+
+    @Test
+    void roundsHalfUpAtTheScale() {
+        assertThat(priceScale.parse("0.000008124")).isEqualTo(812);
+        assertThat(priceScale.parse("0.000008125")).isEqualTo(813);
+        assertThat(priceScale.parse("0.00000812499999999")).isEqualTo(812);
+        assertThat(priceScale.parse("0.999999995")).isEqualTo(100_000_000);
+        assertThat(new PriceScale(0).parse("2.5")).isEqualTo(3);
+    }
+
+    @Test
+    void roundsNegativePricesAwayFromZero() {
+        assertThat(priceScale.parse("-0.00000812")).isEqualTo(-812);
+        assertThat(priceScale.parse("-0.000008125")).isEqualTo(-813);
+        assertThat(priceScale.parse("-0.000008124")).isEqualTo(-812);
+        assertThat(priceScale.format(-812)).isEqualTo("-0.00000812");
+        assertThat(priceScale.format(-150_000_000)).isEqualTo("-1.50000000");
+    }
+
+    @Test
+    void acceptsExponentNotation() {
+        assertThat(priceScale.parse("8.12E-6")).isEqualTo(812);
+        assertThat(priceScale.parse("8.125e-6")).isEqualTo(813);
+        assertThat(priceScale.parse("-1E-8")).isEqualTo(-1);
+        assertThat(priceScale.parse("1.5E+2")).isEqualTo(15_000_000_000L);
+    }
+
+    @Test
+    void rejectsWhatIsNoPrice() {
+        for (String text : new String[]{"", "-", "0.1.2", "1,5", "0x10", "E-8", "1E", "NaN"}) {
+            assertThatThrownBy(() -> priceScale.parse(text)).as(text).isInstanceOf(NumberFormatException.class);
+        }
+    }
+
+    // A long holds 92233720368.54775807 at scale 8
+    @Test
+    void rejectsPricesTooLargeForALong() {
+        assertThat(priceScale.parse("92233720368.54775807")).isEqualTo(Long.MAX_VALUE);
+
+        for (String text : new String[]{"92233720368.54775808", "92233720368.547758075", "100000000000", "1E12",
+                "123456789012345678901234567890"}) {
+            assertThatThrownBy(() -> priceScale.parse(text)).as(text)
+                    .isInstanceOf(NumberFormatException.class)
+                    .hasMessageContaining("out of range");
+        }
+    }
+
+    @Test
+    void agreesWithBigDecimal() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextLong() >> random.nextInt(30, 64), random.nextInt(12));
+            long expected = price.setScale(8, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+
+            assertThat(priceScale.parse(price.toPlainString())).as(price.toPlainString()).isEqualTo(expected);
+            assertThat(priceScale.toPoints(price)).isEqualTo(expected);
+            assertThat(new BigDecimal(priceScale.format(expected))).isEqualByComparingTo(BigDecimal.valueOf(expected, 8));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package at.pepe.trader.persistent;
+
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.PersistenceConfigProperties;
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.model.StatisticsBucket;
+import at.pepe.trader.persistent.codec.BinaryPositionCodec;
+import at.pepe.trader.persistent.codec.JsonPositionCodec;
+import at.pepe.trader.persistent.codec.StatisticsBucketCodec;
+import at.pepe.trader.persistent.codec.ValueCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PositionRepositoryImplTest {
+    private static final OffsetDateTime SINCE = OffsetDateTime.of(2024, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private PositionRepositoryImpl positionRepository;
+
+    @BeforeEach
+    void setUp() {
+        PersistenceConfigProperties properties = new PersistenceConfigProperties();
+        properties.setPath(directory.toString());
+        positionRepository = new PositionRepositoryImpl(
+                List.of(new BinaryPositionCodec(), new JsonPositionCodec(new JacksonConfig().objectMapper())),
+                new StatisticsBucketCodec(),
+                properties,
+                new SimpleMeterRegistry()
+        );
+        positionRepository.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        positionRepository.shutdown();
+    }
+
+    @Test
+    void findAllSinceIncludesPositionsOfTheFirstMillisecondAfter() {
+        save(1, SINCE);
+        save(2, SINCE.plusNanos(1_000_000));
+        save(-3, SINCE.plusNanos(1_000_000));
+        save(Long.MAX_VALUE, SINCE.plusNanos(1_000_000));
+        save(Long.MIN_VALUE, SINCE.plusNanos(1_000_000));
+        save(5, SINCE.plusSeconds(1));
+        save(6, SINCE.minusSeconds(1));
+
+        List<Long> ids = positionRepository.findAllSince(SINCE).stream().map(Position::getId).toList();
+
+        assertThat(ids).containsExactlyInAnyOrder(2L, -3L, Long.MAX_VALUE, Long.MIN_VALUE, 5L);
+    }
+
+    @Test
+    void findAllSinceUsesTheCloseTimeOfClosedPositions() {
+        positionRepository.save(7L, position(7, SINCE.minusHours(1)).toBuilder()
+                .status(PositionStatus.FINISHED)
+                .closedAt(SINCE.plusNanos(1_000_000))
+                .build());
+
+        assertThat(positionRepository.findAllSince(SINCE)).extracting(Position::getId).containsExactly(7L);
+        assertThat(positionRepository.findAllSince(SINCE.plusNanos(1_000_000))).isEmpty();
+    }
+
+    @Test
+    void findAllSinceReadsPositionsStillQueued() {
+        save(8, Instant.now().atOffset(ZoneOffset.UTC));
+
+        assertThat(positionRepository.findAllSince(SINCE)).extracting(Position::getId).containsExactly(8L);
+    }
+
+    @Test
+    void remembersThatTheStatisticsWereRebuilt() {
+        assertThat(positionRepository.isStatisticsRebuilt()).isFalse();
+
+        positionRepository.markStatisticsRebuilt();
+        positionRepository.shutdown();
+        setUp();
+
+        assertThat(positionRepository.isStatisticsRebuilt()).isTrue();
+    }
+
+    // PEPE is a prefix of PEPEFDUSD, its buckets must not show up for the other symbol
+    @Test
+    void findsTheStatisticsOfOneSymbolOnly() {
+        positionRepository.saveStatistics(bucket("PEPEFDUSD", 100, 1));
+        positionRepository.saveStatistics(bucket("PEPEFDUSD", 101, 2));
+        positionRepository.saveStatistics(bucket("PEPE", 101, 3));
+        positionRepository.saveStatistics(bucket("BONKFDUSD", 102, 4));
+
+        assertThat(positionRepository.findStatisticsSince("PEPEFDUSD", 101))
+                .extracting(StatisticsBucket::getSymbol, StatisticsBucket::getMinute, StatisticsBucket::getPositionsOpened)
+                .containsExactly(tuple("PEPEFDUSD", 101L, 2));
+        assertThat(positionRepository.findStatisticsSince("PEPE", 0)).extracting(StatisticsBucket::getPositionsOpened).containsExactly(3);
+        assertThat(positionRepository.findStatisticsSince("FDUSD", 0)).isEmpty();
+    }
+
+    @Test
+    void flushFallsBackToAnotherCodecInsteadOfDroppingThePosition() throws Exception {
+        positionRepository.shutdown();
+        PersistenceConfigProperties properties = new PersistenceConfigProperties();
+        properties.setPath(directory.resolve("fallback").toString());
+        properties.setCodec("failing");
+        positionRepository = new PositionRepositoryImpl(
+                List.of(new FailingCodec(), new JsonPositionCodec(new JacksonConfig().objectMapper())),
+                new StatisticsBucketCodec(),
+                properties,
+                new SimpleMeterRegistry()
+        );
+        positionRepository.initialize();
+
+        save(9, SINCE);
+        positionRepository.flush();
+
+        assertThat(positionRepository.getQueueDepth()).isZero();
+        assertThat(positionRepository.find(9L)).isEqualTo(position(9, SINCE));
+    }
+
+    private static StatisticsBucket bucket(String symbol, long minute, int positionsOpened) {
+        return StatisticsBucket.builder().symbol(symbol).minute(minute).positionsOpened(positionsOpened).build();
+    }
+
+    private void save(long id, OffsetDateTime createdAt) {
+        positionRepository.save(id, position(id, createdAt));
+    }
+
+    private static Position position(long id, OffsetDateTime createdAt) {
+        return Position.builder()
+                .id(id)
+                .status(PositionStatus.OPENED)
+                .orderIdOpen(1L)
+                .openAtPrice(new BigDecimal("0.00000750"))
+                .quantityOpen(new BigDecimal("3333333"))
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static final class FailingCodec implements ValueCodec<Position> {
+        @Override
+        public String getName() {
+            return "failing";
+        }
+
+        @Override
+        public byte[] encode(Position value) throws IOException {
+            throw new IOException("Can't encode");
+        }
+
+        @Override
+        public Position decode(byte[] bytes) throws IOException {
+            throw new IOException("Can't decode");
+        }
+
+        @Override
+        public boolean canDecode(byte[] bytes) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package at.pepe.trader.persistent.codec;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryPositionCodecTest {
+    private final BinaryPositionCodec codec = new BinaryPositionCodec();
+
+    @Test
+    void roundTripsAFinishedPosition() throws IOException {
+        Position position = Position.builder()
+                .id(-42)
+                .status(PositionStatus.FINISHED)
+                .orderIdOpen(1L)
+                .openAtPrice(new BigDecimal("0.00000750"))
+                .quantityOpen(new BigDecimal("3333333"))
+                .orderIdClose(2L)
+                .closeAtPrice(new BigDecimal("0.00000760"))
+                .quantityClose(new BigDecimal("3333333.00"))
+                .createdAt(OffsetDateTime.of(2024, 3, 1, 12, 0, 0, 1_000_000, ZoneOffset.ofHours(2)))
+                .closedAt(OffsetDateTime.of(2024, 3, 1, 13, 0, 0, 0, ZoneOffset.UTC))
+                .build();
+
+        byte[] bytes = codec.encode(position);
+
+        assertThat(bytes[0]).isEqualTo(BinaryPositionCodec.VERSION_1);
+        assertThat(codec.decode(bytes)).isEqualTo(position);
+    }
+
+    @Test
+    void leavesOutNullFields() throws IOException {
+        Position position = Position.builder().id(7).build();
+
+        assertThat(codec.decode(codec.encode(position))).isEqualTo(position);
+    }
+
+    @Test
+    void stripsTrailingZerosOfWideDecimalsThatFitALongAfterwards() throws IOException {
+        BigDecimal quantity = new BigDecimal("1000000000000000000000.000000000000");
+
+        Position decoded = codec.decode(codec.encode(Position.builder().id(1).quantityOpen(quantity).build()));
+
+        assertThat(decoded.getQuantityOpen()).isEqualByComparingTo(quantity);
+    }
+
+    @Test
+    void writesDecimalsBeyondALongAsVersion2() throws IOException {
+        Position position = Position.builder()
+                .id(3)
+                .status(PositionStatus.OPENED)
+                .openAtPrice(new BigDecimal("123456789012345678901234567890.123"))
+                .quantityOpen(new BigDecimal("-98765432109876543210987654321"))
+                .closeAtPrice(new BigDecimal("0.00000760"))
+                .build();
+
+        byte[] bytes = codec.encode(position);
+
+        assertThat(bytes[0]).isEqualTo(BinaryPositionCodec.VERSION_2);
+        assertThat(codec.canDecode(bytes)).isTrue();
+        assertThat(codec.decode(bytes)).isEqualTo(position);
+    }
+
+    @Test
+    void rejectsTruncatedRecords() throws IOException {
+        byte[] bytes = codec.encode(Position.builder().id(3)
+                .openAtPrice(new BigDecimal("123456789012345678901234567890.123")).build());
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+
+        assertThatThrownBy(() -> codec.decode(truncated)).isInstanceOf(IOException.class);
+    }
+}
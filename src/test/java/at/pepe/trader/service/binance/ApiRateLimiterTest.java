@@ -0,0 +1,71 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.config.RateLimitConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ApiRateLimiterTest {
+    private static final long MINUTE = 60_000;
+    private static final long TEN_SECONDS = 10_000;
+
+    private final RateLimitConfigProperties properties = new RateLimitConfigProperties();
+    private ApiRateLimiter rateLimiter;
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.shutdown();
+    }
+
+    @Test
+    void shedsNewOrdersButKeepsClosingOrdersWaiting() throws Exception {
+        properties.setOrdersPer10Seconds(1);
+        properties.setMaxQueuedOrders(0);
+        properties.setMaxQueueWaitMs(10);
+        rateLimiter = new ApiRateLimiter(properties, clockAt(100 * TEN_SECONDS - 300), new SimpleMeterRegistry());
+
+        assertThat(rateLimiter.acquire(ApiEndpoint.NEW_ORDER)).isCompleted();
+        CompletableFuture<Void> open = rateLimiter.acquire(ApiEndpoint.NEW_ORDER);
+        CompletableFuture<Void> close = rateLimiter.acquire(ApiEndpoint.CLOSE_ORDER);
+
+        assertThatThrownBy(open::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(close).isNotDone();
+        close.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void closingOrdersMayUseTheCancelReserve() {
+        properties.setRequestWeightPerMinute(10);
+        properties.setCancelReserveWeight(5);
+        rateLimiter = new ApiRateLimiter(properties, clockAt(100 * MINUTE + 1000), new SimpleMeterRegistry());
+        rateLimiter.observeUsedWeight(5);
+
+        assertThat(rateLimiter.acquire(ApiEndpoint.NEW_ORDER)).isNotDone();
+        assertThat(rateLimiter.acquire(ApiEndpoint.CLOSE_ORDER)).isCompleted();
+    }
+
+    @Test
+    void capsKlineDownloadsAtTheirShare() {
+        properties.setDownloadWeightPerMinute(2 * ApiEndpoint.KLINES.getWeight());
+        rateLimiter = new ApiRateLimiter(properties, clockAt(100 * MINUTE + 1000), new SimpleMeterRegistry());
+
+        assertThat(rateLimiter.acquire(ApiEndpoint.KLINES)).isCompleted();
+        assertThat(rateLimiter.acquire(ApiEndpoint.KLINES)).isCompleted();
+        assertThat(rateLimiter.acquire(ApiEndpoint.KLINES)).isNotDone();
+        assertThat(rateLimiter.acquire(ApiEndpoint.OPEN_ORDERS)).isCompleted();
+    }
+
+    // Runs in real time, starting at the given time
+    private static Clock clockAt(long millis) {
+        return Clock.offset(Clock.systemUTC(), Duration.ofMillis(millis - System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,143 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.config.ConnectionConfigProperties;
+import at.pepe.trader.config.LatencyConfigProperties;
+import at.pepe.trader.config.RateLimitConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.mapper.OrderMapper;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.connection.ConnectionManager;
+import at.pepe.trader.service.connection.ManagedConnection;
+import at.pepe.trader.service.latency.LatencyTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the order API against a local websocket stand-in answering every new order with NEW.
+ */
+class OrderServiceTest {
+    private WebSocketStandIn standIn;
+    private ConnectionManager connectionManager;
+    private ApiRateLimiter rateLimiter;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = new WebSocketStandIn(OrderServiceTest::respond);
+
+        BinanceConfigProperties binanceConfigProperties = new BinanceConfigProperties();
+        binanceConfigProperties.setApikey("key");
+        binanceConfigProperties.setBaseWebsocketApi(standIn.url());
+        TradeConfigProperties tradeConfigProperties = new TradeConfigProperties();
+        tradeConfigProperties.setSymbol("PEPEFDUSD");
+        tradeConfigProperties.setQuoteAssetScale(8);
+        ConnectionConfigProperties connectionConfigProperties = new ConnectionConfigProperties();
+        connectionConfigProperties.setInitialBackoffMs(100);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        connectionManager = new ConnectionManager(connectionConfigProperties, binanceConfigProperties, meterRegistry, Clock.systemUTC());
+        rateLimiter = new ApiRateLimiter(new RateLimitConfigProperties(), Clock.systemUTC(), meterRegistry);
+        orderService = new OrderService(
+                payload -> "signed:" + payload,
+                tradeConfigProperties,
+                binanceConfigProperties,
+                new OrderMapper(),
+                new LatencyTracker(new LatencyConfigProperties(), meterRegistry, null, null),
+                rateLimiter,
+                connectionManager,
+                connectionConfigProperties
+        );
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionManager.stop();
+        rateLimiter.shutdown();
+        standIn.close();
+    }
+
+    @Test
+    void sendsSignedOrdersOverItsOwnSocket() throws Exception {
+        orderService.openApiStream();
+        WebSocketStandIn.Session session = standIn.nextSession();
+        awaitUp();
+
+        OrderAck ack = orderService.createNewOrder(750, new BigDecimal("1000"), "BUY", 7).get(5, TimeUnit.SECONDS);
+
+        JSONObject request = new JSONObject(session.nextMessage());
+        JSONObject params = request.getJSONObject("params");
+        assertThat(request.getString("method")).isEqualTo("order.place");
+        assertThat(request.getString("id")).isEqualTo(ack.getRequestId());
+        assertThat(params.getString("apiKey")).isEqualTo("key");
+        assertThat(params.getString("signature"))
+                .startsWith("signed:apiKey=key&newClientOrderId=7_BUY&newOrderRespType=RESULT&price=0.00000750&quantity=1000&side=BUY&symbol=PEPEFDUSD&timeInForce=GTC&timestamp=")
+                .endsWith("&type=LIMIT");
+        assertThat(ack.getOrder().getClientOrderId()).isEqualTo("7_BUY");
+        assertThat(ack.getOrder().getOrderStatus()).isEqualTo("NEW");
+    }
+
+    @Test
+    void reconnectsAfterTheConnectionWasLost() throws Exception {
+        orderService.openApiStream();
+        WebSocketStandIn.Session first = standIn.nextSession();
+        awaitUp();
+
+        first.drop();
+        WebSocketStandIn.Session second = standIn.nextSession();
+        awaitUp();
+        OrderAck ack = orderService.createNewOrder(750, new BigDecimal("1000"), "BUY", 8).get(5, TimeUnit.SECONDS);
+
+        assertThat(new JSONObject(second.nextMessage()).getString("id")).isEqualTo(ack.getRequestId());
+        assertThat(ack.getOrder().getClientOrderId()).isEqualTo("8_BUY");
+        Thread.sleep(200);
+        assertThat(second.isOpen()).isTrue();
+    }
+
+    @Test
+    void failsRightAwayWithoutAConnection() {
+        CompletableFuture<OrderAck> ack = orderService.createNewOrder(750, new BigDecimal("1000"), "BUY", 9);
+
+        assertThatThrownBy(() -> ack.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(OrderNotSentException.class);
+    }
+
+    private void awaitUp() throws InterruptedException {
+        ManagedConnection connection = connectionManager.getConnections().get(0);
+        for (int i = 0; i < 500 && !connection.isUp(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(connection.isUp()).isTrue();
+    }
+
+    private static String respond(String message) {
+        JSONObject request = new JSONObject(message);
+        if (!"order.place".equals(request.getString("method"))) {
+            return null;
+        }
+        JSONObject params = request.getJSONObject("params");
+        JSONObject result = new JSONObject()
+                .put("symbol", params.getString("symbol"))
+                .put("orderId", 1)
+                .put("clientOrderId", params.getString("newClientOrderId"))
+                .put("transactTime", System.currentTimeMillis())
+                .put("price", params.getString("price"))
+                .put("origQty", params.getString("quantity"))
+                .put("executedQty", "0")
+                .put("status", "NEW")
+                .put("type", params.getString("type"))
+                .put("side", params.getString("side"));
+        return new JSONObject().put("id", request.getString("id")).put("status", 200).put("result", result).toString();
+    }
+}
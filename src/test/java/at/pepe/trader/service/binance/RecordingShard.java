@@ -0,0 +1,45 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.shard.SymbolShard;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A shard without services that only records what was handed to it.
+ */
+final class RecordingShard extends SymbolShard {
+    final List<long[]> klines = new ArrayList<>(); // closeTime, open, high, low, close
+    final List<OrderPojo> orders = new ArrayList<>();
+    final List<Map<String, BigDecimal>> balances = new ArrayList<>();
+
+    RecordingShard(String symbol, int quoteAssetScale) {
+        super(properties(symbol, quoteAssetScale), null, null, null, null, null, null, null, null);
+    }
+
+    private static TradeConfigProperties properties(String symbol, int quoteAssetScale) {
+        TradeConfigProperties properties = new TradeConfigProperties();
+        properties.setSymbol(symbol);
+        properties.setQuoteAssetScale(quoteAssetScale);
+        return properties;
+    }
+
+    @Override
+    public void publishKline(long closeTime, long open, long high, long low, long close, double volume, long receivedNanos) {
+        klines.add(new long[]{closeTime, open, high, low, close});
+    }
+
+    @Override
+    public void publishOrder(OrderPojo order) {
+        orders.add(order);
+    }
+
+    @Override
+    public void updateBalances(Map<String, BigDecimal> free) {
+        balances.add(free);
+    }
+}
@@ -0,0 +1,48 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.shard.ShardRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymbolPriceMonitorServiceTest {
+    private final RecordingShard pepe = new RecordingShard("PEPEFDUSD", 8);
+    private final RecordingShard btc = new RecordingShard("BTCFDUSD", 2);
+    private final SymbolPriceMonitorService symbolPriceMonitorService =
+            new SymbolPriceMonitorService(null, new ShardRegistry(List.of(pepe, btc)), LatencyTracker.disabled());
+
+    @Test
+    void routesEachKlineToTheShardOfItsSymbolInItsScale() {
+        symbolPriceMonitorService.priceUpdateEvent(kline("BTCFDUSD", 1_000, "61000.01", "61000.50"));
+        symbolPriceMonitorService.priceUpdateEvent(kline("PEPEFDUSD", 2_000, "0.00000750", "0.00000751"));
+        symbolPriceMonitorService.priceUpdateEvent(kline("PEPEFDUSD", 3_000, "0.00000751", "0.00000749"));
+
+        assertThat(pepe.klines).extracting(kline -> kline[0]).containsExactly(2_000L, 3_000L);
+        assertThat(pepe.klines.get(0)).containsExactly(2_000, 750, 751, 750, 751);
+        assertThat(btc.klines).singleElement()
+                .satisfies(kline -> assertThat(kline).containsExactly(1_000, 6_100_001, 6_100_050, 6_100_001, 6_100_050));
+    }
+
+    // PEPE is a prefix of PEPEFDUSD, the symbol has to match as a whole
+    @Test
+    void dropsKlinesOfSymbolsNotTraded() {
+        symbolPriceMonitorService.priceUpdateEvent(kline("PEPE", 1_000, "0.00000750", "0.00000751"));
+        symbolPriceMonitorService.priceUpdateEvent(kline("ETHFDUSD", 1_000, "3000.00", "3000.01"));
+        symbolPriceMonitorService.priceUpdateEvent("{\"result\":null,\"id\":1}");
+
+        assertThat(pepe.klines).isEmpty();
+        assertThat(btc.klines).isEmpty();
+    }
+
+    private static String kline(String symbol, long closeTime, String open, String close) {
+        String high = open.compareTo(close) > 0 ? open : close;
+        String low = open.compareTo(close) > 0 ? close : open;
+        return String.format(Locale.ROOT, "{\"stream\":\"%s@kline_1s\",\"data\":{\"e\":\"kline\",\"s\":\"%s\",\"k\":{\"T\":%d,\"s\":\"%s\","
+                        + "\"i\":\"1s\",\"o\":\"%s\",\"c\":\"%s\",\"h\":\"%s\",\"l\":\"%s\",\"v\":\"1000.00000000\",\"x\":false}}}",
+                symbol.toLowerCase(Locale.ROOT), symbol, closeTime, symbol, open, close, high, low);
+    }
+}
@@ -0,0 +1,65 @@
+package at.pepe.trader.service.binance;
+
+import at.pepe.trader.config.JournalConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.mapper.OrderMapper;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.journal.ExecutionReportJournalService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.shard.ShardRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class UserDataMonitorServiceTest {
+    private final RecordingShard pepe = new RecordingShard("PEPEFDUSD", 8);
+    private final RecordingShard btc = new RecordingShard("BTCFDUSD", 2);
+    private final ShardRegistry shardRegistry = new ShardRegistry(List.of(pepe, btc));
+    private final UserDataMonitorService userDataMonitorService = new UserDataMonitorService(
+            new OrderHolderService(new OrderMapper(), shardRegistry, null, null),
+            null,
+            null,
+            null,
+            new ExecutionReportJournalService(new JournalConfigProperties(), new TradeConfigProperties()), // Not opened, records nothing
+            shardRegistry,
+            LatencyTracker.disabled(),
+            null
+    );
+
+    @Test
+    void routesExecutionReportsToTheShardOfTheirSymbol() {
+        userDataMonitorService.userDataUpdateEvent(executionReport("PEPEFDUSD", "5_BUY", "NEW"));
+        userDataMonitorService.userDataUpdateEvent(executionReport("BTCFDUSD", "6_BUY", "NEW"));
+        userDataMonitorService.userDataUpdateEvent(executionReport("PEPEFDUSD", "5_BUY", "FILLED"));
+
+        assertThat(pepe.orders).extracting(OrderPojo::getClientOrderId, OrderPojo::getOrderStatus)
+                .containsExactly(tuple("5_BUY", "NEW"), tuple("5_BUY", "FILLED"));
+        assertThat(btc.orders).extracting(OrderPojo::getClientOrderId).containsExactly("6_BUY");
+    }
+
+    @Test
+    void ignoresOrdersOfSymbolsNotTraded() {
+        userDataMonitorService.userDataUpdateEvent(executionReport("ETHFDUSD", "web_1", "NEW"));
+
+        assertThat(pepe.orders).isEmpty();
+        assertThat(btc.orders).isEmpty();
+    }
+
+    @Test
+    void handsTheBalancesToEveryShard() {
+        userDataMonitorService.userDataUpdateEvent("{\"e\":\"outboundAccountPosition\",\"E\":1564034571105,\"u\":1564034571073,"
+                + "\"B\":[{\"a\":\"PEPE\",\"f\":\"1000\",\"l\":\"0\"},{\"a\":\"FDUSD\",\"f\":\"25.5\",\"l\":\"0\"}]}");
+
+        assertThat(pepe.balances).singleElement().satisfies(free -> assertThat(free.get("FDUSD")).isEqualByComparingTo(new BigDecimal("25.5")));
+        assertThat(btc.balances).isEqualTo(pepe.balances);
+    }
+
+    private static String executionReport(String symbol, String clientOrderId, String status) {
+        return "{\"e\":\"executionReport\",\"E\":1709294400123,\"s\":\"" + symbol + "\",\"c\":\"" + clientOrderId
+                + "\",\"S\":\"BUY\",\"o\":\"LIMIT\",\"X\":\"" + status + "\",\"i\":991}";
+    }
+}
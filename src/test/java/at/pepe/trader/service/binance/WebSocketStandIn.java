@@ -0,0 +1,206 @@
+package at.pepe.trader.service.binance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Just enough of a websocket server to stand in for the order API: text frames, pings and closes, one thread per
+ * connection. Every text message is answered with what the responder returns for it, nothing for null.
+ */
+final class WebSocketStandIn implements Closeable {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ServerSocket serverSocket;
+    private final Function<String, String> responder;
+    private final BlockingQueue<Session> sessions = new LinkedBlockingQueue<>();
+
+    WebSocketStandIn(Function<String, String> responder) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.responder = responder;
+        Thread acceptor = new Thread(this::accept, "websocket-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url() {
+        return "ws://127.0.0.1:" + serverSocket.getLocalPort() + "/ws-api/v3";
+    }
+
+    /**
+     * The next connection opened, waiting for it up to 5 seconds.
+     */
+    Session nextSession() throws InterruptedException {
+        Session session = sessions.poll(5, TimeUnit.SECONDS);
+        if (session == null) {
+            throw new AssertionError("No connection within 5 seconds");
+        }
+        return session;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Session session = new Session(serverSocket.accept());
+                Thread reader = new Thread(session::run, "websocket-stand-in-session");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException exception) {
+                return;
+            }
+        }
+    }
+
+    final class Session {
+        private final Socket socket;
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        private Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * The next text message the client sent, waiting for it up to 5 seconds.
+         */
+        String nextMessage() throws InterruptedException {
+            String message = received.poll(5, TimeUnit.SECONDS);
+            if (message == null) {
+                throw new AssertionError("No message within 5 seconds");
+            }
+            return message;
+        }
+
+        boolean isOpen() {
+            return !socket.isClosed();
+        }
+
+        /**
+         * Drops the connection without a close frame, like a network failure.
+         */
+        void drop() throws IOException {
+            socket.close();
+        }
+
+        private void run() {
+            try (socket) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                handshake(in, out);
+                sessions.add(this);
+                while (true) {
+                    int first = in.readUnsignedByte();
+                    int opcode = first & 0x0F;
+                    byte[] payload = readPayload(in);
+                    if (opcode == 0x1) {
+                        String message = new String(payload, StandardCharsets.UTF_8);
+                        received.add(message);
+                        String response = responder.apply(message);
+                        if (response != null) {
+                            write(out, 0x1, response.getBytes(StandardCharsets.UTF_8));
+                        }
+                    } else if (opcode == 0x9) {
+                        write(out, 0xA, payload);
+                    } else if (opcode == 0x8) {
+                        write(out, 0x8, payload);
+                        return;
+                    }
+                }
+            } catch (IOException exception) {
+                // Dropped by either side
+            }
+        }
+
+        private void handshake(InputStream in, OutputStream out) throws IOException {
+            String key = null;
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            String response = "HTTP/1.1 101 Switching Protocols\r\n" +
+                    "Upgrade: websocket\r\n" +
+                    "Connection: Upgrade\r\n" +
+                    "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n";
+            out.write(response.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        private synchronized void write(OutputStream out, int opcode, byte[] payload) throws IOException {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            frame.write(0x80 | opcode);
+            if (payload.length < 126) {
+                frame.write(payload.length);
+            } else {
+                frame.write(126);
+                frame.write(payload.length >>> 8);
+                frame.write(payload.length & 0xFF);
+            }
+            frame.write(payload);
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+    }
+
+    // Client frames are always masked
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        int second = in.readUnsignedByte();
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        byte[] mask = new byte[4];
+        if ((second & 0x80) != 0) {
+            in.readFully(mask);
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] ^= mask[i & 3];
+        }
+        return payload;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("Connection closed during the handshake");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static String accept(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.service.indicator.IndicatorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BarSeriesHolderServiceTest {
+    private static final long MINUTE = 60_000;
+
+    private final Queue<Runnable> strategyTasks = new ArrayDeque<>();
+    private FakeBarHistoryService barHistoryService;
+    private BarSeriesHolderService barSeriesHolderService;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        TradeConfigProperties properties = new TradeConfigProperties();
+        properties.setQuoteAssetScale(8);
+        properties.setMinuteBarCapacity(10);
+        properties.setSecondBarCapacity(600);
+        barHistoryService = new FakeBarHistoryService();
+        barSeriesHolderService = new BarSeriesHolderService(properties, barHistoryService, new IndicatorService(properties));
+        barSeriesHolderService.setStrategyExecutor(strategyTasks::add);
+        now = (System.currentTimeMillis() / MINUTE) * MINUTE;
+    }
+
+    @Test
+    void holdsKlinesReceivedBeforeTheRestoreStarted() {
+        assertThat(barSeriesHolderService.updateBarSeries(now + 999, 5, 5, 5, 5, 1)).isFalse();
+
+        barSeriesHolderService.initialSetup();
+        barHistoryService.complete(history(now - 1));
+
+        assertThat(barSeriesHolderService.getMinuteSeries().getBarCount()).isZero();
+        runStrategyTasks();
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(2);
+        assertThat(barSeriesHolderService.getLastClose()).isEqualTo(5);
+    }
+
+    @Test
+    void appliesTheHistoryOnTheStrategyExecutorOnly() {
+        barSeriesHolderService.initialSetup();
+        barHistoryService.complete(history(now - 1));
+
+        assertThat(barSeriesHolderService.updateBarSeries(now + 999, 5, 5, 5, 5, 1)).isFalse();
+        assertThat(strategyTasks).hasSize(1);
+        runStrategyTasks();
+
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(2);
+        assertThat(barSeriesHolderService.updateBarSeries(now + 1999, 5, 6, 5, 6, 1)).isTrue();
+        assertThat(barSeriesHolderService.getLastClose()).isEqualTo(6);
+    }
+
+    @Test
+    void startFromDoesNotWaitForAHistory() {
+        barSeriesHolderService.startFrom(now + 999, 5, 5, 5, 5, 1);
+
+        assertThat(barSeriesHolderService.updateBarSeries(now + 1999, 5, 6, 5, 6, 1)).isTrue();
+        assertThat(barSeriesHolderService.getLastClose()).isEqualTo(6);
+    }
+
+    @Test
+    void repairsAGapOnTheStrategyExecutor() {
+        barSeriesHolderService.initialSetup();
+        barHistoryService.complete(history(now - 1));
+        runStrategyTasks();
+        barSeriesHolderService.updateBarSeries(now + 999, 5, 5, 5, 5, 1);
+
+        barSeriesHolderService.checkForGap();
+        assertThat(barSeriesHolderService.updateBarSeries(now + 10_999, 7, 7, 7, 7, 1)).isFalse();
+        assertThat(barHistoryService.from).isEqualTo(now + 999);
+        assertThat(barHistoryService.to).isEqualTo(now + 10_999);
+        assertThat(barSeriesHolderService.updateBarSeries(now + 11_999, 8, 8, 8, 8, 1)).isFalse();
+
+        KlineBatch missing = new KlineBatch();
+        for (long second = 1; second < 10; second++) {
+            missing.onKline(now + second * 1000 + 999, 6, 6, 6, 6, 1);
+        }
+        barHistoryService.complete(new BarHistory(missing, new KlineBatch(), 0, 0));
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(2);
+
+        runStrategyTasks();
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(13);
+        assertThat(barSeriesHolderService.getLastClose()).isEqualTo(8);
+        assertThat(barSeriesHolderService.updateBarSeries(now + 12_999, 9, 9, 9, 9, 1)).isTrue();
+    }
+
+    private void runStrategyTasks() {
+        for (Runnable task = strategyTasks.poll(); task != null; task = strategyTasks.poll()) {
+            task.run();
+        }
+    }
+
+    private static BarHistory history(long lastCloseTime) {
+        KlineBatch seconds = new KlineBatch();
+        seconds.onKline(lastCloseTime, 4, 4, 4, 4, 1);
+        KlineBatch minutes = new KlineBatch();
+        minutes.onKline(lastCloseTime, 4, 4, 4, 4, 1);
+        return new BarHistory(seconds, minutes, 0, 0);
+    }
+
+    // Completes the load when told to, on the calling thread
+    private static final class FakeBarHistoryService extends BarHistoryService {
+        private CompletableFuture<BarHistory> load;
+        private long from;
+        private long to;
+
+        FakeBarHistoryService() {
+            super(null, null, null);
+        }
+
+        @Override
+        public CompletableFuture<BarHistory> load(long fromMillis, long toMillis) {
+            from = fromMillis;
+            to = toMillis;
+            load = new CompletableFuture<>();
+            return load;
+        }
+
+        void complete(BarHistory history) {
+            load.complete(history);
+        }
+    }
+}
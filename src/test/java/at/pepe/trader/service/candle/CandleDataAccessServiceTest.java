@@ -0,0 +1,146 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.config.HistoryConfigProperties;
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.RateLimitConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.service.binance.ApiRateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the downloads against a local stand-in of the klines endpoint serving one 1s kline per second.
+ */
+class CandleDataAccessServiceTest {
+    private static final long START = 1_700_000_000_000L;
+    private static final long SECOND = 1000;
+
+    private final Set<Long> failingPages = ConcurrentHashMap.newKeySet(); // Start times answered with 500
+    private final AtomicInteger limitedResponses = new AtomicInteger(); // Answered with 429 before serving again
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private ApiRateLimiter rateLimiter;
+    private CandleDataAccessService candleDataAccessService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v3/klines", this::klines);
+        server.start();
+
+        HistoryConfigProperties historyConfigProperties = new HistoryConfigProperties();
+        historyConfigProperties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        historyConfigProperties.setMaxAttempts(2);
+        TradeConfigProperties tradeConfigProperties = new TradeConfigProperties();
+        tradeConfigProperties.setSymbol("PEPEFDUSD");
+        tradeConfigProperties.setQuoteAssetScale(8);
+        rateLimiter = new ApiRateLimiter(new RateLimitConfigProperties(), Clock.systemUTC(), new SimpleMeterRegistry());
+        candleDataAccessService = new CandleDataAccessService(new JacksonConfig().objectMapper(), historyConfigProperties,
+                tradeConfigProperties, new BinanceConfigProperties(), rateLimiter, Clock.systemUTC());
+    }
+
+    @AfterEach
+    void tearDown() {
+        candleDataAccessService.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void downloadsAllPagesInOrder() {
+        KlineBatch klines = candleDataAccessService.download("1s", START, START + 2499 * SECOND).join();
+
+        assertThat(klines.size()).isEqualTo(2500);
+        for (int i = 0; i < klines.size(); i++) {
+            assertThat(klines.getCloseTime(i)).isEqualTo(START + i * SECOND + 999);
+        }
+        assertThat(klines.getClose(1)).isEqualTo(101);
+        assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void skipsAPageThatFailsEveryAttempt() {
+        failingPages.add(START + 1000 * SECOND);
+
+        KlineBatch klines = candleDataAccessService.download("1s", START, START + 2499 * SECOND).join();
+
+        assertThat(klines.size()).isEqualTo(1500);
+        assertThat(klines.getCloseTime(999)).isEqualTo(START + 999 * SECOND + 999);
+        assertThat(klines.getCloseTime(1000)).isEqualTo(START + 2000 * SECOND + 999);
+        assertThat(requests.get()).isEqualTo(4);
+    }
+
+    @Test
+    void retriesAfterTheRetryAfterOfALimitedRequest() {
+        limitedResponses.set(1);
+        long start = System.currentTimeMillis();
+
+        KlineBatch klines = candleDataAccessService.fetchPage("1s", START, START + 9 * SECOND);
+
+        assertThat(klines.size()).isEqualTo(10);
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(1000);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    private void klines(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair[1]);
+        }
+        long startTime = Long.parseLong(query.get("startTime"));
+        long endTime = Long.parseLong(query.get("endTime"));
+        int limit = Integer.parseInt(query.get("limit"));
+
+        if (limitedResponses.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            respond(exchange, 429, "{\"code\":-1003,\"msg\":\"Too many requests.\"}");
+            return;
+        }
+        if (failingPages.contains(startTime)) {
+            respond(exchange, 500, "{\"code\":-1000,\"msg\":\"Unknown error.\"}");
+            return;
+        }
+
+        StringBuilder body = new StringBuilder("[");
+        int count = 0;
+        for (long openTime = startTime; openTime <= endTime && count < limit; openTime += SECOND, count++) {
+            long price = 100 + (openTime - START) / SECOND;
+            String points = String.format("0.%08d", price);
+            if (count > 0) {
+                body.append(',');
+            }
+            body.append('[').append(openTime).append(",\"").append(points).append("\",\"").append(points)
+                    .append("\",\"").append(points).append("\",\"").append(points).append("\",\"1000.0\",")
+                    .append(openTime + SECOND - 1).append(",\"0.1\",3,\"500.0\",\"0.05\",\"0\"]");
+        }
+        exchange.getResponseHeaders().add("X-MBX-USED-WEIGHT-1M", String.valueOf(requests.get() * 2));
+        respond(exchange, 200, body.append(']').toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
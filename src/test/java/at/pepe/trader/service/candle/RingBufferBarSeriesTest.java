@@ -0,0 +1,109 @@
+package at.pepe.trader.service.candle;
+
+import at.pepe.trader.model.PriceScale;
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.num.DecimalNum;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RingBufferBarSeriesTest {
+    private static final PriceScale PRICE_SCALE = new PriceScale(2);
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+
+    private final RingBufferBarSeries series = new RingBufferBarSeries(new BarRingBuffer("1m", MINUTE, 4), PRICE_SCALE);
+
+    @Test
+    void addBarWithReplaceOverwritesTheLastBar() {
+        series.addBar(bar(1, "1.00", "1.50"), false);
+        series.addBar(bar(2, "1.50", "1.20"), false);
+
+        series.addBar(bar(2, "1.50", "1.80"), true);
+
+        assertThat(series.getBarCount()).isEqualTo(2);
+        assertThat(series.getLastBar().getClosePrice()).isEqualTo(DecimalNum.valueOf("1.80"));
+        assertThat(series.getLastBar().getHighPrice()).isEqualTo(DecimalNum.valueOf("1.80"));
+        assertThat(series.getLastBar().getEndTime()).isEqualTo(endTime(2));
+    }
+
+    @Test
+    void addBarWithReplaceAppendsToAnEmptySeries() {
+        series.addBar(bar(1, "1.00", "1.50"), true);
+
+        assertThat(series.getBarCount()).isEqualTo(1);
+        assertThat(series.getBar(0).getClosePrice()).isEqualTo(DecimalNum.valueOf("1.50"));
+    }
+
+    @Test
+    void shrinkingTheMaximumBarCountKeepsTheNewestBars() {
+        for (int minute = 1; minute <= 4; minute++) {
+            series.addBar(bar(minute, "1.00", minute + ".00"), false);
+        }
+
+        series.setMaximumBarCount(2);
+        series.addBar(bar(5, "1.00", "5.00"), false);
+
+        assertThat(series.getMaximumBarCount()).isEqualTo(2);
+        assertThat(series.getBeginIndex()).isEqualTo(3);
+        assertThat(series.getEndIndex()).isEqualTo(4);
+        assertThat(series.getRemovedBarsCount()).isEqualTo(3);
+        assertThat(series.getBar(3).getClosePrice()).isEqualTo(DecimalNum.valueOf("4.00"));
+        assertThat(series.getBar(4).getClosePrice()).isEqualTo(DecimalNum.valueOf("5.00"));
+    }
+
+    @Test
+    void growingTheMaximumBarCountKeepsAllBars() {
+        for (int minute = 1; minute <= 6; minute++) {
+            series.addBar(bar(minute, "1.00", minute + ".00"), false);
+        }
+
+        series.setMaximumBarCount(8);
+        for (int minute = 7; minute <= 10; minute++) {
+            series.addBar(bar(minute, "1.00", minute + ".00"), false);
+        }
+
+        assertThat(series.getBarCount()).isEqualTo(8);
+        assertThat(series.getBeginIndex()).isEqualTo(2);
+        for (int index = 2; index <= 9; index++) {
+            assertThat(series.getBar(index).getClosePrice()).isEqualTo(DecimalNum.valueOf((index + 1) + ".00"));
+            assertThat(series.getBar(index).getEndTime()).isEqualTo(endTime(index + 1));
+        }
+    }
+
+    @Test
+    void maximumBarCountHasToBePositive() {
+        assertThatThrownBy(() -> series.setMaximumBarCount(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void barsBeforeTheLastCanBeModified() {
+        series.addBar(bar(1, "1.00", "1.50"), false);
+        series.addBar(bar(2, "1.50", "1.20"), false);
+
+        series.getBar(0).addPrice(DecimalNum.valueOf("0.90"));
+        series.getBar(0).addTrade(DecimalNum.valueOf(5), DecimalNum.valueOf("2.00"));
+
+        assertThat(series.getBar(0).getLowPrice()).isEqualTo(DecimalNum.valueOf("0.90"));
+        assertThat(series.getBar(0).getHighPrice()).isEqualTo(DecimalNum.valueOf("2.00"));
+        assertThat(series.getBar(0).getClosePrice()).isEqualTo(DecimalNum.valueOf("2.00"));
+        assertThat(series.getBar(0).getVolume().doubleValue()).isEqualTo(15);
+        assertThat(series.getBar(1).getClosePrice()).isEqualTo(DecimalNum.valueOf("1.20"));
+    }
+
+    private static BaseBar bar(int minute, String open, String close) {
+        DecimalNum openPrice = DecimalNum.valueOf(open);
+        DecimalNum closePrice = DecimalNum.valueOf(close);
+        return new BaseBar(MINUTE, endTime(minute), openPrice, openPrice.max(closePrice), openPrice.min(closePrice),
+                closePrice, DecimalNum.valueOf(10), DecimalNum.valueOf(0), 0);
+    }
+
+    private static ZonedDateTime endTime(int minute) {
+        return Instant.ofEpochMilli(minute * 60_000L).atZone(ZoneOffset.UTC);
+    }
+}
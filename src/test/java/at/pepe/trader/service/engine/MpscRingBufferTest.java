@@ -0,0 +1,125 @@
+package at.pepe.trader.service.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MpscRingBufferTest {
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 5_000;
+
+    @Test
+    void rejectsACapacityThatIsNoPowerOfTwo() {
+        assertThatThrownBy(() -> new MpscRingBuffer<>(12, Slot::new)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void handsOutEveryEventInSequenceAsOneBatch() {
+        MpscRingBuffer<Slot> ring = new MpscRingBuffer<>(8, Slot::new);
+        for (int value = 0; value < 3; value++) {
+            long sequence = ring.next();
+            ring.get(sequence).value = value;
+            ring.publish(sequence);
+        }
+        List<String> handled = new ArrayList<>();
+
+        int count = ring.poll((slot, sequence, endOfBatch) -> handled.add(sequence + ":" + slot.value + ":" + endOfBatch));
+
+        assertThat(count).isEqualTo(3);
+        assertThat(handled).containsExactly("0:0:false", "1:1:false", "2:2:true");
+        assertThat(ring.isEmpty()).isTrue();
+        assertThat(ring.backlog()).isZero();
+    }
+
+    // A claimed but unpublished slot ends the batch, the events after it wait for it
+    @Test
+    void stopsTheBatchAtAnUnpublishedSlot() {
+        MpscRingBuffer<Slot> ring = new MpscRingBuffer<>(8, Slot::new);
+        long first = ring.next();
+        long second = ring.next();
+        ring.publish(second);
+
+        assertThat(ring.isEmpty()).isTrue();
+        assertThat(ring.poll((slot, sequence, endOfBatch) -> { })).isZero();
+        assertThat(ring.backlog()).isEqualTo(2);
+
+        ring.publish(first);
+        List<Long> handled = new ArrayList<>();
+        assertThat(ring.poll((slot, sequence, endOfBatch) -> handled.add(sequence))).isEqualTo(2);
+        assertThat(handled).containsExactly(first, second);
+    }
+
+    // A small ring makes the producers wrap around it many times and wait for the consumer
+    @Test
+    void keepsTheOrderOfEachProducerAcrossWraps() throws InterruptedException {
+        MpscRingBuffer<Slot> ring = new MpscRingBuffer<>(16, Slot::new);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            int id = producer;
+            Thread thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (int value = 0; value < EVENTS_PER_PRODUCER; value++) {
+                    long sequence = ring.next();
+                    Slot slot = ring.get(sequence);
+                    slot.producer = id;
+                    slot.value = value;
+                    ring.publish(sequence);
+                }
+            }, "producer-" + producer);
+            thread.start();
+            producers.add(thread);
+        }
+
+        int[] nextValue = new int[PRODUCERS];
+        long[] expectedSequence = {0};
+        int[] batches = {0};
+        List<String> errors = new ArrayList<>();
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        int received = 0;
+        while (received < PRODUCERS * EVENTS_PER_PRODUCER && System.nanoTime() < deadline) {
+            received += ring.poll((slot, sequence, endOfBatch) -> {
+                if (sequence != expectedSequence[0]++) {
+                    errors.add("sequence " + sequence);
+                }
+                if (slot.value != nextValue[slot.producer]++) {
+                    errors.add("producer " + slot.producer + " value " + slot.value);
+                }
+                if (endOfBatch) {
+                    batches[0]++;
+                }
+            });
+            assertThat(ring.backlog()).isLessThanOrEqualTo(ring.capacity());
+        }
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(errors).isEmpty();
+        assertThat(received).isEqualTo(PRODUCERS * EVENTS_PER_PRODUCER);
+        assertThat(nextValue).containsOnly(EVENTS_PER_PRODUCER);
+        assertThat(batches[0]).isPositive();
+        assertThat(ring.isEmpty()).isTrue();
+        assertThat(ring.backlog()).isZero();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Slot {
+        private int producer;
+        private int value;
+    }
+}
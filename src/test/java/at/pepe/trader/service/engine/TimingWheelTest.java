@@ -0,0 +1,121 @@
+package at.pepe.trader.service.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+
+    private final TimingWheel wheel = new TimingWheel(TICK, 8); // One revolution is 80 ms
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void rejectsATickShorterThanAMillisecond() {
+        assertThatThrownBy(() -> new TimingWheel(0, 8)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void neverFiresBeforeTheDeadline() {
+        wheel.advance(0);
+        TimingWheel.Timeout timeout = wheel.schedule(25, () -> fired.add("a"));
+
+        assertThat(wheel.advance(29)).isZero();
+        assertThat(timeout.isPending()).isTrue();
+        assertThat(wheel.advance(30)).isEqualTo(1);
+        assertThat(fired).containsExactly("a");
+        assertThat(timeout.isPending()).isFalse();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    // 100 ms shares the bucket of 20 ms, it has to wait for the second revolution
+    @Test
+    void skipsDeadlinesOfALaterRevolution() {
+        wheel.advance(0);
+        wheel.schedule(20, () -> fired.add("first revolution"));
+        wheel.schedule(100, () -> fired.add("second revolution"));
+
+        wheel.advance(20);
+        assertThat(fired).containsExactly("first revolution");
+        wheel.advance(90);
+        assertThat(fired).containsExactly("first revolution");
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(100);
+        assertThat(fired).containsExactly("first revolution", "second revolution");
+    }
+
+    // The first advance cannot know which ticks passed, every bucket is checked once
+    @Test
+    void firesEverythingDueOnTheFirstAdvance() {
+        wheel.schedule(5, () -> fired.add("5"));
+        wheel.schedule(50, () -> fired.add("50"));
+        wheel.schedule(500, () -> fired.add("500"));
+        wheel.schedule(2000, () -> fired.add("2000"));
+
+        assertThat(wheel.advance(1000)).isEqualTo(3);
+        assertThat(fired).containsExactlyInAnyOrder("5", "50", "500");
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(2000);
+        assertThat(fired).contains("2000");
+    }
+
+    @Test
+    void catchesUpAfterMoreThanARevolution() {
+        wheel.advance(0);
+        wheel.schedule(50, () -> fired.add("50"));
+        wheel.schedule(500, () -> fired.add("500"));
+        wheel.schedule(20_000, () -> fired.add("20000"));
+
+        assertThat(wheel.advance(10_000)).isEqualTo(2);
+        assertThat(fired).containsExactlyInAnyOrder("50", "500");
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    // The timeouts of one bucket are linked newest first: a runs first and cancels b, c still fires
+    @Test
+    void keepsFiringTheBucketWhenATaskCancelsTheNextTimeout() {
+        wheel.advance(0);
+        wheel.schedule(30, () -> fired.add("c"));
+        TimingWheel.Timeout b = wheel.schedule(30, () -> fired.add("b"));
+        wheel.schedule(30, () -> {
+            fired.add("a");
+            assertThat(b.cancel()).isTrue();
+        });
+
+        assertThat(wheel.advance(30)).isEqualTo(2);
+        assertThat(fired).containsExactly("a", "c");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void runsATimeoutScheduledByATaskOnALaterAdvance() {
+        wheel.advance(0);
+        wheel.schedule(10, () -> {
+            fired.add("first");
+            wheel.schedule(0, () -> fired.add("overdue"));
+        });
+
+        assertThat(wheel.advance(10)).isEqualTo(1);
+        assertThat(fired).containsExactly("first");
+        assertThat(wheel.advance(20)).isEqualTo(1);
+        assertThat(fired).containsExactly("first", "overdue");
+    }
+
+    @Test
+    void doesNotRunCancelledTimeouts() {
+        wheel.advance(0);
+        TimingWheel.Timeout timeout = wheel.schedule(10, () -> fired.add("cancelled"));
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.advance(100)).isZero();
+        assertThat(fired).isEmpty();
+    }
+}
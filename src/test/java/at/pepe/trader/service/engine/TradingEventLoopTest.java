@@ -0,0 +1,193 @@
+package at.pepe.trader.service.engine;
+
+import at.pepe.trader.backtest.InMemoryPositionRepository;
+import at.pepe.trader.config.EngineConfigProperties;
+import at.pepe.trader.config.JacksonConfig;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.service.TradingParametersHolder;
+import at.pepe.trader.service.TradingService;
+import at.pepe.trader.service.binance.BalanceHolderService;
+import at.pepe.trader.service.binance.OrderGateway;
+import at.pepe.trader.service.candle.BarSeriesHolderService;
+import at.pepe.trader.service.discord.DiscordEmbedPublishingService;
+import at.pepe.trader.service.indicator.IndicatorService;
+import at.pepe.trader.service.latency.LatencyTracker;
+import at.pepe.trader.service.position.PositionService;
+import at.pepe.trader.service.statistics.RollingStatisticsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds the strategy thread in a task while the klines are published, so they arrive as one batch.
+ */
+class TradingEventLoopTest {
+    private static final String SYMBOL = "PEPEFDUSD";
+    private static final long FIRST_CLOSE_TIME = 1_700_000_000_999L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Long> decisions = new ArrayList<>();
+    private BarSeriesHolderService barSeriesHolderService;
+    private TradingEventLoop tradingEventLoop;
+    private CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        TradeConfigProperties properties = new TradeConfigProperties();
+        properties.setSymbol(SYMBOL);
+        properties.setBaseAsset("PEPE");
+        properties.setQuoteAsset("FDUSD");
+        properties.setQuoteAssetScale(8);
+        properties.setQuoteAssetQuantityPerTrade(new BigDecimal("25"));
+        properties.setUpperBounds(new BigDecimal("0.00000850"));
+        properties.setLowerBounds(new BigDecimal("0.00000650"));
+        properties.setMinuteBarCapacity(10);
+        properties.setSecondBarCapacity(600);
+        EngineConfigProperties engineConfigProperties = new EngineConfigProperties();
+        engineConfigProperties.setRingSize(64);
+        engineConfigProperties.setMaxTickAgeMs(10_000);
+        Clock clock = Clock.systemUTC();
+
+        TradingParametersHolder tradingParametersHolder = new TradingParametersHolder(properties);
+        IndicatorService indicatorService = new IndicatorService(properties);
+        barSeriesHolderService = new BarSeriesHolderService(properties, null, indicatorService);
+        barSeriesHolderService.startFrom(FIRST_CLOSE_TIME, 750, 750, 750, 750, 1);
+        InMemoryPositionRepository positionRepository = new InMemoryPositionRepository();
+        PositionService positionService = new PositionService(properties, tradingParametersHolder, positionRepository, new SilentOrderGateway(),
+                barSeriesHolderService, new DiscordEmbedPublishingService(new JacksonConfig().objectMapper(), properties),
+                new RollingStatisticsService(properties.getSymbol(), false, positionRepository, clock), LatencyTracker.disabled(), clock);
+        TradingService tradingService = new TradingService(properties, tradingParametersHolder, positionService, barSeriesHolderService,
+                new BalanceHolderService(properties, tradingParametersHolder), indicatorService, LatencyTracker.disabled()) {
+            @Override
+            public void performTrade() {
+                decisions.add(barSeriesHolderService.getLastClose());
+            }
+        };
+        tradingEventLoop = new TradingEventLoop(engineConfigProperties, properties, barSeriesHolderService, tradingService, positionService,
+                LatencyTracker.disabled(), meterRegistry, clock);
+        tradingEventLoop.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        tradingEventLoop.stop();
+    }
+
+    @Test
+    void coalescesTheUpdatesOfOneSecond() throws InterruptedException {
+        holdStrategyThread();
+        publishKline(FIRST_CLOSE_TIME + 1000, 751, System.nanoTime());
+        publishKline(FIRST_CLOSE_TIME + 1000, 752, System.nanoTime());
+        publishKline(FIRST_CLOSE_TIME + 1000, 753, System.nanoTime());
+        releaseAndDrain();
+
+        assertThat(count("trading.ticks.received")).isEqualTo(3);
+        assertThat(count("trading.ticks.coalesced")).isEqualTo(2);
+        assertThat(count("trading.ticks.superseded")).isZero();
+        assertThat(decisions).containsExactly(753L);
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(2);
+    }
+
+    @Test
+    void decidesOnlyOnTheLatestOfSeveralSeconds() throws InterruptedException {
+        holdStrategyThread();
+        publishKline(FIRST_CLOSE_TIME + 1000, 751, System.nanoTime());
+        publishKline(FIRST_CLOSE_TIME + 2000, 752, System.nanoTime());
+        publishKline(FIRST_CLOSE_TIME + 3000, 753, System.nanoTime());
+        releaseAndDrain();
+
+        assertThat(count("trading.ticks.received")).isEqualTo(3);
+        assertThat(count("trading.ticks.coalesced")).isZero();
+        assertThat(count("trading.ticks.superseded")).isEqualTo(2);
+        assertThat(decisions).containsExactly(753L);
+        assertThat(barSeriesHolderService.getSecondSeries().getBarCount()).isEqualTo(4);
+    }
+
+    @Test
+    void dropsTheDecisionOnAStalePrice() throws InterruptedException {
+        holdStrategyThread();
+        publishKline(FIRST_CLOSE_TIME + 1000, 751, System.nanoTime() - TimeUnit.SECONDS.toNanos(60));
+        releaseAndDrain();
+
+        assertThat(count("trading.ticks.stale")).isEqualTo(1);
+        assertThat(decisions).isEmpty();
+        assertThat(barSeriesHolderService.getLastClose()).isEqualTo(751);
+
+        holdStrategyThread();
+        publishKline(FIRST_CLOSE_TIME + 2000, 752, System.nanoTime());
+        releaseAndDrain();
+
+        assertThat(count("trading.ticks.stale")).isEqualTo(1);
+        assertThat(decisions).containsExactly(752L);
+    }
+
+    private void holdStrategyThread() {
+        release = new CountDownLatch(1);
+        CountDownLatch held = new CountDownLatch(1);
+        tradingEventLoop.execute(() -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            assertThat(held.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // The backlog drops to zero only after the handler of the last event, the decision included, returned
+    private void releaseAndDrain() throws InterruptedException {
+        release.countDown();
+        for (int i = 0; i < 500 && tradingEventLoop.getBacklog() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(tradingEventLoop.getBacklog()).isZero();
+    }
+
+    private void publishKline(long closeTime, long close, long receivedNanos) {
+        tradingEventLoop.publishKline(closeTime, 750, Math.max(750, close), Math.min(750, close), close, 1, receivedNanos);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).tag("symbol", SYMBOL).counter().count();
+    }
+
+    private static final class SilentOrderGateway implements OrderGateway {
+        @Override
+        public CompletableFuture<OrderAck> createNewOrder(long pricePoints, BigDecimal quantity, String action, long clientId) {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelOrder(long orderId) {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelReplaceOrder(long cancelOrderId, long pricePoints, BigDecimal quantity, String action,
+                                                              long clientId) {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public CompletableFuture<OrderAck> cancelAllOrders() {
+            return new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package at.pepe.trader.service.indicator;
+
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBarSeriesBuilder;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsLowerIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsMiddleIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsUpperIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.statistics.StandardDeviationIndicator;
+import org.ta4j.core.num.DoubleNum;
+
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * The bands have to match the ta4j chain they replaced, on closed bars as well as on updates of the forming one.
+ */
+class IncrementalBollingerBandsTest {
+    private static final int WINDOW = 20;
+    private static final double MULTIPLIER = 2;
+    private static final ZonedDateTime START = ZonedDateTime.parse("2024-03-01T00:00:00Z");
+
+    private final BarSeries series = new BaseBarSeriesBuilder().withNumTypeOf(DoubleNum.class).build();
+    private final IncrementalBollingerBands bands = new IncrementalBollingerBands(WINDOW, MULTIPLIER);
+
+    @Test
+    void matchesTa4jOnClosedAndFormingBars() {
+        Random random = new Random(7);
+        double price = 0.00000750;
+        for (int bar = 0; bar < 7 * WINDOW + 3; bar++) {
+            price += (random.nextInt(5) - 2) * 0.00000001;
+            addBar(price);
+            assertMatchesTa4j();
+            for (int update = 0; update < 3; update++) {
+                price += (random.nextInt(3) - 1) * 0.00000001;
+                updateLast(price);
+                assertMatchesTa4j();
+            }
+        }
+    }
+
+    // Far from zero the sums would lose the small deviations without the anchor, every window re-anchors them
+    @Test
+    void staysPreciseAcrossReanchoringFarFromZero() {
+        Random random = new Random(11);
+        for (int bar = 0; bar < 10 * WINDOW; bar++) {
+            double close = 1_000_000 + random.nextGaussian() * 0.001;
+            addBar(close);
+            updateLast(close + 0.0005);
+            if (bar % WINDOW == WINDOW - 1 || bar % WINDOW == 0) {
+                assertMatchesTa4j();
+            }
+        }
+        assertMatchesTa4j();
+    }
+
+    @Test
+    void startsOverAfterAReset() {
+        for (int bar = 0; bar < 2 * WINDOW; bar++) {
+            bands.addBar(100 + bar);
+        }
+
+        bands.reset();
+        assertThat(bands.isReady()).isFalse();
+        for (int bar = 0; bar < WINDOW + 5; bar++) {
+            addBar(0.5 + bar % 3 * 0.1);
+        }
+
+        assertMatchesTa4j();
+    }
+
+    private void addBar(double close) {
+        series.addBar(START.plusMinutes(series.getBarCount() + 1), close, close, close, close);
+        bands.addBar(close);
+    }
+
+    private void updateLast(double close) {
+        series.addPrice(close);
+        bands.updateLast(close);
+    }
+
+    // Built anew every time, ta4j caches the values of earlier states of the last bar
+    private void assertMatchesTa4j() {
+        ClosePriceIndicator closePrice = new ClosePriceIndicator(series);
+        BollingerBandsMiddleIndicator middle = new BollingerBandsMiddleIndicator(new EMAIndicator(closePrice, WINDOW));
+        StandardDeviationIndicator deviation = new StandardDeviationIndicator(closePrice, WINDOW);
+        BollingerBandsUpperIndicator upper = new BollingerBandsUpperIndicator(middle, deviation, series.numOf(MULTIPLIER));
+        BollingerBandsLowerIndicator lower = new BollingerBandsLowerIndicator(middle, deviation, series.numOf(MULTIPLIER));
+        int index = series.getEndIndex();
+        double tolerance = Math.abs(series.getLastBar().getClosePrice().doubleValue()) * 1e-12;
+
+        assertThat(bands.getMiddle()).as("middle at %d", index).isCloseTo(middle.getValue(index).doubleValue(), within(tolerance));
+        assertThat(bands.getStandardDeviation()).as("deviation at %d", index)
+                .isCloseTo(deviation.getValue(index).doubleValue(), within(tolerance));
+        assertThat(bands.getUpper()).as("upper at %d", index).isCloseTo(upper.getValue(index).doubleValue(), within(tolerance));
+        assertThat(bands.getLower()).as("lower at %d", index).isCloseTo(lower.getValue(index).doubleValue(), within(tolerance));
+    }
+}
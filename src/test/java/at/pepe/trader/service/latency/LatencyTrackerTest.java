@@ -0,0 +1,34 @@
+package at.pepe.trader.service.latency;
+
+import at.pepe.trader.config.LatencyConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyTrackerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LatencyTracker latencyTracker = new LatencyTracker(new LatencyConfigProperties(), meterRegistry, null, null);
+
+    @Test
+    void recordsOnlyTheFirstReportOfAnOrder() {
+        latencyTracker.orderSent("1_BUY", System.nanoTime());
+
+        latencyTracker.orderAcknowledged("1_BUY");
+        latencyTracker.orderAcknowledged("1_BUY");
+
+        assertThat(ackCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresReportsOfOrdersNotSentByUs() {
+        latencyTracker.orderAcknowledged("web_123");
+        latencyTracker.orderAcknowledged(null);
+
+        assertThat(ackCount()).isZero();
+    }
+
+    private long ackCount() {
+        return meterRegistry.get("trading.latency").tag("stage", "order.ack").timer().count();
+    }
+}
@@ -0,0 +1,93 @@
+package at.pepe.trader.service.position;
+
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.model.PriceScale;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenPositionBookTest {
+    private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2024, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final PriceScale priceScale = new PriceScale(8);
+    private final OpenPositionBook book = new OpenPositionBook(priceScale, 2);
+
+    @Test
+    void findsActivePositionsAtTheirOpenPriceWhateverTheStatus() {
+        book.update(position(1, PositionStatus.WAITING_FOR_OPEN, 750));
+        book.update(position(2, PositionStatus.WAITING_FOR_CLOSE, 760));
+
+        assertThat(book.hasActiveAt(750)).isTrue();
+        assertThat(book.hasActiveAt(760)).isTrue();
+        assertThat(book.hasActiveAt(751)).isFalse();
+
+        book.update(position(1, PositionStatus.CANCELLED, 750));
+        book.update(position(2, PositionStatus.WAITING_FOR_CLOSE, 765));
+
+        assertThat(book.hasActiveAt(750)).isFalse();
+        assertThat(book.hasActiveAt(760)).isFalse();
+        assertThat(book.hasActiveAt(765)).isTrue();
+        assertThat(book.size()).isEqualTo(1);
+    }
+
+    // The proximity check of a new buy at 753 looks from 750 up
+    @Test
+    void includesTheLowerBoundOfTheProximityRange() {
+        long price = 753;
+        book.update(position(1, PositionStatus.WAITING_FOR_OPEN, price - 4));
+
+        assertThat(book.hasAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price - 3)).isFalse();
+        assertThat(book.findAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price - 3)).isEmpty();
+
+        book.update(position(2, PositionStatus.WAITING_FOR_OPEN, price - 3));
+        book.update(position(3, PositionStatus.WAITING_FOR_OPEN, price + 10));
+        book.update(position(4, PositionStatus.WAITING_FOR_CLOSE, price));
+
+        assertThat(book.hasAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price - 3)).isTrue();
+        assertThat(book.findAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price - 3))
+                .extracting(Position::getId)
+                .containsExactly(2L, 3L);
+        assertThat(book.hasAtOrAbove(PositionStatus.WAITING_FOR_OPEN, price + 11)).isFalse();
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentlyUsedFinishedPositions() {
+        for (long id = 1; id <= 3; id++) {
+            book.update(position(id, PositionStatus.WAITING_FOR_CLOSE, 750 + id));
+        }
+        book.update(position(1, PositionStatus.FINISHED, 751));
+        book.update(position(2, PositionStatus.FINISHED, 752));
+        assertThat(book.get(1)).isNotNull(); // 1 is now used more recently than 2
+        book.update(position(3, PositionStatus.CANCELLED, 753));
+
+        assertThat(book.contains(1)).isTrue();
+        assertThat(book.contains(2)).isFalse();
+        assertThat(book.get(2)).isNull();
+        assertThat(book.get(3).getStatus()).isEqualTo(PositionStatus.CANCELLED);
+        assertThat(book.size()).isZero();
+        assertThat(book.hasActiveAt(753)).isFalse();
+    }
+
+    @Test
+    void countsThePositionsCreatedAfterATime() {
+        book.update(position(1, PositionStatus.WAITING_FOR_CLOSE, 750));
+        book.update(position(2, PositionStatus.WAITING_FOR_CLOSE, 750).toBuilder().createdAt(CREATED_AT.plusHours(1)).build());
+        book.update(position(3, PositionStatus.WAITING_FOR_OPEN, 750).toBuilder().createdAt(CREATED_AT.plusHours(1)).build());
+
+        assertThat(book.countCreatedAfter(PositionStatus.WAITING_FOR_CLOSE, CREATED_AT)).isEqualTo(1);
+        assertThat(book.countCreatedAfter(PositionStatus.FINISHED, CREATED_AT)).isZero();
+    }
+
+    private Position position(long id, PositionStatus status, long openPoints) {
+        return Position.builder()
+                .id(id)
+                .status(status)
+                .openAtPrice(priceScale.toBigDecimal(openPoints))
+                .createdAt(CREATED_AT)
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package at.pepe.trader.service.position;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceTriggerIndexTest {
+    private final PriceTriggerIndex index = new PriceTriggerIndex();
+
+    @Test
+    void pollsOnlyThePositionsStrictlyOutsideTheBand() {
+        index.add(1, 100);
+        index.add(2, 103);
+        index.add(3, 97);
+        index.add(4, 104);
+        index.add(5, 95);
+        index.add(6, 95);
+
+        assertThat(index.pollOutside(100, 3)).containsExactly(5L, 6L, 4L);
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.contains(4)).isFalse();
+        assertThat(index.contains(2)).isTrue();
+        assertThat(index.pollOutside(100, 3)).isEmpty();
+    }
+
+    @Test
+    void movesAPositionAddedAgain() {
+        index.add(1, 100);
+        index.add(1, 110);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.pollOutside(110, 0)).isEmpty();
+        assertThat(index.pollOutside(100, 3)).containsExactly(1L);
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void forgetsRemovedPositions() {
+        index.add(1, 100);
+        index.add(2, 100);
+
+        assertThat(index.remove(1)).isTrue();
+        assertThat(index.remove(1)).isFalse();
+        assertThat(index.pollOutside(200, 3)).containsExactly(2L);
+        assertThat(index.remove(2)).isFalse();
+        assertThat(index.pollOutside(0, 3)).isEmpty();
+    }
+}
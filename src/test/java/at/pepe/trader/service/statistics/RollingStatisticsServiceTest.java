@@ -0,0 +1,105 @@
+package at.pepe.trader.service.statistics;
+
+import at.pepe.trader.backtest.InMemoryPositionRepository;
+import at.pepe.trader.model.Position;
+import at.pepe.trader.model.PositionStatus;
+import at.pepe.trader.model.StatisticResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingStatisticsServiceTest {
+    private static final String SYMBOL = "PEPEFDUSD";
+    private static final Instant NOW = Instant.parse("2024-03-01T12:00:30Z");
+    private static final OffsetDateTime OPENED_AT = OffsetDateTime.of(2024, 3, 1, 11, 0, 0, 0, ZoneOffset.UTC);
+
+    private final CountingPositionRepository positionRepository = new CountingPositionRepository();
+    private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @Test
+    void rebuildsTheBucketsFromThePositionsOnlyOnce() {
+        positionRepository.save(1L, Position.builder()
+                .id(1L)
+                .status(PositionStatus.FINISHED)
+                .openAtPrice(new BigDecimal("0.00000750"))
+                .quantityOpen(new BigDecimal("1000000"))
+                .closeAtPrice(new BigDecimal("0.00000754"))
+                .quantityClose(new BigDecimal("1000000"))
+                .createdAt(OPENED_AT)
+                .closedAt(OPENED_AT.plusMinutes(10))
+                .build());
+
+        RollingStatisticsService first = new RollingStatisticsService(SYMBOL, true, positionRepository, clock);
+        first.initialize();
+        StatisticResult result = first.summarizeSince(OPENED_AT.minusMinutes(1));
+
+        assertThat(result.getPositionsOpened()).isEqualTo(1);
+        assertThat(result.getPositionsClosed()).isEqualTo(1);
+        assertThat(result.getProfitMade()).isEqualByComparingTo("0.04");
+        assertThat(result.getAverageTimeToClose()).isEqualTo(Duration.ofMinutes(10));
+        assertThat(positionRepository.isStatisticsRebuilt()).isTrue();
+
+        RollingStatisticsService restarted = new RollingStatisticsService(SYMBOL, true, positionRepository, Clock.offset(clock, Duration.ofDays(40)));
+        restarted.initialize();
+
+        assertThat(positionRepository.scans).isEqualTo(1);
+        assertThat(restarted.summarizeSince(OPENED_AT).getPositionsClosed()).isZero();
+    }
+
+    @Test
+    void summarizesUpToTheTimeOfItsClock() {
+        RollingStatisticsService service = new RollingStatisticsService(SYMBOL, true, positionRepository, clock);
+        service.initialize();
+
+        service.onOpened(OffsetDateTime.ofInstant(NOW, ZoneOffset.UTC), new BigDecimal("25"));
+        service.onOpened(OffsetDateTime.ofInstant(NOW.plusSeconds(60), ZoneOffset.UTC), new BigDecimal("25"));
+
+        assertThat(service.summarizeSince(OPENED_AT).getPositionsOpened()).isEqualTo(1);
+        assertThat(service.summarizeSince(OPENED_AT).getVolumenTraded()).isEqualTo(25.0);
+    }
+
+    @Test
+    void keepsTheBucketsOfEachSymbolApart() {
+        positionRepository.save(1L, Position.builder()
+                .id(1L)
+                .status(PositionStatus.OPENED)
+                .openAtPrice(new BigDecimal("0.00000750"))
+                .quantityOpen(new BigDecimal("1000000"))
+                .createdAt(OPENED_AT)
+                .build());
+        RollingStatisticsService shard = new RollingStatisticsService("BONKFDUSD", false, positionRepository, clock);
+        shard.initialize();
+
+        assertThat(positionRepository.scans).isZero();
+        assertThat(positionRepository.isStatisticsRebuilt()).isFalse();
+        shard.onOpened(OPENED_AT.plusMinutes(1), new BigDecimal("10"));
+
+        RollingStatisticsService service = new RollingStatisticsService(SYMBOL, true, positionRepository, clock);
+        service.initialize();
+        assertThat(service.summarizeSince(OPENED_AT.minusMinutes(1)).getPositionsOpened()).isEqualTo(1);
+        assertThat(service.summarizeSince(OPENED_AT.minusMinutes(1)).getVolumenTraded()).isEqualTo(7.5);
+
+        RollingStatisticsService restartedShard = new RollingStatisticsService("BONKFDUSD", false, positionRepository, clock);
+        restartedShard.initialize();
+        assertThat(restartedShard.summarizeSince(OPENED_AT.minusMinutes(1)).getPositionsOpened()).isEqualTo(1);
+        assertThat(restartedShard.summarizeSince(OPENED_AT.minusMinutes(1)).getVolumenTraded()).isEqualTo(10.0);
+    }
+
+    private static final class CountingPositionRepository extends InMemoryPositionRepository {
+        private int scans;
+
+        @Override
+        public List<Position> findAllSince(OffsetDateTime offsetDateTime) {
+            scans++;
+            return super.findAllSince(offsetDateTime);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package at.pepe.trader.simulator;
+
+import at.pepe.trader.config.ConnectionConfigProperties;
+import at.pepe.trader.config.RateLimitConfigProperties;
+import at.pepe.trader.config.ShardConfigProperties;
+import at.pepe.trader.config.SimulatorConfigProperties;
+import at.pepe.trader.config.TradeConfigProperties;
+import at.pepe.trader.config.binance.BinanceConfigProperties;
+import at.pepe.trader.mapper.OrderMapper;
+import at.pepe.trader.model.OrderAck;
+import at.pepe.trader.model.OrderPojo;
+import at.pepe.trader.service.binance.ApiRateLimiter;
+import at.pepe.trader.service.binance.OrderService;
+import at.pepe.trader.service.connection.ConnectionManager;
+import at.pepe.trader.service.connection.ManagedConnection;
+import at.pepe.trader.service.latency.LatencyTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the order API of the application against the simulator. The orders are placed far below the simulated
+ * market, so no kline fills them during the test.
+ */
+class ExchangeSimulatorTest {
+    private static final long FAR_BELOW = 600; // The market moves around 750
+
+    private ExchangeSimulator simulator;
+    private ConnectionManager connectionManager;
+    private ApiRateLimiter rateLimiter;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() throws IOException, InterruptedException {
+        TradeConfigProperties tradeConfigProperties = new TradeConfigProperties();
+        tradeConfigProperties.setSymbol("PEPEFDUSD");
+        tradeConfigProperties.setBaseAsset("PEPE");
+        tradeConfigProperties.setQuoteAsset("FDUSD");
+        tradeConfigProperties.setQuoteAssetScale(8);
+        tradeConfigProperties.setLowerBounds(new BigDecimal("0.00000650"));
+        tradeConfigProperties.setUpperBounds(new BigDecimal("0.00000850"));
+        SimulatorConfigProperties simulatorConfigProperties = new SimulatorConfigProperties();
+        simulatorConfigProperties.setPort(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        simulator = new ExchangeSimulator(simulatorConfigProperties, tradeConfigProperties, new ShardConfigProperties(),
+                meterRegistry, Clock.systemUTC());
+        simulator.start();
+
+        BinanceConfigProperties binanceConfigProperties = new BinanceConfigProperties();
+        binanceConfigProperties.setApikey("simulator");
+        binanceConfigProperties.setBaseWebsocketApi("ws://127.0.0.1:" + simulator.getPort() + "/ws-api/v3");
+        ConnectionConfigProperties connectionConfigProperties = new ConnectionConfigProperties();
+        connectionManager = new ConnectionManager(connectionConfigProperties, binanceConfigProperties, meterRegistry, Clock.systemUTC());
+        rateLimiter = new ApiRateLimiter(new RateLimitConfigProperties(), Clock.systemUTC(), meterRegistry);
+        orderService = new OrderService(
+                payload -> "unchecked",
+                tradeConfigProperties,
+                binanceConfigProperties,
+                new OrderMapper(),
+                LatencyTracker.disabled(),
+                rateLimiter,
+                connectionManager,
+                connectionConfigProperties
+        );
+        orderService.openApiStream();
+        awaitUp();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionManager.stop();
+        rateLimiter.shutdown();
+        simulator.stop();
+    }
+
+    @Test
+    void placesOrders() throws Exception {
+        OrderAck ack = orderService.createNewOrder(FAR_BELOW, new BigDecimal("1000"), "BUY", 7).get(5, TimeUnit.SECONDS);
+
+        assertThat(ack.isSuccess()).isTrue();
+        OrderPojo order = ack.getOrder();
+        assertThat(order.getSymbol()).isEqualTo("PEPEFDUSD");
+        assertThat(order.getOrderId()).isPositive();
+        assertThat(order.getClientOrderId()).isEqualTo("7_BUY");
+        assertThat(order.getOrderStatus()).isEqualTo("NEW");
+        assertThat(order.getAction()).isEqualTo("BUY");
+        assertThat(order.getType()).isEqualTo("LIMIT");
+        assertThat(order.getPrice()).isEqualByComparingTo("0.00000600");
+        assertThat(order.getQuantity()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    void rejectsOrdersWithoutTheBalance() throws Exception {
+        OrderAck ack = orderService.createNewOrder(FAR_BELOW, new BigDecimal("1000"), "SELL", 8).get(5, TimeUnit.SECONDS);
+
+        assertThat(ack.isSuccess()).isFalse();
+        assertThat(ack.getStatus()).isEqualTo(400);
+        assertThat(ack.getErrorCode()).isEqualTo(-2010);
+        assertThat(ack.getOrder()).isNull();
+    }
+
+    @Test
+    void replacesOrders() throws Exception {
+        OrderPojo placed = orderService.createNewOrder(FAR_BELOW, new BigDecimal("1000"), "BUY", 9).get(5, TimeUnit.SECONDS).getOrder();
+
+        OrderAck ack = orderService.cancelReplaceOrder(placed.getOrderId(), FAR_BELOW + 1, new BigDecimal("1000"), "BUY", 10)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(ack.isSuccess()).isTrue();
+        assertThat(ack.getCancelledOrders()).singleElement().satisfies(cancelled -> {
+            assertThat(cancelled.getOrderId()).isEqualTo(placed.getOrderId());
+            assertThat(cancelled.getClientOrderId()).isEqualTo("9_BUY");
+            assertThat(cancelled.getOrderStatus()).isEqualTo("CANCELED");
+        });
+        assertThat(ack.getOrder().getClientOrderId()).isEqualTo("10_BUY");
+        assertThat(ack.getOrder().getOrderStatus()).isEqualTo("NEW");
+        assertThat(ack.getOrder().getPrice()).isEqualByComparingTo("0.00000601");
+    }
+
+    @Test
+    void placesNothingWhenTheReplacedOrderIsGone() throws Exception {
+        OrderAck ack = orderService.cancelReplaceOrder(12345, FAR_BELOW, new BigDecimal("1000"), "BUY", 11)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(ack.isSuccess()).isFalse();
+        assertThat(ack.getErrorCode()).isEqualTo(-2022);
+        assertThat(ack.getCancelledOrders()).isNull();
+        assertThat(ack.getOrder()).isNull();
+    }
+
+    @Test
+    void cancelsAllOpenOrders() throws Exception {
+        orderService.createNewOrder(FAR_BELOW, new BigDecimal("1000"), "BUY", 12).get(5, TimeUnit.SECONDS);
+        orderService.createNewOrder(FAR_BELOW - 1, new BigDecimal("1000"), "BUY", 13).get(5, TimeUnit.SECONDS);
+
+        OrderAck ack = orderService.cancelAllOrders().get(5, TimeUnit.SECONDS);
+
+        assertThat(ack.isSuccess()).isTrue();
+        assertThat(ack.getCancelledOrders()).extracting(OrderPojo::getClientOrderId).containsExactlyInAnyOrder("12_BUY", "13_BUY");
+        assertThat(ack.getCancelledOrders()).extracting(OrderPojo::getOrderStatus).containsOnly("CANCELED");
+
+        OrderAck none = orderService.cancelAllOrders().get(5, TimeUnit.SECONDS);
+        assertThat(none.isSuccess()).isFalse();
+        assertThat(none.getErrorCode()).isEqualTo(-2011);
+    }
+
+    private void awaitUp() throws InterruptedException {
+        ManagedConnection connection = connectionManager.getConnections().get(0);
+        for (int i = 0; i < 500 && !connection.isUp(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(connection.isUp()).isTrue();
+    }
+}
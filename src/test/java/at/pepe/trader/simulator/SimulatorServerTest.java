@@ -0,0 +1,228 @@
+package at.pepe.trader.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Talks raw HTTP and websocket frames to a server echoing every text message on {@code /echo}.
+ */
+class SimulatorServerTest {
+    private final BlockingQueue<String> closed = new LinkedBlockingQueue<>();
+    private ScheduledExecutorService delivery;
+    private SimulatorServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        delivery = Executors.newSingleThreadScheduledExecutor();
+        server = new SimulatorServer(0, new SimulatorServer.Handler() {
+            @Override
+            public SimulatorServer.Response handle(SimulatorServer.Request request) {
+                return new SimulatorServer.Response(200, request.method() + " " + request.path() + " " + request.query());
+            }
+
+            @Override
+            public boolean onWebSocket(SimulatorServer.Request request, WebSocketSession session) {
+                if (!request.path().equals("/echo")) {
+                    return false;
+                }
+                session.setListener(session::send, () -> closed.add(request.path()));
+                return true;
+            }
+        }, delivery, new Latency(0, 0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        delivery.shutdownNow();
+    }
+
+    @Test
+    void answersRestRequestsWithQueryAndFormParameters() throws IOException {
+        try (Socket socket = connect()) {
+            byte[] body = "side=BUY&price=0.00000750".getBytes(StandardCharsets.US_ASCII);
+            socket.getOutputStream().write(("POST /api/v3/order?symbol=PEPE%2BFDUSD HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Content-Type: application/x-www-form-urlencoded\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().write(body);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            assertThat(readLine(in)).isEqualTo("HTTP/1.1 200 OK");
+            int length = 0;
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                if (line.startsWith("Content-Length: ")) {
+                    length = Integer.parseInt(line.substring(16));
+                }
+            }
+            assertThat(new String(in.readNBytes(length), StandardCharsets.UTF_8))
+                    .startsWith("POST /api/v3/order {")
+                    .contains("symbol=PEPE+FDUSD", "side=BUY", "price=0.00000750");
+        }
+    }
+
+    @Test
+    void echoesMaskedTextFramesOfEveryLength() throws IOException {
+        try (Socket socket = upgrade("/echo")) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            String small = "{\"id\":1}";
+            String medium = "m".repeat(300);
+            String large = "l".repeat(70_000);
+
+            for (String message : new String[]{small, medium, large}) {
+                writeFrame(socket.getOutputStream(), 0x81, message.getBytes(StandardCharsets.UTF_8));
+
+                Frame frame = readFrame(in);
+                assertThat(frame.first()).isEqualTo(0x81);
+                assertThat(frame.text()).isEqualTo(message);
+            }
+        }
+    }
+
+    @Test
+    void joinsFragmentedMessages() throws IOException {
+        try (Socket socket = upgrade("/echo")) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            writeFrame(socket.getOutputStream(), 0x01, "{\"method\":".getBytes(StandardCharsets.UTF_8));
+            writeFrame(socket.getOutputStream(), 0x00, "\"ping\",".getBytes(StandardCharsets.UTF_8));
+            writeFrame(socket.getOutputStream(), 0x80, "\"id\":\"ä\"}".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(readFrame(in).text()).isEqualTo("{\"method\":\"ping\",\"id\":\"ä\"}");
+        }
+    }
+
+    @Test
+    void answersPingsAndClosesLikeTheClientAsked() throws Exception {
+        try (Socket socket = upgrade("/echo")) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            writeFrame(socket.getOutputStream(), 0x89, new byte[]{1, 2, 3});
+            Frame pong = readFrame(in);
+            assertThat(pong.first()).isEqualTo(0x8A);
+            assertThat(pong.payload()).containsExactly(1, 2, 3);
+
+            writeFrame(socket.getOutputStream(), 0x88, new byte[]{0x03, (byte) 0xE8});
+            Frame close = readFrame(in);
+            assertThat(close.first()).isEqualTo(0x88);
+            assertThat(close.payload()).containsExactly(0x03, 0xE8);
+            assertThat(in.read()).isEqualTo(-1);
+            assertThat(closed.poll(5, TimeUnit.SECONDS)).isEqualTo("/echo");
+        }
+    }
+
+    @Test
+    void closesUnknownWebSocketsWithPolicyViolation() throws IOException {
+        try (Socket socket = upgrade("/ws/unknown")) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            Frame close = readFrame(in);
+            assertThat(close.first()).isEqualTo(0x88);
+            assertThat(((close.payload()[0] & 0xFF) << 8) | (close.payload()[1] & 0xFF)).isEqualTo(1008);
+            assertThat(new String(close.payload(), 2, close.payload().length - 2, StandardCharsets.UTF_8)).isEqualTo("Not found");
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    // The accept key is the example of RFC 6455
+    private Socket upgrade(String path) throws IOException {
+        Socket socket = connect();
+        socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertThat(readLine(in)).isEqualTo("HTTP/1.1 101 Switching Protocols");
+        String accept = null;
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            if (line.startsWith("Sec-WebSocket-Accept: ")) {
+                accept = line.substring(22);
+            }
+        }
+        assertThat(accept).isEqualTo("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=");
+        return socket;
+    }
+
+    // Masked like every client frame
+    private static void writeFrame(OutputStream out, int first, byte[] payload) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(first);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        } else {
+            frame.write(0x80 | 127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                frame.write((int) ((long) payload.length >> shift));
+            }
+        }
+        byte[] mask = {0x37, (byte) 0xFA, 0x21, 0x3D};
+        frame.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i & 3]);
+        }
+        out.write(frame.toByteArray());
+        out.flush();
+    }
+
+    // Server frames are never masked
+    private static Frame readFrame(DataInputStream in) throws IOException {
+        int first = in.readUnsignedByte();
+        int second = in.readUnsignedByte();
+        assertThat(second & 0x80).isZero();
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        return new Frame(first, payload);
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private record Frame(int first, byte[] payload) {
+        String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}